@@ -1,7 +1,15 @@
+import java.io.FileReader;
 import java.io.IOException;
+import java.io.Reader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+import controller.BatchController;
 import controller.GUIController;
+import controller.HttpController;
 import model.FlexibleManager;
 import model.FlexibleManagerInterface;
+import model.RefreshScheduler;
 import view.GUIView;
 
 /**
@@ -16,17 +24,50 @@ public class Main {
    * Creates a model instance for managing portfolios,
    * Initializes the view for user interaction,
    * Sets up the controller to manage application logic and user inputs.
-   * Then, it triggers the main menu of the application through the controller.
+   * Then, it triggers the main menu of the application through the controller, and keeps the
+   * prices of the held stocks current with a daily refresh after the market closes.
+   * With {@code --serve [port] [host]} it instead answers JSON requests over HTTP, on port 8080
+   * of the loopback address unless told otherwise, until the process is stopped, refreshing the
+   * prices the same way. With
+   * {@code --batch file} it runs the commands of the file, writes one JSON line per command and
+   * exits with status 1 if any command failed.
    *
-   * @param args Command line arguments (not used).
+   * @param args Command line arguments, either none, {@code --serve [port] [host]} or
+   *             {@code --batch file}.
    */
   public static void main(String[] args) throws IOException {
     FlexibleManagerInterface model = new FlexibleManager();
+    if (args.length > 0 && args[0].equals("--serve")) {
+      int port = args.length > 1 ? Integer.parseInt(args[1]) : 8080;
+      InetAddress host = args.length > 2
+              ? InetAddress.getByName(args[2]) : InetAddress.getLoopbackAddress();
+      HttpController server = new HttpController(model, new InetSocketAddress(host, port));
+      Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+        try {
+          server.stop(1);
+        } catch (IOException e) {
+          System.err.println("Could not save the portfolios: " + e.getMessage());
+        }
+      }));
+      server.start();
+      new RefreshScheduler(model).start();
+      System.out.println("Serving on port " + server.getPort());
+      return;
+    }
+    if (args.length > 1 && args[0].equals("--batch")) {
+      BatchController batch;
+      try (Reader commands = new FileReader(args[1])) {
+        batch = new BatchController(model, commands, System.out);
+        batch.mainMenu();
+      }
+      System.exit(batch.getFailures() == 0 ? 0 : 1);
+    }
     //    FlexibleViewInterface view = new FlexibleView(System.out);
     //    ControllerInterface controller = new FlexibleController(
     //            model, view, new InputStreamReader(System.in));
     GUIView view = new GUIView();
     GUIController controller = new GUIController(model, view);
     controller.mainMenu();
+    new RefreshScheduler(model).start();
   }
 }
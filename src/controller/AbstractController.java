@@ -5,6 +5,11 @@ import java.text.SimpleDateFormat;
 import java.time.LocalDate;
 import java.time.ZoneId;
 import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import model.ModelException;
+import model.PortfolioRepository;
 
 /**
  * Provides a foundational framework for controller classes, including common utility methods
@@ -33,4 +38,39 @@ public abstract class AbstractController {
       return false;
     }
   }
+
+  /**
+   * Finds a portfolio by name in the listing of the model.
+   *
+   * @param names the names listed by the model, or null if there are none
+   * @param name  the name, with or without the ".xml" ending
+   * @return the index of the portfolio in the listing, or -1 if it is not listed
+   */
+  protected static int findPortfolio(String[] names, String name) {
+    for (int i = 0; names != null && i < names.length; i++) {
+      if (PortfolioRepository.nameOf(names[i]).equals(PortfolioRepository.nameOf(name))) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Waits for a call of the asynchronous model and returns its result.
+   *
+   * @param call the call
+   * @param <T>  the type of the result
+   * @return the result of the call
+   * @throws ModelException if the call failed, telling the kind of failure
+   */
+  protected static <T> T await(CompletableFuture<T> call) {
+    try {
+      return call.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof ModelException) {
+        throw (ModelException) e.getCause();
+      }
+      throw e;
+    }
+  }
 }
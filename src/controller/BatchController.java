@@ -0,0 +1,218 @@
+package controller;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
+
+import model.AsyncModel;
+import model.FlexibleManagerInterface;
+import model.FlexiblePortfolioInterface;
+import model.ModelException;
+import view.JsonView;
+
+/**
+ * Runs a file of commands against one model without menus, for nightly jobs and other scripts.
+ * Each line holds one command and its arguments separated by spaces; blank lines and lines
+ * starting with "#" are skipped. The commands are:
+ * <ul>
+ *   <li>{@code create NAME SYMBOL QUANTITY DATE [SYMBOL QUANTITY DATE]...}</li>
+ *   <li>{@code buy NAME SYMBOL DATE QUANTITY}</li>
+ *   <li>{@code sell NAME SYMBOL DATE QUANTITY}</li>
+ *   <li>{@code value NAME DATE}</li>
+ *   <li>{@code costBasis NAME DATE}</li>
+ *   <li>{@code graph NAME START END TYPE}</li>
+ * </ul>
+ * For every command one line of JSON is written, with the line number, the command, whether it
+ * succeeded and the model's result or the error; value and cost basis also carry the amount as
+ * a number. A last line counts the commands and the failures. A portfolio is opened once and
+ * kept open for the commands after it, and the changes are saved when the file has been run.
+ * Portfolios are created, bought into and sold from through an {@link AsyncModel} run on the
+ * calling thread, so a change the model refused is told from one that failed by its kind.
+ */
+public class BatchController extends AbstractController implements ControllerInterface {
+  private final FlexibleManagerInterface model;
+  private final AsyncModel changes;
+  private final Scanner input;
+  private final Appendable output;
+  private final Map<String, FlexiblePortfolioInterface> open = new HashMap<>();
+  private int failures;
+
+  /**
+   * Constructs a controller running the commands read from an input.
+   *
+   * @param model  the model the commands are run against
+   * @param in     the commands
+   * @param output where the results are written
+   */
+  public BatchController(FlexibleManagerInterface model, Readable in, Appendable output) {
+    this.model = model;
+    this.changes = new AsyncModel(model, Runnable::run);
+    this.input = new Scanner(in);
+    this.output = output;
+  }
+
+  /**
+   * Runs every command of the input, writing one result per command, then saves the changes.
+   *
+   * @throws IOException if a result cannot be written or the changes cannot be saved
+   */
+  @Override
+  public void mainMenu() throws IOException {
+    long start = System.currentTimeMillis();
+    failures = 0;
+    int line = 0;
+    int commands = 0;
+    while (input.hasNextLine()) {
+      line++;
+      String text = input.nextLine().trim();
+      if (text.isEmpty() || text.startsWith("#")) {
+        continue;
+      }
+      commands++;
+      List<String> words = Arrays.asList(text.split("\\s+"));
+      JsonView result = new JsonView().put("line", line).put("command", words.get(0));
+      try {
+        run(words, result);
+      } catch (Exception e) {
+        failures++;
+        result.put("ok", false)
+                .put("error", e.getMessage() == null ? e.toString() : e.getMessage());
+      }
+      output.append(result.render()).append(System.lineSeparator());
+    }
+    model.flush();
+    output.append(new JsonView().put("commands", commands).put("failed", failures)
+            .put("millis", System.currentTimeMillis() - start).render())
+            .append(System.lineSeparator());
+  }
+
+  /**
+   * Returns the number of commands that failed in the last run.
+   *
+   * @return the number of failed commands
+   */
+  public int getFailures() {
+    return failures;
+  }
+
+  private void run(List<String> words, JsonView result) throws Exception {
+    String command = words.get(0);
+    switch (command) {
+      case "create":
+        arguments(words, 5);
+        if ((words.size() - 2) % 3 != 0) {
+          throw new IllegalArgumentException("create needs SYMBOL QUANTITY DATE per stock");
+        }
+        change(result, create(words));
+        break;
+      case "buy":
+      case "sell":
+        arguments(words, 5);
+        String name = words.get(1);
+        String date = date(words.get(3));
+        int quantity = Integer.parseInt(words.get(4));
+        change(result, command.equals("buy")
+                ? changes.buy(name, words.get(2), date, quantity)
+                : changes.sell(name, words.get(2), date, quantity));
+        break;
+      case "value":
+        arguments(words, 3);
+        String value = portfolio(words.get(1)).value(date(words.get(2)));
+        double total = amount(value);
+        report(result.put("amount", total), value, !Double.isNaN(total));
+        break;
+      case "costBasis":
+        arguments(words, 3);
+        String costBasis = portfolio(words.get(1)).costBasis(date(words.get(2)));
+        double basis = amount(costBasis);
+        report(result.put("amount", basis), costBasis, !Double.isNaN(basis));
+        break;
+      case "graph":
+        arguments(words, 5);
+        report(result, portfolio(words.get(1)).graph(date(words.get(2)), date(words.get(3)),
+                words.get(4)), true);
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown command " + command);
+    }
+  }
+
+  private CompletableFuture<String> create(List<String> words) {
+    String name = words.get(1);
+    List<String> symbols = new ArrayList<>();
+    List<Integer> quantities = new ArrayList<>();
+    List<String> dates = new ArrayList<>();
+    for (int i = 2; i < words.size(); i += 3) {
+      symbols.add(words.get(i));
+      quantities.add(Integer.parseInt(words.get(i + 1)));
+      dates.add(date(words.get(i + 2)));
+    }
+    open.remove(name);
+    return changes.create(name, symbols, quantities, dates);
+  }
+
+  /**
+   * Reports the outcome of a change: the model's message if it was made, or as a failed result
+   * if the model refused it. Any other failure is thrown.
+   */
+  private void change(JsonView result, CompletableFuture<String> change) {
+    try {
+      report(result, await(change), true);
+    } catch (ModelException e) {
+      if (e.getKind() != ModelException.Kind.REJECTED) {
+        throw e;
+      }
+      report(result, e.getMessage(), false);
+    }
+  }
+
+  private FlexiblePortfolioInterface portfolio(String name) throws Exception {
+    FlexiblePortfolioInterface portfolio = open.get(name);
+    if (portfolio == null) {
+      int number = findPortfolio(model.returnPortfolioList(), name);
+      if (number < 0) {
+        throw new IllegalArgumentException("No portfolio " + name);
+      }
+      portfolio = model.fetchFlexiblePortfolio(number + 1);
+      open.put(name, portfolio);
+    }
+    return portfolio;
+  }
+
+  private void report(JsonView result, String text, boolean ok) {
+    if (!ok) {
+      failures++;
+    }
+    result.put("ok", ok).put("result", text);
+  }
+
+  private String date(String date) {
+    if (!checkDate(date)) {
+      throw new IllegalArgumentException("Invalid date " + date);
+    }
+    return date;
+  }
+
+  private static void arguments(List<String> words, int count) {
+    if (words.size() < count) {
+      throw new IllegalArgumentException(words.get(0) + " needs " + (count - 1) + " arguments");
+    }
+  }
+
+  /**
+   * Returns the dollar amount at the end of a result, or NaN if it does not end with one.
+   */
+  private static double amount(String text) {
+    int dollar = text == null ? -1 : text.lastIndexOf('$');
+    try {
+      return dollar < 0 ? Double.NaN : Double.parseDouble(text.substring(dollar + 1).trim());
+    } catch (NumberFormatException e) {
+      return Double.NaN;
+    }
+  }
+}
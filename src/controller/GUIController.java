@@ -20,6 +20,7 @@ import view.PortfolioGUIView;
 public class GUIController extends AbstractController implements ActionListener {
   private final FlexibleManagerInterface model;
   private final GUIView view;
+  private final TaskRunner tasks;
 
   /**
    * Constructs a Controller object with specified model and view.
@@ -30,6 +31,7 @@ public class GUIController extends AbstractController implements ActionListener
   public GUIController(FlexibleManagerInterface model, GUIView view) {
     this.model = model;
     this.view = view;
+    this.tasks = new TaskRunner("manager-tasks", view::showProgress);
   }
 
   /**
@@ -46,12 +48,17 @@ public class GUIController extends AbstractController implements ActionListener
    * Overrides the actionPerformed method from ActionListener. This method
    * handles all action events generated by the view. It responds to user inputs
    * such as button clicks and coordinates the execution of various operations
-   * like creating, managing, and removing portfolios based on the user's selection.
+   * like creating, managing, and removing portfolios based on the user's selection. The model
+   * calls run off the event dispatch thread, one after another.
    *
    * @param e the event that occurred
    */
   @Override
   public void actionPerformed(ActionEvent e) {
+    if ("Cancel".equals(e.getActionCommand())) {
+      tasks.cancel();
+      return;
+    }
     String[] fileList = model.returnPortfolioList();
     switch (e.getActionCommand()) {
       case "Save Portfolio":
@@ -60,51 +67,44 @@ public class GUIController extends AbstractController implements ActionListener
           view.displayMessage("Portfolio Should Have a Name");
           view.removeFields();
         } else {
-          try {
-            model.createPortfolio(portfolioName);
-            // try catch in create portfolio, invalid throws error
-            List<String> symbols = view.getSymbols("Base");
-            List<String> dates = view.getDates("Base");
-            List<String> quantities = view.getQuantities();
-            int count = view.getCount("Base");
-            if ((count != 0) &&
-                    (symbols.size() == count) &&
-                    (dates.size() == count) &&
-                    (quantities.size() == count)) {
-              if (validateInputs(symbols, dates, quantities)) {
-                for (int i = 0; i < view.getCount("Base"); i++) {
-                  model.addStock(symbols.get(i), Integer.parseInt(quantities.get(i)), dates.get(i));
+          List<String> symbols = view.getSymbols("Base");
+          List<String> dates = view.getDates("Base");
+          List<String> quantities = view.getQuantities();
+          int count = view.getCount("Base");
+          if ((count != 0) &&
+                  (symbols.size() == count) &&
+                  (dates.size() == count) &&
+                  (quantities.size() == count)) {
+            if (validateInputs(symbols, dates, quantities)) {
+              tasks.update("Creating " + portfolioName, () -> {
+                try {
+                  model.createPortfolio(portfolioName);
+                  for (int i = 0; i < count; i++) {
+                    model.addStock(symbols.get(i), Integer.parseInt(quantities.get(i)),
+                            dates.get(i));
+                  }
+                  model.savePortfolio();
+                  return portfolioName + " Portfolio Created";
+                } catch (Exception msg) {
+                  return "Invalid Name";
                 }
-                model.savePortfolio();
-                view.displayMessage(portfolioName + " Portfolio Created");
-                view.removeFields();
-              } else {
-                view.displayMessage("Invalid Inputs in Stock Symbol, Date or Quantity");
-                view.removeFields();
-              }
-
+              }, view::displayMessage);
             } else {
-              view.displayMessage("A Portfolio Must Have Stocks");
-              view.removeFields();
+              view.displayMessage("Invalid Inputs in Stock Symbol, Date or Quantity");
             }
-          } catch (Exception msg) {
-            view.displayMessage("Invalid Name");
-            view.removeFields();
+          } else {
+            view.displayMessage("A Portfolio Must Have Stocks");
           }
+          view.removeFields();
         }
-
-
         break;
       case "Save DAC Portfolio":
         String portfolioNameDAC = view.getName("DAC");
         if (Objects.equals(portfolioNameDAC, "")) {
           view.displayMessage("Portfolio Should Have a Name");
-          view.removeFields();
         } else {
           try {
-            model.createPortfolio(portfolioNameDAC);
             int amountDAC = Integer.parseInt(view.getAmounts("DAC"));
-            // try catch in create portfolio, invalid throws error
             List<String> symbols = view.getSymbols("DAC");
             List<String> dates = view.getDates("DAC");
             List<String> percentages = view.getPercents("DAC");
@@ -119,31 +119,30 @@ public class GUIController extends AbstractController implements ActionListener
                   percents.add(Integer.parseInt(num));
                 }
                 if (percents.stream().reduce(0, Integer::sum) == 100) {
-                  for (int i = 0; i < view.getCount("DAC"); i++) {
-                    model.addStock(symbols.get(i),
-                            (float) (amountDAC / 100) * Integer.parseInt(percentages.get(i)),
-                            dates.get(i));
-                  }
-                  model.savePortfolio();
-                  view.displayMessage(portfolioNameDAC + " Portfolio Created");
-                  view.removeFields();
+                  tasks.update("Creating " + portfolioNameDAC, () -> {
+                    try {
+                      model.createPortfolio(portfolioNameDAC);
+                      for (int i = 0; i < count; i++) {
+                        model.addStock(symbols.get(i),
+                                (float) (amountDAC / 100) * percents.get(i), dates.get(i));
+                      }
+                      model.savePortfolio();
+                      return portfolioNameDAC + " Portfolio Created";
+                    } catch (Exception msg) {
+                      return "Invalid Name";
+                    }
+                  }, view::displayMessage);
                 } else {
                   view.displayMessage("Percentages do not add upto 100");
-                  view.removeFields();
                 }
               } else {
                 view.displayMessage("Invalid Inputs in Stock Symbol, Date or Percentage");
-                view.removeFields();
               }
             } else {
               view.displayMessage("A Portfolio Must Have Stocks");
-              view.removeFields();
             }
           } catch (NumberFormatException msg) {
             view.displayMessage("Invalid Amount");
-          } catch (Exception msg) {
-            view.displayMessage("Invalid Name");
-            view.removeFields();
           }
         }
         view.removeFields();
@@ -152,13 +151,10 @@ public class GUIController extends AbstractController implements ActionListener
         String portfolioNameStrat = view.getName("Strat");
         if (Objects.equals(portfolioNameStrat, "")) {
           view.displayMessage("Portfolio Should Have a Name");
-          view.removeFields();
         } else {
           try {
-            model.createPortfolio(portfolioNameStrat);
             int amountStrat = Integer.parseInt(view.getAmounts("Strat"));
             int period = Integer.parseInt(view.getPeriod());
-            // try catch in create portfolio, invalid throws error
             List<String> symbols = view.getSymbols("Strat");
             List<String> dates = view.getDates("Strat");
             List<String> percentages = view.getPercents("Strat");
@@ -178,7 +174,6 @@ public class GUIController extends AbstractController implements ActionListener
                   parser.parse(dates.get(1));
                 } catch (Exception msg) {
                   view.displayMessage("Invalid End Date");
-                  view.removeFields();
                 }
               }
               if (validateInputs(symbols, date, percentages)) {
@@ -193,30 +188,30 @@ public class GUIController extends AbstractController implements ActionListener
                   }
                   Strategy strategy = new Strategy(dates.get(0), dates.get(1), period,
                           symbols, prices);
-                  strategy.saveStrategy(portfolioNameStrat);
-                  for (int i = 0; i < count; i++) {
-                    model.addStock(symbols.get(i), prices.get(i), dates.get(0));
-                  }
-                  model.savePortfolio();
-                  view.displayMessage(portfolioNameStrat + " Portfolio Created");
-                  view.removeFields();
+                  tasks.update("Creating " + portfolioNameStrat, () -> {
+                    try {
+                      model.createPortfolio(portfolioNameStrat);
+                      strategy.saveStrategy(portfolioNameStrat);
+                      for (int i = 0; i < count; i++) {
+                        model.addStock(symbols.get(i), prices.get(i), dates.get(0));
+                      }
+                      model.savePortfolio();
+                      return portfolioNameStrat + " Portfolio Created";
+                    } catch (Exception msg) {
+                      return "Invalid Name";
+                    }
+                  }, view::displayMessage);
                 } else {
                   view.displayMessage("Percentages do not add upto 100");
-                  view.removeFields();
                 }
               } else {
                 view.displayMessage("Invalid Inputs in Stock Symbol, Date or Percentage");
-                view.removeFields();
               }
             } else {
               view.displayMessage("A Portfolio Must Have Stocks");
-              view.removeFields();
             }
           } catch (NumberFormatException msg) {
             view.displayMessage("Invalid Amount or Period");
-          } catch (Exception msg) {
-            view.displayMessage("Invalid Name");
-            view.removeFields();
           }
         }
         view.removeFields();
@@ -224,38 +219,44 @@ public class GUIController extends AbstractController implements ActionListener
       case "Manage":
         if (fileList == null) {
           view.displayMessage("No Portfolio to Manage");
+          break;
         }
         int file = view.getPortfolioOption(fileList);
-        try {
+        if (file < 0) {
+          break;
+        }
+        tasks.update("Opening " + fileList[file], () -> {
           FlexiblePortfolioInterface portfolio = model.fetchFlexiblePortfolio(file + 1);
           portfolio.useStrategy();
+          return portfolio;
+        }, portfolio -> {
           String[] stockList = portfolio.listStocks().toArray(new String[0]);
           PortfolioGUIView portfolioView = new PortfolioGUIView(fileList[file], stockList);
           PortfolioGUIController controller = new PortfolioGUIController(portfolio, portfolioView);
           controller.mainMenu();
-        } catch (Exception ex) {
-          throw new RuntimeException(ex);
-        }
+        }, view::displayMessage);
         break;
       case "Remove":
         if (fileList == null) {
           view.displayMessage("No Portfolio to Remove");
+          break;
         }
-        try {
-          view.displayMessage(model.deletePortfolio(view.getPortfolioOption(fileList) + 1));
-        } catch (Exception ex) {
-          throw new RuntimeException(ex);
+        int removed = view.getPortfolioOption(fileList);
+        if (removed >= 0) {
+          tasks.update("Removing " + fileList[removed],
+                  () -> model.deletePortfolio(removed + 1), view::displayMessage);
         }
         break;
       case "Update":
         if (fileList == null) {
           view.displayMessage("No Portfolio to Update");
+          break;
         }
-        try {
-          view.displayMessage(model.fetchFlexiblePortfolio(
-                  view.getPortfolioOption(fileList) + 1).update());
-        } catch (Exception ex) {
-          throw new RuntimeException(ex);
+        int updated = view.getPortfolioOption(fileList);
+        if (updated >= 0) {
+          tasks.update("Updating " + fileList[updated],
+                  () -> model.fetchFlexiblePortfolio(updated + 1).update(),
+                  view::displayMessage);
         }
         break;
       default:
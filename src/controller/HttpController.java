@@ -0,0 +1,312 @@
+package controller;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import model.AsyncModel;
+import model.FlexibleManagerInterface;
+import model.FlexiblePortfolioInterface;
+import model.ModelException;
+import model.PortfolioRepository;
+import model.StockInterface;
+import model.ValuationSeries;
+import view.JsonView;
+
+/**
+ * Serves the operations of the portfolio manager as JSON over HTTP, for dashboards and other
+ * programs. Every request runs on a thread of a shared pool against the one model, so the
+ * portfolios, price series and strategies it caches are shared by all requests. Reads use the
+ * portfolios' snapshots and never wait for purchases or sales.
+ *
+ * <p>The resources are:
+ * <ul>
+ *   <li>{@code GET /portfolios}: the names of the portfolios</li>
+ *   <li>{@code GET /portfolios/{name}}: the stocks and composition of a portfolio</li>
+ *   <li>{@code GET /portfolios/{name}/value?date=}: its value on a date</li>
+ *   <li>{@code GET /portfolios/{name}/costBasis?date=}: its cost basis on a date</li>
+ *   <li>{@code GET /portfolios/{name}/series?start=&end=}: its daily value and flows</li>
+ *   <li>{@code POST /portfolios/{name}/buy?symbol=&date=&quantity=}: buys a stock it holds</li>
+ *   <li>{@code POST /portfolios/{name}/sell?symbol=&date=&quantity=}: sells a stock it holds</li>
+ *   <li>{@code GET /portfolios/{name}/stocks/{symbol}/crossovers?start=&end=}: the crossovers
+ *   of a stock with its 30 day moving average, or with {@code x} and {@code y}, of its x and y
+ *   day moving averages</li>
+ * </ul>
+ * Answers are JSON objects. Errors have an "error" member and status 400 for a malformed or
+ * refused request, 404 for a missing resource, 405 for a wrong method and 500 for a failure of
+ * the service itself, such as a change that could not be saved. Purchases and sales go through
+ * an {@link AsyncModel} run on the request's thread, which tells the kind of failure.
+ */
+public class HttpController extends AbstractController {
+  private static final int MAX_THREADS = 256;
+  private static final long IDLE_SECONDS = 60;
+
+  private final FlexibleManagerInterface model;
+  private final AsyncModel changes;
+  private final HttpServer server;
+  private final ThreadPoolExecutor executor;
+
+  /**
+   * An answer to a request: the status and the JSON text.
+   */
+  private static final class Answer {
+    private final int status;
+    private final String json;
+
+    private Answer(int status, String json) {
+      this.status = status;
+      this.json = json;
+    }
+  }
+
+  /**
+   * Constructs a service for a model, bound to an address but not started yet.
+   *
+   * @param model   the model the requests are run against
+   * @param address the address to listen on; port 0 picks a free port
+   * @throws IOException if the address cannot be bound
+   */
+  public HttpController(FlexibleManagerInterface model, InetSocketAddress address)
+          throws IOException {
+    this.model = model;
+    this.changes = new AsyncModel(model, Runnable::run);
+    AtomicInteger threads = new AtomicInteger();
+    this.executor = new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS, IDLE_SECONDS,
+            TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+              Thread thread = new Thread(runnable, "http-" + threads.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+    this.executor.allowCoreThreadTimeOut(true);
+    this.server = HttpServer.create(address, 0);
+    this.server.setExecutor(executor);
+    this.server.createContext("/portfolios", this::handle);
+  }
+
+  /**
+   * Starts answering requests.
+   */
+  public void start() {
+    server.start();
+  }
+
+  /**
+   * Stops answering requests, waiting up to a given time for those being answered, and writes
+   * the changes they made.
+   *
+   * @param delay the longest time to wait, in seconds
+   * @throws IOException if the changes cannot be written
+   */
+  public void stop(int delay) throws IOException {
+    server.stop(delay);
+    executor.shutdown();
+    model.flush();
+  }
+
+  /**
+   * Returns the port the service listens on.
+   *
+   * @return the port
+   */
+  public int getPort() {
+    return server.getAddress().getPort();
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    Answer answer;
+    try {
+      answer = answer(exchange.getRequestMethod(), exchange.getRequestURI().getRawPath(),
+              parameters(exchange.getRequestURI().getRawQuery()));
+    } catch (ModelException e) {
+      answer = error(status(e.getKind()), e.getMessage());
+    } catch (IllegalArgumentException e) {
+      answer = error(400, message(e));
+    } catch (Exception e) {
+      answer = error(500, message(e));
+    }
+    byte[] body = answer.json.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+    exchange.sendResponseHeaders(answer.status, body.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(body);
+    }
+  }
+
+  private Answer answer(String method, String path, Map<String, String> parameters)
+          throws Exception {
+    List<String> parts = new ArrayList<>();
+    for (String part : path.split("/")) {
+      if (!part.isEmpty()) {
+        parts.add(URLDecoder.decode(part, StandardCharsets.UTF_8));
+      }
+    }
+    if (parts.isEmpty() || !"portfolios".equals(parts.get(0))) {
+      return error(404, "No resource " + path);
+    }
+    String[] names = model.returnPortfolioList();
+    if (parts.size() == 1) {
+      List<String> list = new ArrayList<>();
+      for (String name : names == null ? new String[0] : names) {
+        list.add(PortfolioRepository.nameOf(name));
+      }
+      return get(method, new JsonView().put("portfolios", list));
+    }
+    int number = findPortfolio(names, parts.get(1));
+    if (number < 0) {
+      return error(404, "No portfolio " + parts.get(1));
+    }
+    FlexiblePortfolioInterface portfolio = model.fetchFlexiblePortfolio(number + 1);
+    JsonView json = new JsonView().put("portfolio",
+            PortfolioRepository.nameOf(names[number]));
+    if (parts.size() == 2) {
+      return get(method, json.put("stocks", portfolio.listStocks())
+              .put("result", portfolio.composition()));
+    } else if (parts.size() == 3) {
+      return portfolioResource(method, names[number], parts.get(2), parameters, portfolio, json);
+    } else if (parts.size() == 5 && "stocks".equals(parts.get(2))) {
+      return stockResource(method, parts.get(3), parts.get(4), parameters, portfolio, json);
+    }
+    return error(404, "No resource " + path);
+  }
+
+  private Answer portfolioResource(String method, String name, String resource,
+                                   Map<String, String> parameters,
+                                   FlexiblePortfolioInterface portfolio, JsonView json)
+          throws Exception {
+    switch (resource) {
+      case "value":
+        return get(method, json.put("date", date(parameters, "date"))
+                .put("result", portfolio.value(parameters.get("date"))));
+      case "costBasis":
+        return get(method, json.put("date", date(parameters, "date"))
+                .put("result", portfolio.costBasis(parameters.get("date"))));
+      case "series":
+        ValuationSeries series = portfolio.valuationSeries(date(parameters, "start"),
+                date(parameters, "end"));
+        List<String> dates = new ArrayList<>(series.size());
+        double[] values = new double[series.size()];
+        double[] flows = new double[series.size()];
+        for (int i = 0; i < series.size(); i++) {
+          dates.add(series.dateAt(i).toString());
+          values[i] = series.valueAt(i);
+          flows[i] = series.flowAt(i);
+        }
+        return get(method, json.put("dates", dates).put("values", values).put("flows", flows));
+      case "buy":
+      case "sell":
+        if (!"POST".equals(method)) {
+          return error(405, resource + " needs POST");
+        }
+        String symbol = parameter(parameters, "symbol");
+        String date = date(parameters, "date");
+        int quantity = Integer.parseInt(parameter(parameters, "quantity"));
+        return new Answer(200, json.put("result", await(resource.equals("buy")
+                ? changes.buy(name, symbol, date, quantity)
+                : changes.sell(name, symbol, date, quantity))).render());
+      default:
+        return error(404, "No resource " + resource);
+    }
+  }
+
+  private Answer stockResource(String method, String symbol, String resource,
+                               Map<String, String> parameters,
+                               FlexiblePortfolioInterface portfolio, JsonView json)
+          throws Exception {
+    int stock = portfolio.listStocks().indexOf(symbol.toUpperCase());
+    if (stock < 0) {
+      return error(404, "No stock " + symbol + " in the portfolio");
+    }
+    if (!"crossovers".equals(resource)) {
+      return error(404, "No resource " + resource);
+    }
+    StockInterface stockModel = portfolio.inspectStock(stock + 1);
+    String start = date(parameters, "start");
+    String end = date(parameters, "end");
+    String crossovers;
+    if (parameters.containsKey("x") || parameters.containsKey("y")) {
+      crossovers = stockModel.findMovingCrossovers(start, end,
+              Integer.parseInt(parameter(parameters, "x")),
+              Integer.parseInt(parameter(parameters, "y")));
+    } else {
+      crossovers = stockModel.findCrossovers(start, end);
+    }
+    List<String> lines = new ArrayList<>();
+    for (String line : crossovers.split("\n")) {
+      if (!line.isEmpty()) {
+        lines.add(line);
+      }
+    }
+    return get(method, json.put("symbol", symbol.toUpperCase()).put("crossovers", lines));
+  }
+
+  private static Answer get(String method, JsonView json) {
+    if (!"GET".equals(method)) {
+      return error(405, method + " is not allowed here");
+    }
+    return new Answer(200, json.render());
+  }
+
+  private static Answer error(int status, String message) {
+    return new Answer(status, new JsonView().put("error", message).render());
+  }
+
+  private static int status(ModelException.Kind kind) {
+    switch (kind) {
+      case INVALID_INPUT:
+      case REJECTED:
+        return 400;
+      case NOT_FOUND:
+      case NO_DATA:
+        return 404;
+      default:
+        return 500;
+    }
+  }
+
+  private static String message(Exception e) {
+    return e.getMessage() == null ? e.toString() : e.getMessage();
+  }
+
+  private String date(Map<String, String> parameters, String name) {
+    String date = parameter(parameters, name);
+    if (!checkDate(date)) {
+      throw new IllegalArgumentException("Invalid date " + date + " for " + name);
+    }
+    return date;
+  }
+
+  private static String parameter(Map<String, String> parameters, String name) {
+    String value = parameters.get(name);
+    if (value == null || value.isEmpty()) {
+      throw new IllegalArgumentException("Missing parameter " + name);
+    }
+    return value;
+  }
+
+  private static Map<String, String> parameters(String query) {
+    Map<String, String> parameters = new HashMap<>();
+    if (query == null) {
+      return parameters;
+    }
+    for (String pair : query.split("&")) {
+      String[] parts = Arrays.copyOf(pair.split("=", 2), 2);
+      parameters.put(URLDecoder.decode(parts[0], StandardCharsets.UTF_8),
+              parts[1] == null ? "" : URLDecoder.decode(parts[1], StandardCharsets.UTF_8));
+    }
+    return parameters;
+  }
+}
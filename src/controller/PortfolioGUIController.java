@@ -2,9 +2,15 @@ package controller;
 
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.concurrent.Flow;
+
+import javax.swing.SwingUtilities;
 
 import model.FlexiblePortfolioInterface;
-import model.StockInterface;
+import model.PriceBus;
+import model.PriceUpdate;
 import view.PortfolioGUIView;
 import view.StockGUIView;
 
@@ -19,6 +25,10 @@ public class PortfolioGUIController extends AbstractController implements Action
 
   private final PortfolioGUIView view;
 
+  private final TaskRunner tasks;
+
+  private Runnable shown;
+
   /**
    * Constructs a PortfolioGUIController with references to the portfolio model and the
    * portfolio view.
@@ -30,6 +40,7 @@ public class PortfolioGUIController extends AbstractController implements Action
   public PortfolioGUIController(FlexiblePortfolioInterface portfolio, PortfolioGUIView view) {
     this.portfolio = portfolio;
     this.view = view;
+    this.tasks = new TaskRunner("portfolio-tasks", view::showProgress);
   }
 
   /**
@@ -38,21 +49,93 @@ public class PortfolioGUIController extends AbstractController implements Action
    */
   public void mainMenu() {
     this.view.setButtonListener(this);
+    PriceRefresh refresh = new PriceRefresh();
+    this.view.addWindowListener(new WindowAdapter() {
+      @Override
+      public void windowClosed(WindowEvent e) {
+        refresh.cancel();
+        tasks.cancel();
+      }
+    });
     this.view.makeVisible();
+    PriceBus.subscribe(refresh);
+  }
+
+  /**
+   * Shows the composition, value or cost basis again when new prices of a stock of the portfolio
+   * are saved, so the window does not keep showing figures computed from the older prices.
+   * The subscription is cancelled once the window is closed.
+   */
+  private final class PriceRefresh implements Flow.Subscriber<PriceUpdate> {
+    private Flow.Subscription subscription;
+    private boolean cancelled;
+
+    @Override
+    public synchronized void onSubscribe(Flow.Subscription subscription) {
+      this.subscription = subscription;
+      if (cancelled) {
+        subscription.cancel();
+      } else {
+        subscription.request(Long.MAX_VALUE);
+      }
+    }
+
+    /**
+     * Stops the updates, also if the subscription has not started yet.
+     */
+    private synchronized void cancel() {
+      cancelled = true;
+      if (subscription != null) {
+        subscription.cancel();
+      }
+    }
+
+    @Override
+    public void onNext(PriceUpdate update) {
+      if (portfolio.listStocks().contains(update.getSymbol())) {
+        SwingUtilities.invokeLater(() -> {
+          if (shown != null) {
+            shown.run();
+          }
+        });
+      }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+      // no more updates; the figures shown are refreshed by the user again
+    }
+
+    @Override
+    public void onComplete() {
+      // no more updates
+    }
+  }
+
+  /**
+   * Runs a query whose result stays shown, remembering it so it can be run again.
+   */
+  private void show(Runnable query) {
+    shown = query;
+    query.run();
   }
 
   /**
    * Handles action events generated by the user interface. Depending on the user's action,
    * it performs operations such as buying or selling stocks, displaying portfolio composition,
-   * calculating the portfolio's value or cost basis, and inspecting individual stocks.
+   * calculating the portfolio's value or cost basis, and inspecting individual stocks. The
+   * operations run off the event dispatch thread, and the "Cancel" command cancels those that
+   * only read the portfolio.
    *
    * @param e the action event that occurred in the user interface
    */
   @Override
   public void actionPerformed(ActionEvent e) {
+    if ("Cancel".equals(e.getActionCommand())) {
+      tasks.cancel();
+      return;
+    }
     String[] stockList = portfolio.listStocks().toArray(new String[0]);
-    System.out.println(portfolio.listStocks());
-    System.out.println(stockList);
     String date = view.getDate();
     String buyDate = view.getBuyDate();
     String stock = view.getQuantity();
@@ -63,7 +146,10 @@ public class PortfolioGUIController extends AbstractController implements Action
         } else if (checkDate(buyDate)) {
           try {
             int quantity = Integer.parseInt(stock);
-            view.displayMessage(portfolio.buyExisting(view.getStockSymbol() + 1, buyDate, quantity));
+            int symbol = view.getStockSymbol() + 1;
+            shown = null;
+            tasks.update("Buying stock",
+                    () -> portfolio.buyExisting(symbol, buyDate, quantity), view::displayMessage);
           } catch (NumberFormatException msg) {
             view.displayMessage("Invalid Quantity");
           }
@@ -77,7 +163,10 @@ public class PortfolioGUIController extends AbstractController implements Action
         } else if (checkDate(buyDate)) {
           try {
             int quantity = Integer.parseInt(stock);
-            view.displayMessage(portfolio.sellExisting(view.getStockSymbol() + 1, buyDate, quantity));
+            int symbol = view.getStockSymbol() + 1;
+            shown = null;
+            tasks.update("Selling stock",
+                    () -> portfolio.sellExisting(symbol, buyDate, quantity), view::displayMessage);
           } catch (NumberFormatException msg) {
             view.displayMessage("Invalid Quantity");
           }
@@ -86,13 +175,15 @@ public class PortfolioGUIController extends AbstractController implements Action
         }
         break;
       case "Composition":
-        view.displayMessage(portfolio.composition());
+        show(() -> tasks.query("Composition", "Listing the composition",
+                portfolio::composition, view::displayMessage));
         break;
       case "Value":
         if (date.isEmpty()) {
           view.displayMessage("Enter a Date");
         } else if (checkDate(date)) {
-          view.displayMessage(portfolio.value(date));
+          show(() -> tasks.query("Value", "Computing the value", () -> portfolio.value(date),
+                  view::displayMessage));
         } else {
           view.displayMessage("Enter Valid Date");
         }
@@ -101,21 +192,23 @@ public class PortfolioGUIController extends AbstractController implements Action
         if (date.isEmpty()) {
           view.displayMessage("Enter a Date");
         } else if (checkDate(date)) {
-          view.displayMessage(portfolio.costBasis(date));
+          show(() -> tasks.query("Cost Basis", "Computing the cost basis",
+                  () -> portfolio.costBasis(date), view::displayMessage));
         } else {
           view.displayMessage("Enter Valid Date");
         }
         break;
       case "Inspect Stock":
         int num = view.getStockOption();
-        try {
-          StockInterface stockModel = portfolio.inspectStock(num + 1);
-          StockGUIView stockView = new StockGUIView(stockList[num]);
-          StockGUIController controller = new StockGUIController(stockModel, stockView);
-          controller.mainMenu();
-        } catch (Exception ex) {
-          throw new RuntimeException(ex);
+        if (num < 0) {
+          break;
         }
+        tasks.query(e.getActionCommand(), "Loading " + stockList[num],
+                () -> portfolio.inspectStock(num + 1), stockModel -> {
+                  StockGUIView stockView = new StockGUIView(stockList[num]);
+                  StockGUIController controller = new StockGUIController(stockModel, stockView);
+                  controller.mainMenu();
+                }, view::displayMessage);
         break;
       default:
         break;
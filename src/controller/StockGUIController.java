@@ -14,6 +14,7 @@ import view.StockGUIView;
 public class StockGUIController extends AbstractController implements ActionListener {
   private final StockInterface stock;
   private final StockGUIView view;
+  private final TaskRunner tasks;
 
   /**
    * Constructs a StockGUIController with references to both the stock model and the GUI view.
@@ -26,6 +27,7 @@ public class StockGUIController extends AbstractController implements ActionList
                             StockGUIView view) {
     this.stock = stock;
     this.view = view;
+    this.tasks = new TaskRunner("stock-tasks", view::showProgress);
   }
 
   /**
@@ -40,32 +42,33 @@ public class StockGUIController extends AbstractController implements ActionList
   /**
    * Responds to action events triggered by the user interface. Depending on the user's
    * selection, it performs various stock-related operations such as calculating daily
-   * gain or loss, period gain or loss, moving averages, and finding crossovers.
+   * gain or loss, period gain or loss, moving averages, and finding crossovers. The
+   * operations run off the event dispatch thread, and the "Cancel" command cancels them.
    *
    * @param e The action event that occurred, triggering this method.
    */
   @Override
   public void actionPerformed(ActionEvent e) {
+    if ("Cancel".equals(e.getActionCommand())) {
+      tasks.cancel();
+      return;
+    }
     Map<String, String> texts = view.texts();
     String date1 = texts.get("startDateCrossovers");
     String date2 = texts.get("endDateCrossovers");
     switch (e.getActionCommand()) {
       case "Daily Gain Loss":
-        if (texts.get("gainLossDate").isEmpty()) {
+        String gainLossDate = texts.get("gainLossDate");
+        if (gainLossDate.isEmpty()) {
           view.displayMessage("Enter a Date");
-        } else if (checkDate(texts.get("gainLossDate"))) {
-          try {
-            float value = stock.calculateDailyGainOrLoss(texts.get("gainLossDate"));
+        } else if (checkDate(gainLossDate)) {
+          tasks.query(e.getActionCommand(), "Computing the daily gain or loss", () -> {
+            float value = stock.calculateDailyGainOrLoss(gainLossDate);
             if (value >= 0) {
-              view.displayMessage("The stock gained $" + value + " on date " +
-                      texts.get("gainLossDate"));
-            } else {
-              view.displayMessage("The stock lost $" + Math.abs(value) + " on date " +
-                      texts.get("gainLossDate"));
+              return "The stock gained $" + value + " on date " + gainLossDate;
             }
-          } catch (Exception ex) {
-            view.displayMessage(ex.getMessage());
-          }
+            return "The stock lost $" + Math.abs(value) + " on date " + gainLossDate;
+          }, view::displayMessage);
         } else {
           view.displayMessage("Enter Valid Date");
         }
@@ -74,18 +77,13 @@ public class StockGUIController extends AbstractController implements ActionList
         if (date1.isEmpty() || date2.isEmpty()) {
           view.displayMessage("Either Start or End Date is Missing");
         } else if (checkDate(date1) && checkDate(date2)) {
-          try {
+          tasks.query(e.getActionCommand(), "Computing the period gain or loss", () -> {
             float value = stock.calculatePeriodGainOrLoss(date1, date2);
             if (value >= 0) {
-              view.displayMessage("The stock gained $" + value +
-                      " between " + date1 + " and " + date2);
-            } else {
-              view.displayMessage("The stock lost $" + Math.abs(value) +
-                      " between " + date1 + " and " + date2);
+              return "The stock gained $" + value + " between " + date1 + " and " + date2;
             }
-          } catch (Exception ex) {
-            view.displayMessage(ex.getMessage());
-          }
+            return "The stock lost $" + Math.abs(value) + " between " + date1 + " and " + date2;
+          }, view::displayMessage);
         } else {
           view.displayMessage("Enter Valid Dates");
         }
@@ -94,49 +92,44 @@ public class StockGUIController extends AbstractController implements ActionList
         if (date1.isEmpty() || date2.isEmpty()) {
           view.displayMessage("Either Start or End Date is Missing");
         } else if (checkDate(date1) && checkDate(date2)) {
-          try {
-            view.displayMessage(stock.findCrossovers(date1, date2));
-          } catch (Exception ex) {
-            view.displayMessage(ex.getMessage());
-          }
+          tasks.query(e.getActionCommand(), "Finding crossovers",
+                  () -> stock.findCrossovers(date1, date2), view::displayMessage);
         } else {
           view.displayMessage("Enter Valid Dates");
         }
         break;
       case "Moving Average":
-        date1 = texts.get("movingAverageDate");
-        if (date1.isEmpty()) {
+        String averageDate = texts.get("movingAverageDate");
+        if (averageDate.isEmpty()) {
           view.displayMessage("Enter a Date");
-        } else if (checkDate(date1)) {
+        } else if (checkDate(averageDate)) {
           try {
             int num = Integer.parseInt(texts.get("movingAverageX"));
-            float value = stock.calculateMovingAverage(date1, num);
-            view.displayMessage("The " + num + "Day Moving Average on " + date1 +
-                    " is $" + value);
+            tasks.query(e.getActionCommand(), "Computing the moving average", () -> {
+              float value = stock.calculateMovingAverage(averageDate, num);
+              return "The " + num + "Day Moving Average on " + averageDate + " is $" + value;
+            }, view::displayMessage);
           } catch (NumberFormatException ex) {
             view.displayMessage("Invalid Number");
-          } catch (Exception ex) {
-            view.displayMessage(ex.getMessage());
           }
         } else {
           view.displayMessage("Enter Valid Date");
         }
         break;
       case "Moving Crossovers":
-        date1 = texts.get("startDateMovingCrossovers");
-        date2 = texts.get("endDateMovingCrossovers");
-        if (date1.isEmpty() || date2.isEmpty()) {
+        String startDate = texts.get("startDateMovingCrossovers");
+        String endDate = texts.get("endDateMovingCrossovers");
+        if (startDate.isEmpty() || endDate.isEmpty()) {
           view.displayMessage("Either Start or End Date is Missing");
-        } else if (checkDate(date1) && checkDate(date2)) {
+        } else if (checkDate(startDate) && checkDate(endDate)) {
           try {
             int num1 = Integer.parseInt(texts.get("movingCrossoversX"));
             int num2 = Integer.parseInt(texts.get("movingCrossoversY"));
-            String value = stock.findMovingCrossovers(date1, date2, num1, num2);
-            view.displayMessage(value);
+            tasks.query(e.getActionCommand(), "Finding moving crossovers",
+                    () -> stock.findMovingCrossovers(startDate, endDate, num1, num2),
+                    view::displayMessage);
           } catch (NumberFormatException ex) {
             view.displayMessage("Invalid Number");
-          } catch (Exception ex) {
-            view.displayMessage(ex.getMessage());
           }
         } else {
           view.displayMessage("Enter Valid Dates");
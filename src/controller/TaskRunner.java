@@ -0,0 +1,204 @@
+package controller;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import javax.swing.SwingWorker;
+
+/**
+ * Runs the model calls of a Swing window off the event dispatch thread, so a long crossover
+ * scan or refresh does not freeze the user interface. Calls run one after another on a thread of
+ * their own, in the order they were asked for, so a value asked for after a purchase sees the
+ * purchase. Their results are handed back on the event dispatch thread.
+ *
+ * <p>A query only reads the model. Asking for a query again, for instance pressing a button
+ * twice with different dates, cancels the earlier one and drops its result, so only the newest
+ * answer is ever shown; the user can also cancel every query. An update changes the model, so it
+ * is never cancelled or dropped once asked for.
+ *
+ * <p>Every method must be called on the event dispatch thread.
+ */
+final class TaskRunner {
+  private static final long IDLE_SECONDS = 30;
+
+  private final ThreadPoolExecutor executor;
+  private final Progress progress;
+  private final Map<String, Task<?>> queries = new HashMap<>();
+  private final Deque<Task<?>> pending = new ArrayDeque<>();
+
+  /**
+   * Shows which call is running.
+   */
+  interface Progress {
+
+    /**
+     * Shows the call that is running, or that none is.
+     *
+     * @param task        a description of the call, or null if none is running
+     * @param cancellable true if the call can be cancelled
+     */
+    void show(String task, boolean cancellable);
+  }
+
+  /**
+   * Constructs a runner for the calls of one window.
+   *
+   * @param name     the name of the thread the calls run on
+   * @param progress what shows the call that is running
+   */
+  TaskRunner(String name, Progress progress) {
+    this.progress = progress;
+    this.executor = new ThreadPoolExecutor(1, 1, IDLE_SECONDS, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), runnable -> {
+              Thread thread = new Thread(runnable, name);
+              thread.setDaemon(true);
+              return thread;
+            });
+    this.executor.allowCoreThreadTimeOut(true);
+  }
+
+  /**
+   * Runs a call that only reads the model, cancelling the earlier query of the same kind if it
+   * has not finished yet.
+   *
+   * @param key   the kind of query, such as the command that asked for it
+   * @param task  a description of the call shown while it runs
+   * @param work  the call, returning the message to show
+   * @param show  what shows the message, or the message of the exception the call threw
+   */
+  void query(String key, String task, Callable<String> work, Consumer<String> show) {
+    query(key, task, work, show, show);
+  }
+
+  /**
+   * Runs a call that only reads the model, cancelling the earlier query of the same kind if it
+   * has not finished yet.
+   *
+   * @param key    the kind of query, such as the command that asked for it
+   * @param task   a description of the call shown while it runs
+   * @param work   the call
+   * @param done   what uses the result of the call
+   * @param failed what shows the message of the exception the call threw
+   * @param <T>    the type of the result
+   */
+  <T> void query(String key, String task, Callable<T> work, Consumer<T> done,
+                 Consumer<String> failed) {
+    Task<?> previous = queries.get(key);
+    if (previous != null) {
+      previous.cancel(true);
+    }
+    Task<T> query = new Task<>(key, task, work, done, failed);
+    queries.put(key, query);
+    start(query);
+  }
+
+  /**
+   * Runs a call that changes the model. It runs after every call asked for before it and is
+   * never cancelled.
+   *
+   * @param task  a description of the call shown while it runs
+   * @param work  the call, returning the message to show
+   * @param show  what shows the message, or the message of the exception the call threw
+   */
+  void update(String task, Callable<String> work, Consumer<String> show) {
+    update(task, work, show, show);
+  }
+
+  /**
+   * Runs a call that changes the model. It runs after every call asked for before it and is
+   * never cancelled.
+   *
+   * @param task   a description of the call shown while it runs
+   * @param work   the call
+   * @param done   what uses the result of the call
+   * @param failed what shows the message of the exception the call threw
+   * @param <T>    the type of the result
+   */
+  <T> void update(String task, Callable<T> work, Consumer<T> done, Consumer<String> failed) {
+    start(new Task<>(null, task, work, done, failed));
+  }
+
+  /**
+   * Cancels every query that is running or waiting to run. Their results are not shown.
+   */
+  void cancel() {
+    for (Task<?> query : queries.values()) {
+      query.cancel(true);
+    }
+  }
+
+  private void start(Task<?> task) {
+    pending.addLast(task);
+    executor.execute(task);
+    showProgress();
+  }
+
+  private void showProgress() {
+    Task<?> first = pending.peekFirst();
+    if (first == null) {
+      progress.show(null, false);
+    } else {
+      String waiting = pending.size() > 1 ? " (" + (pending.size() - 1) + " waiting)" : "";
+      progress.show(first.task + waiting, first.key != null);
+    }
+  }
+
+  /**
+   * One call, run on the runner's thread and finished on the event dispatch thread.
+   *
+   * @param <T> the type of the result of the call
+   */
+  private final class Task<T> extends SwingWorker<T, Void> {
+    private final String key;
+    private final String task;
+    private final Callable<T> work;
+    private final Consumer<T> result;
+    private final Consumer<String> failed;
+
+    private Task(String key, String task, Callable<T> work, Consumer<T> done,
+                 Consumer<String> failed) {
+      this.key = key;
+      this.task = task;
+      this.work = work;
+      this.result = done;
+      this.failed = failed;
+    }
+
+    @Override
+    protected T doInBackground() throws Exception {
+      return work.call();
+    }
+
+    @Override
+    protected void done() {
+      pending.remove(this);
+      showProgress();
+      if (key != null) {
+        if (queries.get(key) != this) {
+          return;
+        }
+        queries.remove(key);
+      }
+      if (isCancelled()) {
+        return;
+      }
+      try {
+        result.accept(get());
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause() == null ? e : e.getCause();
+        failed.accept(cause.getMessage() == null ? cause.toString() : cause.getMessage());
+      } catch (InterruptedException | CancellationException e) {
+        // cancelled while finishing; nothing to show
+      }
+    }
+  }
+}
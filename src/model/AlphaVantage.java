@@ -11,6 +11,11 @@ import java.net.URL;
  */
 public class AlphaVantage implements URLInterface {
 
+  /**
+   * The API key the application downloads prices with.
+   */
+  static final String API_KEY = "EEEYJNAZOVJWJ5PQ";
+
   private String apiKey;
 
   /**
@@ -22,6 +27,15 @@ public class AlphaVantage implements URLInterface {
     this.apiKey = apiKey;
   }
 
+  /**
+   * Returns the API key the calls are made with.
+   *
+   * @return the API key
+   */
+  String getApiKey() {
+    return apiKey;
+  }
+
   /**
    * Fetches daily time series data for a given stock symbol from Alpha Vantage.
    * Constructs the request URL with the provided symbol and the stored API key,
@@ -0,0 +1,328 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the calls of a model on an executor and returns their results as futures, so a caller
+ * can value many portfolios or scan many stocks at once and combine the results without
+ * managing threads. Portfolios are named as they are listed, with or without the ".xml" ending.
+ *
+ * <p>A future that fails completes with a {@link ModelException} telling the kind of failure.
+ * Calls whose result only says that the model refused them, such as a sale of more than is held,
+ * fail with {@link ModelException.Kind#REJECTED} and the model's message, or with
+ * {@link ModelException.Kind#STORAGE} if the change was made but could not be saved.
+ *
+ * <p>Unless another executor is given, calls run on a shared pool of daemon threads, as many as
+ * the system property {@code model.asyncThreads} says (the number of processors by default).
+ */
+public class AsyncModel {
+  private static final long IDLE_SECONDS = 30;
+
+  private final FlexibleManagerInterface model;
+  private final Executor executor;
+
+  /**
+   * The shared pool, created the first time it is used.
+   */
+  private static final class DefaultPool {
+    private static final ExecutorService POOL = pool(Integer.getInteger("model.asyncThreads",
+            Runtime.getRuntime().availableProcessors()));
+
+    private static ExecutorService pool(int threads) {
+      AtomicInteger count = new AtomicInteger();
+      ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, IDLE_SECONDS,
+              TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "model-async-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+              });
+      pool.allowCoreThreadTimeOut(true);
+      return pool;
+    }
+  }
+
+  /**
+   * Constructs an asynchronous view of a model running its calls on the shared pool.
+   *
+   * @param model the model
+   */
+  public AsyncModel(FlexibleManagerInterface model) {
+    this(model, DefaultPool.POOL);
+  }
+
+  /**
+   * Constructs an asynchronous view of a model running its calls on an executor.
+   *
+   * @param model    the model
+   * @param executor the executor the calls run on
+   */
+  public AsyncModel(FlexibleManagerInterface model, Executor executor) {
+    this.model = model;
+    this.executor = executor;
+  }
+
+  /**
+   * Lists the portfolios.
+   *
+   * @return the names of the portfolios, without the ".xml" ending
+   */
+  public CompletableFuture<List<String>> portfolios() {
+    return call(() -> {
+      List<String> names = new ArrayList<>();
+      String[] list = model.returnPortfolioList();
+      for (String name : list == null ? new String[0] : list) {
+        names.add(PortfolioRepository.nameOf(name));
+      }
+      return names;
+    });
+  }
+
+  /**
+   * Opens a portfolio.
+   *
+   * @param name the name of the portfolio
+   * @return the portfolio; fails with {@link ModelException.Kind#NOT_FOUND} if there is none
+   */
+  public CompletableFuture<FlexiblePortfolioInterface> portfolio(String name) {
+    return call(() -> open(name));
+  }
+
+  /**
+   * Creates and saves a portfolio holding stocks bought on given dates.
+   *
+   * @param name       the name of the new portfolio
+   * @param symbols    the symbols of the stocks
+   * @param quantities the quantity of each stock
+   * @param dates      the date each stock is bought on, in "yyyy-MM-dd" format
+   * @return the model's message once the portfolio is saved
+   */
+  public CompletableFuture<String> create(String name, List<String> symbols,
+                                          List<Integer> quantities, List<String> dates) {
+    return call(() -> {
+      if (symbols.size() != quantities.size() || symbols.size() != dates.size()) {
+        throw new IllegalArgumentException("Each stock needs a quantity and a date");
+      }
+      if (!model.createPortfolio(name)) {
+        throw new IllegalArgumentException("Invalid portfolio name " + name);
+      }
+      for (int i = 0; i < symbols.size(); i++) {
+        expect(model.addStock(symbols.get(i), quantities.get(i), dates.get(i)), "Successfully");
+      }
+      return expect(model.savePortfolio(), "Portfolio saved");
+    });
+  }
+
+  /**
+   * Returns the composition of a portfolio.
+   *
+   * @param name the name of the portfolio
+   * @return the composition
+   */
+  public CompletableFuture<String> composition(String name) {
+    return call(() -> open(name).composition());
+  }
+
+  /**
+   * Returns the value of a portfolio on a date.
+   *
+   * @param name the name of the portfolio
+   * @param date the date in "yyyy-MM-dd" format
+   * @return the value of each stock and the total
+   */
+  public CompletableFuture<String> value(String name, String date) {
+    return call(() -> open(name).value(date));
+  }
+
+  /**
+   * Values every portfolio on a date, each portfolio in a call of its own.
+   *
+   * @param date the date in "yyyy-MM-dd" format
+   * @return the value of each portfolio by name; fails if any portfolio cannot be valued
+   */
+  public CompletableFuture<Map<String, String>> values(String date) {
+    return portfolios().thenCompose(names -> {
+      Map<String, CompletableFuture<String>> values = new TreeMap<>();
+      for (String name : names) {
+        values.put(name, value(name, date));
+      }
+      return CompletableFuture.allOf(values.values().toArray(new CompletableFuture<?>[0]))
+              .thenApply(done -> {
+                Map<String, String> result = new TreeMap<>();
+                values.forEach((name, value) -> result.put(name, value.join()));
+                return result;
+              });
+    });
+  }
+
+  /**
+   * Returns the cost basis of a portfolio on a date.
+   *
+   * @param name the name of the portfolio
+   * @param date the date in "yyyy-MM-dd" format
+   * @return the cost basis
+   */
+  public CompletableFuture<String> costBasis(String name, String date) {
+    return call(() -> open(name).costBasis(date));
+  }
+
+  /**
+   * Returns the daily value of a portfolio between two dates.
+   *
+   * @param name      the name of the portfolio
+   * @param startDate the start date in "yyyy-MM-dd" format
+   * @param endDate   the end date in "yyyy-MM-dd" format
+   * @return the series
+   */
+  public CompletableFuture<ValuationSeries> valuationSeries(String name, String startDate,
+                                                            String endDate) {
+    return call(() -> open(name).valuationSeries(startDate, endDate));
+  }
+
+  /**
+   * Buys more of a stock a portfolio holds.
+   *
+   * @param name     the name of the portfolio
+   * @param symbol   the symbol of the stock
+   * @param date     the date in "yyyy-MM-dd" format
+   * @param quantity the quantity to buy
+   * @return the model's message once the purchase is saved
+   */
+  public CompletableFuture<String> buy(String name, String symbol, String date, int quantity) {
+    return call(() -> {
+      FlexiblePortfolioInterface portfolio = open(name);
+      return expect(portfolio.buyExisting(stockNumber(portfolio, symbol), date, quantity),
+              "Portfolio saved");
+    });
+  }
+
+  /**
+   * Sells some of a stock a portfolio holds.
+   *
+   * @param name     the name of the portfolio
+   * @param symbol   the symbol of the stock
+   * @param date     the date in "yyyy-MM-dd" format
+   * @param quantity the quantity to sell
+   * @return the model's message once the sale is saved
+   */
+  public CompletableFuture<String> sell(String name, String symbol, String date, int quantity) {
+    return call(() -> {
+      FlexiblePortfolioInterface portfolio = open(name);
+      return expect(portfolio.sellExisting(stockNumber(portfolio, symbol), date, quantity),
+              "Portfolio saved");
+    });
+  }
+
+  /**
+   * Returns a stock held in a portfolio.
+   *
+   * @param name   the name of the portfolio
+   * @param symbol the symbol of the stock
+   * @return the stock
+   */
+  public CompletableFuture<StockInterface> stock(String name, String symbol) {
+    return call(() -> {
+      FlexiblePortfolioInterface portfolio = open(name);
+      return portfolio.inspectStock(stockNumber(portfolio, symbol));
+    });
+  }
+
+  /**
+   * Finds the crossovers of a stock held in a portfolio with its 30 day moving average.
+   *
+   * @param name      the name of the portfolio
+   * @param symbol    the symbol of the stock
+   * @param startDate the start date in "yyyy-MM-dd" format
+   * @param endDate   the end date in "yyyy-MM-dd" format
+   * @return the crossovers
+   */
+  public CompletableFuture<String> crossovers(String name, String symbol, String startDate,
+                                              String endDate) {
+    return stock(name, symbol).thenCompose(stock ->
+            call(() -> stock.findCrossovers(startDate, endDate)));
+  }
+
+  /**
+   * Returns the moving average of a stock held in a portfolio on a date.
+   *
+   * @param name   the name of the portfolio
+   * @param symbol the symbol of the stock
+   * @param date   the date in "yyyy-MM-dd" format
+   * @param days   the number of days averaged
+   * @return the moving average
+   */
+  public CompletableFuture<Float> movingAverage(String name, String symbol, String date,
+                                                int days) {
+    return stock(name, symbol).thenCompose(stock ->
+            call(() -> stock.calculateMovingAverage(date, days)));
+  }
+
+  /**
+   * Writes every change made through the model.
+   *
+   * @return a future completed once the changes are written
+   */
+  public CompletableFuture<Void> flush() {
+    return call(() -> {
+      model.flush();
+      return null;
+    });
+  }
+
+  private <T> CompletableFuture<T> call(Callable<T> work) {
+    CompletableFuture<T> future = new CompletableFuture<>();
+    try {
+      executor.execute(() -> {
+        try {
+          future.complete(work.call());
+        } catch (Throwable e) {
+          future.completeExceptionally(ModelException.of(e));
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      future.completeExceptionally(new ModelException(ModelException.Kind.FAILED,
+              "The model is not accepting calls", e));
+    }
+    return future;
+  }
+
+  private FlexiblePortfolioInterface open(String name) throws Exception {
+    String[] names = model.returnPortfolioList();
+    for (int i = 0; names != null && i < names.length; i++) {
+      if (PortfolioRepository.nameOf(names[i]).equals(PortfolioRepository.nameOf(name))) {
+        return model.fetchFlexiblePortfolio(i + 1);
+      }
+    }
+    throw new ModelException(ModelException.Kind.NOT_FOUND, "No portfolio " + name, null);
+  }
+
+  private static int stockNumber(FlexiblePortfolioInterface portfolio, String symbol) {
+    int number = portfolio.listStocks().indexOf(symbol.toUpperCase()) + 1;
+    if (number == 0) {
+      throw new ModelException(ModelException.Kind.NOT_FOUND,
+              "No stock " + symbol + " in the portfolio", null);
+    }
+    return number;
+  }
+
+  private static String expect(String result, String success) {
+    if (result != null && result.startsWith("Error saving portfolio")) {
+      throw new ModelException(ModelException.Kind.STORAGE, result, null);
+    }
+    if (result == null || !result.startsWith(success)) {
+      throw new ModelException(ModelException.Kind.REJECTED, result, null);
+    }
+    return result;
+  }
+}
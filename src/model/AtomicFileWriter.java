@@ -0,0 +1,316 @@
+package model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * A writer that replaces a file only once everything has been written. The text goes to a
+ * temporary file in the same directory, which {@link #commit()} forces to disk and atomically
+ * moves over the target, so a crash or a concurrent reader sees either the old file or the new
+ * one, never a truncated file. Closing the writer without committing discards the temporary file
+ * and leaves the target untouched.
+ *
+ * <p>XML files can optionally end with a comment holding the CRC32 of the rest of the file,
+ * which {@link #openVerified(File)} checks while the file is read.
+ */
+class AtomicFileWriter extends Writer {
+  private static final String CHECKSUM_PREFIX = "\n<!-- crc32 ";
+  private static final String CHECKSUM_SUFFIX = " -->";
+  private static final int CHECKSUM_LENGTH = CHECKSUM_PREFIX.length() + 8
+          + CHECKSUM_SUFFIX.length();
+
+  private final Path target;
+  private final Path temp;
+  private final boolean checksum;
+  private final FileOutputStream file;
+  private final CheckedOutputStream checked;
+  private final Writer writer;
+  private boolean committed;
+
+  /**
+   * Starts writing a replacement for the given file.
+   *
+   * @param target   the file to replace
+   * @param checksum whether to end the file with a CRC32 comment
+   * @throws IOException if the temporary file cannot be created
+   */
+  AtomicFileWriter(File target, boolean checksum) throws IOException {
+    this.target = target.toPath().toAbsolutePath();
+    this.temp = createTemp(this.target);
+    this.checksum = checksum;
+    this.file = new FileOutputStream(temp.toFile());
+    this.checked = new CheckedOutputStream(file, new CRC32());
+    this.writer = new BufferedWriter(new OutputStreamWriter(checked, StandardCharsets.UTF_8),
+            1 << 16);
+  }
+
+  /**
+   * Writes the whole content of a file in one step.
+   *
+   * @param target   the file to replace
+   * @param content  the new content of the file
+   * @param checksum whether to end the file with a CRC32 comment
+   * @throws IOException if the file cannot be written
+   */
+  static void write(File target, CharSequence content, boolean checksum) throws IOException {
+    try (AtomicFileWriter writer = new AtomicFileWriter(target, checksum)) {
+      writer.append(content);
+      writer.commit();
+    }
+  }
+
+  @Override
+  public void write(char[] buffer, int offset, int length) throws IOException {
+    writer.write(buffer, offset, length);
+  }
+
+  @Override
+  public void write(String text) throws IOException {
+    writer.write(text);
+  }
+
+  @Override
+  public void flush() throws IOException {
+    writer.flush();
+  }
+
+  /**
+   * Forces the written text to disk and moves it over the target file.
+   *
+   * @throws IOException if the file cannot be written or replaced
+   */
+  void commit() throws IOException {
+    writer.flush();
+    if (checksum) {
+      String crc = String.format("%08x", checked.getChecksum().getValue());
+      file.write((CHECKSUM_PREFIX + crc + CHECKSUM_SUFFIX).getBytes(StandardCharsets.US_ASCII));
+    }
+    file.getFD().sync();
+    writer.close();
+    replace(temp, target);
+    committed = true;
+  }
+
+  /**
+   * Replaces a file with the given bytes in the same crash-safe way.
+   *
+   * @param target the file to replace
+   * @param data   the new content of the file
+   * @throws IOException if the file cannot be written or replaced
+   */
+  static void write(File target, byte[] data) throws IOException {
+    Path path = target.toPath().toAbsolutePath();
+    Path temp = createTemp(path);
+    try {
+      try (FileOutputStream out = new FileOutputStream(temp.toFile())) {
+        out.write(data);
+        out.getFD().sync();
+      }
+      replace(temp, path);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  /**
+   * Renames a file in the same crash-safe way, replacing any file of the new name.
+   *
+   * @param source the file to rename
+   * @param target the new name of the file
+   * @throws IOException if the file cannot be renamed
+   */
+  static void rename(File source, File target) throws IOException {
+    replace(source.toPath().toAbsolutePath(), target.toPath().toAbsolutePath());
+  }
+
+  /**
+   * Creates the temporary file a target is written to, next to the target. The file gets the
+   * permissions of the target, or the default permissions of a new file if there is no target
+   * yet, so replacing a file does not change who can read it.
+   */
+  private static Path createTemp(Path target) throws IOException {
+    String prefix = "." + target.getFileName() + ".";
+    Path temp;
+    while (true) {
+      temp = target.resolveSibling(prefix + Long.toUnsignedString(
+              ThreadLocalRandom.current().nextLong()) + ".tmp");
+      try {
+        Files.createFile(temp);
+        break;
+      } catch (FileAlreadyExistsException e) {
+        // another writer picked the same name, try another one
+      }
+    }
+    try {
+      Files.setPosixFilePermissions(temp, Files.getPosixFilePermissions(target));
+    } catch (NoSuchFileException | UnsupportedOperationException e) {
+      // a new file, or a file system without POSIX permissions, keeps the default permissions
+    } catch (IOException | RuntimeException e) {
+      Files.deleteIfExists(temp);
+      throw e;
+    }
+    return temp;
+  }
+
+  private static void replace(Path temp, Path target) throws IOException {
+    try {
+      Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE,
+              StandardCopyOption.REPLACE_EXISTING);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+    try (FileChannel directory = FileChannel.open(target.getParent(), StandardOpenOption.READ)) {
+      directory.force(true);
+    } catch (IOException ignore) {
+      // directories cannot be synced on every platform; the move itself is already atomic
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (!committed) {
+      try {
+        writer.close();
+      } finally {
+        Files.deleteIfExists(temp);
+      }
+    }
+  }
+
+  /**
+   * Reads a file, checking the CRC32 comment at its end if it has one.
+   *
+   * @param file the file to read
+   * @return the content of the file, including any checksum comment
+   * @throws IOException if the file cannot be read or its checksum does not match
+   */
+  static byte[] readVerified(File file) throws IOException {
+    try (InputStream in = openVerified(file)) {
+      return in.readAllBytes();
+    }
+  }
+
+  /**
+   * Opens a file for reading, checking the CRC32 comment at its end, if it has one, while the
+   * file is read. The checksum is compared once the end of the file is reached. A reader that
+   * stops early, such as one taking only the header of a portfolio, does not read the rest of
+   * the file and so does not compare it; the file is checked when it is read to the end.
+   *
+   * @param file the file to read
+   * @return the stream of the file's content, including any checksum comment
+   * @throws IOException if the file cannot be opened
+   */
+  static InputStream openVerified(File file) throws IOException {
+    FileInputStream in = new FileInputStream(file);
+    try {
+      long start = in.getChannel().size() - CHECKSUM_LENGTH;
+      if (start >= 0) {
+        ByteBuffer trailer = ByteBuffer.allocate(CHECKSUM_LENGTH);
+        while (trailer.hasRemaining()
+                && in.getChannel().read(trailer, start + trailer.position()) >= 0) {
+          // a positional read leaves the stream at the start of the file
+        }
+        String text = new String(trailer.array(), 0, trailer.position(),
+                StandardCharsets.US_ASCII);
+        if (text.startsWith(CHECKSUM_PREFIX) && text.endsWith(CHECKSUM_SUFFIX)) {
+          String expected = text.substring(CHECKSUM_PREFIX.length(),
+                  CHECKSUM_PREFIX.length() + 8);
+          return new VerifiedInputStream(in, start, expected, file.getName());
+        }
+      }
+      return new BufferedInputStream(in, 1 << 16);
+    } catch (IOException | RuntimeException e) {
+      in.close();
+      throw e;
+    }
+  }
+
+  /**
+   * A stream computing the CRC32 of the bytes before a file's checksum comment as they are read,
+   * and comparing it once the end of the file is reached.
+   */
+  private static final class VerifiedInputStream extends FilterInputStream {
+    private final CRC32 crc = new CRC32();
+    private final long checkedLength;
+    private final String expected;
+    private final String name;
+    private long position;
+    private boolean verified;
+
+    VerifiedInputStream(InputStream in, long checkedLength, String expected, String name) {
+      super(new BufferedInputStream(in, 1 << 16));
+      this.checkedLength = checkedLength;
+      this.expected = expected;
+      this.name = name;
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = in.read();
+      if (b < 0) {
+        verify();
+      } else {
+        if (position < checkedLength) {
+          crc.update(b);
+        }
+        position++;
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+      int read = in.read(buffer, offset, length);
+      if (read < 0) {
+        verify();
+      } else {
+        int checked = (int) Math.max(0, Math.min(read, checkedLength - position));
+        crc.update(buffer, offset, checked);
+        position += read;
+      }
+      return read;
+    }
+
+    @Override
+    public long skip(long count) throws IOException {
+      byte[] buffer = new byte[(int) Math.min(count, 1 << 13)];
+      int read = read(buffer, 0, buffer.length);
+      return Math.max(read, 0);
+    }
+
+    @Override
+    public boolean markSupported() {
+      return false;
+    }
+
+    private void verify() throws IOException {
+      if (!verified) {
+        verified = true;
+        if (!expected.equals(String.format("%08x", crc.getValue()))) {
+          throw new IOException("Checksum mismatch in " + name);
+        }
+      }
+    }
+  }
+}
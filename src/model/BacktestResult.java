@@ -0,0 +1,84 @@
+package model;
+
+import java.util.List;
+
+/**
+ * Holds the parameters and summary metrics of one simulated run of an investment strategy,
+ * as produced by the {@link Backtester}.
+ */
+public class BacktestResult {
+  private final String startDate;
+  private final int period;
+  private final List<Float> weights;
+  private final int purchases;
+  private final double invested;
+  private final double finalValue;
+  private final double maxDrawdown;
+
+  /**
+   * Constructs a result for a single simulation.
+   *
+   * @param startDate   the date the simulated strategy started on
+   * @param period      the number of days between purchases
+   * @param weights     the percentage of every investment that went to each stock
+   * @param purchases   the number of purchases made
+   * @param invested    the total amount invested
+   * @param finalValue  the value of the holdings on the end date
+   * @param maxDrawdown the largest fall of the value to invested ratio from a previous peak,
+   *                    as a fraction between 0 and 1
+   */
+  BacktestResult(String startDate, int period, List<Float> weights, int purchases,
+                 double invested, double finalValue, double maxDrawdown) {
+    this.startDate = startDate;
+    this.period = period;
+    this.weights = weights;
+    this.purchases = purchases;
+    this.invested = invested;
+    this.finalValue = finalValue;
+    this.maxDrawdown = maxDrawdown;
+  }
+
+  public String getStartDate() {
+    return startDate;
+  }
+
+  public int getPeriod() {
+    return period;
+  }
+
+  public List<Float> getWeights() {
+    return weights;
+  }
+
+  public int getPurchases() {
+    return purchases;
+  }
+
+  public double getInvested() {
+    return invested;
+  }
+
+  public double getFinalValue() {
+    return finalValue;
+  }
+
+  public double getMaxDrawdown() {
+    return maxDrawdown;
+  }
+
+  /**
+   * Returns the gain of the simulated strategy relative to the amount invested.
+   *
+   * @return the return in percent, or 0 if nothing was invested
+   */
+  public double getReturnPercent() {
+    return invested == 0 ? 0 : (finalValue - invested) / invested * 100;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("Start: %s, Period: %d, Weights: %s, Purchases: %d, Invested: $%.2f, "
+                    + "Value: $%.2f, Return: %.2f%%, Max Drawdown: %.2f%%", startDate, period,
+            weights, purchases, invested, finalValue, getReturnPercent(), maxDrawdown * 100);
+  }
+}
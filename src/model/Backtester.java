@@ -0,0 +1,149 @@
+package model;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Evaluates dollar cost averaging strategies against historical prices entirely in memory.
+ * A grid of start dates, periods and weight vectors is expanded into individual simulations,
+ * which run in parallel against price series shared read only between them. Nothing is written
+ * to the portfolios or strategies directories.
+ */
+public class Backtester {
+  private final List<String> symbols;
+  private final PriceSeries[] series;
+
+  /**
+   * Constructs a backtester for the given stocks, loading their price data once.
+   *
+   * @param symbols the stock symbols every simulated strategy invests in
+   * @throws Exception if price data is missing for any of the symbols
+   */
+  public Backtester(List<String> symbols) throws Exception {
+    this(Workspace.getDefault(), symbols);
+  }
+
+  /**
+   * Constructs a backtester for the given stocks, loading their price data from a workspace
+   * once.
+   *
+   * @param workspace the workspace whose prices are used
+   * @param symbols   the stock symbols every simulated strategy invests in
+   * @throws Exception if price data is missing for any of the symbols
+   */
+  public Backtester(Workspace workspace, List<String> symbols) throws Exception {
+    if (symbols.isEmpty()) {
+      throw new IllegalArgumentException("A strategy must have stocks");
+    }
+    this.symbols = new ArrayList<>(symbols);
+    this.series = new PriceSeries[symbols.size()];
+    for (int i = 0; i < series.length; i++) {
+      try {
+        series[i] = workspace.prices(symbols.get(i));
+      } catch (Exception e) {
+        throw new Exception(e.getMessage() + ": " + symbols.get(i));
+      }
+    }
+  }
+
+  /**
+   * Simulates every combination of the given parameters and ranks the results by return.
+   *
+   * @param startDates the start dates to try, in "yyyy-MM-dd" format
+   * @param endDate    the date the simulations end and holdings are valued on
+   * @param periods    the numbers of days between purchases to try
+   * @param weights    the weight vectors to try, each holding one percentage per stock and
+   *                   adding up to 100
+   * @param amount     the amount invested on every scheduled date
+   * @return the results of all simulations, best return first
+   * @throws IllegalArgumentException if a weight vector or period is invalid
+   */
+  public List<BacktestResult> run(List<String> startDates, String endDate, List<Integer> periods,
+                                  List<List<Float>> weights, float amount) {
+    for (List<Float> weight : weights) {
+      if (weight.size() != symbols.size()) {
+        throw new IllegalArgumentException("Each weight vector needs one weight per stock");
+      }
+      double total = 0;
+      for (float value : weight) {
+        total += value;
+      }
+      if (Math.abs(total - 100) > 0.01) {
+        throw new IllegalArgumentException("The percentages do not add upto 100");
+      }
+    }
+    for (int period : periods) {
+      if (period <= 0) {
+        throw new IllegalArgumentException("Strategy period must be greater than 0");
+      }
+    }
+    LocalDate end = LocalDate.parse(endDate);
+    int perStart = periods.size() * weights.size();
+    int total = startDates.size() * perStart;
+    return IntStream.range(0, total).parallel()
+            .mapToObj(n -> simulate(startDates.get(n / perStart), end,
+                    periods.get(n % perStart / weights.size()),
+                    weights.get(n % weights.size()), amount))
+            .sorted(Comparator.comparingDouble(BacktestResult::getReturnPercent).reversed())
+            .collect(Collectors.toList());
+  }
+
+  /**
+   * Simulates a single strategy, buying on every scheduled date at the same fill price a real
+   * portfolio would get, and valuing the holdings at the closing price on the end date.
+   */
+  private BacktestResult simulate(String startDate, LocalDate end, int period,
+                                  List<Float> weights, float amount) {
+    int count = series.length;
+    double[] units = new double[count];
+    int[] cursor = new int[count];
+    Arrays.fill(cursor, -1);
+    double invested = 0;
+    int purchases = 0;
+    double peak = 0;
+    double maxDrawdown = 0;
+    sweep:
+    for (LocalDate date = LocalDate.parse(startDate); !date.isAfter(end);
+         date = date.plusDays(period)) {
+      long day = date.toEpochDay();
+      for (int i = 0; i < count; i++) {
+        PriceSeries prices = series[i];
+        while (cursor[i] + 1 < prices.size() && prices.dayAt(cursor[i] + 1) <= day) {
+          cursor[i]++;
+        }
+        if (cursor[i] + 1 >= prices.size()) {
+          break sweep;
+        }
+      }
+      double value = 0;
+      for (int i = 0; i < count; i++) {
+        if (cursor[i] < 0 || weights.get(i) <= 0) {
+          continue;
+        }
+        double investment = amount * weights.get(i) / 100.0;
+        units[i] += investment / series[i].closeAt(cursor[i] + 1);
+        invested += investment;
+        purchases++;
+        value += units[i] * series[i].closeAt(cursor[i]);
+      }
+      if (invested > 0) {
+        double ratio = value / invested;
+        peak = Math.max(peak, ratio);
+        maxDrawdown = Math.max(maxDrawdown, (peak - ratio) / peak);
+      }
+    }
+    double finalValue = 0;
+    for (int i = 0; i < count; i++) {
+      if (units[i] > 0) {
+        finalValue += units[i] * series[i].priceOnDay(end.toEpochDay());
+      }
+    }
+    return new BacktestResult(startDate, period, weights, purchases, invested, finalValue,
+            maxDrawdown);
+  }
+}
@@ -0,0 +1,331 @@
+package model;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Imports trades in bulk from a csv file with the columns portfolio,symbol,date,quantity,amount.
+ * Each row has either a whole quantity, negative for a sale, or an amount of money to invest,
+ * which buys at the same fill price as {@link Stock#getBuyPriceOnDate(String)}. Portfolios that
+ * do not exist yet are created.
+ *
+ * <p>The file is streamed once. Each row is checked against the cached price series of its
+ * symbol and kept in a compact batch of its portfolio. The batches are then sorted by date and
+ * applied one portfolio at a time, each portfolio is handed to the writer once without waiting,
+ * and the import waits for all of them at the end. Rows that cannot be applied, such as sales
+ * of more than is held or trades dated before a stock's last transaction, are reported by line
+ * number instead of stopping the import.
+ */
+class BulkImporter {
+  private static final String HEADER = "portfolio";
+
+  private final PortfolioRepository repository;
+  private final Map<String, PriceSeries> series = new HashMap<>();
+  private final Map<String, String> missingSeries = new HashMap<>();
+  private final Map<Integer, String> dates = new HashMap<>();
+  private final Map<Integer, String> rejections = new TreeMap<>();
+
+  /**
+   * A portfolio's rows in file order, kept in parallel arrays.
+   */
+  private static final class Batch {
+    private int size;
+    private int[] lines = new int[16];
+    private int[] days = new int[16];
+    private float[] quantities = new float[16];
+    private String[] symbols = new String[16];
+
+    private void add(int line, int day, float quantity, String symbol) {
+      if (size == lines.length) {
+        lines = Arrays.copyOf(lines, size * 2);
+        days = Arrays.copyOf(days, size * 2);
+        quantities = Arrays.copyOf(quantities, size * 2);
+        symbols = Arrays.copyOf(symbols, size * 2);
+      }
+      lines[size] = line;
+      days[size] = day;
+      quantities[size] = quantity;
+      symbols[size] = symbol;
+      size++;
+    }
+
+    /**
+     * Returns the row positions ordered by date, keeping file order for rows of the same date.
+     */
+    private int[] byDate() {
+      long[] keys = new long[size];
+      for (int i = 0; i < size; i++) {
+        keys[i] = ((long) days[i] << 32) | i;
+      }
+      Arrays.sort(keys);
+      int[] order = new int[size];
+      for (int i = 0; i < size; i++) {
+        order[i] = (int) keys[i];
+      }
+      return order;
+    }
+  }
+
+  /**
+   * Constructs an importer adding trades to the portfolios of a repository.
+   *
+   * @param repository the repository holding the portfolios
+   */
+  BulkImporter(PortfolioRepository repository) {
+    this.repository = repository;
+  }
+
+  /**
+   * Imports the trades of a csv file.
+   *
+   * @param file the csv file
+   * @return the outcome of the import
+   * @throws IOException if the file cannot be read or the portfolios cannot be written
+   */
+  ImportReport importFile(File file) throws IOException {
+    try (Reader reader = new FileReader(file)) {
+      return importTrades(reader);
+    }
+  }
+
+  /**
+   * Imports the trades read from a csv source. A first line starting with "portfolio" is taken
+   * as the header.
+   *
+   * @param source the csv text
+   * @return the outcome of the import
+   * @throws IOException if the text cannot be read or the portfolios cannot be written
+   */
+  ImportReport importTrades(Reader source) throws IOException {
+    long start = System.currentTimeMillis();
+    rejections.clear();
+    Map<String, Batch> batches = new LinkedHashMap<>();
+    Set<String> invalidNames = new HashSet<>();
+    int rows = 0;
+    BufferedReader reader = new BufferedReader(source, 1 << 16);
+    String text;
+    int line = 0;
+    while ((text = reader.readLine()) != null) {
+      line++;
+      if (text.isBlank() || (line == 1 && text.regionMatches(true, 0, HEADER, 0,
+              HEADER.length()))) {
+        continue;
+      }
+      rows++;
+      readRow(text, line, batches, invalidNames);
+    }
+    int accepted = 0;
+    int saved = 0;
+    Set<String> labels = new HashSet<>(Arrays.asList(repository.list()));
+    for (Map.Entry<String, Batch> entry : batches.entrySet()) {
+      int applied = apply(entry.getKey(), entry.getValue(), labels);
+      accepted += applied;
+      saved += applied > 0 ? 1 : 0;
+    }
+    WriteBehindQueue.flush();
+    List<String> messages = new ArrayList<>(rejections.size());
+    for (Map.Entry<Integer, String> rejection : rejections.entrySet()) {
+      messages.add("Line " + rejection.getKey() + ": " + rejection.getValue());
+    }
+    return new ImportReport(rows, accepted, saved, messages,
+            System.currentTimeMillis() - start);
+  }
+
+  /**
+   * Checks one row and adds it to the batch of its portfolio.
+   */
+  private void readRow(String text, int line, Map<String, Batch> batches,
+                       Set<String> invalidNames) {
+    String[] fields = new String[5];
+    int from = 0;
+    for (int f = 0; f < 5; f++) {
+      int comma = f < 4 ? text.indexOf(',', from) : text.length();
+      if (comma < 0 || (f == 4 && text.indexOf(',', from) >= 0)) {
+        reject(line, "Expected portfolio,symbol,date,quantity,amount");
+        return;
+      }
+      fields[f] = text.substring(from, comma).trim();
+      from = comma + 1;
+    }
+    String name = fields[0];
+    Batch batch = batches.get(name);
+    if (batch == null) {
+      if (invalidNames.contains(name) || !Manager.isValidName(name)) {
+        invalidNames.add(name);
+        reject(line, "Invalid portfolio name " + name);
+        return;
+      }
+      batch = new Batch();
+      batches.put(name, batch);
+    }
+    PriceSeries prices = series(fields[1].toUpperCase());
+    if (prices == null) {
+      reject(line, missingSeries.get(fields[1].toUpperCase()));
+      return;
+    }
+    int day = parseDay(fields[2]);
+    if (day == Integer.MIN_VALUE) {
+      reject(line, "Invalid date " + fields[2]);
+      return;
+    }
+    int index = prices.floorIndex(day);
+    if (index < 0 || day > prices.dayAt(prices.size() - 1)) {
+      reject(line, "No price data for " + prices.getSymbol() + " on " + fields[2]);
+      return;
+    }
+    float quantity;
+    try {
+      if (fields[3].isEmpty() == fields[4].isEmpty()) {
+        reject(line, "Give either a quantity or an amount");
+        return;
+      } else if (!fields[3].isEmpty()) {
+        quantity = Float.parseFloat(fields[3]);
+        if (quantity == 0 || quantity != Math.rint(quantity)) {
+          reject(line, "Quantity must be a whole number other than 0");
+          return;
+        }
+      } else {
+        float amount = Float.parseFloat(fields[4]);
+        if (!(amount > 0)) {
+          reject(line, "Amount must be greater than 0");
+          return;
+        }
+        if (index + 1 >= prices.size()) {
+          reject(line, "No fill price for " + prices.getSymbol() + " after " + fields[2]);
+          return;
+        }
+        quantity = amount / prices.buyPriceOnDay(day);
+      }
+    } catch (NumberFormatException e) {
+      reject(line, "Invalid number");
+      return;
+    }
+    batch.add(line, day, quantity, prices.getSymbol());
+  }
+
+  /**
+   * Returns the cached price series of a symbol, or null if it has no price data, in which
+   * case the reason is kept in {@link #missingSeries}.
+   */
+  private PriceSeries series(String symbol) {
+    PriceSeries prices = series.get(symbol);
+    if (prices == null && !missingSeries.containsKey(symbol)) {
+      try {
+        prices = Workspace.of(repository).prices(symbol);
+        series.put(symbol, prices);
+      } catch (Exception e) {
+        missingSeries.put(symbol, "No price data for " + symbol);
+      }
+    }
+    return prices;
+  }
+
+  /**
+   * Applies a portfolio's rows in date order and saves the portfolio once.
+   *
+   * @return the number of rows applied
+   */
+  private int apply(String name, Batch batch, Set<String> labels) {
+    FlexiblePortfolio portfolio;
+    try {
+      if (labels.contains(name + ".xml")) {
+        portfolio = repository.loadFlexiblePortfolio(name);
+      } else if (repository.exists(name)) {
+        rejectAll(batch, "Portfolio name differs only in case from an existing portfolio");
+        return 0;
+      } else {
+        portfolio = new FlexiblePortfolio(name);
+        portfolio.attach(repository);
+      }
+    } catch (Exception e) {
+      rejectAll(batch, "Cannot open portfolio " + name + ": " + e.getMessage());
+      return 0;
+    }
+    int applied = 0;
+    synchronized (portfolio) {
+      Map<String, Stock> stocks = new HashMap<>();
+      Map<Stock, Integer> lastDays = new HashMap<>();
+      for (Stock stock : portfolio.stocksList) {
+        stocks.put(stock.getSymbol(), stock);
+        String last = stock.getLastTransactionDate();
+        lastDays.put(stock, last == null ? Integer.MIN_VALUE : (int) PriceSeries.parseDay(last));
+      }
+      for (int row : batch.byDate()) {
+        String symbol = batch.symbols[row];
+        int day = batch.days[row];
+        float quantity = batch.quantities[row];
+        Stock stock = stocks.get(symbol);
+        if (quantity < 0 && (stock == null || stock.getQuantity() + quantity < 0)) {
+          reject(batch.lines[row], "Cannot sell more stocks than you have");
+          continue;
+        }
+        if (stock != null && lastDays.get(stock) > day) {
+          reject(batch.lines[row], "Can only trade " + symbol
+                  + " after the date of its previous transaction");
+          continue;
+        }
+        if (stock == null) {
+          stock = new Stock(symbol, 0);
+          portfolio.hold(stock);
+          stocks.put(symbol, stock);
+        }
+        stock.trade(date(day), quantity);
+        lastDays.put(stock, day);
+        applied++;
+      }
+      if (applied > 0) {
+        portfolio.saveLater();
+      }
+    }
+    return applied;
+  }
+
+  private String date(int day) {
+    return dates.computeIfAbsent(day, key -> LocalDate.ofEpochDay(key).toString());
+  }
+
+  /**
+   * Parses a date in "yyyy-MM-dd" format to an epoch day.
+   *
+   * @return the epoch day, or Integer.MIN_VALUE if the text is not a valid date
+   */
+  private static int parseDay(String text) {
+    if (text.length() != 10 || text.charAt(4) != '-' || text.charAt(7) != '-') {
+      return Integer.MIN_VALUE;
+    }
+    for (int i = 0; i < 10; i++) {
+      if (i != 4 && i != 7 && (text.charAt(i) < '0' || text.charAt(i) > '9')) {
+        return Integer.MIN_VALUE;
+      }
+    }
+    try {
+      return (int) PriceSeries.parseDay(text);
+    } catch (DateTimeException e) {
+      return Integer.MIN_VALUE;
+    }
+  }
+
+  private void reject(int line, String reason) {
+    rejections.put(line, reason);
+  }
+
+  private void rejectAll(Batch batch, String reason) {
+    for (int i = 0; i < batch.size; i++) {
+      reject(batch.lines[i], reason);
+    }
+  }
+}
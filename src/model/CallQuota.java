@@ -0,0 +1,75 @@
+package model;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * The quota of calls to a price provider that every scheduler of the process shares. A provider
+ * limits the calls made with one API key however many schedulers make them, so the quota is
+ * kept once per key: schedulers of different workspaces downloading with the same key space
+ * their calls out together and count them against one daily limit. A source without an API key
+ * has a quota of its own.
+ *
+ * <p>The limits are read from {@code refresh.callsPerMinute} and {@code refresh.callsPerDay}
+ * when the quota of a key is first used.
+ */
+final class CallQuota {
+  private static final Map<String, CallQuota> KEYS = new HashMap<>();
+  private static final Map<URLInterface, CallQuota> SOURCES = new WeakHashMap<>();
+
+  private final long interval;
+  private final int callsPerDay;
+  private long nextSlot;
+  private LocalDate day;
+  private int callsToday;
+
+  private CallQuota() {
+    this.interval = 60_000L / Math.max(1, Integer.getInteger("refresh.callsPerMinute", 5));
+    this.callsPerDay = Integer.getInteger("refresh.callsPerDay", 25);
+  }
+
+  /**
+   * Returns the quota the calls to a source count against.
+   *
+   * @param source where prices are downloaded from
+   * @return the quota of the source's API key, or of the source itself if it has none
+   */
+  static synchronized CallQuota of(URLInterface source) {
+    if (source instanceof AlphaVantage) {
+      return KEYS.computeIfAbsent(((AlphaVantage) source).getApiKey(), key -> new CallQuota());
+    }
+    return SOURCES.computeIfAbsent(source, key -> new CallQuota());
+  }
+
+  /**
+   * Reserves the next free slot of the per-minute quota.
+   *
+   * @param notBefore the earliest time the call may be made, in milliseconds
+   * @return the time of the reserved slot, in milliseconds
+   */
+  synchronized long reserve(long notBefore) {
+    long slot = Math.max(notBefore, nextSlot);
+    nextSlot = slot + interval;
+    return slot;
+  }
+
+  /**
+   * Counts a call against the daily quota, unless it is used up.
+   *
+   * @param today the current day in the zone of the market
+   * @return true if the call may be made, false if the daily quota is used up
+   */
+  synchronized boolean tryAcquire(LocalDate today) {
+    if (!today.equals(day)) {
+      day = today;
+      callsToday = 0;
+    }
+    if (callsToday >= callsPerDay) {
+      return false;
+    }
+    callsToday++;
+    return true;
+  }
+}
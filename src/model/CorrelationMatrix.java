@@ -0,0 +1,342 @@
+package model;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Holds the pairwise covariance and correlation of daily returns for a set of symbols.
+ * Returns are aligned on the union of all trading days, and each pair uses the days on which
+ * both symbols have a return. The matrix is computed in square tiles of symbols and chunks of
+ * days so the data worked on stays in cache, with the tiles spread across cores. Only the upper
+ * triangle is stored.
+ */
+public class CorrelationMatrix {
+  private static final int MAGIC = 0x4d415458;
+  private static final int VERSION = 1;
+  private static final int TILE = 32;
+  private static final int CHUNK = 1024;
+
+  private final String[] symbols;
+  private final float[] covariance;
+  private final float[] correlation;
+
+  private CorrelationMatrix(String[] symbols, float[] covariance, float[] correlation) {
+    this.symbols = symbols;
+    this.covariance = covariance;
+    this.correlation = correlation;
+  }
+
+  /**
+   * Computes the matrix for every symbol with a price file in the default data folder.
+   *
+   * @return the matrix of all symbols with data
+   * @throws Exception if a price file cannot be read
+   */
+  public static CorrelationMatrix forAllSymbols() throws Exception {
+    return forAllSymbols(Workspace.getDefault());
+  }
+
+  /**
+   * Computes the matrix for every symbol with a price file in the data folder of a workspace.
+   *
+   * @param workspace the workspace whose prices are used
+   * @return the matrix of all symbols with data
+   * @throws Exception if a price file cannot be read
+   */
+  public static CorrelationMatrix forAllSymbols(Workspace workspace) throws Exception {
+    String[] symbols = workspace.symbols();
+    Arrays.sort(symbols);
+    return compute(workspace, Arrays.asList(symbols));
+  }
+
+  /**
+   * Computes the matrix for the given symbols.
+   *
+   * @param symbols the symbols to correlate
+   * @return the covariance and correlation matrix
+   * @throws Exception if price data is missing for one of the symbols
+   */
+  public static CorrelationMatrix compute(List<String> symbols) throws Exception {
+    return compute(Workspace.getDefault(), symbols);
+  }
+
+  /**
+   * Computes the matrix for the given symbols with the prices of a workspace.
+   *
+   * @param workspace the workspace whose prices are used
+   * @param symbols   the symbols to correlate
+   * @return the covariance and correlation matrix
+   * @throws Exception if price data is missing for one of the symbols
+   */
+  public static CorrelationMatrix compute(Workspace workspace, List<String> symbols)
+          throws Exception {
+    int count = symbols.size();
+    PriceSeries[] series = new PriceSeries[count];
+    String[] names = new String[count];
+    int[] calendar = new int[0];
+    for (int s = 0; s < count; s++) {
+      series[s] = workspace.prices(symbols.get(s));
+      names[s] = series[s].getSymbol();
+      int[] days = new int[series[s].size()];
+      for (int t = 0; t < days.length; t++) {
+        days[t] = series[s].dayAt(t);
+      }
+      calendar = PriceSeries.union(calendar, days);
+    }
+    int[] aligned = calendar;
+    int length = Math.max(0, aligned.length - 1);
+    float[][] returns = new float[count][];
+    IntStream.range(0, count).parallel().forEach(s -> returns[s] = returns(series[s], aligned));
+
+    int size = count * (count + 1) / 2;
+    float[] covariance = new float[size];
+    float[] correlation = new float[size];
+    int tiles = (count + TILE - 1) / TILE;
+    IntStream.range(0, tiles * (tiles + 1) / 2).parallel().forEach(n -> {
+      int row = 0;
+      int remaining = n;
+      while (remaining >= tiles - row) {
+        remaining -= tiles - row;
+        row++;
+      }
+      computeTile(returns, length, row * TILE, (row + remaining) * TILE, count, covariance,
+              correlation);
+    });
+    return new CorrelationMatrix(names, covariance, correlation);
+  }
+
+  private static float[] returns(PriceSeries series, int[] calendar) {
+    float[] returns = new float[Math.max(0, calendar.length - 1)];
+    Arrays.fill(returns, Float.NaN);
+    int cursor = 0;
+    for (int t = 1; t < calendar.length; t++) {
+      while (cursor < series.size() && series.dayAt(cursor) < calendar[t - 1]) {
+        cursor++;
+      }
+      if (cursor + 1 < series.size() && series.dayAt(cursor) == calendar[t - 1]
+              && series.dayAt(cursor + 1) == calendar[t]) {
+        returns[t - 1] = series.closeAt(cursor + 1) / series.closeAt(cursor) - 1;
+      }
+    }
+    return returns;
+  }
+
+  private static void computeTile(float[][] returns, int length, int rowStart, int columnStart,
+                                  int count, float[] covariance, float[] correlation) {
+    int rowEnd = Math.min(count, rowStart + TILE);
+    int columnEnd = Math.min(count, columnStart + TILE);
+    double[] sums = new double[TILE * TILE * 6];
+    boolean[] dense = new boolean[2 * TILE];
+    double[] sum = new double[2 * TILE];
+    double[] squares = new double[2 * TILE];
+    for (int chunk = 0; chunk < length; chunk += CHUNK) {
+      int chunkEnd = Math.min(length, chunk + CHUNK);
+      for (int k = 0; k < 2 * TILE; k++) {
+        int symbol = k < TILE ? rowStart + k : columnStart + k - TILE;
+        if (symbol >= count) {
+          continue;
+        }
+        float[] x = returns[symbol];
+        dense[k] = true;
+        sum[k] = 0;
+        squares[k] = 0;
+        for (int t = chunk; t < chunkEnd; t++) {
+          float a = x[t];
+          dense[k] &= a == a;
+          sum[k] += a;
+          squares[k] += a * a;
+        }
+      }
+      for (int i = rowStart; i < rowEnd; i++) {
+        float[] x = returns[i];
+        int row = i - rowStart;
+        for (int j = Math.max(i, columnStart); j < columnEnd; j++) {
+          float[] y = returns[j];
+          int column = j - columnStart + TILE;
+          int slot = (row * TILE + (j - columnStart)) * 6;
+          if (dense[row] && dense[column]) {
+            double sxy0 = 0;
+            double sxy1 = 0;
+            double sxy2 = 0;
+            double sxy3 = 0;
+            int t = chunk;
+            for (; t + 3 < chunkEnd; t += 4) {
+              sxy0 += x[t] * y[t];
+              sxy1 += x[t + 1] * y[t + 1];
+              sxy2 += x[t + 2] * y[t + 2];
+              sxy3 += x[t + 3] * y[t + 3];
+            }
+            for (; t < chunkEnd; t++) {
+              sxy0 += x[t] * y[t];
+            }
+            double sxy = sxy0 + sxy1 + sxy2 + sxy3;
+            sums[slot] += chunkEnd - chunk;
+            sums[slot + 1] += sum[row];
+            sums[slot + 2] += sum[column];
+            sums[slot + 3] += squares[row];
+            sums[slot + 4] += squares[column];
+            sums[slot + 5] += sxy;
+            continue;
+          }
+          int n = 0;
+          double sx = 0;
+          double sy = 0;
+          double sxx = 0;
+          double syy = 0;
+          double sxy = 0;
+          for (int t = chunk; t < chunkEnd; t++) {
+            float a = x[t];
+            float b = y[t];
+            if (a == a && b == b) {
+              n++;
+              sx += a;
+              sy += b;
+              sxx += a * a;
+              syy += b * b;
+              sxy += a * b;
+            }
+          }
+          sums[slot] += n;
+          sums[slot + 1] += sx;
+          sums[slot + 2] += sy;
+          sums[slot + 3] += sxx;
+          sums[slot + 4] += syy;
+          sums[slot + 5] += sxy;
+        }
+      }
+    }
+    for (int i = rowStart; i < rowEnd; i++) {
+      for (int j = Math.max(i, columnStart); j < columnEnd; j++) {
+        int slot = ((i - rowStart) * TILE + (j - columnStart)) * 6;
+        double n = sums[slot];
+        int index = index(i, j, count);
+        if (n < 2) {
+          covariance[index] = Float.NaN;
+          correlation[index] = Float.NaN;
+          continue;
+        }
+        double cov = (sums[slot + 5] - sums[slot + 1] * sums[slot + 2] / n) / (n - 1);
+        double varX = (sums[slot + 3] - sums[slot + 1] * sums[slot + 1] / n) / (n - 1);
+        double varY = (sums[slot + 4] - sums[slot + 2] * sums[slot + 2] / n) / (n - 1);
+        covariance[index] = (float) cov;
+        correlation[index] = varX <= 0 || varY <= 0 ? Float.NaN
+                : (float) (cov / Math.sqrt(varX * varY));
+      }
+    }
+  }
+
+  private static int index(int i, int j, int count) {
+    if (i > j) {
+      int temp = i;
+      i = j;
+      j = temp;
+    }
+    return i * count - i * (i - 1) / 2 + (j - i);
+  }
+
+  /**
+   * Returns the number of symbols in the matrix.
+   *
+   * @return the number of symbols
+   */
+  public int size() {
+    return symbols.length;
+  }
+
+  /**
+   * Returns the symbol of a row or column of the matrix.
+   *
+   * @param index the row or column
+   * @return the symbol
+   */
+  public String getSymbol(int index) {
+    return symbols[index];
+  }
+
+  /**
+   * Returns the covariance of the daily returns of two symbols.
+   *
+   * @param i the row of the first symbol
+   * @param j the row of the second symbol
+   * @return the covariance, or NaN if the symbols share fewer than two returns
+   */
+  public float getCovariance(int i, int j) {
+    return covariance[index(i, j, symbols.length)];
+  }
+
+  /**
+   * Returns the correlation of the daily returns of two symbols.
+   *
+   * @param i the row of the first symbol
+   * @param j the row of the second symbol
+   * @return the correlation between -1 and 1, or NaN if it is undefined
+   */
+  public float getCorrelation(int i, int j) {
+    return correlation[index(i, j, symbols.length)];
+  }
+
+  /**
+   * Writes the matrix to a compact binary file holding a header, the symbols and the upper
+   * triangles of the covariance and correlation matrices as floats. The file is replaced
+   * atomically, so a reader never sees a matrix cut short.
+   *
+   * @param file the file to write
+   * @throws IOException if the file cannot be written
+   */
+  public void save(File file) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 + 8 * covariance.length);
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(symbols.length);
+      for (String symbol : symbols) {
+        out.writeUTF(symbol);
+      }
+      for (float value : covariance) {
+        out.writeFloat(value);
+      }
+      for (float value : correlation) {
+        out.writeFloat(value);
+      }
+    }
+    AtomicFileWriter.write(file, bytes.toByteArray());
+  }
+
+  /**
+   * Reads a matrix previously written with {@link #save(File)}.
+   *
+   * @param file the file to read
+   * @return the matrix stored in the file
+   * @throws IOException if the file cannot be read or is not a matrix file
+   */
+  public static CorrelationMatrix load(File file) throws IOException {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+            new FileInputStream(file), 1 << 16))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        throw new IOException("Not a correlation matrix file: " + file.getName());
+      }
+      String[] symbols = new String[in.readInt()];
+      for (int i = 0; i < symbols.length; i++) {
+        symbols[i] = in.readUTF();
+      }
+      int size = symbols.length * (symbols.length + 1) / 2;
+      float[] covariance = new float[size];
+      float[] correlation = new float[size];
+      for (int i = 0; i < size; i++) {
+        covariance[i] = in.readFloat();
+      }
+      for (int i = 0; i < size; i++) {
+        correlation[i] = in.readFloat();
+      }
+      return new CorrelationMatrix(symbols, covariance, correlation);
+    }
+  }
+}
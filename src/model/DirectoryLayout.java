@@ -0,0 +1,217 @@
+package model;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decides where the files of a folder of portfolios or price data are kept. In the flat layout
+ * every file is directly in the folder, as the application has always kept them. In the sharded
+ * layout each file is in one of {@link #SHARDS} subfolders named by two hex digits of a hash of
+ * its name without the extension, ignoring case, so a portfolio's snapshot, XML file and journal
+ * share a subfolder, and no folder holds more than a small part of the files however many
+ * there are.
+ *
+ * <p>A folder is sharded when it holds a ".layout" file saying so. Files found directly in a
+ * sharded folder are still used, so a folder stays readable while {@link #migrate(boolean)} is
+ * moving its files and after a file was dropped into it by hand.
+ */
+final class DirectoryLayout {
+  static final int SHARDS = 256;
+  private static final String MARKER = ".layout";
+  private static final String SHARDED = "sharded";
+  private static final Map<String, DirectoryLayout> LAYOUTS = new ConcurrentHashMap<>();
+
+  private final File root;
+  private volatile boolean sharded;
+
+  private DirectoryLayout(File root) {
+    this.root = root;
+    File marker = new File(root, MARKER);
+    try {
+      this.sharded = marker.isFile()
+              && new String(Files.readAllBytes(marker.toPath())).trim().equals(SHARDED);
+    } catch (IOException e) {
+      throw new IllegalStateException("Cannot read " + marker + ": " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Returns the layout of a folder, reading it the first time it is asked for.
+   *
+   * @param root the folder
+   * @return the layout of the folder
+   */
+  static DirectoryLayout of(File root) {
+    File absolute = root.getAbsoluteFile();
+    return LAYOUTS.computeIfAbsent(absolute.getPath(), key -> new DirectoryLayout(absolute));
+  }
+
+  /**
+   * Returns the subfolder a file belongs in when the folder is sharded.
+   *
+   * @param fileName the name of the file
+   * @return the name of the subfolder
+   */
+  static String shard(String fileName) {
+    int dot = fileName.lastIndexOf('.');
+    String key = (dot > 0 ? fileName.substring(0, dot) : fileName).toLowerCase(Locale.ROOT);
+    int hash = 0x811c9dc5;
+    for (int i = 0; i < key.length(); i++) {
+      hash = (hash ^ key.charAt(i)) * 0x01000193;
+    }
+    return Integer.toHexString(((hash ^ (hash >>> 8)) & (SHARDS - 1)) | SHARDS).substring(1);
+  }
+
+  File getRoot() {
+    return root;
+  }
+
+  boolean isSharded() {
+    return sharded;
+  }
+
+  /**
+   * Returns where a file of the folder is kept. In a sharded folder that is the file in its
+   * subfolder, unless only a file directly in the folder exists.
+   *
+   * @param fileName the name of the file
+   * @return the file, which may not exist yet
+   */
+  File file(String fileName) {
+    if (!sharded) {
+      return new File(root, fileName);
+    }
+    File file = new File(new File(root, shard(fileName)), fileName);
+    if (!file.exists()) {
+      File unsharded = new File(root, fileName);
+      if (unsharded.exists()) {
+        return unsharded;
+      }
+    }
+    return file;
+  }
+
+  /**
+   * Lists the names of the files of the folder accepted by a filter, wherever they are kept.
+   *
+   * @param filter the filter, given the folder or subfolder each file is in
+   * @return the file names, in no particular order
+   */
+  String[] list(FilenameFilter filter) {
+    List<String> names = new ArrayList<>();
+    for (File directory : directories()) {
+      String[] files = directory.list(filter);
+      if (files != null) {
+        names.addAll(Arrays.asList(files));
+      }
+    }
+    return names.toArray(new String[0]);
+  }
+
+  /**
+   * Returns the folders files of the layout are kept in: the folder itself and, if it is
+   * sharded, its subfolders.
+   *
+   * @return the folders
+   */
+  List<File> directories() {
+    List<File> directories = new ArrayList<>();
+    directories.add(root);
+    if (sharded) {
+      directories.addAll(shardedDirectories());
+    }
+    return directories;
+  }
+
+  /**
+   * Moves every file of the folder to where the other layout keeps it. Going to the sharded
+   * layout, the subfolders and the marker are created before any file moves; going back, the
+   * marker is removed only after every file has moved. Each file is moved atomically, so a
+   * migration cut short leaves every file readable and can simply be run again. Hidden files are
+   * left where they are.
+   *
+   * @param toSharded true to shard the folder, false to flatten it
+   * @return the number of files moved
+   * @throws IOException if a file cannot be moved, or a file of the same name already exists
+   *                     where it would be moved to
+   */
+  synchronized int migrate(boolean toSharded) throws IOException {
+    if (!root.isDirectory()) {
+      throw new IOException("No folder " + root);
+    }
+    File marker = new File(root, MARKER);
+    int moved = 0;
+    if (toSharded) {
+      for (File directory : shardedDirectories()) {
+        if (!directory.isDirectory() && !directory.mkdir()) {
+          throw new IOException("Cannot create " + directory);
+        }
+      }
+      AtomicFileWriter.write(marker, SHARDED + "\n", false);
+      sharded = true;
+      for (File file : files(root)) {
+        move(file, new File(new File(root, shard(file.getName())), file.getName()));
+        moved++;
+      }
+    } else {
+      for (File directory : shardedDirectories()) {
+        for (File file : files(directory)) {
+          move(file, new File(root, file.getName()));
+          moved++;
+        }
+      }
+      if (marker.exists() && !marker.delete()) {
+        throw new IOException("Cannot delete " + marker);
+      }
+      sharded = false;
+      for (File directory : shardedDirectories()) {
+        File[] leftovers = directory.listFiles();
+        for (File leftover : leftovers == null ? new File[0] : leftovers) {
+          leftover.delete();
+        }
+        directory.delete();
+      }
+    }
+    return moved;
+  }
+
+  private List<File> shardedDirectories() {
+    List<File> directories = new ArrayList<>(SHARDS);
+    for (int i = 0; i < SHARDS; i++) {
+      directories.add(new File(root, Integer.toHexString(i | SHARDS).substring(1)));
+    }
+    return directories;
+  }
+
+  private static List<File> files(File directory) {
+    List<File> files = new ArrayList<>();
+    File[] children = directory.listFiles();
+    for (File child : children == null ? new File[0] : children) {
+      if (child.isFile() && !child.getName().startsWith(".")) {
+        files.add(child);
+      }
+    }
+    return files;
+  }
+
+  private static void move(File source, File target) throws IOException {
+    if (target.exists()) {
+      throw new IOException("Cannot move " + source + ": " + target + " already exists");
+    }
+    try {
+      Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(source.toPath(), target.toPath());
+    }
+  }
+}
@@ -0,0 +1,334 @@
+package model;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps portfolios as files in a folder: flexible portfolios as a binary snapshot with a journal
+ * of the trades made since, simple portfolios as XML. A flexible portfolio saved as XML by an
+ * older version is migrated to the binary format the first time it is opened, and its XML file
+ * is kept beside it as a backup ending in ".xml.bak", which is not listed or read again.
+ * Strategies are XML files in the 'strategies' folder next to it. The portfolios are listed
+ * from the folder's {@link PortfolioCatalog}. Where in the folder each file is kept is decided
+ * by its {@link DirectoryLayout}. The cross-portfolio queries have no index to use and read
+ * every portfolio.
+ *
+ * <p>A flexible portfolio is open in one instance at a time: loading it again returns the
+ * instance already open as long as its files were not changed by anything else, so trades made
+ * through different loads of it are made on the same stocks and journaled in order.
+ */
+class FilePortfolioRepository implements PortfolioRepository {
+  private static final String EXTENSION = ".xml";
+  private static final String BACKUP = EXTENSION + ".bak";
+  private static final Map<String, FilePortfolioRepository> REPOSITORIES =
+          new ConcurrentHashMap<>();
+
+  private final DirectoryLayout layout;
+  private final File strategies;
+  private final PortfolioCatalog catalog;
+  private final Map<String, Opened> opened = new ConcurrentHashMap<>();
+
+  /**
+   * The open instance of a portfolio, kept until nothing uses it, and the state of the files it
+   * was read from or last wrote.
+   */
+  private static final class Opened {
+    private WeakReference<FlexiblePortfolio> portfolio = new WeakReference<>(null);
+    private List<Long> version;
+  }
+
+  private FilePortfolioRepository(File folder) {
+    this.layout = DirectoryLayout.of(folder);
+    this.strategies = new File(folder.getParentFile(), "strategies");
+    this.catalog = PortfolioCatalog.of(folder);
+  }
+
+  /**
+   * Returns the repository of a folder.
+   *
+   * @param folder the folder holding the portfolio files
+   * @return the repository of the folder
+   */
+  static FilePortfolioRepository of(File folder) {
+    File absolute = folder.getAbsoluteFile();
+    return REPOSITORIES.computeIfAbsent(absolute.getPath(),
+            key -> new FilePortfolioRepository(absolute));
+  }
+
+  @Override
+  public void refresh() {
+    catalog.sync();
+  }
+
+  @Override
+  public String[] list() {
+    return catalog.names();
+  }
+
+  @Override
+  public boolean exists(String name) {
+    return catalog.containsIgnoreCase(name + EXTENSION);
+  }
+
+  @Override
+  public PortfolioSummary summary(String name) {
+    return catalog.summary(name + EXTENSION);
+  }
+
+  @Override
+  public Portfolio loadPortfolio(String name) throws Exception {
+    File binary = layout.file(name + PortfolioCodec.EXTENSION);
+    String label = name + EXTENSION;
+    Portfolio portfolio = binary.exists() ? PortfolioCodec.readPortfolio(binary, label)
+            : PortfolioXmlReader.readPortfolio(layout.file(label), label);
+    portfolio.attach(this);
+    return portfolio;
+  }
+
+  /**
+   * Loads a flexible portfolio. A portfolio still saved as XML is migrated to the binary format
+   * before it is returned.
+   */
+  @Override
+  public FlexiblePortfolio loadFlexiblePortfolio(String name) throws Exception {
+    return read(name);
+  }
+
+  /**
+   * Returns the open instance of a portfolio: the one with changes still to write, or the one
+   * last read or written if its files have not changed since, or else a newly read one. The
+   * writer updates the instance's entry while the instance is still pending, so holding the
+   * entry's lock, a portfolio written meanwhile is either still pending or already recorded.
+   */
+  private FlexiblePortfolio read(String name) throws Exception {
+    Opened entry = opened.computeIfAbsent(name, key -> new Opened());
+    synchronized (entry) {
+      FlexiblePortfolio pending = WriteBehindQueue.pending(this, name);
+      if (pending != null) {
+        return pending;
+      }
+      List<Long> version = version(name);
+      FlexiblePortfolio portfolio = entry.portfolio.get();
+      if (portfolio == null || !version.equals(entry.version)) {
+        File binary = layout.file(name + PortfolioCodec.EXTENSION);
+        File xml = layout.file(name + EXTENSION);
+        if (binary.exists()) {
+          portfolio = PortfolioCodec.readFlexiblePortfolio(binary, name, journal(name));
+        } else {
+          portfolio = PortfolioXmlReader.readFlexiblePortfolio(xml, name, journal(name));
+          AtomicFileWriter.write(binary,
+                  PortfolioCodec.encode(portfolio.journalSeq(), portfolio.stocks()));
+          journal(name).clear();
+        }
+        if (xml.exists()) {
+          backUp(xml);
+          PortfolioCatalog.changed(binary);
+          version = version(name);
+        }
+        portfolio.attach(this);
+        entry.portfolio = new WeakReference<>(portfolio);
+        entry.version = version;
+      }
+      return portfolio;
+    }
+  }
+
+  /**
+   * Moves the XML file a portfolio was migrated from out of the way, once the binary file
+   * holding all of its trades is written. Reading prefers the binary file, so a portfolio is
+   * read the same way whether or not the XML file is still there, and a migration cut short
+   * between the two steps is finished the next time the portfolio is opened.
+   */
+  private static void backUp(File xml) throws IOException {
+    AtomicFileWriter.rename(xml, new File(xml.getParentFile(), baseName(xml.getName()) + BACKUP));
+  }
+
+  /**
+   * Makes the portfolio whose changes were just written, if it is being written by the
+   * background writer, the open instance matching the files now on disk.
+   */
+  private void written(String name) {
+    FlexiblePortfolio writer = WriteBehindQueue.pending(this, name);
+    if (writer == null) {
+      opened.remove(name);
+      return;
+    }
+    Opened entry = opened.computeIfAbsent(name, key -> new Opened());
+    synchronized (entry) {
+      entry.portfolio = new WeakReference<>(writer);
+      entry.version = version(name);
+    }
+  }
+
+  private List<Long> version(String name) {
+    File binary = layout.file(name + PortfolioCodec.EXTENSION);
+    File xml = layout.file(name + EXTENSION);
+    File journal = layout.file(name + TransactionJournal.EXTENSION);
+    return Arrays.asList(binary.lastModified(), binary.length(), xml.lastModified(),
+            xml.length(), journal.lastModified(), journal.length());
+  }
+
+  private TransactionJournal journal(String name) {
+    return new TransactionJournal(layout.file(name + TransactionJournal.EXTENSION));
+  }
+
+  @Override
+  public void savePortfolio(Portfolio portfolio) throws IOException {
+    File file = layout.file(portfolio.name + EXTENSION);
+    AtomicFileWriter.write(file, portfolio.renderXml(), true);
+    PortfolioCatalog.changed(file);
+  }
+
+  /**
+   * Replaces the binary snapshot, then removes the journal it contains and backs up any XML
+   * file the portfolio was migrated from.
+   */
+  @Override
+  public void saveSnapshot(String name, long journalSeq, List<Stock> stocks)
+          throws IOException {
+    File file = layout.file(name + PortfolioCodec.EXTENSION);
+    AtomicFileWriter.write(file, PortfolioCodec.encode(journalSeq, stocks));
+    journal(name).clear();
+    File xml = layout.file(name + EXTENSION);
+    if (xml.exists()) {
+      backUp(xml);
+    }
+    written(name);
+    PortfolioCatalog.changed(file);
+  }
+
+  /**
+   * Migrates every flexible portfolio still saved as XML to the binary format now, as opening
+   * it would.
+   *
+   * @return the number of portfolios migrated
+   * @throws IOException if a portfolio cannot be read or written
+   */
+  int migrateToBinary() throws IOException {
+    int migrated = 0;
+    for (String label : list()) {
+      if (!layout.file(label).exists()) {
+        continue;
+      }
+      try {
+        read(baseName(label));
+      } catch (Exception e) {
+        throw new IOException("Cannot read " + label + ": " + e.getMessage(), e);
+      }
+      migrated++;
+    }
+    return migrated;
+  }
+
+  @Override
+  public void appendTrades(String name, List<Trade> trades) throws IOException {
+    List<String> records = new ArrayList<>();
+    for (Trade trade : trades) {
+      records.add(TransactionJournal.format(trade.seq, trade.position, trade.getSymbol(),
+              trade.getDate(), trade.getQuantity()));
+    }
+    TransactionJournal journal = journal(name);
+    journal.append(records);
+    written(name);
+    PortfolioCatalog.changed(journal.getFile());
+  }
+
+  @Override
+  public boolean delete(String name) {
+    File portfolio = layout.file(name + EXTENSION);
+    File binary = layout.file(name + PortfolioCodec.EXTENSION);
+    journal(name).clear();
+    boolean deleted = portfolio.delete() | binary.delete();
+    opened.remove(name);
+    PortfolioCatalog.changed(portfolio);
+    return deleted;
+  }
+
+  @Override
+  public Map<String, Strategy> loadStrategies(String name) throws Exception {
+    File file = new File(strategies, name + EXTENSION);
+    return file.exists() ? PortfolioXmlReader.readStrategies(file) : new LinkedHashMap<>();
+  }
+
+  @Override
+  public long saveStrategies(String name, Map<String, Strategy> strategies) throws IOException {
+    File file = new File(this.strategies, name + EXTENSION);
+    if (strategies.isEmpty()) {
+      if (file.exists() && !file.delete()) {
+        throw new IOException("Cannot delete " + file);
+      }
+      return 0;
+    }
+    this.strategies.mkdirs();
+    AtomicFileWriter.write(file, Strategy.renderXml(strategies), true);
+    return file.lastModified();
+  }
+
+  /**
+   * Returns the time each strategy file was last written, taken from one listing of the
+   * strategies folder.
+   */
+  @Override
+  public Map<String, Long> strategyVersions() {
+    Map<String, Long> versions = new HashMap<>();
+    File[] files = strategies.listFiles((dir, fileName) -> fileName.endsWith(EXTENSION));
+    if (files != null) {
+      for (File file : files) {
+        versions.put(baseName(file.getName()), file.lastModified());
+      }
+    }
+    return versions;
+  }
+
+  @Override
+  public Map<String, Float> holdingsOf(String symbol) throws Exception {
+    Map<String, Float> holdings = new TreeMap<>();
+    for (String label : list()) {
+      String name = baseName(label);
+      for (Stock stock : read(name).stocks()) {
+        if (stock.getSymbol().equalsIgnoreCase(symbol) && stock.getQuantity() > 0) {
+          holdings.merge(name, stock.getQuantity(), Float::sum);
+        }
+      }
+    }
+    return holdings;
+  }
+
+  @Override
+  public List<Trade> tradesBetween(String startDate, String endDate) throws Exception {
+    long start = PriceSeries.parseDay(startDate);
+    long end = PriceSeries.parseDay(endDate);
+    List<Trade> trades = new ArrayList<>();
+    for (String label : list()) {
+      String name = baseName(label);
+      List<Stock> stocks = read(name).stocks();
+      for (int s = 0; s < stocks.size(); s++) {
+        Stock stock = stocks.get(s);
+        for (int i = 0; i < stock.getTransactionCount(); i++) {
+          long day = stock.getTransactionDay(i);
+          if (day >= start && day <= end) {
+            trades.add(new Trade(name, stock.getSymbol(), LocalDate.ofEpochDay(day).toString(),
+                    stock.getTransactionQuantity(i), 0, s));
+          }
+        }
+      }
+    }
+    trades.sort(Comparator.comparing(Trade::getDate).thenComparing(Trade::getPortfolio));
+    return trades;
+  }
+
+  private static String baseName(String label) {
+    return label.substring(0, label.length() - EXTENSION.length());
+  }
+}
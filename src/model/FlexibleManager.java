@@ -1,9 +1,10 @@
 package model;
 
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.Set;
 
 /**
  * The FlexibleManager class extends Manager and implements the FlexibleManagerInterface.
@@ -12,7 +13,32 @@ import org.w3c.dom.NodeList;
  */
 public class FlexibleManager extends Manager implements FlexibleManagerInterface {
 
-  private FlexiblePortfolio currentPortfolio;
+  private final ThreadLocal<FlexiblePortfolio> currentPortfolio = new ThreadLocal<>();
+
+  /**
+   * Constructs a FlexibleManager working on the default repository.
+   */
+  public FlexibleManager() {
+    super();
+  }
+
+  /**
+   * Constructs a FlexibleManager working on the given repository.
+   *
+   * @param repository the repository the portfolios are kept in
+   */
+  public FlexibleManager(PortfolioRepository repository) {
+    super(repository);
+  }
+
+  /**
+   * Constructs a FlexibleManager working on the portfolios and prices of a workspace.
+   *
+   * @param workspace the workspace
+   */
+  public FlexibleManager(Workspace workspace) {
+    super(workspace);
+  }
 
   // Override create portfolio to create flexible portfolio instead of simple
 
@@ -32,7 +58,9 @@ public class FlexibleManager extends Manager implements FlexibleManagerInterface
     // else return validation error
     if (!name.equals("0")) {
       if (validateName(name)) {
-        currentPortfolio = new FlexiblePortfolio(name);
+        FlexiblePortfolio portfolio = new FlexiblePortfolio(name);
+        portfolio.attach(repository);
+        currentPortfolio.set(portfolio);
         return true;
       } else {
         throw new IllegalArgumentException("Invalid Name Enter Again");
@@ -58,7 +86,10 @@ public class FlexibleManager extends Manager implements FlexibleManagerInterface
       if (saveData(symbol) && stockQuantity > 0) {
         Stock stock = new Stock(symbol.toUpperCase(), stockQuantity);
         stock.transact(date, stockQuantity);
-        currentPortfolio.stocksList.add(stock);
+        FlexiblePortfolio portfolio = currentPortfolio.get();
+        synchronized (portfolio) {
+          portfolio.hold(stock);
+        }
         return "Successfully added stock";
       } else if (stockQuantity <= 0) {
         return "Cannot buy negative stock quantity";
@@ -88,10 +119,14 @@ public class FlexibleManager extends Manager implements FlexibleManagerInterface
     try {
       if (saveData(symbol)) {
         Stock temp = new Stock(symbol.toUpperCase(), 10);
+        temp.useData(workspace.data());
         float stockQuantity = stockPrice / temp.getBuyPriceOnDate(date);
         Stock stock = new Stock(symbol.toUpperCase(), stockQuantity);
         stock.transact(date, stockQuantity);
-        currentPortfolio.stocksList.add(stock);
+        FlexiblePortfolio portfolio = currentPortfolio.get();
+        synchronized (portfolio) {
+          portfolio.hold(stock);
+        }
         return "Successfully added stock";
       } else {
         return "Failed to fetch stock price for " + symbol;
@@ -112,9 +147,9 @@ public class FlexibleManager extends Manager implements FlexibleManagerInterface
    */
   @Override
   public String savePortfolio() {
-
-    if (currentPortfolio.stockLength()) {
-      return currentPortfolio.save();
+    FlexiblePortfolio portfolio = currentPortfolio.get();
+    if (portfolio.stockLength()) {
+      return portfolio.save();
     } else {
       return "Cannot Create, No Stock in portfolio";
     }
@@ -122,7 +157,7 @@ public class FlexibleManager extends Manager implements FlexibleManagerInterface
 
   /**
    * Fetches a flexible portfolio by its number in the list of portfolios. This method
-   * reads the portfolio's details from an XML representation and populates a FlexiblePortfolio
+   * reads the portfolio's details from the repository and populates a FlexiblePortfolio
    * instance with stocks.
    *
    * @param number number of the portfolio in the list used to identify which portfolio to fetch.
@@ -132,37 +167,11 @@ public class FlexibleManager extends Manager implements FlexibleManagerInterface
   @Override
   public FlexiblePortfolioInterface fetchFlexiblePortfolio(int number) throws Exception {
     if (number != 0) {
-      if (number <= returnPortfolioList().length) {
-        String name = returnPortfolioList()[number - 1];
-        Document document = readXMLDocumentFromFile(path + name);
+      String[] list = returnPortfolioList();
+      if (number <= list.length) {
+        String name = list[number - 1];
         name = name.replace(name.substring(name.length() - 4), "");
-        FlexiblePortfolio portfolio = new FlexiblePortfolio(name);
-
-        //Get all stocks
-        NodeList nList = document.getElementsByTagName("stock");
-
-        for (int temp = 0; temp < nList.getLength(); temp++) {
-          Node node = nList.item(temp);
-          if (node.getNodeType() == Node.ELEMENT_NODE) {
-            Element eElement = (Element) node;
-            String symbol = eElement.getElementsByTagName("symbol").item(0).getTextContent();
-            String[] transactDate = eElement.getElementsByTagName("transactDate").item(0)
-                    .getTextContent().split(",");
-            String[] transactQuantity = eElement.getElementsByTagName("transactQuantity")
-                    .item(0).getTextContent().split(",");
-            float quantity = Float.parseFloat(eElement.getElementsByTagName(
-                    "quantity").item(0).getTextContent());
-
-            Stock stock = new Stock(symbol, quantity);
-            for (int i = 0; i < transactDate.length; i++) {
-              stock.transact(transactDate[i], Float.parseFloat(transactQuantity[i]));
-            }
-
-            portfolio.stocksList.add(stock);
-          }
-        }
-
-        return portfolio;
+        return repository.loadFlexiblePortfolio(name);
       } else {
         throw new IllegalArgumentException("Input portfolio number does not exist");
       }
@@ -170,6 +179,103 @@ public class FlexibleManager extends Manager implements FlexibleManagerInterface
       throw new RuntimeException("Going back to main menu");
     }
   }
-}
 
+  /**
+   * Writes a portfolio to an XML file for use outside the application.
+   *
+   * @param number   the number of the portfolio in the list
+   * @param filePath the path of the XML file to write
+   * @return a String indicating the outcome of the operation
+   */
+  @Override
+  public String exportPortfolio(int number, String filePath) {
+    try {
+      FlexiblePortfolio portfolio = (FlexiblePortfolio) fetchFlexiblePortfolio(number);
+      portfolio.exportXml(new File(filePath));
+      return "Portfolio exported to " + filePath;
+    } catch (Exception e) {
+      return "Error exporting portfolio: " + e.getMessage();
+    }
+  }
+
+  /**
+   * Adds a portfolio from an XML file written by {@link #exportPortfolio(int, String)}. The
+   * portfolio is named after the file and saved to the repository.
+   *
+   * @param filePath the path of the XML file to read
+   * @return a String indicating the outcome of the operation
+   */
+  @Override
+  public String importPortfolio(String filePath) {
+    File file = new File(filePath);
+    String name = file.getName();
+    if (name.toLowerCase().endsWith(".xml")) {
+      name = name.substring(0, name.length() - 4);
+    }
+    if (!validateName(name)) {
+      return "Invalid or existing portfolio name: " + name;
+    }
+    try {
+      FlexiblePortfolio portfolio = PortfolioXmlReader.readFlexiblePortfolio(file, name, null);
+      portfolio.attach(repository);
+      return portfolio.save();
+    } catch (Exception e) {
+      return "Error importing portfolio: " + e.getMessage();
+    }
+  }
+
+  /**
+   * Imports trades in bulk from a csv file, see {@link BulkImporter}.
+   *
+   * @param filePath the path of the csv file to read
+   * @return a summary of the import listing the rejected rows
+   */
+  @Override
+  public String importTrades(String filePath) {
+    try {
+      return new BulkImporter(repository).importFile(new File(filePath)).toString();
+    } catch (IOException e) {
+      return "Error importing trades: " + e.getMessage();
+    }
+  }
 
+  /**
+   * Exports the series of every portfolio, see {@link SeriesExporter}. The indicators of a
+   * stock held by several portfolios are written once.
+   *
+   * @param startDate the start date of the period in "yyyy-MM-dd" format
+   * @param endDate   the end date of the period in "yyyy-MM-dd" format
+   * @param directory the directory the files are written to
+   * @param format    "csv", or "binary" for the compact columnar format
+   * @return a String indicating the outcome of the export
+   */
+  @Override
+  public String exportSeries(String startDate, String endDate, String directory, String format) {
+    try {
+      SeriesExporter.Format type = SeriesExporter.Format.of(format);
+      long[] days = FlexiblePortfolio.parsePeriod(startDate, endDate);
+      File folder = new File(directory);
+      Set<String> symbols = new HashSet<>();
+      int files = 0;
+      String[] labels = returnPortfolioList();
+      for (String label : labels) {
+        FlexiblePortfolio portfolio = repository.loadFlexiblePortfolio(
+                label.substring(0, label.length() - 4));
+        files += portfolio.writeSeries(days[0], days[1], folder, type, symbols);
+      }
+      return "Exported " + files + " files for " + labels.length + " portfolios to " + directory;
+    } catch (Exception e) {
+      return "Error exporting series: " + e.getMessage();
+    }
+  }
+
+  /**
+   * Runs every due strategy of every portfolio, see {@link StrategyRegistry#runDue(LocalDate)}.
+   *
+   * @return a summary of the pass listing the problems found
+   */
+  @Override
+  public String runScheduledStrategies() {
+    return StrategyRegistry.of(repository).runDue(LocalDate.now());
+  }
+}
@@ -44,4 +44,52 @@ public interface FlexibleManagerInterface extends ManagerInterface {
    *                   does not exist
    */
   FlexiblePortfolioInterface fetchFlexiblePortfolio(int number) throws Exception;
-}
\ No newline at end of file
+
+  /**
+   * Writes a portfolio to an XML file for use outside the application.
+   *
+   * @param number   the number of the portfolio in the list
+   * @param filePath the path of the XML file to write
+   * @return a String indicating the outcome of the operation
+   */
+  String exportPortfolio(int number, String filePath);
+
+  /**
+   * Adds a portfolio from an XML file written by {@link #exportPortfolio(int, String)}. The
+   * portfolio is named after the file.
+   *
+   * @param filePath the path of the XML file to read
+   * @return a String indicating the outcome of the operation
+   */
+  String importPortfolio(String filePath);
+
+  /**
+   * Imports trades in bulk from a csv file with the columns portfolio,symbol,date,quantity,amount,
+   * creating portfolios that do not exist yet. Rows that cannot be applied are reported instead
+   * of stopping the import.
+   *
+   * @param filePath the path of the csv file to read
+   * @return a summary of the import listing the rejected rows
+   */
+  String importTrades(String filePath);
+
+  /**
+   * Exports the daily value and ledger of every portfolio, and the closing price and moving
+   * averages of every stock held, between two dates, one file per series.
+   *
+   * @param startDate the start date of the period in "yyyy-MM-dd" format
+   * @param endDate   the end date of the period in "yyyy-MM-dd" format
+   * @param directory the directory the files are written to
+   * @param format    "csv", or "binary" for the compact columnar format
+   * @return a String indicating the outcome of the export
+   */
+  String exportSeries(String startDate, String endDate, String directory, String format);
+
+  /**
+   * Runs every strategy of every portfolio that is due today in one pass, opening only the
+   * portfolios with a strategy due.
+   *
+   * @return a summary of the pass listing the problems found
+   */
+  String runScheduledStrategies();
+}
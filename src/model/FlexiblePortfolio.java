@@ -1,26 +1,17 @@
 package model;
 
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.time.LocalDate;
 import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
-
-import static model.Manager.readXMLDocumentFromFile;
+import java.util.Set;
 
 /**
  * Represents a flexible portfolio that extends the basic portfolio model.
@@ -28,6 +19,17 @@ import static model.Manager.readXMLDocumentFromFile;
  * period, generating graphs based on the portfolio's performance, and more.
  */
 public class FlexiblePortfolio extends Portfolio implements FlexiblePortfolioInterface {
+  private final Object writeState = new Object();
+  private final List<Trade> pendingTrades = new ArrayList<>();
+  private boolean snapshotPending;
+  private List<Stock> writeStocks;
+  private long writeSeq;
+  private long changes;
+  private long written;
+  private long failedUpTo;
+  private IOException writeFailure;
+  private long journalSeq;
+  private int journalRecords;
 
   /**
    * Constructs a new FlexiblePortfolio object with the specified name.
@@ -40,7 +42,7 @@ public class FlexiblePortfolio extends Portfolio implements FlexiblePortfolioInt
 
   private float portfolioValue(String date) {
     float value = 0;
-    for (Stock stock : stocksList) {
+    for (Stock stock : stocks()) {
       try {
         value += (stock.getQuantityOnDate(date) * stock.getQuantityOnDate(date));
       } catch (Exception ignore) {
@@ -78,7 +80,8 @@ public class FlexiblePortfolio extends Portfolio implements FlexiblePortfolioInt
   }
 
 
-  public String rebalancePortfolio(String date, Map<String, Float> targetWeights) throws Exception {
+  public synchronized String rebalancePortfolio(String date, Map<String, Float> targetWeights)
+          throws Exception {
     float totalValue = 0;
     Map<String, Float> currentValues = new HashMap<>();
 
@@ -106,17 +109,21 @@ public class FlexiblePortfolio extends Portfolio implements FlexiblePortfolioInt
         // Need to sell stock
         float excessValue = currentStockValue - desiredStockValue;
         int sharesToSell = (int)(excessValue / price);
-        stock.transact(date, -sharesToSell);
+        if (sharesToSell > 0) {
+          stock.trade(date, -sharesToSell);
+        }
       } else if (currentStockValue < desiredStockValue) {
         // Need to buy stock
         float shortfallValue = desiredStockValue - currentStockValue;
         int sharesToBuy = (int)(shortfallValue / price);
-        stock.transact(date, sharesToBuy);
+        if (sharesToBuy > 0) {
+          stock.trade(date, sharesToBuy);
+        }
       }
     }
 
-    save();  // Save changes to the XML file
-    return "Rebalancing completed.";
+    String saved = save();
+    return saved.startsWith("Error") ? saved : "Rebalancing completed.";
   }
 
   /**
@@ -231,7 +238,7 @@ public class FlexiblePortfolio extends Portfolio implements FlexiblePortfolioInt
   @Override
   public String costBasis(String date) {
     float totalCostBasis = 0;
-    for (Stock stock : stocksList) {
+    for (Stock stock : stocks()) {
       try {
         totalCostBasis = stock.getCostBasis(date);
       } catch (Exception e) {
@@ -249,7 +256,7 @@ public class FlexiblePortfolio extends Portfolio implements FlexiblePortfolioInt
   @Override
   public List<String> listStocks() {
     List<String> list = new ArrayList<String>();
-    for (Stock stock : stocksList) {
+    for (Stock stock : stocks()) {
       list.add(stock.getSymbol());
     }
     return list;
@@ -265,22 +272,34 @@ public class FlexiblePortfolio extends Portfolio implements FlexiblePortfolioInt
    */
   @Override
   public String buyExisting(int number, String date, int quantity) {
-
-    String dates = stocksList.get(number - 1).getDates();
-
-    dates = dates.substring(dates.length() - 10);
-
-    if (!LocalDate.parse(dates).isAfter(LocalDate.parse(date))) {
-      if (quantity > 0) {
-        stocksList.get(number - 1).transact(date, quantity);
-        stocksList.get(number - 1).setQuantity(quantity);
-        return save();
+    long change;
+    synchronized (this) {
+      if (notBeforeLast(stocksList.get(number - 1), date)) {
+        if (quantity > 0) {
+          stocksList.get(number - 1).trade(date, quantity);
+          change = record(number - 1, date, quantity);
+        } else {
+          return "Cannot buy negative stocks";
+        }
       } else {
-        return "Cannot buy negative stocks";
+        return "Can only Buy more stock after the date of previous transaction";
       }
-    } else {
-      return "Can only Buy more stock after the date of previous transaction";
     }
+    return awaitWrite(change);
+  }
+
+  /**
+   * Checks that a trade on a date does not come before the last transaction of a stock. A stock
+   * without transactions can be traded on any date.
+   *
+   * @param stock the stock to trade
+   * @param date  the date of the trade in "yyyy-MM-dd" format
+   * @return true if the stock can be traded on the date
+   */
+  private static boolean notBeforeLast(Stock stock, String date) {
+    LocalDate day = LocalDate.parse(date);
+    String last = stock.getLastTransactionDate();
+    return last == null || !LocalDate.parse(last).isAfter(day);
   }
 
   /**
@@ -294,24 +313,24 @@ public class FlexiblePortfolio extends Portfolio implements FlexiblePortfolioInt
    */
   @Override
   public String sellExisting(int number, String date, int quantity) {
-    if (stocksList.get(number - 1).getQuantity() >= quantity) {
-      String dates = stocksList.get(number - 1).getDates();
-      dates = dates.substring(dates.length() - 10);
-
-      if (!LocalDate.parse(dates).isAfter(LocalDate.parse(date))) {
-        if (quantity > 0) {
-          stocksList.get(number - 1).transact(date, (-1 * quantity));
-          stocksList.get(number - 1).setQuantity(-1 * quantity);
-          return save();
+    long change;
+    synchronized (this) {
+      if (stocksList.get(number - 1).getQuantity() >= quantity) {
+        if (notBeforeLast(stocksList.get(number - 1), date)) {
+          if (quantity > 0) {
+            stocksList.get(number - 1).trade(date, -1 * quantity);
+            change = record(number - 1, date, -1 * quantity);
+          } else {
+            return "Cannot sell negative stocks";
+          }
         } else {
-          return "Cannot sell negative stocks";
+          return "Can only Sell more stock after the date of previous transaction";
         }
       } else {
-        return "Can only Sell more stock after the date of previous transaction";
+        return "Cannot sell more stocks than you have";
       }
-    } else {
-      return "Cannot sell more stocks than you have";
     }
+    return awaitWrite(change);
   }
 
   /**
@@ -322,141 +341,190 @@ public class FlexiblePortfolio extends Portfolio implements FlexiblePortfolioInt
    */
   @Override
   public StockInterface inspectStock(int number) {
-    return stocksList.get(number - 1);
+    return stocks().get(number - 1);
   }
 
   /**
-   * Deletes the strategy file located in the strategies directory
+   * Deletes the default strategy of the portfolio.
    *
    * @return A String message indicating whether the deletion was successful or failed.
    */
   private String deleteStrategy() {
-    String path = System.getProperty("user.dir") + "/strategies/";
-    File strategy = new File(path);
-    return strategy.delete() ? "Delete Successful" : "Delete Failed";
+    try {
+      return StrategyRegistry.of(repository()).remove(name, Strategy.DEFAULT_NAME)
+              ? "Delete Successful" : "Delete Failed";
+    } catch (IOException e) {
+      return "Delete Failed";
+    }
   }
 
   /**
-   * Fetches the strategy data from an XML file located in the strategies' directory .
-   * Parses the strategy information, including start date, end date, stocks, prices, and
-   * period from the XML file.
-   * Converts the list of price strings into a list of Floats, handling any number format
-   * exceptions by logging an error.
+   * Fetches the default strategy of the portfolio from the strategy registry of its repository,
+   * including start date, end date, stocks, prices, period and the date it was last executed up
+   * to.
    *
-   * @return An instance of Strategy populated with the fetched data.
-   * @throws Exception If there is an issue reading the XML file or parsing the strategy data.
+   * @return An instance of Strategy populated with the fetched data, or null if there is none.
    */
-  protected Strategy fetchStrategy() throws Exception {
-
-    String path = System.getProperty("user.dir") + "/strategies/";
-    Document document = readXMLDocumentFromFile(path + name + ".xml");
-
-    //Get all strategies
-    NodeList nList = document.getElementsByTagName("strategy");
-
-    Node node = nList.item(0);
-    Element eElement = (Element) node;
-    String startDate = eElement.getElementsByTagName("startDate").item(0).getTextContent();
-    String endDate = eElement.getElementsByTagName("endDate").item(0).getTextContent();
-
-    String[] getStocks = eElement.getElementsByTagName("stocks").item(0).getTextContent().split(",");
-
-    List<String> stocks = new ArrayList<String>(Arrays.asList(getStocks));
-
-    List<String> pricesString = Arrays.stream(eElement.getElementsByTagName("prices").item(0)
-                    .getTextContent().split(","))
-            .collect(Collectors.toList());
-    List<Float> prices = new ArrayList<>();
-    for (String priceString : pricesString) {
-      try {
-        float price = Float.parseFloat(priceString.trim());
-        prices.add(price);
-      } catch (NumberFormatException e) {
-        System.err.println("Invalid price format: " + priceString);
-      }
-    }
-
-    int period = Integer.parseInt(eElement.getElementsByTagName(
-            "period").item(0).getTextContent());
-
-    Strategy strategy = new Strategy(startDate, endDate, period, stocks, prices);
-
-    return strategy;
-
+  protected Strategy fetchStrategy() {
+    return StrategyRegistry.of(repository()).get(name, Strategy.DEFAULT_NAME);
   }
 
   /**
-   * Executes an investment strategy over a defined period, purchasing stocks based on
+   * Executes the investment strategies of the portfolio that are due, purchasing stocks based on
    * predefined criteria.
-   * Transactions occur from the strategy's start date to its end date
+   * Transactions occur from each strategy's start date to its end date
    * (or the current date if undefined),
    * with investments distributed according to the strategy's specified stock weights and periods.
+   * Only the purchases due since each strategy's last execution are made.
    */
   @Override
-  public void useStrategy() {
+  public synchronized void useStrategy() {
     try {
-      Strategy strategy = fetchStrategy();
-      LocalDate start = LocalDate.parse(strategy.getStartDate());
-      LocalDate end;
-      if (!strategy.getEndDate().equals("1")) {
-        end = LocalDate.parse(strategy.getEndDate());
-      } else {
-        end = LocalDate.now();
-      }
-      while (!start.isAfter(end)) {
-        for (int i = 0; i < strategy.getStocks().size(); i++) {
-          String dates = stocksList.get(i).getDates();
-          dates = dates.substring(dates.length() - 10);
-          try {
-            if (LocalDate.parse(dates).isBefore(start)) {
-              float quantity = (strategy.getPrices().get(i)
-                      / stocksList.get(i).getBuyPriceOnDate(start.toString()));
-              stocksList.get(i).transact(start.toString(), quantity);
-              stocksList.get(i).setQuantity(quantity);
-              save();
-            }
-          } catch (Exception e) {
-            System.out.println("");
-          }
-        }
-        start = start.plusDays(strategy.getPeriod());
+      List<String> errors = new ArrayList<>();
+      StrategyRegistry.of(repository()).run(this, LocalDate.now(), errors);
+      for (String error : errors) {
+        System.err.println("Strategy for " + name + ": " + error);
       }
     } catch (Exception e) {
-      System.out.println("");
+      System.err.println("An error occurred while running the strategy : " + e.getMessage());
+    }
+  }
+
+  @Override
+  public boolean checkStartDate(String date) {
+    boolean value = true;
+    for (Stock stock : stocks()) {
+      value = value && notBeforeLast(stock, date);
+    }
+    return value;
+  }
+
+  @Override
+  public ProjectionBands projectValue(int horizon, int paths, long seed) throws Exception {
+    List<String> symbols = new ArrayList<>();
+    List<Float> quantities = new ArrayList<>();
+    for (Stock stock : stocks()) {
+      symbols.add(stock.getSymbol());
+      quantities.add(stock.getQuantity());
+    }
+    return new MonteCarloSimulator(workspace(), symbols, quantities)
+            .simulate(horizon, paths, seed);
+  }
+
+  /**
+   * Calculates risk metrics of the portfolio's daily value, net of purchases and sales, between
+   * two dates in one pass over its cached price series.
+   *
+   * @param startDate the start date in "yyyy-MM-dd" format
+   * @param endDate   the end date in "yyyy-MM-dd" format
+   * @param benchmark the symbol beta is measured against
+   * @param window    the number of trading days in each rolling volatility window
+   * @return the risk metrics
+   * @throws Exception if price data is missing or the dates are invalid
+   */
+  @Override
+  public RiskReport calculateRisk(String startDate, String endDate, String benchmark, int window)
+          throws Exception {
+    LocalDate start = LocalDate.parse(startDate);
+    LocalDate end = LocalDate.parse(endDate);
+    if (start.isAfter(end)) {
+      throw new IllegalArgumentException("StartDate should not be greater than EndDate");
     }
+    ValuationSeries series = ValuationCache.get(this, stocks(), start.toEpochDay(),
+            end.toEpochDay());
+    return RiskAnalyzer.analyze(series, workspace().prices(benchmark), window, 0);
   }
 
   /**
-   * Checks if the strategy XML file exists in the strategies' directory.
-   * This method is useful for verifying the existence of the strategy file before attempting
-   * operations such as reading or deletion.
+   * Returns the portfolio's daily value between two dates, built from the snapshot of its
+   * stocks in one pass over their cached price series. The series is kept in the
+   * {@link ValuationCache}, which recomputes only the holdings whose prices change later.
    *
-   * @return true if the file exists, false otherwise.
+   * @param startDate the start date in "yyyy-MM-dd" format
+   * @param endDate   the end date in "yyyy-MM-dd" format
+   * @return the valuation series
+   * @throws Exception if price data is missing or the dates are invalid
    */
-  private boolean checkStrategyExists() {
-    String path = System.getProperty("user.dir") + "/strategies/";
-    String filePath = path + name + ".xml";
-    File file = new File(filePath);
+  @Override
+  public ValuationSeries valuationSeries(String startDate, String endDate) throws Exception {
+    long[] days = parsePeriod(startDate, endDate);
+    return ValuationCache.get(this, stocks(), days[0], days[1]);
+  }
 
+  /**
+   * Exports the portfolio's series between two dates, see {@link SeriesExporter}.
+   *
+   * @param startDate the start date in "yyyy-MM-dd" format
+   * @param endDate   the end date in "yyyy-MM-dd" format
+   * @param directory the directory the files are written to
+   * @param format    "csv" or "binary"
+   * @return a String indicating the outcome of the export
+   */
+  @Override
+  public String exportSeries(String startDate, String endDate, String directory, String format) {
     try {
-      if (file.exists()) {
-        return true;
-      }
+      long[] days = parsePeriod(startDate, endDate);
+      int files = writeSeries(days[0], days[1], new File(directory),
+              SeriesExporter.Format.of(format), new HashSet<>());
+      return "Exported " + files + " files to " + directory;
     } catch (Exception e) {
-      System.err.println("An error occurred while checking the strategy : " + e.getMessage());
+      return "Error exporting series: " + e.getMessage();
     }
-    return false;
   }
 
-  @Override
-  public boolean checkStartDate(String date) {
-    boolean value = true;
-    for (Stock stock : stocksList) {
-      String dates = stock.getDates();
-      dates = dates.substring(dates.length() - 10);
-      value = value && !LocalDate.parse(dates).isAfter(LocalDate.parse(date));
+  /**
+   * Parses the start and end date of a period to epoch days.
+   *
+   * @return the start and end epoch day
+   * @throws IllegalArgumentException if the start date is after the end date
+   */
+  static long[] parsePeriod(String startDate, String endDate) {
+    long start = LocalDate.parse(startDate).toEpochDay();
+    long end = LocalDate.parse(endDate).toEpochDay();
+    if (start > end) {
+      throw new IllegalArgumentException("StartDate should not be greater than EndDate");
     }
-    return value;
+    return new long[] {start, end};
+  }
+
+  /**
+   * Writes the value series and ledger of the portfolio as "name-value" and "name-ledger",
+   * and the indicators of each stock not yet in {@code written} as "SYMBOL-indicators". The
+   * tables are built from the snapshot of the stocks, so trades are not held up meanwhile.
+   *
+   * @param startDay  the first epoch day, inclusive
+   * @param endDay    the last epoch day, inclusive
+   * @param directory the directory the files are written to, created if missing
+   * @param format    the file format
+   * @param written   the symbols whose indicators were already written, updated
+   * @return the number of files written
+   * @throws Exception if price data is missing or a file cannot be written
+   */
+  int writeSeries(long startDay, long endDay, File directory, SeriesExporter.Format format,
+                  Set<String> written) throws Exception {
+    List<Stock> stocks = stocks();
+    SeriesExporter valuation = SeriesExporter.ofValuation(ValuationSeries.ofStocks(stocks,
+            startDay, endDay));
+    SeriesExporter ledger = SeriesExporter.ofLedger(stocks);
+    List<String> symbols = new ArrayList<>();
+    for (Stock stock : stocks) {
+      symbols.add(stock.getSymbol());
+    }
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Cannot create directory " + directory);
+    }
+    String extension = format.getExtension();
+    valuation.write(new File(directory, name + "-value" + extension), format);
+    ledger.write(new File(directory, name + "-ledger" + extension), format);
+    int files = 2;
+    for (String symbol : symbols) {
+      if (written.add(symbol)) {
+        SeriesExporter.ofIndicators(workspace().prices(symbol), startDay, endDay, 30, 200)
+                .write(new File(directory, symbol + "-indicators" + extension), format);
+        files++;
+      }
+    }
+    return files;
   }
 
   /**
@@ -468,7 +536,7 @@ public class FlexiblePortfolio extends Portfolio implements FlexiblePortfolioInt
   @Override
   public String composition() {
     StringBuilder output = new StringBuilder("Portfolio Name: " + name + "\r\n");
-    for (Stock stock : stocksList) {
+    for (Stock stock : stocks()) {
       output.append("--------------------\r\n");
       output.append("Symbol: ").append(stock.getSymbol()).append("\r\n");
       output.append("Transaction Dates: ").append(stock.getDates()).append("\r\n");
@@ -493,7 +561,7 @@ public class FlexiblePortfolio extends Portfolio implements FlexiblePortfolioInt
     output.append("-- Value will be displayed for last closing price if market close on date\r\n");
     output.append("-- Update portfolio from main menu if date not current\r\n");
     float value = 0.00f;
-    for (Stock stock : stocksList) {
+    for (Stock stock : stocks()) {
       output.append("--------------------\r\n");
       output.append("Symbol: ").append(stock.getSymbol()).append("\r\n");
       try {
@@ -514,33 +582,219 @@ public class FlexiblePortfolio extends Portfolio implements FlexiblePortfolioInt
   }
 
   /**
-   * Saves the current state of the portfolio to an XML file within the user's directory.
-   * Overrides method from PortfolioInterface to work with FlexiblePortfolio.
+   * Saves the current state of the portfolio to its repository, replacing the journal.
+   * Overrides method from PortfolioInterface to work with FlexiblePortfolio. The file is written
+   * by the background writer together with any other change made while it was busy, see
+   * {@link WriteBehindQueue}, and this method returns once it is on disk.
    *
    * @return a string message indicating the result of the save operation
    */
   @Override
   protected String save() {
-    String path = System.getProperty("user.dir") + "/portfolios/";
-    String fileName = name + ".xml";
-    try (BufferedWriter writer = new BufferedWriter(new FileWriter(path + fileName))) {
-      writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
-      writer.write("<portfolio>\n");
-      for (Stock stock : stocksList) {
-        writer.write("\t<stock id=\"" + stock.getSymbol() + "\">\n");
-        writer.write("\t\t<symbol>" + stock.getSymbol() + "</symbol>\n");
-
-        writer.write("\t\t<transactDate>" + stock.getDates() + "</transactDate>\n");
-        writer.write("\t\t<transactQuantity>" + stock.getQuantities() + "</transactQuantity>\n");
-
-        writer.write("\t\t<quantity>" + stock.getQuantity() + "</quantity>\n");
-        writer.write("\t</stock>\n");
+    return awaitWrite(saveLater());
+  }
+
+  /**
+   * Hands the current state of the portfolio to the background writer without waiting for it
+   * to be written, for callers saving many portfolios that wait for all of them with
+   * {@link WriteBehindQueue#flush()}.
+   *
+   * @return the number of the change, to wait for with {@link #awaitWrite(long)}
+   */
+  synchronized long saveLater() {
+    publish();
+    journalRecords = 0;
+    long change;
+    synchronized (writeState) {
+      snapshotPending = true;
+      pendingTrades.clear();
+      change = submit();
+    }
+    WriteBehindQueue.markDirty(this);
+    return change;
+  }
+
+  /**
+   * Records a single transaction already applied to a stock as a journal record, so the cost
+   * does not grow with the history. The full snapshot is rewritten instead once enough
+   * records have built up.
+   *
+   * @param index    the position of the stock in the portfolio's list
+   * @param date     the date of the transaction
+   * @param quantity the quantity bought, negative for a sale
+   * @return the number of the change, to wait for with {@link #awaitWrite(long)}
+   */
+  private synchronized long record(int index, String date, float quantity) {
+    publish();
+    journalSeq++;
+    if (journalRecords >= TransactionJournal.COMPACT_AFTER) {
+      return saveLater();
+    }
+    journalRecords++;
+    long change;
+    synchronized (writeState) {
+      if (!snapshotPending) {
+        pendingTrades.add(new Trade(name, stocksList.get(index).getSymbol(), date, quantity,
+                journalSeq, index));
+      }
+      change = submit();
+    }
+    WriteBehindQueue.markDirty(this);
+    return change;
+  }
+
+  /**
+   * Makes the published stocks and journal sequence number the state the writer writes next.
+   * Called holding both the portfolio's lock and the write state's lock.
+   */
+  private long submit() {
+    writeStocks = stocks();
+    writeSeq = journalSeq;
+    return ++changes;
+  }
+
+  /**
+   * Waits until a change has been written. The portfolio's lock is not needed by the writer, so
+   * this may be called holding it, but callers that release it first let changes made to the
+   * portfolio meanwhile be written together with theirs.
+   *
+   * @param change the number of the change
+   * @return a string message indicating the result of the save operation
+   */
+  String awaitWrite(long change) {
+    synchronized (writeState) {
+      while (written < change) {
+        if (writeFailure != null && failedUpTo >= change) {
+          return "Error saving portfolio: " + writeFailure.getMessage();
+        }
+        try {
+          writeState.wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return "Portfolio " + name + " will be saved in the background";
+        }
+      }
+    }
+    return "Portfolio saved to " + name + ".xml";
+  }
+
+  /**
+   * Writes the changes submitted since the last write to the portfolio's repository: the whole
+   * snapshot if one was requested, otherwise the pending trades in one append. The writer only
+   * takes the write state's lock, never the portfolio's. If the write fails, the callers waiting
+   * for the changes are told, and a full snapshot is written next time.
+   *
+   * @throws IOException if the changes cannot be written
+   */
+  void writePending() throws IOException {
+    List<Stock> stocks;
+    long seq;
+    List<Trade> trades;
+    long upTo;
+    synchronized (writeState) {
+      stocks = snapshotPending ? writeStocks : null;
+      snapshotPending = false;
+      seq = writeSeq;
+      trades = new ArrayList<>(pendingTrades);
+      pendingTrades.clear();
+      upTo = changes;
+    }
+    try {
+      if (stocks != null) {
+        repository().saveSnapshot(name, seq, stocks);
+      } else if (!trades.isEmpty()) {
+        repository().appendTrades(name, trades);
       }
-      writer.write("</portfolio>");
-      return "Portfolio saved to " + fileName;
     } catch (IOException e) {
-      return "Error saving portfolio: " + e.getMessage();
+      synchronized (writeState) {
+        snapshotPending = true;
+        pendingTrades.clear();
+        writeFailure = e;
+        failedUpTo = upTo;
+        writeState.notifyAll();
+      }
+      throw e;
+    }
+    synchronized (writeState) {
+      written = upTo;
+      writeFailure = null;
+      writeState.notifyAll();
+    }
+  }
+
+  /**
+   * Writes the portfolio to an XML file that can be read back with
+   * {@link FlexibleManager#importPortfolio(String)}.
+   *
+   * @param target the file to write
+   * @throws IOException if the file cannot be written
+   */
+  void exportXml(File target) throws IOException {
+    List<Stock> stocks;
+    long seq;
+    synchronized (this) {
+      stocks = stocks();
+      seq = journalSeq;
+    }
+    AtomicFileWriter.write(target, renderSnapshot(seq, stocks), false);
+  }
+
+  /**
+   * Renders the stocks of a portfolio as XML. A header listing each stock's symbol, current
+   * quantity, last transaction date and number of transactions comes before the stocks, so a
+   * portfolio can be opened without reading any ledger.
+   */
+  static String renderSnapshot(long seq, List<Stock> stocks) {
+    StringBuilder xml = new StringBuilder();
+    xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+    xml.append("<portfolio journalSeq=\"").append(seq).append("\">\n");
+    xml.append("\t<header>\n");
+    for (Stock stock : stocks) {
+      String lastDate = stock.getLastTransactionDate();
+      xml.append("\t\t<holding symbol=\"").append(stock.getSymbol())
+              .append("\" quantity=\"").append(stock.getQuantity());
+      if (lastDate != null) {
+        xml.append("\" lastDate=\"").append(lastDate);
+      }
+      xml.append("\" transactions=\"").append(stock.getTransactionCount()).append("\"/>\n");
+    }
+    xml.append("\t</header>\n");
+    for (Stock stock : stocks) {
+      xml.append("\t<stock id=\"").append(stock.getSymbol()).append("\">\n");
+      xml.append("\t\t<symbol>").append(stock.getSymbol()).append("</symbol>\n");
+
+      xml.append("\t\t<transactDate>").append(stock.getDates()).append("</transactDate>\n");
+      xml.append("\t\t<transactQuantity>").append(stock.getQuantities())
+              .append("</transactQuantity>\n");
+
+      xml.append("\t\t<quantity>").append(stock.getQuantity()).append("</quantity>\n");
+      xml.append("\t</stock>\n");
     }
+    xml.append("</portfolio>");
+    return xml.toString();
+  }
+
+  /**
+   * Returns the last journal sequence number of the portfolio's trades.
+   *
+   * @return the sequence number of the last trade recorded
+   */
+  synchronized long journalSeq() {
+    return journalSeq;
+  }
+
+  /**
+   * Replays the journaled transactions made after the snapshot this portfolio was loaded from.
+   *
+   * @param journal     the journal of the portfolio, or null if it has none
+   * @param snapshotSeq the last journal sequence number contained in the snapshot
+   * @throws Exception if the journal cannot be read or does not match the portfolio
+   */
+  synchronized void replayJournal(TransactionJournal journal, long snapshotSeq)
+          throws Exception {
+    journalSeq = journal == null ? snapshotSeq : journal.replay(stocksList, snapshotSeq);
+    journalRecords = (int) (journalSeq - snapshotSeq);
+    publish();
   }
 
   /**
@@ -553,21 +807,20 @@ public class FlexiblePortfolio extends Portfolio implements FlexiblePortfolioInt
    */
   @Override
   public String buyExistingPrice(int number, String date, float price) {
-
-    String dates = stocksList.get(number).getDates();
-
-    dates = dates.substring(dates.length() - 10);
-    try {
-      if (!LocalDate.parse(dates).isAfter(LocalDate.parse(date))) {
-        float quantity = price / stocksList.get(number).getBuyPriceOnDate(date);
-        stocksList.get(number).transact(date, quantity);
-        stocksList.get(number).setQuantity(quantity);
-        return save();
-      } else {
-        return "Can only Buy more stock after the date of previous transaction";
+    long change;
+    synchronized (this) {
+      try {
+        if (notBeforeLast(stocksList.get(number), date)) {
+          float quantity = price / stocksList.get(number).getBuyPriceOnDate(date);
+          stocksList.get(number).trade(date, quantity);
+          change = record(number, date, quantity);
+        } else {
+          return "Can only Buy more stock after the date of previous transaction";
+        }
+      } catch (Exception e) {
+        return e.getMessage();
       }
-    } catch (Exception e) {
-      return e.getMessage();
     }
+    return awaitWrite(change);
   }
 }
@@ -88,4 +88,54 @@ public interface FlexiblePortfolioInterface extends PortfolioInterface {
    * @return true if the date is valid within the context of the strategy's timeline, false otherwise.
    */
   boolean checkStartDate(String date);
+
+  /**
+   * Projects the value of the portfolio's current holdings by simulating future price paths
+   * from the historical daily returns of its stocks.
+   *
+   * @param horizon the number of trading days to project
+   * @param paths   the number of paths to simulate
+   * @param seed    the seed of the simulation, the same seed always gives the same projection
+   * @return the 5th, 50th and 95th percentile of the value for each day of the horizon
+   * @throws Exception if price data is missing or the portfolio has no value
+   */
+  ProjectionBands projectValue(int horizon, int paths, long seed) throws Exception;
+
+  /**
+   * Calculates risk metrics of the portfolio's daily value, net of purchases and sales, between
+   * two dates: annualized and rolling volatility, maximum drawdown, Sharpe and Sortino ratios
+   * and beta against a benchmark symbol.
+   *
+   * @param startDate The start date of the period in "yyyy-MM-dd" format.
+   * @param endDate   The end date of the period in "yyyy-MM-dd" format.
+   * @param benchmark The symbol of the stock or index fund beta is measured against.
+   * @param window    The number of trading days in each rolling volatility window.
+   * @return A RiskReport holding the metrics.
+   * @throws Exception If price data is missing or the dates are invalid.
+   */
+  RiskReport calculateRisk(String startDate, String endDate, String benchmark, int window)
+          throws Exception;
+
+  /**
+   * Exports the portfolio's daily value, its ledger and the closing price and 30 and 200 day
+   * moving averages of each of its stocks between two dates, one file per series.
+   *
+   * @param startDate The start date of the period in "yyyy-MM-dd" format.
+   * @param endDate   The end date of the period in "yyyy-MM-dd" format.
+   * @param directory The directory the files are written to.
+   * @param format    "csv", or "binary" for the compact columnar format.
+   * @return A String indicating the outcome of the export.
+   */
+  String exportSeries(String startDate, String endDate, String directory, String format);
+
+  /**
+   * Returns the portfolio's value at the close of each trading day between two dates, with the
+   * money moved in by purchases or out by sales on each day.
+   *
+   * @param startDate The start date of the period in "yyyy-MM-dd" format.
+   * @param endDate   The end date of the period in "yyyy-MM-dd" format.
+   * @return The daily valuation series.
+   * @throws Exception If price data is missing or the dates are invalid.
+   */
+  ValuationSeries valuationSeries(String startDate, String endDate) throws Exception;
 }
@@ -0,0 +1,49 @@
+package model;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Migrates all the flexible portfolios of a folder that are still kept as XML to the compact
+ * binary format of {@link PortfolioCodec} at once. Opening such a portfolio migrates it anyway,
+ * so this only saves the first open of each portfolio the time of reading its XML. The XML files
+ * are kept as backups ending in ".xml.bak". The migration can be run as
+ * {@code java model.FormatMigration <folder>}.
+ */
+public final class FormatMigration {
+
+  private FormatMigration() {
+  }
+
+  /**
+   * Migrates the XML portfolios of a folder to the binary format.
+   *
+   * @param folder the path of the folder holding the portfolio files
+   * @return a String indicating the outcome of the migration
+   */
+  public static String migrate(String folder) {
+    try {
+      int migrated = FilePortfolioRepository.of(new File(folder)).migrateToBinary();
+      return "Migrated " + migrated + " portfolios of " + folder + " to the binary format";
+    } catch (IOException e) {
+      return "Error migrating " + folder + ": " + e.getMessage();
+    }
+  }
+
+  /**
+   * Migrates the folder given on the command line.
+   *
+   * @param args the path of the folder
+   */
+  public static void main(String[] args) {
+    if (args.length != 1) {
+      System.err.println("Usage: java model.FormatMigration <folder>");
+      System.exit(2);
+    }
+    String result = migrate(args[0]);
+    System.out.println(result);
+    if (!result.startsWith("Migrated")) {
+      System.exit(1);
+    }
+  }
+}
@@ -0,0 +1,77 @@
+package model;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Describes the outcome of a bulk trade import: how many rows were read and applied, how many
+ * portfolios were saved, and why each rejected row was rejected.
+ */
+public class ImportReport {
+  private static final int LISTED_REJECTIONS = 50;
+
+  private final int rows;
+  private final int accepted;
+  private final int portfolios;
+  private final List<String> rejections;
+  private final long millis;
+
+  /**
+   * Constructs a report of a finished import.
+   *
+   * @param rows       the number of trade rows read
+   * @param accepted   the number of trades applied
+   * @param portfolios the number of portfolios saved
+   * @param rejections one message per rejected row, naming its line number, in line order
+   * @param millis     the time the import took, in milliseconds
+   */
+  ImportReport(int rows, int accepted, int portfolios, List<String> rejections, long millis) {
+    this.rows = rows;
+    this.accepted = accepted;
+    this.portfolios = portfolios;
+    this.rejections = Collections.unmodifiableList(rejections);
+    this.millis = millis;
+  }
+
+  public int getRows() {
+    return rows;
+  }
+
+  public int getAccepted() {
+    return accepted;
+  }
+
+  public int getPortfolios() {
+    return portfolios;
+  }
+
+  public List<String> getRejections() {
+    return rejections;
+  }
+
+  public long getMillis() {
+    return millis;
+  }
+
+  /**
+   * Summarizes the import, listing the first rejected rows.
+   *
+   * @return the summary
+   */
+  @Override
+  public String toString() {
+    StringBuilder output = new StringBuilder();
+    output.append("Imported ").append(accepted).append(" of ").append(rows)
+            .append(" trades into ").append(portfolios).append(" portfolios in ")
+            .append(millis).append(" ms\r\n");
+    output.append("Rejected rows: ").append(rejections.size()).append("\r\n");
+    for (int i = 0; i < Math.min(LISTED_REJECTIONS, rejections.size()); i++) {
+      output.append(rejections.get(i)).append("\r\n");
+    }
+    if (rejections.size() > LISTED_REJECTIONS) {
+      output.append("... and ").append(rejections.size() - LISTED_REJECTIONS)
+              .append(" more\r\n");
+    }
+    return output.toString();
+  }
+}
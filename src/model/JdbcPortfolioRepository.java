@@ -0,0 +1,632 @@
+package model;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps portfolios in a SQL database reached through JDBC, typically the embedded H2 database
+ * kept in a local file such as "jdbc:h2:./portfolios". The module declares the H2 driver; any
+ * other driver has to be on the class path. Each stock of a portfolio is a row of the holding
+ * table with its current quantity, and each trade a row of the trade table. Holdings are
+ * indexed by symbol and trades by day, so the cross-portfolio queries are index lookups instead
+ * of reading every portfolio. A saved trade is one inserted row however long the history is,
+ * and a stock's ledger is only read when it is first needed. The tables are created the first
+ * time a database is opened.
+ *
+ * <p>As with {@link FilePortfolioRepository}, a flexible portfolio is open in one instance at a
+ * time: loading it again returns the instance already open as long as the portfolio was not
+ * saved by anything else since.
+ */
+class JdbcPortfolioRepository implements PortfolioRepository {
+  private static final String EXTENSION = ".xml";
+  private static final Map<String, JdbcPortfolioRepository> REPOSITORIES =
+          new ConcurrentHashMap<>();
+  private static final String[] SCHEMA = {
+      "CREATE TABLE portfolio (name VARCHAR(255) NOT NULL PRIMARY KEY,"
+              + " lower_name VARCHAR(255) NOT NULL, journal_seq BIGINT NOT NULL,"
+              + " modified BIGINT NOT NULL)",
+      "CREATE INDEX portfolio_lower_name ON portfolio (lower_name)",
+      "CREATE TABLE holding (portfolio VARCHAR(255) NOT NULL, stock_index INTEGER NOT NULL,"
+              + " symbol VARCHAR(32) NOT NULL, quantity REAL NOT NULL, last_day INTEGER,"
+              + " transactions INTEGER NOT NULL, PRIMARY KEY (portfolio, stock_index))",
+      "CREATE INDEX holding_symbol ON holding (symbol)",
+      "CREATE TABLE trade (portfolio VARCHAR(255) NOT NULL, stock_index INTEGER NOT NULL,"
+              + " ledger_index INTEGER NOT NULL, trade_day INTEGER NOT NULL,"
+              + " quantity REAL NOT NULL, PRIMARY KEY (portfolio, stock_index, ledger_index))",
+      "CREATE INDEX trade_day ON trade (trade_day)",
+      "CREATE TABLE strategy (portfolio VARCHAR(255) NOT NULL PRIMARY KEY,"
+              + " content VARCHAR(32000) NOT NULL, modified BIGINT NOT NULL)"
+  };
+
+  private final Connection connection;
+  private final Map<String, Opened> opened = new HashMap<>();
+
+  /**
+   * The open instance of a portfolio, kept until nothing uses it, and the time the portfolio
+   * was saved when it was read or last written by it.
+   */
+  private static final class Opened {
+    private final WeakReference<FlexiblePortfolio> portfolio;
+    private final long modified;
+
+    private Opened(FlexiblePortfolio portfolio, long modified) {
+      this.portfolio = new WeakReference<>(portfolio);
+      this.modified = modified;
+    }
+  }
+
+  /**
+   * The rows of one stock of a portfolio being saved, taken from the stock before the
+   * transaction that writes them starts.
+   */
+  private static final class Holding {
+    private final String symbol;
+    private final float quantity;
+    private final String lastDate;
+    private final int[] days;
+    private final float[] quantities;
+
+    private Holding(Stock stock) {
+      int count = stock.getTransactionCount();
+      this.symbol = stock.getSymbol();
+      this.quantity = stock.getQuantity();
+      this.lastDate = stock.getLastTransactionDate();
+      this.days = new int[count];
+      this.quantities = new float[count];
+      for (int i = 0; i < count; i++) {
+        days[i] = (int) stock.getTransactionDay(i);
+        quantities[i] = stock.getTransactionQuantity(i);
+      }
+    }
+  }
+
+  /**
+   * Work done on the database inside one transaction.
+   */
+  private interface Work<T> {
+    T run() throws SQLException;
+  }
+
+  private JdbcPortfolioRepository(String url) {
+    try {
+      connection = DriverManager.getConnection(url);
+      createSchema();
+    } catch (SQLException e) {
+      throw new IllegalArgumentException("Cannot open portfolio database " + url + ": "
+              + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Returns the repository of a database, connecting to it the first time it is asked for.
+   *
+   * @param url the JDBC URL of the database
+   * @return the repository of the database
+   * @throws IllegalArgumentException if the database cannot be opened
+   */
+  static JdbcPortfolioRepository of(String url) {
+    return REPOSITORIES.computeIfAbsent(url, JdbcPortfolioRepository::new);
+  }
+
+  private void createSchema() throws SQLException {
+    try (Statement statement = connection.createStatement()) {
+      try {
+        statement.executeQuery("SELECT COUNT(*) FROM portfolio").close();
+        return;
+      } catch (SQLException e) {
+        // no tables yet
+      }
+      for (String sql : SCHEMA) {
+        statement.executeUpdate(sql);
+      }
+    }
+  }
+
+  /**
+   * Does nothing, since every query reads the database as it is.
+   */
+  @Override
+  public void refresh() {
+    // the database is always current
+  }
+
+  @Override
+  public synchronized String[] list() {
+    List<String> names = new ArrayList<>();
+    try (Statement statement = connection.createStatement();
+         ResultSet rows = statement.executeQuery("SELECT name FROM portfolio")) {
+      while (rows.next()) {
+        names.add(rows.getString(1) + EXTENSION);
+      }
+    } catch (SQLException e) {
+      throw failure(e);
+    }
+    Collections.sort(names);
+    return names.toArray(new String[0]);
+  }
+
+  @Override
+  public synchronized boolean exists(String name) {
+    try (PreparedStatement query = connection.prepareStatement(
+            "SELECT 1 FROM portfolio WHERE lower_name = ?")) {
+      query.setString(1, name.toLowerCase());
+      try (ResultSet rows = query.executeQuery()) {
+        return rows.next();
+      }
+    } catch (SQLException e) {
+      throw failure(e);
+    }
+  }
+
+  @Override
+  public synchronized PortfolioSummary summary(String name) {
+    try {
+      long modified;
+      try (PreparedStatement query = connection.prepareStatement(
+              "SELECT modified FROM portfolio WHERE name = ?")) {
+        query.setString(1, name);
+        try (ResultSet rows = query.executeQuery()) {
+          if (!rows.next()) {
+            return null;
+          }
+          modified = rows.getLong(1);
+        }
+      }
+      List<String> symbols = new ArrayList<>();
+      int transactions = 0;
+      try (PreparedStatement query = connection.prepareStatement("SELECT symbol, transactions"
+              + " FROM holding WHERE portfolio = ? ORDER BY stock_index")) {
+        query.setString(1, name);
+        try (ResultSet rows = query.executeQuery()) {
+          while (rows.next()) {
+            symbols.add(rows.getString(1));
+            transactions += rows.getInt(2);
+          }
+        }
+      }
+      return new PortfolioSummary(name, symbols, transactions, modified, true);
+    } catch (SQLException e) {
+      throw failure(e);
+    }
+  }
+
+  @Override
+  public synchronized Portfolio loadPortfolio(String name) throws Exception {
+    checkExists(name);
+    Portfolio portfolio = new Portfolio(name + EXTENSION);
+    try (PreparedStatement query = connection.prepareStatement(
+            "SELECT symbol, quantity FROM holding WHERE portfolio = ? ORDER BY stock_index")) {
+      query.setString(1, name);
+      try (ResultSet rows = query.executeQuery()) {
+        while (rows.next()) {
+          portfolio.addStock(rows.getString(1), (int) rows.getFloat(2));
+        }
+      }
+    }
+    portfolio.attach(this);
+    return portfolio;
+  }
+
+  /**
+   * Returns the open instance of a portfolio: the one with changes still to write, or the one
+   * last read or written if the portfolio was not saved since, or else a newly read one.
+   */
+  @Override
+  public synchronized FlexiblePortfolio loadFlexiblePortfolio(String name) throws Exception {
+    FlexiblePortfolio pending = WriteBehindQueue.pending(this, name);
+    if (pending != null) {
+      return pending;
+    }
+    long journalSeq;
+    long modified;
+    try (PreparedStatement query = connection.prepareStatement(
+            "SELECT journal_seq, modified FROM portfolio WHERE name = ?")) {
+      query.setString(1, name);
+      try (ResultSet rows = query.executeQuery()) {
+        if (!rows.next()) {
+          throw new IllegalArgumentException("Portfolio does not exist: " + name);
+        }
+        journalSeq = rows.getLong(1);
+        modified = rows.getLong(2);
+      }
+    }
+    Opened entry = opened.get(name);
+    FlexiblePortfolio open = entry == null ? null : entry.portfolio.get();
+    if (open != null && entry.modified == modified) {
+      return open;
+    }
+    FlexiblePortfolio portfolio = new FlexiblePortfolio(name);
+    try (PreparedStatement query = connection.prepareStatement("SELECT stock_index, symbol,"
+            + " quantity, last_day, transactions FROM holding WHERE portfolio = ?"
+            + " ORDER BY stock_index")) {
+      query.setString(1, name);
+      try (ResultSet rows = query.executeQuery()) {
+        while (rows.next()) {
+          int index = rows.getInt(1);
+          String symbol = rows.getString(2);
+          int lastDay = rows.getInt(4);
+          String last = rows.wasNull() ? null : LocalDate.ofEpochDay(lastDay).toString();
+          int transactions = rows.getInt(5);
+          portfolio.stocksList.add(new Stock(symbol, rows.getFloat(3), last,
+              stock -> readLedger(name, index, transactions, stock)));
+        }
+      }
+    }
+    portfolio.replayJournal(null, journalSeq);
+    portfolio.attach(this);
+    opened.put(name, new Opened(portfolio, modified));
+    return portfolio;
+  }
+
+  private void checkExists(String name) throws SQLException {
+    try (PreparedStatement query = connection.prepareStatement(
+            "SELECT 1 FROM portfolio WHERE name = ?")) {
+      query.setString(1, name);
+      try (ResultSet rows = query.executeQuery()) {
+        if (!rows.next()) {
+          throw new IllegalArgumentException("Portfolio does not exist: " + name);
+        }
+      }
+    }
+  }
+
+  /**
+   * Makes the portfolio whose changes were just written, if it is being written by the
+   * background writer, the open instance matching the saved rows.
+   */
+  private void written(String name, long modified) {
+    FlexiblePortfolio writer = WriteBehindQueue.pending(this, name);
+    if (writer == null) {
+      opened.remove(name);
+    } else {
+      opened.put(name, new Opened(writer, modified));
+    }
+  }
+
+  /**
+   * Reads the trades of one stock that were saved when the portfolio was opened.
+   *
+   * @param name         the name of the portfolio
+   * @param index        the position of the stock in the portfolio
+   * @param transactions the number of trades the stock had when the portfolio was opened
+   * @param stock        the stock the trades are added to
+   */
+  private synchronized void readLedger(String name, int index, int transactions, Stock stock) {
+    try (PreparedStatement query = connection.prepareStatement("SELECT trade_day, quantity"
+            + " FROM trade WHERE portfolio = ? AND stock_index = ? AND ledger_index < ?"
+            + " ORDER BY ledger_index")) {
+      query.setString(1, name);
+      query.setInt(2, index);
+      query.setInt(3, transactions);
+      int read = 0;
+      try (ResultSet rows = query.executeQuery()) {
+        while (rows.next()) {
+          stock.transact(LocalDate.ofEpochDay(rows.getInt(1)).toString(), rows.getFloat(2));
+          read++;
+        }
+      }
+      if (read != transactions) {
+        throw new IllegalStateException("Portfolio was saved elsewhere, open it again");
+      }
+    } catch (SQLException e) {
+      throw new IllegalStateException("Could not read transactions of " + stock.getSymbol()
+              + ": " + e.getMessage(), e);
+    }
+  }
+
+  @Override
+  public void savePortfolio(Portfolio portfolio) throws IOException {
+    replace(portfolio.name, 0, portfolio.stocks());
+  }
+
+  @Override
+  public void saveSnapshot(String name, long journalSeq, List<Stock> stocks)
+          throws IOException {
+    replace(name, journalSeq, stocks);
+  }
+
+  /**
+   * Replaces all rows of a portfolio with the given stocks and their ledgers. The ledgers are
+   * read before the transaction starts, so a ledger still to be read from the database is not
+   * read while the transaction holds the connection.
+   */
+  private void replace(String name, long journalSeq, List<Stock> stocks) throws IOException {
+    List<Holding> holdings = new ArrayList<>(stocks.size());
+    for (Stock stock : stocks) {
+      holdings.add(new Holding(stock));
+    }
+    inTransaction(() -> {
+      long modified = nextModified(name);
+      deleteRows(name);
+      try (PreparedStatement insert = connection.prepareStatement(
+              "INSERT INTO portfolio (name, lower_name, journal_seq, modified)"
+                      + " VALUES (?, ?, ?, ?)")) {
+        insert.setString(1, name);
+        insert.setString(2, name.toLowerCase());
+        insert.setLong(3, journalSeq);
+        insert.setLong(4, modified);
+        insert.executeUpdate();
+      }
+      try (PreparedStatement holding = connection.prepareStatement(
+              "INSERT INTO holding (portfolio, stock_index, symbol, quantity, last_day,"
+                      + " transactions) VALUES (?, ?, ?, ?, ?, ?)");
+           PreparedStatement trade = connection.prepareStatement(
+              "INSERT INTO trade (portfolio, stock_index, ledger_index, trade_day, quantity)"
+                      + " VALUES (?, ?, ?, ?, ?)")) {
+        for (int s = 0; s < holdings.size(); s++) {
+          Holding stock = holdings.get(s);
+          for (int i = 0; i < stock.days.length; i++) {
+            trade.setString(1, name);
+            trade.setInt(2, s);
+            trade.setInt(3, i);
+            trade.setInt(4, stock.days[i]);
+            trade.setFloat(5, stock.quantities[i]);
+            trade.addBatch();
+          }
+          holding.setString(1, name);
+          holding.setInt(2, s);
+          holding.setString(3, stock.symbol);
+          holding.setFloat(4, stock.quantity);
+          if (stock.lastDate == null) {
+            holding.setNull(5, Types.INTEGER);
+          } else {
+            holding.setInt(5, (int) PriceSeries.parseDay(stock.lastDate));
+          }
+          holding.setInt(6, stock.days.length);
+          holding.addBatch();
+        }
+        holding.executeBatch();
+        trade.executeBatch();
+      }
+      written(name, modified);
+      return null;
+    });
+  }
+
+  /**
+   * Returns the time to record a portfolio as saved at, moved past the time it was last saved
+   * at if the clock has not, so every save of a portfolio has a time of its own.
+   */
+  private long nextModified(String name) throws SQLException {
+    long modified = System.currentTimeMillis();
+    try (PreparedStatement query = connection.prepareStatement(
+            "SELECT modified FROM portfolio WHERE name = ?")) {
+      query.setString(1, name);
+      try (ResultSet rows = query.executeQuery()) {
+        if (rows.next()) {
+          modified = Math.max(modified, rows.getLong(1) + 1);
+        }
+      }
+    }
+    return modified;
+  }
+
+  /**
+   * Inserts each trade and moves the quantity, trade count and last day of its holding, all in
+   * one transaction.
+   */
+  @Override
+  public void appendTrades(String name, List<Trade> trades) throws IOException {
+    if (trades.isEmpty()) {
+      return;
+    }
+    inTransaction(() -> {
+      long modified = nextModified(name);
+      try (PreparedStatement count = connection.prepareStatement("SELECT transactions"
+              + " FROM holding WHERE portfolio = ? AND stock_index = ?");
+           PreparedStatement insert = connection.prepareStatement("INSERT INTO trade"
+                   + " (portfolio, stock_index, ledger_index, trade_day, quantity)"
+                   + " VALUES (?, ?, ?, ?, ?)");
+           PreparedStatement update = connection.prepareStatement("UPDATE holding"
+                   + " SET quantity = quantity + ?, transactions = ?, last_day = ?"
+                   + " WHERE portfolio = ? AND stock_index = ?");
+           PreparedStatement portfolio = connection.prepareStatement("UPDATE portfolio"
+                   + " SET journal_seq = ?, modified = ? WHERE name = ?")) {
+        for (Trade trade : trades) {
+          count.setString(1, name);
+          count.setInt(2, trade.position);
+          int transactions;
+          try (ResultSet rows = count.executeQuery()) {
+            if (!rows.next()) {
+              throw new SQLException("Trade does not match the saved portfolio " + name);
+            }
+            transactions = rows.getInt(1);
+          }
+          int day = (int) PriceSeries.parseDay(trade.getDate());
+          insert.setString(1, name);
+          insert.setInt(2, trade.position);
+          insert.setInt(3, transactions);
+          insert.setInt(4, day);
+          insert.setFloat(5, trade.getQuantity());
+          insert.executeUpdate();
+          update.setFloat(1, trade.getQuantity());
+          update.setInt(2, transactions + 1);
+          update.setInt(3, day);
+          update.setString(4, name);
+          update.setInt(5, trade.position);
+          update.executeUpdate();
+        }
+        portfolio.setLong(1, trades.get(trades.size() - 1).seq);
+        portfolio.setLong(2, modified);
+        portfolio.setString(3, name);
+        portfolio.executeUpdate();
+      }
+      written(name, modified);
+      return null;
+    });
+  }
+
+  @Override
+  public boolean delete(String name) throws IOException {
+    return inTransaction(() -> {
+      opened.remove(name);
+      return deleteRows(name);
+    });
+  }
+
+  private boolean deleteRows(String name) throws SQLException {
+    boolean deleted = false;
+    for (String sql : new String[] {"DELETE FROM trade WHERE portfolio = ?",
+        "DELETE FROM holding WHERE portfolio = ?", "DELETE FROM portfolio WHERE name = ?"}) {
+      try (PreparedStatement delete = connection.prepareStatement(sql)) {
+        delete.setString(1, name);
+        deleted |= delete.executeUpdate() > 0;
+      }
+    }
+    return deleted;
+  }
+
+  @Override
+  public synchronized Map<String, Strategy> loadStrategies(String name) throws Exception {
+    try (PreparedStatement query = connection.prepareStatement(
+            "SELECT content FROM strategy WHERE portfolio = ?")) {
+      query.setString(1, name);
+      try (ResultSet rows = query.executeQuery()) {
+        if (!rows.next()) {
+          return new LinkedHashMap<>();
+        }
+        return PortfolioXmlReader.readStrategies(
+                rows.getString(1).getBytes(StandardCharsets.UTF_8));
+      }
+    }
+  }
+
+  /**
+   * Saves the strategies of a portfolio as one row holding the XML of a strategy file. The
+   * version is the time of saving, moved past the previous version if the clock has not.
+   */
+  @Override
+  public long saveStrategies(String name, Map<String, Strategy> strategies) throws IOException {
+    return inTransaction(() -> {
+      long modified = System.currentTimeMillis();
+      try (PreparedStatement query = connection.prepareStatement(
+              "SELECT modified FROM strategy WHERE portfolio = ?")) {
+        query.setString(1, name);
+        try (ResultSet rows = query.executeQuery()) {
+          if (rows.next()) {
+            modified = Math.max(modified, rows.getLong(1) + 1);
+          }
+        }
+      }
+      try (PreparedStatement delete = connection.prepareStatement(
+              "DELETE FROM strategy WHERE portfolio = ?");
+           PreparedStatement insert = connection.prepareStatement(
+              "INSERT INTO strategy (portfolio, content, modified) VALUES (?, ?, ?)")) {
+        delete.setString(1, name);
+        delete.executeUpdate();
+        if (strategies.isEmpty()) {
+          return 0L;
+        }
+        insert.setString(1, name);
+        insert.setString(2, Strategy.renderXml(strategies));
+        insert.setLong(3, modified);
+        insert.executeUpdate();
+      }
+      return modified;
+    });
+  }
+
+  @Override
+  public synchronized Map<String, Long> strategyVersions() {
+    Map<String, Long> versions = new HashMap<>();
+    try (Statement statement = connection.createStatement();
+         ResultSet rows = statement.executeQuery("SELECT portfolio, modified FROM strategy")) {
+      while (rows.next()) {
+        versions.put(rows.getString(1), rows.getLong(2));
+      }
+    } catch (SQLException e) {
+      throw failure(e);
+    }
+    return versions;
+  }
+
+  /**
+   * Writes the changes still pending first, so the holdings of trades just made are found.
+   */
+  @Override
+  public Map<String, Float> holdingsOf(String symbol) throws Exception {
+    WriteBehindQueue.flush();
+    Map<String, Float> holdings = new TreeMap<>();
+    synchronized (this) {
+      try (PreparedStatement query = connection.prepareStatement("SELECT portfolio, quantity"
+              + " FROM holding WHERE symbol = ? AND quantity > 0")) {
+        query.setString(1, symbol.toUpperCase());
+        try (ResultSet rows = query.executeQuery()) {
+          while (rows.next()) {
+            holdings.merge(rows.getString(1), rows.getFloat(2), Float::sum);
+          }
+        }
+      }
+    }
+    return holdings;
+  }
+
+  /**
+   * Writes the changes still pending first, so trades just made are found.
+   */
+  @Override
+  public List<Trade> tradesBetween(String startDate, String endDate) throws Exception {
+    WriteBehindQueue.flush();
+    return savedTradesBetween(startDate, endDate);
+  }
+
+  private synchronized List<Trade> savedTradesBetween(String startDate, String endDate)
+          throws SQLException {
+    List<Trade> trades = new ArrayList<>();
+    try (PreparedStatement query = connection.prepareStatement("SELECT t.portfolio, h.symbol,"
+            + " t.trade_day, t.quantity, t.stock_index FROM trade t JOIN holding h"
+            + " ON h.portfolio = t.portfolio AND h.stock_index = t.stock_index"
+            + " WHERE t.trade_day BETWEEN ? AND ?"
+            + " ORDER BY t.trade_day, t.portfolio, t.stock_index, t.ledger_index")) {
+      query.setInt(1, (int) PriceSeries.parseDay(startDate));
+      query.setInt(2, (int) PriceSeries.parseDay(endDate));
+      try (ResultSet rows = query.executeQuery()) {
+        while (rows.next()) {
+          trades.add(new Trade(rows.getString(1), rows.getString(2),
+                  LocalDate.ofEpochDay(rows.getInt(3)).toString(), rows.getFloat(4), 0,
+                  rows.getInt(5)));
+        }
+      }
+    }
+    return trades;
+  }
+
+  private synchronized <T> T inTransaction(Work<T> work) throws IOException {
+    try {
+      connection.setAutoCommit(false);
+      try {
+        T result = work.run();
+        connection.commit();
+        return result;
+      } catch (SQLException | RuntimeException e) {
+        connection.rollback();
+        throw e;
+      } finally {
+        connection.setAutoCommit(true);
+      }
+    } catch (SQLException e) {
+      throw new IOException("Portfolio database error: " + e.getMessage(), e);
+    }
+  }
+
+  private static IllegalStateException failure(SQLException e) {
+    return new IllegalStateException("Portfolio database error: " + e.getMessage(), e);
+  }
+}
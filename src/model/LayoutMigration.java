@@ -0,0 +1,61 @@
+package model;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Moves the files of a portfolio folder or of the price data folder between the flat layout and
+ * the sharded layout of {@link DirectoryLayout}. Sharding keeps listing and opening files fast
+ * once a folder holds tens of thousands of portfolios or symbols. The application reads either
+ * layout; the migration should be run while it is not running, as
+ * {@code java model.LayoutMigration <folder> <flat|sharded>}.
+ */
+public final class LayoutMigration {
+
+  private LayoutMigration() {
+  }
+
+  /**
+   * Moves the files of a folder to a layout.
+   *
+   * @param folder the path of the folder
+   * @param layout "sharded" or "flat"
+   * @return a String indicating the outcome of the migration
+   */
+  public static String migrate(String folder, String layout) {
+    boolean sharded;
+    if ("sharded".equalsIgnoreCase(layout)) {
+      sharded = true;
+    } else if ("flat".equalsIgnoreCase(layout)) {
+      sharded = false;
+    } else {
+      return "Unknown layout " + layout + ", expected flat or sharded";
+    }
+    File directory = new File(folder);
+    try {
+      int moved = DirectoryLayout.of(directory).migrate(sharded);
+      PortfolioCatalog.layoutChanged(directory);
+      return "Moved " + moved + " files of " + folder + " to the " + layout.toLowerCase()
+              + " layout";
+    } catch (IOException e) {
+      return "Error migrating " + folder + ": " + e.getMessage();
+    }
+  }
+
+  /**
+   * Migrates the folder given on the command line.
+   *
+   * @param args the path of the folder and the layout, "flat" or "sharded"
+   */
+  public static void main(String[] args) {
+    if (args.length != 2) {
+      System.err.println("Usage: java model.LayoutMigration <folder> <flat|sharded>");
+      System.exit(2);
+    }
+    String result = migrate(args[0], args[1]);
+    System.out.println(result);
+    if (!result.startsWith("Moved")) {
+      System.exit(1);
+    }
+  }
+}
@@ -1,57 +1,49 @@
 package model;
 
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-
-import java.io.File;
-import java.io.PrintWriter;
-import java.util.Arrays;
-
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
 
 /**
  * The Manager class implements {@link ManagerInterface} is responsible for managing portfolios
  * within the application. It handles operations such as creating new portfolios, fetching
  * existing portfolios, adding stocks to portfolios, and deleting portfolios. This class
- * serves as the central point of interaction with the portfolio data stored on the file system.
+ * serves as the central point of interaction with the portfolio data kept in a
+ * {@link PortfolioRepository}.
  */
 public class Manager implements ManagerInterface {
-  protected final String path;
-  protected final File folder;
-  protected Portfolio currentPortfolio;
+  protected final PortfolioRepository repository;
+  protected final Workspace workspace;
+  // the portfolio being created, one per thread so threads creating portfolios do not mix
+  protected final ThreadLocal<Portfolio> currentPortfolio = new ThreadLocal<>();
 
   /**
-   * Constructs a Manager object, takes in path as input which specifies the folder at which the
-   * portfolios will be saved.
+   * Constructs a Manager object working on the default repository, which unless configured
+   * otherwise is the 'portfolios' folder of the user's current working directory.
    */
   public Manager() {
-    this.path = System.getProperty("user.dir") + "/portfolios/";
-    folder = new File(this.path);
+    this(PortfolioRepository.getDefault());
   }
 
   /**
-   * Reads and parses an XML document from a specified file path.
+   * Constructs a Manager object working on the given repository, with the prices of the
+   * workspace the repository belongs to.
    *
-   * @param filePath the path to the XML file to be read
-   * @return a Document object representing the parsed XML document
-   * @throws Exception if any error occurs during file reading or parsing
+   * @param repository the repository the portfolios are kept in
    */
-  protected static Document readXMLDocumentFromFile(String filePath) throws Exception {
-
-    //Get Document Builder
-    DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-    DocumentBuilder builder = factory.newDocumentBuilder();
-
-    //Build Document
-    Document document = builder.parse(new File(filePath));
-
-    //Normalize the XML Structure; It's just too important !!
-    document.getDocumentElement().normalize();
+  public Manager(PortfolioRepository repository) {
+    this(Workspace.of(repository));
+  }
 
-    return document;
+  /**
+   * Constructs a Manager object working on the portfolios and prices of a workspace.
+   *
+   * @param workspace the workspace
+   */
+  public Manager(Workspace workspace) {
+    this.workspace = workspace;
+    this.repository = workspace.getRepository();
+    repository.refresh();
   }
 
   /**
@@ -60,11 +52,46 @@ public class Manager implements ManagerInterface {
    * @return an array of strings containing the names of the portfolios
    */
   public String[] returnPortfolioList() {
-    String[] list = folder.list();
-    if (list != null) {
-      Arrays.sort(list);
+    return repository.list();
+  }
+
+  /**
+   * Returns a summary of a saved portfolio without loading it.
+   *
+   * @param number the portfolio's number in the list (1-based index)
+   * @return the symbols, transaction count and modification time of the portfolio
+   */
+  @Override
+  public PortfolioSummary getSummary(int number) {
+    String[] list = returnPortfolioList();
+    if (number < 1 || number > list.length) {
+      throw new IllegalArgumentException("Input portfolio number does not exist");
     }
-    return list;
+    String name = list[number - 1];
+    return repository.summary(name.substring(0, name.length() - 4));
+  }
+
+  /**
+   * Finds every portfolio holding a stock.
+   *
+   * @param symbol the symbol of the stock
+   * @return the quantity held by each portfolio holding the stock, by portfolio name
+   * @throws Exception if the portfolios cannot be read
+   */
+  public Map<String, Float> holdingsOf(String symbol) throws Exception {
+    return repository.holdingsOf(symbol);
+  }
+
+  /**
+   * Finds the trades made in any portfolio between two dates.
+   *
+   * @param startDate the first date in "yyyy-MM-dd" format, inclusive
+   * @param endDate   the last date in "yyyy-MM-dd" format, inclusive
+   * @return the trades ordered by date, then by portfolio name
+   * @throws Exception if the portfolios cannot be read
+   */
+  public List<Trade> tradesBetween(String startDate, String endDate) throws Exception {
+    return repository.tradesBetween(startDate, endDate);
   }
 
   /**
@@ -76,6 +103,19 @@ public class Manager implements ManagerInterface {
    * @return true if the name is valid, false otherwise
    */
   boolean validateName(String name) {
+    if (!isValidName(name)) {
+      return false;
+    }
+    return !repository.exists(name);
+  }
+
+  /**
+   * Checks the characters of a portfolio name, without checking whether the name is taken.
+   *
+   * @param name the name to check
+   * @return true if the name can be used for a portfolio
+   */
+  static boolean isValidName(String name) {
     if (name == null || name.trim().isEmpty()) {
       return false;
     }
@@ -90,19 +130,13 @@ public class Manager implements ManagerInterface {
         return false;
       }
     }
-    String[] existingPortfolios = returnPortfolioList();
-    for (String fileName : existingPortfolios) {
-      if (fileName.equalsIgnoreCase(name + ".xml")) {
-        return false;
-      }
-    }
     return true;
   }
 
   /**
    * Saves the daily time series data for a given stock symbol as a CSV file.
    * The data is fetched from the Alpha Vantage API.
-   * The CSV file is stored in the 'data' directory within the user's current working directory.
+   * The CSV file is stored in the data folder of the manager's workspace.
    *
    * @param symbol the stock symbol for which to fetch and save data
    * @return true if the data is successfully fetched and saved, false otherwise
@@ -111,19 +145,16 @@ public class Manager implements ManagerInterface {
    */
   protected boolean saveData(String symbol) {
     try {
-      URLInterface url = new AlphaVantage("EEEYJNAZOVJWJ5PQ");
+      URLInterface url = new AlphaVantage(AlphaVantage.API_KEY);
       StringBuilder sb = url.urlCall(symbol);
       if (sb.toString().contains("Error")) {
         throw new IllegalArgumentException("Incorrect Stock Symbol");
       } else if (sb.toString().contains("Information")) {
         throw new IllegalArgumentException("Exceeded number of API Calls, try again tomorrow");
       } else {
-        String path = System.getProperty("user.dir") + "/data/" + symbol + ".csv";
-        File targetFile = new File(path);
-        try (PrintWriter writer = new PrintWriter(targetFile)) {
-          writer.write(sb.toString());
-          return true;
-        }
+        AtomicFileWriter.write(workspace.dataFile(symbol), sb, false);
+        workspace.refreshed(symbol);
+        return true;
       }
     } catch (Exception e) {
       throw new IllegalArgumentException("Can't save for stock: " + symbol +
@@ -146,7 +177,9 @@ public class Manager implements ManagerInterface {
     // else return validation error
     if (!name.equals("0")) {
       if (validateName(name)) {
-        currentPortfolio = new Portfolio(name);
+        Portfolio portfolio = new Portfolio(name);
+        portfolio.attach(repository);
+        currentPortfolio.set(portfolio);
         return true;
       } else {
         throw new IllegalArgumentException("Invalid Name Enter Again");
@@ -167,7 +200,7 @@ public class Manager implements ManagerInterface {
   public String addStock(String symbol, int stockQuantity) {
     try {
       if (saveData(symbol) && stockQuantity > 0) {
-        return currentPortfolio.addStock(symbol.toUpperCase(), stockQuantity);
+        return currentPortfolio.get().addStock(symbol.toUpperCase(), stockQuantity);
       } else if (stockQuantity <= 0) {
         return "Cannot buy negative stock quantity";
       } else {
@@ -186,8 +219,9 @@ public class Manager implements ManagerInterface {
    */
   @Override
   public String savePortfolio() {
-    if (currentPortfolio.stockLength()) {
-      return currentPortfolio.save();
+    Portfolio portfolio = currentPortfolio.get();
+    if (portfolio.stockLength()) {
+      return portfolio.save();
     } else {
       return "Cannot Create, No Stock in portfolio";
     }
@@ -195,7 +229,7 @@ public class Manager implements ManagerInterface {
 
   /**
    * Fetches a portfolio by its number in the list,
-   * Populating it with stocks from its XML representation.
+   * Populating it with stocks from the repository.
    *
    * @param number the portfolio's number in the list
    * @return a Portfolio representing the fetched portfolio
@@ -204,24 +238,10 @@ public class Manager implements ManagerInterface {
   @Override
   public Portfolio fetchPortfolio(int number) throws Exception {
     if (number != 0) {
-      if (number <= returnPortfolioList().length) {
-        String name = returnPortfolioList()[number - 1];
-        Portfolio portfolio = new Portfolio(name);
-        Document document = readXMLDocumentFromFile(path + name);
-
-        NodeList nList = document.getElementsByTagName("stock");
-
-        for (int temp = 0; temp < nList.getLength(); temp++) {
-          Node node = nList.item(temp);
-          if (node.getNodeType() == Node.ELEMENT_NODE) {
-            Element eElement = (Element) node;
-            String symbol = eElement.getElementsByTagName("symbol").item(0).getTextContent();
-            int quantity = Integer.parseInt(eElement.getElementsByTagName(
-                    "quantity").item(0).getTextContent());
-            portfolio.addStock(symbol, quantity);
-          }
-        }
-        return portfolio;
+      String[] list = returnPortfolioList();
+      if (number <= list.length) {
+        String name = list[number - 1];
+        return repository.loadPortfolio(name.substring(0, name.length() - 4));
       } else {
         throw new IllegalArgumentException("Input portfolio number does not exist");
       }
@@ -241,9 +261,15 @@ public class Manager implements ManagerInterface {
   @Override
   public String deletePortfolio(int number) {
     if (number != 0) {
-      if (number <= returnPortfolioList().length) {
-        File portfolio = new File(path + returnPortfolioList()[number - 1]);
-        return portfolio.delete() ? "Delete Successful" : "Delete Failed";
+      String[] list = returnPortfolioList();
+      if (number <= list.length) {
+        String name = list[number - 1];
+        try {
+          return repository.delete(name.substring(0, name.length() - 4))
+                  ? "Delete Successful" : "Delete Failed";
+        } catch (IOException e) {
+          return "Delete Failed";
+        }
       } else {
         return "Input portfolio number does not exist";
       }
@@ -251,4 +277,14 @@ public class Manager implements ManagerInterface {
       return "Going back to main menu";
     }
   }
+
+  /**
+   * Waits until every portfolio change saved so far has been written to disk.
+   *
+   * @throws IOException if a change could not be written
+   */
+  @Override
+  public void flush() throws IOException {
+    WriteBehindQueue.flush();
+  }
 }
@@ -1,5 +1,7 @@
 package model;
 
+import java.io.IOException;
+
 /**
  * This interface represents the Manager of the stock management model portal. It defines the
  * methods of all implementations of the class such as add stock, save portfolio and more.
@@ -13,6 +15,14 @@ public interface ManagerInterface {
    */
   String[] returnPortfolioList();
 
+  /**
+   * Returns a summary of a saved portfolio without loading it.
+   *
+   * @param number The portfolio's number in the list (1-based index).
+   * @return The symbols, transaction count and modification time of the portfolio.
+   */
+  PortfolioSummary getSummary(int number);
+
   /**
    * Creates a new portfolio with the given name.
    *
@@ -61,4 +71,11 @@ public interface ManagerInterface {
    */
   String deletePortfolio(int number);
 
+  /**
+   * Waits until every change saved so far has been written to disk.
+   *
+   * @throws IOException if a change could not be written.
+   */
+  void flush() throws IOException;
+
 }
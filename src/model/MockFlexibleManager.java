@@ -39,4 +39,37 @@ public class MockFlexibleManager extends MockManager implements FlexibleManagerI
     log.append("Reached fetchPortfolio ").append(number).append(" ");
     return new MockFlexiblePortfolio(log, uniqueCode);
   }
+
+  @Override
+  public String exportPortfolio(int number, String filePath) {
+    log.append("Reached exportPortfolio ").append(number).append(" ").append(filePath)
+            .append(" ");
+    return String.valueOf(uniqueCode);
+  }
+
+  @Override
+  public String importPortfolio(String filePath) {
+    log.append("Reached importPortfolio ").append(filePath).append(" ");
+    return String.valueOf(uniqueCode);
+  }
+
+  @Override
+  public String importTrades(String filePath) {
+    log.append("Reached importTrades ").append(filePath).append(" ");
+    return String.valueOf(uniqueCode);
+  }
+
+  @Override
+  public String exportSeries(String startDate, String endDate, String directory,
+                             String format) {
+    log.append("Reached exportSeries ").append(startDate).append(" ").append(endDate)
+            .append(" ").append(directory).append(" ").append(format).append(" ");
+    return String.valueOf(uniqueCode);
+  }
+
+  @Override
+  public String runScheduledStrategies() {
+    log.append("Reached runScheduledStrategies ");
+    return String.valueOf(uniqueCode);
+  }
 }
@@ -74,4 +74,36 @@ public class MockFlexiblePortfolio extends MockPortfolio implements FlexiblePort
   public boolean checkStartDate(String date) {
     return false;
   }
+
+  @Override
+  public ProjectionBands projectValue(int horizon, int paths, long seed) {
+    log.append("Reached projectValue ").append(horizon).append(" ").append(paths).append(" ")
+            .append(seed).append(" ");
+    return new ProjectionBands(String.valueOf(uniqueCode), uniqueCode, paths, new double[0],
+            new double[0], new double[0]);
+  }
+
+  @Override
+  public RiskReport calculateRisk(String startDate, String endDate, String benchmark,
+                                  int window) {
+    log.append("Reached calculateRisk ").append(startDate).append(" ").append(endDate)
+            .append(" ").append(benchmark).append(" ").append(window).append(" ");
+    return new RiskReport(benchmark, uniqueCode, 0, 0, 0, 0, 0, window, new int[0],
+            new double[0]);
+  }
+
+  @Override
+  public String exportSeries(String startDate, String endDate, String directory,
+                             String format) {
+    log.append("Reached exportSeries ").append(startDate).append(" ").append(endDate)
+            .append(" ").append(directory).append(" ").append(format).append(" ");
+    return String.valueOf(uniqueCode);
+  }
+
+  @Override
+  public ValuationSeries valuationSeries(String startDate, String endDate) {
+    log.append("Reached valuationSeries ").append(startDate).append(" ").append(endDate)
+            .append(" ");
+    return new ValuationSeries(new int[0], new double[0], new double[0]);
+  }
 }
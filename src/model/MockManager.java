@@ -1,5 +1,7 @@
 package model;
 
+import java.util.Collections;
+
 /**
  * The MockManager class is a mock implementation of the {@link ManagerInterface},
  * designed for testing purposes. It simulates the behavior of a portfolio manager
@@ -31,6 +33,12 @@ public class MockManager implements ManagerInterface {
     return s;
   }
 
+  @Override
+  public PortfolioSummary getSummary(int number) {
+    log.append("Reached getSummary ").append(number).append(" ");
+    return new PortfolioSummary(String.valueOf(uniqueCode), Collections.emptyList(), 0, 0, true);
+  }
+
   @Override
   public boolean createPortfolio(String portfolioName) throws IllegalArgumentException {
     log.append("Reached createPortfolio ");
@@ -60,4 +68,9 @@ public class MockManager implements ManagerInterface {
     log.append("Reached deletePortfolio ").append(number);
     return String.valueOf(uniqueCode);
   }
+
+  @Override
+  public void flush() {
+    log.append("Reached flush ");
+  }
 }
@@ -66,4 +66,14 @@ public class MockStock implements StockInterface {
     }
     return String.valueOf(uniqueCode);
   }
+
+  @Override
+  public RiskReport calculateRisk(String startDate, String endDate, String benchmark,
+                                  int window) {
+    log.append("Reached calculateRisk with startDate: ").append(startDate).append(", endDate: ")
+            .append(endDate).append(", benchmark: ").append(benchmark).append(", window: ")
+            .append(window).append("\n");
+    return new RiskReport(benchmark, uniqueCode, 0, 0, 0, 0, 0, window, new int[0],
+            new double[0]);
+  }
 }
@@ -0,0 +1,100 @@
+package model;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * A failed model call, with the kind of failure, so callers can tell a mistyped date from a
+ * missing portfolio or a failed write without reading the message. The asynchronous model
+ * completes its futures with this exception.
+ */
+public class ModelException extends RuntimeException {
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * The kinds of failure.
+   */
+  public enum Kind {
+    /**
+     * An argument was malformed, such as a date that cannot be parsed.
+     */
+    INVALID_INPUT,
+    /**
+     * The portfolio or stock asked for does not exist.
+     */
+    NOT_FOUND,
+    /**
+     * The model refused the request, such as selling more than is held.
+     */
+    REJECTED,
+    /**
+     * There is no price data for the stock or date asked for.
+     */
+    NO_DATA,
+    /**
+     * The portfolios or price data could not be read or written.
+     */
+    STORAGE,
+    /**
+     * Any other failure.
+     */
+    FAILED
+  }
+
+  private final Kind kind;
+
+  /**
+   * Constructs an exception of a kind.
+   *
+   * @param kind    the kind of failure
+   * @param message the message describing the failure
+   * @param cause   the exception the failure was raised as, or null
+   */
+  public ModelException(Kind kind, String message, Throwable cause) {
+    super(message, cause);
+    this.kind = kind;
+  }
+
+  /**
+   * Returns the kind of failure.
+   *
+   * @return the kind
+   */
+  public Kind getKind() {
+    return kind;
+  }
+
+  /**
+   * Returns the exception a model call failed with as a model exception of the matching kind.
+   *
+   * @param e the exception, possibly wrapped by an executor or future
+   * @return the model exception
+   */
+  static ModelException of(Throwable e) {
+    while ((e instanceof CompletionException || e instanceof ExecutionException)
+            && e.getCause() != null) {
+      e = e.getCause();
+    }
+    if (e instanceof ModelException) {
+      return (ModelException) e;
+    }
+    String message = e.getMessage() == null ? e.toString() : e.getMessage();
+    Kind kind;
+    if (message.startsWith("No Data found")) {
+      kind = Kind.NO_DATA;
+    } else if (e instanceof IllegalArgumentException || e instanceof DateTimeParseException) {
+      kind = Kind.INVALID_INPUT;
+    } else if (e instanceof FileNotFoundException || e instanceof NoSuchFileException) {
+      kind = Kind.NO_DATA;
+    } else if (e instanceof IOException) {
+      kind = Kind.STORAGE;
+    } else {
+      kind = Kind.FAILED;
+    }
+    return new ModelException(kind, message, e);
+  }
+}
@@ -0,0 +1,178 @@
+package model;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Projects the future value of a set of holdings by bootstrapping historical daily returns.
+ * Every simulated day draws one whole historical trading day, so the returns of all holdings on
+ * that day move together and their correlation is preserved. Paths are simulated in parallel in
+ * fixed size chunks, each with its own {@link SplittableRandom} split from the seed, and folded
+ * into per day histograms as they are generated, so no path is ever stored and the result for a
+ * given seed does not depend on the number of threads.
+ */
+public class MonteCarloSimulator {
+  private static final int CHUNK = 2048;
+  private static final int BINS = 4000;
+  private static final double RANGE = 3.0;
+
+  private final double[] quantities;
+  private final double[] growth;
+  private final double[] lastPrices;
+  private final int symbols;
+  private final int days;
+  private final String startDate;
+
+  /**
+   * Constructs a simulator for the given holdings using the price history of each symbol.
+   *
+   * @param symbols    the symbols held
+   * @param quantities the quantity held of each symbol
+   * @throws Exception if price data is missing or the symbols share too little history
+   */
+  public MonteCarloSimulator(List<String> symbols, List<Float> quantities) throws Exception {
+    this(Workspace.getDefault(), symbols, quantities);
+  }
+
+  /**
+   * Constructs a simulator for the given holdings using the price history of each symbol in a
+   * workspace.
+   *
+   * @param workspace  the workspace whose prices are used
+   * @param symbols    the symbols held
+   * @param quantities the quantity held of each symbol
+   * @throws Exception if price data is missing or the symbols share too little history
+   */
+  public MonteCarloSimulator(Workspace workspace, List<String> symbols, List<Float> quantities)
+          throws Exception {
+    if (symbols.isEmpty() || symbols.size() != quantities.size()) {
+      throw new IllegalArgumentException("Each holding needs a symbol and a quantity");
+    }
+    this.symbols = symbols.size();
+    PriceSeries[] series = new PriceSeries[this.symbols];
+    for (int i = 0; i < this.symbols; i++) {
+      series[i] = workspace.prices(symbols.get(i));
+    }
+    int[][] aligned = PriceSeries.align(series);
+    int common = aligned[0].length;
+    if (common < 2) {
+      throw new IllegalArgumentException("Not enough common price history to simulate");
+    }
+    this.days = common - 1;
+    this.quantities = new double[this.symbols];
+    this.lastPrices = new double[this.symbols];
+    this.growth = new double[days * this.symbols];
+    for (int i = 0; i < this.symbols; i++) {
+      this.quantities[i] = quantities.get(i);
+      this.lastPrices[i] = series[i].closeAt(aligned[i][common - 1]);
+      for (int t = 0; t < days; t++) {
+        growth[t * this.symbols + i] = (double) series[i].closeAt(aligned[i][t + 1])
+                / series[i].closeAt(aligned[i][t]);
+      }
+    }
+    this.startDate = LocalDate.ofEpochDay(series[0].dayAt(aligned[0][common - 1])).toString();
+  }
+
+  /**
+   * Simulates the given number of paths over the horizon and returns the 5th, 50th and 95th
+   * percentile of the portfolio value for each day.
+   *
+   * @param horizon the number of trading days to project
+   * @param paths   the number of paths to simulate
+   * @param seed    the seed making the projection reproducible
+   * @return the percentile bands of the projection
+   * @throws Exception if the simulation is interrupted
+   */
+  public ProjectionBands simulate(int horizon, int paths, long seed) throws Exception {
+    if (horizon <= 0 || paths <= 0) {
+      throw new IllegalArgumentException("Horizon and number of paths must be greater than 0");
+    }
+    double initial = 0;
+    for (int i = 0; i < symbols; i++) {
+      initial += quantities[i] * lastPrices[i];
+    }
+    if (initial <= 0) {
+      throw new IllegalArgumentException("Portfolio has no value to project");
+    }
+    int chunks = (paths + CHUNK - 1) / CHUNK;
+    SplittableRandom root = new SplittableRandom(seed);
+    SplittableRandom[] randoms = new SplittableRandom[chunks];
+    for (int c = 0; c < chunks; c++) {
+      randoms[c] = root.split();
+    }
+
+    int threads = Math.min(chunks, Runtime.getRuntime().availableProcessors());
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    AtomicInteger next = new AtomicInteger();
+    final double start = initial;
+    List<Future<int[]>> workers = new ArrayList<>();
+    try {
+      for (int w = 0; w < threads; w++) {
+        workers.add(executor.submit(() -> {
+          int[] histogram = new int[horizon * BINS];
+          double[] prices = new double[symbols];
+          for (int c = next.getAndIncrement(); c < chunks; c = next.getAndIncrement()) {
+            int count = Math.min(CHUNK, paths - c * CHUNK);
+            simulateChunk(randoms[c], count, horizon, start, prices, histogram);
+          }
+          return histogram;
+        }));
+      }
+      int[] histogram = new int[horizon * BINS];
+      for (Future<int[]> worker : workers) {
+        int[] partial = worker.get();
+        for (int b = 0; b < histogram.length; b++) {
+          histogram[b] += partial[b];
+        }
+      }
+      double[] lower = new double[horizon];
+      double[] median = new double[horizon];
+      double[] upper = new double[horizon];
+      for (int d = 0; d < horizon; d++) {
+        lower[d] = start * Math.exp(percentile(histogram, d, paths, 0.05));
+        median[d] = start * Math.exp(percentile(histogram, d, paths, 0.50));
+        upper[d] = start * Math.exp(percentile(histogram, d, paths, 0.95));
+      }
+      return new ProjectionBands(startDate, start, paths, lower, median, upper);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private void simulateChunk(SplittableRandom random, int count, int horizon, double start,
+                             double[] prices, int[] histogram) {
+    double scale = BINS / (2 * RANGE);
+    for (int p = 0; p < count; p++) {
+      System.arraycopy(lastPrices, 0, prices, 0, symbols);
+      for (int d = 0; d < horizon; d++) {
+        int row = random.nextInt(days) * symbols;
+        double value = 0;
+        for (int i = 0; i < symbols; i++) {
+          prices[i] *= growth[row + i];
+          value += quantities[i] * prices[i];
+        }
+        int bin = (int) ((Math.log(value / start) + RANGE) * scale);
+        bin = Math.max(0, Math.min(BINS - 1, bin));
+        histogram[d * BINS + bin]++;
+      }
+    }
+  }
+
+  private static double percentile(int[] histogram, int day, int paths, double fraction) {
+    long target = (long) Math.ceil(fraction * paths);
+    long seen = 0;
+    for (int b = 0; b < BINS; b++) {
+      seen += histogram[day * BINS + b];
+      if (seen >= target) {
+        return (b + 0.5) * (2 * RANGE) / BINS - RANGE;
+      }
+    }
+    return RANGE;
+  }
+}
@@ -1,22 +1,27 @@
 package model;
 
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.PrintWriter;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
  * This class implements the {@link PortfolioInterface} and represents a portfolio of stocks,
  * allowing for adding, updating, and retrieving stock information.
+ *
+ * <p>Changes are made to {@code stocksList} while holding the portfolio's lock, one writer at a
+ * time, and become visible to readers when {@link #publish()} is called as the change is saved.
+ * Readers use {@link #stocks()}, an unchangeable snapshot of the stocks as of the last saved
+ * change, so they never take the lock, never wait for a purchase or sale and never see one
+ * half applied.
  */
 public class Portfolio implements PortfolioInterface {
   protected final String name;
   protected List<Stock> stocksList;
+  PortfolioRepository repository;
+  private volatile List<Stock> snapshot;
 
   /**
    * Constructs a new Portfolio object with the given name.
@@ -28,6 +33,37 @@ public class Portfolio implements PortfolioInterface {
     this.stocksList = new ArrayList<Stock>();
   }
 
+  /**
+   * Returns the stocks of the portfolio as of the last saved change. The list and its stocks
+   * cannot be changed and are not changed by later transactions.
+   *
+   * @return the snapshot of the stocks
+   */
+  protected List<Stock> stocks() {
+    List<Stock> stocks = snapshot;
+    if (stocks == null) {
+      synchronized (this) {
+        if (snapshot == null) {
+          publish();
+        }
+        stocks = snapshot;
+      }
+    }
+    return stocks;
+  }
+
+  /**
+   * Makes the current state of the stocks the snapshot readers see. It is called by writers,
+   * holding the portfolio's lock, once a change is complete.
+   */
+  protected synchronized void publish() {
+    List<Stock> stocks = new ArrayList<>(stocksList.size());
+    for (Stock stock : stocksList) {
+      stocks.add(stock.snapshot());
+    }
+    snapshot = Collections.unmodifiableList(stocks);
+  }
+
   /**
    * Adds a stock to the portfolio.
    *
@@ -37,10 +73,23 @@ public class Portfolio implements PortfolioInterface {
    */
   protected String addStock(String s, int quantity) {
     Stock stock = new Stock(s, quantity);
-    stocksList.add(stock);
+    hold(stock);
     return "Successfully added stock";
   }
 
+  /**
+   * Adds a stock to the stocks of the portfolio, reading its prices from the workspace of the
+   * portfolio's repository once it has one.
+   *
+   * @param stock the stock
+   */
+  void hold(Stock stock) {
+    if (repository != null) {
+      stock.useData(workspace().data());
+    }
+    stocksList.add(stock);
+  }
+
   /**
    * Checks if the portfolio contains any stocks.
    *
@@ -57,7 +106,7 @@ public class Portfolio implements PortfolioInterface {
    */
   protected String saveData(String symbol) {
     try {
-      URLInterface url = new AlphaVantage("EEEYJNAZOVJWJ5PQ");
+      URLInterface url = new AlphaVantage(AlphaVantage.API_KEY);
       StringBuilder sb = url.urlCall(symbol);
       if (sb.toString().contains("Error")) {
         return "Update Unsuccessful for stock: " + symbol +
@@ -66,12 +115,9 @@ public class Portfolio implements PortfolioInterface {
         return "Update Unsuccessful for stock: " + symbol +
                 " - Exceeded number of API Calls, try again tomorrow\r\n";
       } else {
-        String path = System.getProperty("user.dir") + "/data/" + symbol + ".csv";
-        File targetFile = new File(path);
-        try (PrintWriter writer = new PrintWriter(targetFile)) {
-          writer.write(sb.toString());
-          return "Update Successful for stock: " + symbol + "\r\n";
-        }
+        AtomicFileWriter.write(workspace().dataFile(symbol), sb, false);
+        workspace().refreshed(symbol);
+        return "Update Successful for stock: " + symbol + "\r\n";
       }
     } catch (Exception e) {
       return "Update Unsuccessful for stock: " + symbol + " - Error: " +
@@ -80,28 +126,70 @@ public class Portfolio implements PortfolioInterface {
   }
 
   /**
-   * Saves the portfolio to an XML file at the specified path.
+   * Returns the repository the portfolio was loaded from or created for.
+   *
+   * @return the portfolio's repository, or the default repository if it was given none
+   */
+  PortfolioRepository repository() {
+    return repository != null ? repository : PortfolioRepository.getDefault();
+  }
+
+  /**
+   * Returns the workspace of the portfolio's repository.
+   *
+   * @return the portfolio's workspace
+   */
+  Workspace workspace() {
+    return Workspace.of(repository());
+  }
+
+  /**
+   * Makes a repository the one the portfolio is kept in, and its workspace the one the prices
+   * of the portfolio's stocks are read from.
+   *
+   * @param repository the repository
+   */
+  void attach(PortfolioRepository repository) {
+    this.repository = repository;
+    DirectoryLayout data = workspace().data();
+    for (Stock stock : stocksList) {
+      stock.useData(data);
+    }
+  }
+
+  /**
+   * Saves the portfolio to its repository.
    */
   protected String save() {
-    String path = System.getProperty("user.dir") + "/portfolios/";
-    String fileName = name + ".xml";
-    try (BufferedWriter writer = new BufferedWriter(new FileWriter(path + fileName))) {
-      writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
-      writer.write("<portfolio>\n");
-      for (Stock stock : stocksList) {
-        String stockId = stock.getSymbol();
-        writer.write("\t<stock id=\"" + stockId + "\">\n");
-        writer.write("\t\t<symbol>" + stock.getSymbol() + "</symbol>\n");
-        writer.write("\t\t<quantity>" + stock.getQuantity() + "</quantity>\n");
-        writer.write("\t</stock>\n");
-      }
-      writer.write("</portfolio>");
-      return "Portfolio saved to " + fileName;
+    publish();
+    try {
+      repository().savePortfolio(this);
+      return "Portfolio saved to " + name + ".xml";
     } catch (IOException e) {
       return "Error saving portfolio: " + e.getMessage();
     }
   }
 
+  /**
+   * Renders the portfolio as the XML of a simple portfolio file.
+   *
+   * @return the XML of the portfolio
+   */
+  String renderXml() {
+    StringBuilder xml = new StringBuilder();
+    xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+    xml.append("<portfolio>\n");
+    for (Stock stock : stocks()) {
+      String stockId = stock.getSymbol();
+      xml.append("\t<stock id=\"").append(stockId).append("\">\n");
+      xml.append("\t\t<symbol>").append(stock.getSymbol()).append("</symbol>\n");
+      xml.append("\t\t<quantity>").append(stock.getQuantity()).append("</quantity>\n");
+      xml.append("\t</stock>\n");
+    }
+    xml.append("</portfolio>");
+    return xml.toString();
+  }
+
   /**
    * Generates a summary of the portfolio, including the name and details of each stock.
    *
@@ -111,7 +199,7 @@ public class Portfolio implements PortfolioInterface {
   public String composition() {
     String portfolioName = name.replace(name.substring(name.length() - 4), "");
     StringBuilder output = new StringBuilder("Portfolio Name: " + portfolioName + "\r\n");
-    for (Stock stock : stocksList) {
+    for (Stock stock : stocks()) {
       output.append("--------------------\r\n");
       output.append("Symbol: ").append(stock.getSymbol()).append("\r\n");
       output.append("Quantity: ").append(stock.getQuantity()).append("\r\n");
@@ -134,7 +222,7 @@ public class Portfolio implements PortfolioInterface {
     output.append("-- Value will be displayed for last closing price if market close on date\r\n");
     output.append("-- Update portfolio from main menu if date not current\r\n");
     float value = 0.00f;
-    for (Stock stock : stocksList) {
+    for (Stock stock : stocks()) {
       output.append("--------------------\r\n");
       output.append("Symbol: ").append(stock.getSymbol()).append("\r\n");
       float quantity = stock.getQuantity();
@@ -163,7 +251,7 @@ public class Portfolio implements PortfolioInterface {
   @Override
   public String update() {
     StringBuilder output = new StringBuilder();
-    for (Stock stock : stocksList) {
+    for (Stock stock : stocks()) {
       output.append(saveData(stock.getSymbol()));
     }
     return String.valueOf(output);
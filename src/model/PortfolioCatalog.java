@@ -0,0 +1,431 @@
+package model;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An in-memory index of the portfolios saved in a folder, kept in sorted order so portfolio
+ * numbers stay stable, with a case-insensitive name lookup and a summary of each portfolio.
+ * Portfolios are listed by their ".xml" names whether they are saved as XML or in the binary
+ * format.
+ * The index is saved in the hidden file '.catalog' of the folder and reloaded when the folder is
+ * first opened, where only portfolios whose files changed size or modification time are read
+ * again. After that it is kept current by the writers of this package and by watching the
+ * folder, and its subfolders if it is sharded, for changes made by anything else; the folder is
+ * only listed again when one of its folders was modified since it was last listed, or when it
+ * cannot be watched.
+ */
+class PortfolioCatalog {
+  private static final String EXTENSION = ".xml";
+  private static final String HEADER = "portfolio-catalog 2";
+  private static final String INDEX = ".catalog";
+  private static final Map<String, PortfolioCatalog> CATALOGS = new ConcurrentHashMap<>();
+
+  private final File folder;
+  private final DirectoryLayout layout;
+  private final File index;
+  private final TreeMap<String, Entry> entries = new TreeMap<>();
+  private final Map<String, Integer> lowerCaseNames = new HashMap<>();
+  private String[] sortedNames;
+  private boolean unsaved;
+  private WatchService watcher;
+  // the modification time of each folder of the layout when it was last listed
+  private Map<File, FileTime> listed = new HashMap<>();
+
+  /**
+   * What is known about one portfolio, together with the file sizes and times it was read at.
+   */
+  private static final class Entry {
+    private long modified;
+    private long length;
+    private long journalModified;
+    private long journalLength;
+    private int snapshotTransactions;  // -1 if the snapshot could not be read
+    private int journalTransactions;
+    private List<String> symbols;
+  }
+
+  private PortfolioCatalog(File folder) {
+    this.folder = folder;
+    this.layout = DirectoryLayout.of(folder);
+    this.index = new File(folder, INDEX);
+    load();
+    startWatching();
+    rescan();
+    Runtime.getRuntime().addShutdownHook(new Thread(this::save));
+  }
+
+  /**
+   * Returns the catalog of a folder, compared with the files in the folder when it is first
+   * opened.
+   *
+   * @param folder the folder holding the portfolio files
+   * @return the catalog of the folder
+   */
+  static PortfolioCatalog of(File folder) {
+    return CATALOGS.computeIfAbsent(folder.getAbsolutePath(),
+        key -> new PortfolioCatalog(folder));
+  }
+
+  /**
+   * Tells the catalog of the file's folder, if there is one, that a portfolio or journal file
+   * was written or deleted.
+   *
+   * @param file the changed file
+   */
+  static void changed(File file) {
+    File parent = file.getAbsoluteFile().getParentFile();
+    PortfolioCatalog catalog = CATALOGS.get(parent.getPath());
+    if (catalog == null && parent.getParent() != null) {
+      catalog = CATALOGS.get(parent.getParent());
+    }
+    if (catalog != null) {
+      catalog.refresh(file.getName());
+    }
+  }
+
+  /**
+   * Tells the catalog of a folder, if there is one, that the folder's layout changed, so it
+   * watches the folders the files are now kept in and compares itself with them.
+   *
+   * @param folder the folder holding the portfolio files
+   */
+  static void layoutChanged(File folder) {
+    PortfolioCatalog catalog = CATALOGS.get(folder.getAbsolutePath());
+    if (catalog != null) {
+      catalog.register();
+      catalog.rescan();
+    }
+  }
+
+  /**
+   * Returns the file names of all portfolios in sorted order.
+   *
+   * @return the portfolio file names
+   */
+  synchronized String[] names() {
+    if (sortedNames == null) {
+      sortedNames = entries.keySet().toArray(new String[0]);
+    }
+    return sortedNames.clone();
+  }
+
+  /**
+   * Checks whether a portfolio file exists, ignoring case.
+   *
+   * @param fileName the file name to look for
+   * @return true if a portfolio with that name exists
+   */
+  synchronized boolean containsIgnoreCase(String fileName) {
+    return lowerCaseNames.containsKey(fileName.toLowerCase());
+  }
+
+  /**
+   * Returns the summary of a portfolio.
+   *
+   * @param fileName the file name of the portfolio
+   * @return the summary, or null if there is no such portfolio
+   */
+  synchronized PortfolioSummary summary(String fileName) {
+    Entry entry = entries.get(fileName);
+    if (entry == null) {
+      return null;
+    }
+    return new PortfolioSummary(baseName(fileName), new ArrayList<>(entry.symbols),
+            Math.max(0, entry.snapshotTransactions) + entry.journalTransactions,
+            Math.max(entry.modified, entry.journalModified), entry.snapshotTransactions >= 0);
+  }
+
+  /**
+   * Brings the catalog up to date with changes made outside this process that the watcher may
+   * not have reported yet. The folder is listed again only if it cannot be watched or one of its
+   * folders was modified since it was last listed, so this is cheap when nothing changed.
+   */
+  synchronized void sync() {
+    if (watcher == null || !listed.equals(modificationTimes())) {
+      rescan();
+    }
+  }
+
+  private Map<File, FileTime> modificationTimes() {
+    Map<File, FileTime> times = new HashMap<>();
+    for (File directory : layout.directories()) {
+      try {
+        times.put(directory, Files.getLastModifiedTime(directory.toPath()));
+      } catch (IOException e) {
+        times.put(directory, null);
+      }
+    }
+    return times;
+  }
+
+  /**
+   * Compares the catalog with the files in the folder, reading only the portfolios that were
+   * added or changed, and saves the index if anything differed.
+   */
+  synchronized void rescan() {
+    Map<File, FileTime> times = modificationTimes();
+    String[] files = layout.list((dir, name) -> name.endsWith(EXTENSION)
+            || name.endsWith(PortfolioCodec.EXTENSION));
+    Set<String> present = new HashSet<>();
+    for (String file : files == null ? new String[0] : files) {
+      present.add(label(file));
+    }
+    for (String name : new ArrayList<>(entries.keySet())) {
+      if (!present.contains(name)) {
+        remove(name);
+      }
+    }
+    for (String name : present) {
+      update(name);
+    }
+    listed = times;
+    save();
+  }
+
+  /**
+   * Brings the entry of one portfolio up to date.
+   *
+   * @param fileName the name of the portfolio or journal file that changed
+   */
+  synchronized void refresh(String fileName) {
+    String label = label(fileName);
+    if (label == null) {
+      return;
+    }
+    if (snapshotFile(label).isFile()) {
+      update(label);
+    } else if (entries.containsKey(label)) {
+      remove(label);
+    }
+  }
+
+  /**
+   * Returns the name a portfolio file is listed under, which ends with ".xml" whether the
+   * portfolio is saved as XML or in the binary format.
+   *
+   * @param fileName the name of a portfolio, binary portfolio or journal file
+   * @return the listed name, or null if the file does not belong to a portfolio
+   */
+  private static String label(String fileName) {
+    for (String extension : new String[] {PortfolioCodec.EXTENSION,
+        TransactionJournal.EXTENSION}) {
+      if (fileName.endsWith(extension)) {
+        return fileName.substring(0, fileName.length() - extension.length()) + EXTENSION;
+      }
+    }
+    return fileName.endsWith(EXTENSION) ? fileName : null;
+  }
+
+  private File snapshotFile(String label) {
+    File binary = layout.file(baseName(label) + PortfolioCodec.EXTENSION);
+    return binary.isFile() ? binary : layout.file(label);
+  }
+
+  private void update(String fileName) {
+    File file = snapshotFile(fileName);
+    File journal = layout.file(baseName(fileName) + TransactionJournal.EXTENSION);
+    long modified = file.lastModified();
+    long length = file.length();
+    long journalLength = journal.length();
+    Entry entry = entries.get(fileName);
+    if (entry == null) {
+      entry = new Entry();
+      add(fileName, entry);
+    } else if (entry.modified == modified && entry.length == length
+            && entry.journalLength == journalLength && entry.symbols != null) {
+      return;
+    }
+    if (entry.symbols == null || entry.modified != modified || entry.length != length) {
+      List<String> symbols = new ArrayList<>();
+      try {
+        entry.snapshotTransactions = file.getName().endsWith(PortfolioCodec.EXTENSION)
+                ? PortfolioCodec.readSummary(file, symbols)
+                : PortfolioXmlReader.readSummary(file, symbols);
+      } catch (Exception e) {
+        symbols.clear();
+        entry.snapshotTransactions = -1;
+      }
+      entry.symbols = symbols;
+      entry.modified = modified;
+      entry.length = length;
+    }
+    if (entry.journalLength != journalLength) {
+      entry.journalTransactions = countRecords(journal);
+      entry.journalLength = journalLength;
+      entry.journalModified = journal.lastModified();
+    }
+    unsaved = true;
+  }
+
+  private static int countRecords(File journal) {
+    try {
+      int records = 0;
+      for (byte b : Files.readAllBytes(journal.toPath())) {
+        if (b == '\n') {
+          records++;
+        }
+      }
+      return records;
+    } catch (IOException e) {
+      return 0;
+    }
+  }
+
+  private void add(String fileName, Entry entry) {
+    entries.put(fileName, entry);
+    lowerCaseNames.merge(fileName.toLowerCase(), 1, Integer::sum);
+    sortedNames = null;
+  }
+
+  private void remove(String fileName) {
+    entries.remove(fileName);
+    lowerCaseNames.computeIfPresent(fileName.toLowerCase(),
+        (key, count) -> count == 1 ? null : count - 1);
+    sortedNames = null;
+    unsaved = true;
+  }
+
+  private static String baseName(String fileName) {
+    return fileName.substring(0, fileName.length() - EXTENSION.length());
+  }
+
+  /**
+   * Reads the saved index. Entries are only trusted until the next rescan compares them with
+   * the files, so an index that is missing or cannot be read is simply rebuilt.
+   */
+  private synchronized void load() {
+    if (!index.isFile()) {
+      return;
+    }
+    try (BufferedReader reader = new BufferedReader(new FileReader(index))) {
+      if (!HEADER.equals(reader.readLine())) {
+        return;
+      }
+      String line;
+      while ((line = reader.readLine()) != null) {
+        String[] fields = line.split("\t", -1);
+        if (fields.length != 8) {
+          continue;
+        }
+        Entry entry = new Entry();
+        entry.modified = Long.parseLong(fields[1]);
+        entry.length = Long.parseLong(fields[2]);
+        entry.journalModified = Long.parseLong(fields[3]);
+        entry.journalLength = Long.parseLong(fields[4]);
+        entry.snapshotTransactions = Integer.parseInt(fields[5]);
+        entry.journalTransactions = Integer.parseInt(fields[6]);
+        entry.symbols = new ArrayList<>();
+        if (!fields[7].isEmpty()) {
+          entry.symbols.addAll(Arrays.asList(fields[7].split(",")));
+        }
+        add(fields[0], entry);
+      }
+    } catch (IOException | NumberFormatException e) {
+      entries.clear();
+      lowerCaseNames.clear();
+      sortedNames = null;
+    }
+  }
+
+  /**
+   * Writes the index in the folder if it changed since it was last written.
+   */
+  synchronized void save() {
+    if (!unsaved || !folder.isDirectory()) {
+      return;
+    }
+    try (AtomicFileWriter writer = new AtomicFileWriter(index, false)) {
+      writer.write(HEADER + "\n");
+      for (Map.Entry<String, Entry> item : entries.entrySet()) {
+        Entry entry = item.getValue();
+        writer.write(item.getKey() + "\t" + entry.modified + "\t" + entry.length + "\t"
+                + entry.journalModified + "\t" + entry.journalLength + "\t"
+                + entry.snapshotTransactions + "\t" + entry.journalTransactions + "\t"
+                + String.join(",", entry.symbols) + "\n");
+      }
+      writer.commit();
+      unsaved = false;
+    } catch (IOException e) {
+      System.err.println("Error saving portfolio catalog: " + e.getMessage());
+    }
+  }
+
+  private void startWatching() {
+    try {
+      watcher = folder.toPath().getFileSystem().newWatchService();
+    } catch (IOException e) {
+      // without events the catalog is listed again whenever a manager is created
+      return;
+    }
+    if (!register()) {
+      return;
+    }
+    WatchService service = watcher;
+    Thread thread = new Thread(() -> watch(service), "portfolio-catalog");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Watches every folder the layout keeps files in.
+   *
+   * @return false if the portfolio folder itself cannot be watched
+   */
+  private boolean register() {
+    if (watcher == null) {
+      return false;
+    }
+    for (File directory : layout.directories()) {
+      try {
+        directory.toPath().register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+      } catch (IOException e) {
+        if (directory.equals(folder)) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  private void watch(WatchService watcher) {
+    Path root = folder.toPath();
+    try {
+      while (true) {
+        WatchKey key = watcher.take();
+        for (WatchEvent<?> event : key.pollEvents()) {
+          if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+            rescan();
+          } else {
+            refresh(event.context().toString());
+          }
+        }
+        if (!key.reset() && root.equals(key.watchable())) {
+          return;
+        }
+      }
+    } catch (InterruptedException | ClosedWatchServiceException e) {
+      // stop watching
+    }
+  }
+}
@@ -0,0 +1,224 @@
+package model;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Where portfolios and their strategies are kept. The managers and portfolios of this package
+ * read and write through a repository instead of a fixed folder, so the storage can be
+ * exchanged without touching them. {@link FilePortfolioRepository} keeps the folder layout the
+ * application has always used; {@link JdbcPortfolioRepository} keeps everything in a SQL
+ * database, where holdings and trades are indexed so the cross-portfolio queries do not have to
+ * read every portfolio.
+ *
+ * <p>Portfolios are listed under names ending in ".xml", as the application has always shown
+ * them, but every other method takes the plain name.
+ */
+public interface PortfolioRepository {
+
+  /**
+   * The system property naming the default repository: a JDBC URL, or the path of a folder of
+   * portfolio files. Without it, portfolios are kept in the 'portfolios' folder of the user's
+   * current working directory.
+   */
+  String LOCATION_PROPERTY = "portfolio.repository";
+
+  /**
+   * Returns the repository at the location given by {@link #LOCATION_PROPERTY}.
+   *
+   * @return the default repository
+   */
+  static PortfolioRepository getDefault() {
+    return open(System.getProperty(LOCATION_PROPERTY,
+            System.getProperty("user.dir") + "/portfolios/"));
+  }
+
+  /**
+   * Returns the repository at a location, opening it the first time it is asked for. Locations
+   * starting with "jdbc:" are databases, anything else is a folder of portfolio files.
+   *
+   * @param location a JDBC URL or a folder path
+   * @return the repository at the location
+   * @throws IllegalArgumentException if the database cannot be opened
+   */
+  static PortfolioRepository open(String location) {
+    return location.startsWith("jdbc:") ? JdbcPortfolioRepository.of(location)
+            : FilePortfolioRepository.of(new File(location));
+  }
+
+  /**
+   * Returns the name of a portfolio from the name it is listed under.
+   *
+   * @param label the name as listed, ending in ".xml", or the name of the portfolio
+   * @return the name without the ending
+   */
+  static String nameOf(String label) {
+    return label.endsWith(".xml") ? label.substring(0, label.length() - 4) : label;
+  }
+
+  /**
+   * Brings the list of portfolios up to date with changes made outside this process.
+   */
+  void refresh();
+
+  /**
+   * Returns the listed names of all portfolios in sorted order.
+   *
+   * @return the portfolio names, each ending in ".xml"
+   */
+  String[] list();
+
+  /**
+   * Checks whether a portfolio exists, ignoring case.
+   *
+   * @param name the name of the portfolio
+   * @return true if a portfolio with that name exists
+   */
+  boolean exists(String name);
+
+  /**
+   * Returns the summary of a portfolio without loading it.
+   *
+   * @param name the name of the portfolio
+   * @return the summary, or null if there is no such portfolio
+   */
+  PortfolioSummary summary(String name);
+
+  /**
+   * Loads a portfolio as a simple portfolio holding whole quantities. The portfolio is named by
+   * its listed name, as simple portfolios always have been.
+   *
+   * @param name the name of the portfolio
+   * @return the loaded portfolio
+   * @throws Exception if the portfolio cannot be read
+   */
+  Portfolio loadPortfolio(String name) throws Exception;
+
+  /**
+   * Loads a flexible portfolio with every trade saved so far. Ledgers may be read only when a
+   * stock first needs them.
+   *
+   * @param name the name of the portfolio
+   * @return the loaded portfolio
+   * @throws Exception if the portfolio cannot be read
+   */
+  FlexiblePortfolio loadFlexiblePortfolio(String name) throws Exception;
+
+  /**
+   * Saves a simple portfolio, replacing any portfolio of the same name.
+   *
+   * @param portfolio the portfolio to save
+   * @throws IOException if the portfolio cannot be saved
+   */
+  void savePortfolio(Portfolio portfolio) throws IOException;
+
+  /**
+   * Saves the complete state of a flexible portfolio, replacing any earlier state and trades.
+   * The state is saved in the format the portfolio is kept in.
+   *
+   * @param name       the name of the portfolio
+   * @param journalSeq the last journal sequence number contained in the state
+   * @param stocks     the stocks of the portfolio
+   * @throws IOException if the portfolio cannot be saved
+   */
+  void saveSnapshot(String name, long journalSeq, List<Stock> stocks) throws IOException;
+
+  /**
+   * Adds trades already applied to a flexible portfolio since its last snapshot.
+   *
+   * @param name   the name of the portfolio
+   * @param trades the trades, in the order they were made
+   * @throws IOException if the trades cannot be saved
+   */
+  void appendTrades(String name, List<Trade> trades) throws IOException;
+
+  /**
+   * Deletes a portfolio and any trades recorded for it.
+   *
+   * @param name the name of the portfolio
+   * @return true if there was a portfolio to delete
+   * @throws IOException if the portfolio cannot be deleted
+   */
+  boolean delete(String name) throws IOException;
+
+  /**
+   * Loads the investment strategies of a portfolio.
+   *
+   * @param name the name of the portfolio
+   * @return the strategies by name, empty if the portfolio has none
+   * @throws Exception if the strategies cannot be read
+   */
+  Map<String, Strategy> loadStrategies(String name) throws Exception;
+
+  /**
+   * Saves the investment strategies of a portfolio, replacing the earlier ones. Saving no
+   * strategies removes them.
+   *
+   * @param name       the name of the portfolio
+   * @param strategies the strategies by name
+   * @return the version of the saved strategies, see {@link #strategyVersions()}
+   * @throws IOException if the strategies cannot be saved
+   */
+  long saveStrategies(String name, Map<String, Strategy> strategies) throws IOException;
+
+  /**
+   * Returns a version of the strategies of each portfolio that has any. The version changes
+   * whenever the strategies are saved, also by another process, so a cache of them can tell
+   * which to read again without reading any.
+   *
+   * @return the version of each portfolio's strategies, by portfolio name
+   */
+  Map<String, Long> strategyVersions();
+
+  /**
+   * Loads the default investment strategy of a portfolio.
+   *
+   * @param name the name of the portfolio
+   * @return the strategy, or null if the portfolio has none
+   * @throws Exception if the strategy cannot be read
+   */
+  default Strategy loadStrategy(String name) throws Exception {
+    return loadStrategies(name).get(Strategy.DEFAULT_NAME);
+  }
+
+  /**
+   * Saves the default investment strategy of a portfolio, keeping its other strategies.
+   *
+   * @param name     the name of the portfolio
+   * @param strategy the strategy to save
+   * @throws IOException if the strategies cannot be read or saved
+   */
+  default void saveStrategy(String name, Strategy strategy) throws IOException {
+    Map<String, Strategy> strategies;
+    try {
+      strategies = loadStrategies(name);
+    } catch (IOException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new IOException(e.getMessage(), e);
+    }
+    strategies.put(Strategy.DEFAULT_NAME, strategy);
+    saveStrategies(name, strategies);
+  }
+
+  /**
+   * Finds every portfolio holding a stock.
+   *
+   * @param symbol the symbol of the stock
+   * @return the quantity held by each portfolio holding the stock, by portfolio name
+   * @throws Exception if the portfolios cannot be read
+   */
+  Map<String, Float> holdingsOf(String symbol) throws Exception;
+
+  /**
+   * Finds the trades made in any portfolio between two dates.
+   *
+   * @param startDate the first date in "yyyy-MM-dd" format, inclusive
+   * @param endDate   the last date in "yyyy-MM-dd" format, inclusive
+   * @return the trades ordered by date, then by portfolio name
+   * @throws Exception if the portfolios cannot be read
+   */
+  List<Trade> tradesBetween(String startDate, String endDate) throws Exception;
+}
@@ -0,0 +1,62 @@
+package model;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Describes a saved portfolio without loading it: the symbols it holds, the number of
+ * transactions in its ledger and when it was last changed on disk. A portfolio whose file
+ * cannot be read is described as unreadable, with no symbols.
+ */
+public class PortfolioSummary {
+  private final String name;
+  private final List<String> symbols;
+  private final int transactionCount;
+  private final long lastModified;
+  private final boolean readable;
+
+  /**
+   * Constructs a summary of a saved portfolio.
+   *
+   * @param name             the name of the portfolio
+   * @param symbols          the symbols held, in the order they are saved
+   * @param transactionCount the number of transactions in the ledger
+   * @param lastModified     the time the portfolio was last written, in milliseconds
+   * @param readable         whether the portfolio file could be read
+   */
+  PortfolioSummary(String name, List<String> symbols, int transactionCount, long lastModified,
+                   boolean readable) {
+    this.name = name;
+    this.symbols = Collections.unmodifiableList(symbols);
+    this.transactionCount = transactionCount;
+    this.lastModified = lastModified;
+    this.readable = readable;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public List<String> getSymbols() {
+    return symbols;
+  }
+
+  public int getTransactionCount() {
+    return transactionCount;
+  }
+
+  public long getLastModified() {
+    return lastModified;
+  }
+
+  public boolean isReadable() {
+    return readable;
+  }
+
+  @Override
+  public String toString() {
+    return "Portfolio Name: " + name + "\r\n"
+            + "Symbols: " + String.join(",", symbols) + "\r\n"
+            + "Transactions: " + transactionCount + "\r\n";
+  }
+}
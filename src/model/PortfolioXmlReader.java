@@ -0,0 +1,418 @@
+package model;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Reads portfolio and strategy XML files with a streaming StAX parser. Stocks and their
+ * transactions are added to the portfolio while the file is parsed, and the comma separated
+ * transaction lists are walked in place instead of being split into arrays, so loading costs
+ * time linear in the file size without building a document tree.
+ */
+final class PortfolioXmlReader {
+  private static final XMLInputFactory FACTORY = createFactory();
+
+  private PortfolioXmlReader() {
+  }
+
+  private static XMLInputFactory createFactory() {
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+    return factory;
+  }
+
+  /**
+   * Reads a flexible portfolio and the transactions journaled after the snapshot was written.
+   * If the file starts with a header, only the header is read, and the ledgers of all stocks
+   * are read in one pass when the first of them is needed; the file's checksum is compared by
+   * that pass, which reads the whole file. Older files without a header are read in full.
+   *
+   * @param file    the portfolio file
+   * @param name    the name of the portfolio
+   * @param journal the journal to replay, or null to read the file alone
+   * @return the loaded portfolio
+   * @throws Exception if the file cannot be read or is malformed
+   */
+  static FlexiblePortfolio readFlexiblePortfolio(File file, String name,
+                                                 TransactionJournal journal) throws Exception {
+    FlexiblePortfolio portfolio = new FlexiblePortfolio(name);
+    StringBuilder symbol = new StringBuilder();
+    StringBuilder dates = new StringBuilder();
+    StringBuilder quantities = new StringBuilder();
+    StringBuilder quantity = new StringBuilder();
+    StringBuilder target = null;
+    long journalSeq = 0;
+    Ledgers ledgers = null;
+    boolean headerRead = false;
+    try (InputStream in = AtomicFileWriter.openVerified(file)) {
+      XMLStreamReader reader = FACTORY.createXMLStreamReader(in);
+      try {
+        while (!headerRead && reader.hasNext()) {
+          switch (reader.next()) {
+            case XMLStreamConstants.START_ELEMENT:
+              switch (reader.getLocalName()) {
+                case "portfolio":
+                  String seq = reader.getAttributeValue(null, "journalSeq");
+                  journalSeq = seq == null ? 0 : Long.parseLong(seq);
+                  ledgers = new Ledgers(file, journalSeq);
+                  break;
+                case "holding":
+                  portfolio.stocksList.add(lazyStock(reader, ledgers,
+                          portfolio.stocksList.size()));
+                  break;
+                case "stock":
+                  symbol.setLength(0);
+                  dates.setLength(0);
+                  quantities.setLength(0);
+                  quantity.setLength(0);
+                  break;
+                case "symbol":
+                  target = symbol;
+                  break;
+                case "transactDate":
+                  target = dates;
+                  break;
+                case "transactQuantity":
+                  target = quantities;
+                  break;
+                case "quantity":
+                  target = quantity;
+                  break;
+                default:
+                  target = null;
+                  break;
+              }
+              break;
+            case XMLStreamConstants.CHARACTERS:
+              if (target != null) {
+                target.append(reader.getTextCharacters(), reader.getTextStart(),
+                        reader.getTextLength());
+              }
+              break;
+            case XMLStreamConstants.END_ELEMENT:
+              target = null;
+              if ("stock".equals(reader.getLocalName())) {
+                Stock stock = new Stock(symbol.toString().trim(),
+                        Float.parseFloat(quantity.toString().trim()));
+                addTransactions(stock, dates, quantities);
+                portfolio.stocksList.add(stock);
+              } else if ("header".equals(reader.getLocalName())) {
+                headerRead = true;
+              }
+              break;
+            default:
+              break;
+          }
+        }
+      } finally {
+        reader.close();
+      }
+    }
+    portfolio.replayJournal(journal, journalSeq);
+    return portfolio;
+  }
+
+  private static Stock lazyStock(XMLStreamReader reader, Ledgers ledgers, int index) {
+    String symbol = reader.getAttributeValue(null, "symbol");
+    return new Stock(symbol, Float.parseFloat(reader.getAttributeValue(null, "quantity")),
+        reader.getAttributeValue(null, "lastDate"), stock -> {
+          try {
+            ledgers.load(index, stock);
+          } catch (Exception e) {
+            throw new IllegalStateException("Could not read transactions of " + symbol + ": "
+                    + e.getMessage(), e);
+          }
+        });
+  }
+
+  /**
+   * The ledgers of a portfolio file opened from its header. The first stock to need its ledger
+   * reads the ledgers of every stock in one pass over the file, and the others take theirs from
+   * what was read.
+   */
+  private static final class Ledgers {
+    private final File file;
+    private final long journalSeq;
+    private List<String> dates;
+    private List<String> quantities;
+
+    Ledgers(File file, long journalSeq) {
+      this.file = file;
+      this.journalSeq = journalSeq;
+    }
+
+    /**
+     * Adds the transactions of a stock, reading the file if it has not been read yet.
+     *
+     * @param index the position of the stock in the file
+     * @param stock the stock the transactions are added to
+     * @throws Exception if the file cannot be read or was replaced since the portfolio was
+     *                   opened
+     */
+    synchronized void load(int index, Stock stock) throws Exception {
+      if (dates == null) {
+        read();
+      }
+      if (index >= dates.size()) {
+        throw new Exception("Stock " + (index + 1) + " not found in " + file.getName());
+      }
+      addTransactions(stock, dates.get(index), quantities.get(index));
+    }
+
+    private void read() throws Exception {
+      List<String> allDates = new ArrayList<>();
+      List<String> allQuantities = new ArrayList<>();
+      StringBuilder text = new StringBuilder();
+      boolean inLedger = false;
+      try (InputStream in = AtomicFileWriter.openVerified(file)) {
+        XMLStreamReader reader = FACTORY.createXMLStreamReader(in);
+        try {
+          while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+              String element = reader.getLocalName();
+              if ("portfolio".equals(element)) {
+                String seq = reader.getAttributeValue(null, "journalSeq");
+                if (seq == null || Long.parseLong(seq) != journalSeq) {
+                  throw new Exception("Portfolio was saved elsewhere, open it again");
+                }
+              } else if ("stock".equals(element)) {
+                allDates.add("");
+                allQuantities.add("");
+              }
+              inLedger = !allDates.isEmpty() && ("transactDate".equals(element)
+                      || "transactQuantity".equals(element));
+              text.setLength(0);
+            } else if (event == XMLStreamConstants.CHARACTERS && inLedger) {
+              text.append(reader.getTextCharacters(), reader.getTextStart(),
+                      reader.getTextLength());
+            } else if (event == XMLStreamConstants.END_ELEMENT && inLedger) {
+              inLedger = false;
+              int last = allDates.size() - 1;
+              if ("transactDate".equals(reader.getLocalName())) {
+                allDates.set(last, text.toString());
+              } else {
+                allQuantities.set(last, text.toString());
+              }
+            }
+          }
+        } finally {
+          reader.close();
+        }
+      }
+      dates = allDates;
+      quantities = allQuantities;
+    }
+  }
+
+  /**
+   * Walks two comma separated lists of dates and quantities side by side and records each pair
+   * as a transaction of the stock.
+   */
+  private static void addTransactions(Stock stock, CharSequence dates, CharSequence quantities) {
+    int dateStart = 0;
+    int quantityStart = 0;
+    while (dateStart < dates.length() && quantityStart < quantities.length()) {
+      int dateEnd = indexOf(dates, dateStart);
+      int quantityEnd = indexOf(quantities, quantityStart);
+      String date = dates.subSequence(dateStart, dateEnd).toString().trim();
+      String amount = quantities.subSequence(quantityStart, quantityEnd).toString().trim();
+      if (!date.isEmpty() && !amount.isEmpty()) {
+        stock.transact(date, Float.parseFloat(amount));
+      }
+      dateStart = dateEnd + 1;
+      quantityStart = quantityEnd + 1;
+    }
+  }
+
+  private static int indexOf(CharSequence text, int from) {
+    for (int i = from; i < text.length(); i++) {
+      if (text.charAt(i) == ',') {
+        return i;
+      }
+    }
+    return text.length();
+  }
+
+  /**
+   * Reads the symbols of a portfolio and counts its transactions without building the ledger,
+   * from the header alone if the file has one.
+   *
+   * @param file    the portfolio file
+   * @param symbols the list the symbols are added to
+   * @return the number of transactions in the file
+   * @throws Exception if the file cannot be read or is malformed
+   */
+  static int readSummary(File file, List<String> symbols) throws Exception {
+    int transactions = 0;
+    boolean header = false;
+    try (InputStream in = AtomicFileWriter.openVerified(file)) {
+      XMLStreamReader reader = FACTORY.createXMLStreamReader(in);
+      try {
+        while (reader.hasNext()) {
+          if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+            continue;
+          }
+          if ("holding".equals(reader.getLocalName())) {
+            header = true;
+            symbols.add(reader.getAttributeValue(null, "symbol"));
+            transactions += Integer.parseInt(reader.getAttributeValue(null, "transactions"));
+          } else if (header) {
+            break;
+          } else if ("symbol".equals(reader.getLocalName())) {
+            symbols.add(reader.getElementText().trim());
+          } else if ("transactDate".equals(reader.getLocalName())) {
+            String dates = reader.getElementText();
+            if (!dates.trim().isEmpty()) {
+              transactions++;
+              for (int i = 0; i < dates.length(); i++) {
+                if (dates.charAt(i) == ',') {
+                  transactions++;
+                }
+              }
+            }
+          }
+        }
+      } finally {
+        reader.close();
+      }
+    }
+    return transactions;
+  }
+
+  /**
+   * Reads the symbols and quantities of a simple portfolio.
+   *
+   * @param file the portfolio file
+   * @param name the name of the portfolio
+   * @return the loaded portfolio
+   * @throws Exception if the file cannot be read or is malformed
+   */
+  static Portfolio readPortfolio(File file, String name) throws Exception {
+    Portfolio portfolio = new Portfolio(name);
+    String symbol = null;
+    try (InputStream in = AtomicFileWriter.openVerified(file)) {
+      XMLStreamReader reader = FACTORY.createXMLStreamReader(in);
+      try {
+        while (reader.hasNext()) {
+          if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+            continue;
+          }
+          if ("symbol".equals(reader.getLocalName())) {
+            symbol = reader.getElementText().trim();
+          } else if ("quantity".equals(reader.getLocalName())) {
+            portfolio.addStock(symbol, Integer.parseInt(reader.getElementText().trim()));
+          }
+        }
+      } finally {
+        reader.close();
+      }
+    }
+    return portfolio;
+  }
+
+  /**
+   * Reads the investment strategies of a portfolio.
+   *
+   * @param file the strategy file
+   * @return the loaded strategies by name, in file order
+   * @throws Exception if the file cannot be read or is malformed
+   */
+  static Map<String, Strategy> readStrategies(File file) throws Exception {
+    return readStrategies(AtomicFileWriter.readVerified(file));
+  }
+
+  /**
+   * Reads the investment strategies of a portfolio from the content of a strategy file. The
+   * file holds either a single strategy element, which is the portfolio's default strategy, or
+   * a strategies element with one strategy element per name.
+   *
+   * @param data the XML of the strategies
+   * @return the loaded strategies by name, in file order
+   * @throws Exception if the strategies are malformed
+   */
+  static Map<String, Strategy> readStrategies(byte[] data) throws Exception {
+    Map<String, Strategy> strategies = new LinkedHashMap<>();
+    String name = null;
+    String startDate = null;
+    String endDate = null;
+    String lastExecuted = null;
+    int period = 0;
+    List<String> stocks = new ArrayList<>();
+    List<Float> prices = new ArrayList<>();
+    try (InputStream in = new ByteArrayInputStream(data)) {
+      XMLStreamReader reader = FACTORY.createXMLStreamReader(in);
+      try {
+        while (reader.hasNext()) {
+          int event = reader.next();
+          if (event == XMLStreamConstants.END_ELEMENT
+                  && "strategy".equals(reader.getLocalName())) {
+            Strategy strategy = new Strategy(startDate, endDate, period, stocks, prices);
+            strategy.setLastExecuted(lastExecuted);
+            strategies.put(name, strategy);
+            continue;
+          } else if (event != XMLStreamConstants.START_ELEMENT) {
+            continue;
+          }
+          switch (reader.getLocalName()) {
+            case "strategy":
+              name = reader.getAttributeValue(null, "name");
+              name = name == null ? Strategy.DEFAULT_NAME : name;
+              startDate = null;
+              endDate = null;
+              lastExecuted = null;
+              period = 0;
+              stocks = new ArrayList<>();
+              prices = new ArrayList<>();
+              break;
+            case "startDate":
+              startDate = reader.getElementText().trim();
+              break;
+            case "endDate":
+              endDate = reader.getElementText().trim();
+              break;
+            case "period":
+              period = Integer.parseInt(reader.getElementText().trim());
+              break;
+            case "lastExecuted":
+              lastExecuted = reader.getElementText().trim();
+              break;
+            case "stocks":
+              for (String stock : reader.getElementText().split(",")) {
+                stocks.add(stock.trim());
+              }
+              break;
+            case "prices":
+              for (String price : reader.getElementText().split(",")) {
+                try {
+                  prices.add(Float.parseFloat(price.trim()));
+                } catch (NumberFormatException e) {
+                  System.err.println("Invalid price format: " + price);
+                }
+              }
+              break;
+            default:
+              break;
+          }
+        }
+      } catch (XMLStreamException e) {
+        throw new Exception("Invalid strategy file: " + e.getMessage());
+      } finally {
+        reader.close();
+      }
+    }
+    return strategies;
+  }
+}
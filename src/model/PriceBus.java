@@ -0,0 +1,70 @@
+package model;
+
+import java.io.File;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+
+/**
+ * Publishes a {@link PriceUpdate} whenever the price file of a stock is rewritten with prices
+ * that differ from the ones cached, so cached valuations and open windows can recompute what
+ * the new prices affect instead of everything, or instead of waiting for the user. Subscribers
+ * are called on a thread of the bus, one update at a time and in the order of the refreshes; a
+ * subscriber that falls behind holds up the refreshes once its buffer is full.
+ */
+public final class PriceBus {
+  private static final SubmissionPublisher<PriceUpdate> PUBLISHER = new SubmissionPublisher<>(
+          Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "price-bus");
+            thread.setDaemon(true);
+            return thread;
+          }), Flow.defaultBufferSize());
+
+  private PriceBus() {
+  }
+
+  /**
+   * Subscribes to the updates published from now on.
+   *
+   * @param subscriber the subscriber
+   */
+  public static void subscribe(Flow.Subscriber<? super PriceUpdate> subscriber) {
+    PUBLISHER.subscribe(subscriber);
+  }
+
+  /**
+   * Reads the price file of a stock in the default data folder that was just written and
+   * publishes an update from the first trading day whose prices differ from the cached ones.
+   * Nothing is published if the prices did not change. The model calls it after downloading
+   * prices; whatever else replaces a price file calls it too.
+   *
+   * @param symbol the symbol of the stock
+   */
+  public static void refreshed(String symbol) {
+    refreshed(symbol, PriceCache.dataFile(symbol));
+  }
+
+  /**
+   * Reads a price file that was just written and publishes an update if its prices changed.
+   * The update names only the symbol, so subscribers of other data folders check their own
+   * prices, which did not change.
+   *
+   * @param symbol the symbol of the stock
+   * @param file   the csv file holding the prices
+   */
+  static synchronized void refreshed(String symbol, File file) {
+    PriceSeries before = PriceCache.cached(file);
+    PriceCache.invalidate(file);
+    PriceSeries after;
+    try {
+      after = PriceCache.get(symbol, file);
+    } catch (Exception e) {
+      return;
+    }
+    long first = PriceSeries.firstChange(before, after);
+    if (first != Long.MAX_VALUE) {
+      long last = after.size() == 0 ? first : after.dayAt(after.size() - 1);
+      PUBLISHER.submit(new PriceUpdate(after.getSymbol(), first, last));
+    }
+  }
+}
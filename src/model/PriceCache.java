@@ -0,0 +1,134 @@
+package model;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps parsed {@link PriceSeries} objects in memory, keyed by the data file they were read from.
+ * A cached series is reused until the file on disk changes size or modification time, so a
+ * refreshed csv file is picked up automatically on the next lookup.
+ */
+public final class PriceCache {
+  private static final Map<String, Entry> CACHE = new ConcurrentHashMap<>();
+
+  private PriceCache() {
+  }
+
+  /**
+   * Returns the default data folder, named by {@link Workspace#DATA_PROPERTY}, or else the 'data'
+   * directory of the user's current working directory.
+   *
+   * @return the layout of the directory holding the price files
+   */
+  static DirectoryLayout dataDirectory() {
+    return DirectoryLayout.of(new File(System.getProperty(Workspace.DATA_PROPERTY,
+            System.getProperty("user.dir") + "/data/")));
+  }
+
+  /**
+   * Returns the data file for a symbol in the default data folder.
+   *
+   * @param symbol the stock symbol
+   * @return the csv file holding the symbol's prices
+   */
+  static File dataFile(String symbol) {
+    return dataFile(dataDirectory(), symbol);
+  }
+
+  /**
+   * Returns the data file for a symbol in a data folder.
+   *
+   * @param data   the layout of the data folder
+   * @param symbol the stock symbol
+   * @return the csv file holding the symbol's prices
+   */
+  static File dataFile(DirectoryLayout data, String symbol) {
+    return data.file(symbol.toUpperCase() + ".csv");
+  }
+
+  /**
+   * Returns the price series for a symbol in the default data folder, loading it from disk if it
+   * is not cached or if the file has changed since it was cached.
+   *
+   * @param symbol the stock symbol
+   * @return the price series of the symbol
+   * @throws Exception if there is no data file for the symbol or it cannot be read
+   */
+  public static PriceSeries get(String symbol) throws Exception {
+    return get(symbol, dataFile(symbol));
+  }
+
+  /**
+   * Returns the price series stored in the given file, loading it from disk if it is not cached
+   * or if the file has changed since it was cached.
+   *
+   * @param symbol the stock symbol
+   * @param file   the csv file holding the symbol's prices
+   * @return the price series of the symbol
+   * @throws Exception if the file does not exist or cannot be read
+   */
+  static PriceSeries get(String symbol, File file) throws Exception {
+    String key = file.getAbsolutePath();
+    long modified = file.lastModified();
+    long length = file.length();
+    if (modified == 0L) {
+      CACHE.remove(key);
+      throw new Exception("No Data found for given stock symbol");
+    }
+    Entry entry = CACHE.get(key);
+    if (entry != null && entry.modified == modified && entry.length == length) {
+      return entry.series;
+    }
+    try {
+      PriceSeries series = PriceSeries.load(symbol.toUpperCase(), file);
+      CACHE.put(key, new Entry(series, modified, length));
+      return series;
+    } catch (IOException e) {
+      throw new Exception("No Data found for given stock symbol");
+    }
+  }
+
+  /**
+   * Returns the series read from a file as cached, without checking the file.
+   *
+   * @param file the csv file holding the prices
+   * @return the cached series, or null if none is cached
+   */
+  static PriceSeries cached(File file) {
+    Entry entry = CACHE.get(file.getAbsolutePath());
+    return entry == null ? null : entry.series;
+  }
+
+  /**
+   * Drops the cached series of a symbol in the default data folder so that the next lookup
+   * reads the file again.
+   *
+   * @param symbol the stock symbol
+   */
+  public static void invalidate(String symbol) {
+    invalidate(dataFile(symbol));
+  }
+
+  /**
+   * Drops the series cached for a file so that the next lookup reads the file again.
+   *
+   * @param file the csv file holding the prices
+   */
+  static void invalidate(File file) {
+    CACHE.remove(file.getAbsolutePath());
+  }
+
+  private static final class Entry {
+    private final PriceSeries series;
+    private final long modified;
+    private final long length;
+
+    private Entry(PriceSeries series, long modified, long length) {
+      this.series = series;
+      this.modified = modified;
+      this.length = length;
+    }
+  }
+}
@@ -0,0 +1,308 @@
+package model;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * Holds the daily price history of a single stock symbol as primitive arrays sorted by date.
+ * The data file is parsed once, after which every lookup is a binary search instead of a scan
+ * over the csv file. Instances are read only and can be shared freely.
+ */
+public final class PriceSeries {
+  private final String symbol;
+  private final int[] days;
+  private final float[] open;
+  private final float[] close;
+
+  private PriceSeries(String symbol, int[] days, float[] open, float[] close) {
+    this.symbol = symbol;
+    this.days = days;
+    this.open = open;
+    this.close = close;
+  }
+
+  /**
+   * Parses a csv file in the Alpha Vantage daily format (timestamp,open,high,low,close,volume),
+   * most recent row first, into a price series ordered from oldest to newest.
+   *
+   * @param symbol the symbol the file belongs to
+   * @param file   the csv file to read
+   * @return the parsed price series
+   * @throws IOException if the file cannot be read
+   */
+  static PriceSeries load(String symbol, File file) throws IOException {
+    int[] days = new int[4096];
+    float[] open = new float[4096];
+    float[] close = new float[4096];
+    int size = 0;
+    try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+      String line = reader.readLine();
+      while ((line = reader.readLine()) != null) {
+        if (line.length() < 10 || !Character.isDigit(line.charAt(0))) {
+          continue;
+        }
+        if (size == days.length) {
+          days = Arrays.copyOf(days, size * 2);
+          open = Arrays.copyOf(open, size * 2);
+          close = Arrays.copyOf(close, size * 2);
+        }
+        int first = line.indexOf(',');
+        int second = line.indexOf(',', first + 1);
+        int third = line.indexOf(',', second + 1);
+        int fourth = line.indexOf(',', third + 1);
+        int fifth = line.indexOf(',', fourth + 1);
+        days[size] = (int) parseDay(line);
+        open[size] = Float.parseFloat(line.substring(first + 1, second));
+        close[size] = Float.parseFloat(line.substring(fourth + 1,
+                fifth < 0 ? line.length() : fifth).trim());
+        size++;
+      }
+    }
+    days = Arrays.copyOf(days, size);
+    open = Arrays.copyOf(open, size);
+    close = Arrays.copyOf(close, size);
+    if (size > 1 && days[0] > days[size - 1]) {
+      reverse(days);
+      reverse(open);
+      reverse(close);
+    }
+    return new PriceSeries(symbol, days, open, close);
+  }
+
+  /**
+   * Converts a date in "yyyy-MM-dd" format at the start of the given text to an epoch day.
+   *
+   * @param text text beginning with a date
+   * @return the epoch day of the date
+   */
+  static long parseDay(CharSequence text) {
+    int year = (text.charAt(0) - '0') * 1000 + (text.charAt(1) - '0') * 100
+            + (text.charAt(2) - '0') * 10 + (text.charAt(3) - '0');
+    int month = (text.charAt(5) - '0') * 10 + (text.charAt(6) - '0');
+    int day = (text.charAt(8) - '0') * 10 + (text.charAt(9) - '0');
+    return LocalDate.of(year, month, day).toEpochDay();
+  }
+
+  private static void reverse(int[] array) {
+    for (int i = 0, j = array.length - 1; i < j; i++, j--) {
+      int temp = array[i];
+      array[i] = array[j];
+      array[j] = temp;
+    }
+  }
+
+  private static void reverse(float[] array) {
+    for (int i = 0, j = array.length - 1; i < j; i++, j--) {
+      float temp = array[i];
+      array[i] = array[j];
+      array[j] = temp;
+    }
+  }
+
+  /**
+   * Returns the symbol of this series.
+   *
+   * @return the stock symbol
+   */
+  public String getSymbol() {
+    return symbol;
+  }
+
+  /**
+   * Returns the number of trading days in this series.
+   *
+   * @return the number of rows
+   */
+  public int size() {
+    return days.length;
+  }
+
+  /**
+   * Returns the epoch day of the row at the given index.
+   *
+   * @param index the row index, 0 being the oldest row
+   * @return the epoch day of the row
+   */
+  public int dayAt(int index) {
+    return days[index];
+  }
+
+  /**
+   * Returns the opening price of the row at the given index.
+   *
+   * @param index the row index, 0 being the oldest row
+   * @return the opening price
+   */
+  public float openAt(int index) {
+    return open[index];
+  }
+
+  /**
+   * Returns the closing price of the row at the given index.
+   *
+   * @param index the row index, 0 being the oldest row
+   * @return the closing price
+   */
+  public float closeAt(int index) {
+    return close[index];
+  }
+
+  /**
+   * Finds the last trading day on or before the given epoch day.
+   *
+   * @param epochDay the target day
+   * @return the index of that row, or -1 if the series starts after the given day
+   */
+  public int floorIndex(long epochDay) {
+    int low = 0;
+    int high = days.length - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      if (days[mid] <= epochDay) {
+        low = mid + 1;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return high;
+  }
+
+  /**
+   * Returns the closing price for the closest trading day on or before the given date.
+   *
+   * @param epochDay the target day
+   * @return the closing price on that day
+   * @throws IllegalArgumentException if the series has no data on or before the day
+   */
+  public float priceOnDay(long epochDay) {
+    int index = floorIndex(epochDay);
+    if (index < 0) {
+      throw new IllegalArgumentException("No Data found for given Date");
+    }
+    return close[index];
+  }
+
+  /**
+   * Returns the price a purchase placed on the given day is filled at, which is the closing
+   * price of the trading day following the closest trading day on or before the given day.
+   *
+   * @param epochDay the day the purchase is placed
+   * @return the fill price
+   * @throws IllegalArgumentException if the series has no data for the fill day yet
+   */
+  public float buyPriceOnDay(long epochDay) {
+    int index = floorIndex(epochDay);
+    if (index < 0 || index + 1 >= days.length) {
+      throw new IllegalArgumentException("No Data found for given Date");
+    }
+    return close[index + 1];
+  }
+
+  /**
+   * Aligns several series on the trading days they all have in common.
+   *
+   * @param series the series to align
+   * @return for each series, the row indexes of the common trading days in ascending order
+   */
+  static int[][] align(PriceSeries[] series) {
+    int[][] indexes = new int[series.length][];
+    int[] cursor = new int[series.length];
+    int limit = Integer.MAX_VALUE;
+    for (PriceSeries item : series) {
+      limit = Math.min(limit, item.size());
+    }
+    for (int i = 0; i < series.length; i++) {
+      indexes[i] = new int[limit];
+    }
+    int count = 0;
+    while (series.length > 0) {
+      int day = Integer.MIN_VALUE;
+      for (int i = 0; i < series.length; i++) {
+        if (cursor[i] >= series[i].size()) {
+          day = Integer.MAX_VALUE;
+          break;
+        }
+        day = Math.max(day, series[i].days[cursor[i]]);
+      }
+      if (day == Integer.MAX_VALUE) {
+        break;
+      }
+      boolean common = true;
+      for (int i = 0; i < series.length; i++) {
+        while (cursor[i] < series[i].size() && series[i].days[cursor[i]] < day) {
+          cursor[i]++;
+        }
+        if (cursor[i] >= series[i].size() || series[i].days[cursor[i]] != day) {
+          common = false;
+        }
+      }
+      if (common) {
+        for (int i = 0; i < series.length; i++) {
+          indexes[i][count] = cursor[i]++;
+        }
+        count++;
+      }
+    }
+    for (int i = 0; i < series.length; i++) {
+      indexes[i] = Arrays.copyOf(indexes[i], count);
+    }
+    return indexes;
+  }
+
+  /**
+   * Finds the first trading day on which two versions of a series differ, because a row was
+   * added, removed or has other prices.
+   *
+   * @param before the older version, or null if there was none
+   * @param after  the newer version
+   * @return the epoch day of the first difference, or Long.MAX_VALUE if the versions are equal
+   */
+  static long firstChange(PriceSeries before, PriceSeries after) {
+    if (before == null) {
+      return after.days.length == 0 ? Long.MAX_VALUE : after.days[0];
+    }
+    int common = Math.min(before.days.length, after.days.length);
+    for (int i = 0; i < common; i++) {
+      if (before.days[i] != after.days[i]) {
+        return Math.min(before.days[i], after.days[i]);
+      }
+      if (before.open[i] != after.open[i] || before.close[i] != after.close[i]) {
+        return after.days[i];
+      }
+    }
+    if (before.days.length != after.days.length) {
+      return before.days.length > common ? before.days[common] : after.days[common];
+    }
+    return Long.MAX_VALUE;
+  }
+
+  /**
+   * Merges two ascending arrays of epoch days into one ascending array without duplicates.
+   *
+   * @param first  the first array of days
+   * @param second the second array of days
+   * @return the union of both arrays
+   */
+  static int[] union(int[] first, int[] second) {
+    int[] merged = new int[first.length + second.length];
+    int i = 0;
+    int j = 0;
+    int size = 0;
+    while (i < first.length || j < second.length) {
+      int next;
+      if (j >= second.length || (i < first.length && first[i] <= second[j])) {
+        next = first[i++];
+      } else {
+        next = second[j++];
+      }
+      if (size == 0 || merged[size - 1] != next) {
+        merged[size++] = next;
+      }
+    }
+    return Arrays.copyOf(merged, size);
+  }
+}
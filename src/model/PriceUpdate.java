@@ -0,0 +1,47 @@
+package model;
+
+import java.time.LocalDate;
+
+/**
+ * Tells that the price data of a stock changed, and from which trading day on. Results that only
+ * depend on earlier days are still valid.
+ */
+public final class PriceUpdate {
+  private final String symbol;
+  private final long firstDay;
+  private final long lastDay;
+
+  /**
+   * Constructs an update.
+   *
+   * @param symbol   the symbol of the stock
+   * @param firstDay the epoch day of the first trading day whose prices changed
+   * @param lastDay  the epoch day of the newest trading day in the data
+   */
+  PriceUpdate(String symbol, long firstDay, long lastDay) {
+    this.symbol = symbol;
+    this.firstDay = firstDay;
+    this.lastDay = lastDay;
+  }
+
+  public String getSymbol() {
+    return symbol;
+  }
+
+  public long getFirstDay() {
+    return firstDay;
+  }
+
+  public LocalDate getFirstDate() {
+    return LocalDate.ofEpochDay(firstDay);
+  }
+
+  public LocalDate getLastDate() {
+    return LocalDate.ofEpochDay(lastDay);
+  }
+
+  @Override
+  public String toString() {
+    return symbol + " changed from " + getFirstDate() + " to " + getLastDate();
+  }
+}
@@ -0,0 +1,97 @@
+package model;
+
+/**
+ * Holds the result of a Monte Carlo projection of a portfolio's value: the 5th, 50th and 95th
+ * percentile of the simulated value for every trading day of the horizon.
+ */
+public class ProjectionBands {
+  private final String startDate;
+  private final double initialValue;
+  private final int paths;
+  private final double[] lower;
+  private final double[] median;
+  private final double[] upper;
+
+  /**
+   * Constructs the bands of a projection.
+   *
+   * @param startDate    the last date with price data, which the projection starts from
+   * @param initialValue the value of the portfolio on the start date
+   * @param paths        the number of simulated paths
+   * @param lower        the 5th percentile value for each day of the horizon
+   * @param median       the 50th percentile value for each day of the horizon
+   * @param upper        the 95th percentile value for each day of the horizon
+   */
+  ProjectionBands(String startDate, double initialValue, int paths, double[] lower,
+                  double[] median, double[] upper) {
+    this.startDate = startDate;
+    this.initialValue = initialValue;
+    this.paths = paths;
+    this.lower = lower;
+    this.median = median;
+    this.upper = upper;
+  }
+
+  public String getStartDate() {
+    return startDate;
+  }
+
+  public double getInitialValue() {
+    return initialValue;
+  }
+
+  public int getPaths() {
+    return paths;
+  }
+
+  /**
+   * Returns the number of trading days the projection covers.
+   *
+   * @return the horizon in trading days
+   */
+  public int getHorizon() {
+    return median.length;
+  }
+
+  /**
+   * Returns the 5th percentile of the simulated value after the given number of days.
+   *
+   * @param day the trading day of the horizon, starting at 1
+   * @return the lower band value
+   */
+  public double getLower(int day) {
+    return lower[day - 1];
+  }
+
+  /**
+   * Returns the median of the simulated value after the given number of days.
+   *
+   * @param day the trading day of the horizon, starting at 1
+   * @return the median value
+   */
+  public double getMedian(int day) {
+    return median[day - 1];
+  }
+
+  /**
+   * Returns the 95th percentile of the simulated value after the given number of days.
+   *
+   * @param day the trading day of the horizon, starting at 1
+   * @return the upper band value
+   */
+  public double getUpper(int day) {
+    return upper[day - 1];
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder output = new StringBuilder();
+    output.append(String.format("Projection from %s over %d paths, starting value $%.2f\n",
+            startDate, paths, initialValue));
+    for (int day = 1; day <= getHorizon(); day++) {
+      output.append(String.format("Day %d: 5%% $%.2f, 50%% $%.2f, 95%% $%.2f\n", day,
+              getLower(day), getMedian(day), getUpper(day)));
+    }
+    return String.valueOf(output);
+  }
+}
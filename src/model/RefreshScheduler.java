@@ -0,0 +1,316 @@
+package model;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Downloads the prices of every stock held in any portfolio once a day after the market closes,
+ * so the price files and caches are current before anyone asks for a value and no query has to
+ * wait for a download. Only stocks whose prices lack the last closed trading day are fetched.
+ * The stocks held are taken from the portfolio summaries, without loading the portfolios; a
+ * portfolio that cannot be read is skipped and named in the summary of the refresh.
+ *
+ * <p>Fetches are spread out to stay within the quota of the price provider: at most
+ * {@code refresh.callsPerMinute} (5 by default) and {@code refresh.callsPerDay} (25 by default)
+ * calls are made with one API key, counted across every scheduler of the process; stocks left
+ * over once the daily quota is used up are fetched on the next refresh. A fetch that fails,
+ * including one refused for exceeding the quota, is retried up to {@code refresh.retries} (3 by
+ * default) times, waiting {@code refresh.backoffMillis} (one minute by default) before the first
+ * retry and twice as long before each later one. A symbol the provider does not know is not
+ * retried.
+ *
+ * <p>The refresh runs {@code refresh.delayMinutes} (30 by default) after the close set by
+ * {@code refresh.marketClose} (16:00 by default) in the zone {@code refresh.marketZone}
+ * (America/New_York by default), on weekdays. Fetched prices are published on the
+ * {@link PriceBus}. All fetches run on one daemon thread.
+ */
+public class RefreshScheduler {
+  private final FlexibleManagerInterface model;
+  private final Workspace workspace;
+  private final URLInterface source;
+  private final Clock clock;
+  private final ZoneId zone;
+  private final LocalTime refreshTime;
+  private final CallQuota quota;
+  private final int retries;
+  private final long backoff;
+  private final ScheduledThreadPoolExecutor executor;
+
+  /**
+   * The symbols of one refresh and how each fared.
+   */
+  private final class Pass {
+    private final long start = System.currentTimeMillis();
+    private final int symbols;
+    private final List<String> unreadable;
+    private final CompletableFuture<String> result;
+    private final List<String> failures = new ArrayList<>();
+    private final List<String> deferred = new ArrayList<>();
+    private int refreshed;
+    private int remaining;
+
+    private Pass(int symbols, List<String> unreadable, CompletableFuture<String> result) {
+      this.symbols = symbols;
+      this.unreadable = unreadable;
+      this.remaining = symbols;
+      this.result = result;
+      if (symbols == 0) {
+        finish();
+      }
+    }
+
+    private void refreshed() {
+      refreshed++;
+      done();
+    }
+
+    private void failed(String symbol, String message) {
+      failures.add(symbol + ": " + message);
+      done();
+    }
+
+    private void deferred(String symbol) {
+      deferred.add(symbol);
+      done();
+    }
+
+    private void done() {
+      if (--remaining == 0) {
+        finish();
+      }
+    }
+
+    private void finish() {
+      StringBuilder output = new StringBuilder();
+      output.append("Refreshed ").append(refreshed).append(" of ").append(symbols)
+              .append(" symbols in ").append(System.currentTimeMillis() - start)
+              .append(" ms\r\n");
+      for (String failure : failures) {
+        output.append(failure).append("\r\n");
+      }
+      if (!deferred.isEmpty()) {
+        output.append("Deferred to the next refresh: ").append(String.join(", ", deferred))
+                .append("\r\n");
+      }
+      if (!unreadable.isEmpty()) {
+        output.append("Skipped unreadable portfolios: ").append(String.join(", ", unreadable))
+                .append("\r\n");
+      }
+      result.complete(output.toString());
+    }
+  }
+
+  /**
+   * Constructs a scheduler downloading prices from Alpha Vantage into the default data folder.
+   *
+   * @param model the model whose portfolios' stocks are refreshed
+   */
+  public RefreshScheduler(FlexibleManagerInterface model) {
+    this(model, new AlphaVantage(AlphaVantage.API_KEY), Clock.systemDefaultZone());
+  }
+
+  /**
+   * Constructs a scheduler downloading prices from Alpha Vantage for the portfolios of a
+   * workspace into its data folder.
+   *
+   * @param workspace the workspace whose portfolios' stocks are refreshed
+   */
+  public RefreshScheduler(Workspace workspace) {
+    this(new FlexibleManager(workspace), workspace, new AlphaVantage(AlphaVantage.API_KEY),
+            Clock.systemDefaultZone());
+  }
+
+  /**
+   * Constructs a scheduler downloading prices from a source into the default data folder.
+   *
+   * @param model  the model whose portfolios' stocks are refreshed
+   * @param source where prices are downloaded from
+   * @param clock  the clock the refresh times are taken from
+   */
+  public RefreshScheduler(FlexibleManagerInterface model, URLInterface source, Clock clock) {
+    this(model, Workspace.getDefault(), source, clock);
+  }
+
+  /**
+   * Constructs a scheduler downloading prices from a source into the data folder of a
+   * workspace, configured by the system properties described above.
+   *
+   * @param model     the model whose portfolios' stocks are refreshed
+   * @param workspace the workspace whose data folder the prices are written to
+   * @param source    where prices are downloaded from
+   * @param clock     the clock the refresh times are taken from
+   */
+  public RefreshScheduler(FlexibleManagerInterface model, Workspace workspace,
+                          URLInterface source, Clock clock) {
+    this.model = model;
+    this.workspace = workspace;
+    this.source = source;
+    this.clock = clock;
+    this.zone = ZoneId.of(System.getProperty("refresh.marketZone", "America/New_York"));
+    this.refreshTime = LocalTime.parse(System.getProperty("refresh.marketClose", "16:00"))
+            .plusMinutes(Long.getLong("refresh.delayMinutes", 30));
+    this.quota = CallQuota.of(source);
+    this.retries = Integer.getInteger("refresh.retries", 3);
+    this.backoff = Long.getLong("refresh.backoffMillis", 60_000L);
+    this.executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+      Thread thread = new Thread(runnable, "price-refresh");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+  }
+
+  /**
+   * Starts refreshing every weekday after the market closes.
+   */
+  public void start() {
+    executor.execute(this::scheduleNext);
+  }
+
+  /**
+   * Stops refreshing. A fetch under way is finished; fetches waiting for their slot are dropped.
+   */
+  public void stop() {
+    executor.shutdown();
+  }
+
+  /**
+   * Returns the time of the next daily refresh.
+   *
+   * @return the time, in the zone of the market
+   */
+  public ZonedDateTime nextRefresh() {
+    ZonedDateTime now = ZonedDateTime.now(clock.withZone(zone));
+    ZonedDateTime next = now.toLocalDate().atTime(refreshTime).atZone(zone);
+    while (!next.isAfter(now) || weekend(next.toLocalDate())) {
+      next = next.plusDays(1);
+    }
+    return next;
+  }
+
+  /**
+   * Refreshes now the stocks whose prices lack the last closed trading day.
+   *
+   * @return a summary of the refresh, completed once every fetch and retry has finished
+   */
+  public CompletableFuture<String> refresh() {
+    CompletableFuture<String> result = new CompletableFuture<>();
+    executor.execute(() -> {
+      try {
+        List<String> unreadable = new ArrayList<>();
+        List<String> symbols = staleSymbols(unreadable);
+        Pass pass = new Pass(symbols.size(), unreadable, result);
+        for (String symbol : symbols) {
+          schedule(pass, symbol, 0, 0);
+        }
+      } catch (Exception e) {
+        result.completeExceptionally(ModelException.of(e));
+      }
+    });
+    return result;
+  }
+
+  private void scheduleNext() {
+    long delay = nextRefresh().toInstant().toEpochMilli() - clock.millis();
+    executor.schedule(() -> {
+      refresh();
+      scheduleNext();
+    }, Math.max(0, delay), TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Returns the last weekday whose refresh time has passed.
+   */
+  private LocalDate lastSession() {
+    ZonedDateTime now = ZonedDateTime.now(clock.withZone(zone));
+    LocalDate day = now.toLocalTime().isBefore(refreshTime)
+            ? now.toLocalDate().minusDays(1) : now.toLocalDate();
+    while (weekend(day)) {
+      day = day.minusDays(1);
+    }
+    return day;
+  }
+
+  private static boolean weekend(LocalDate day) {
+    return day.getDayOfWeek() == DayOfWeek.SATURDAY || day.getDayOfWeek() == DayOfWeek.SUNDAY;
+  }
+
+  /**
+   * Returns the held stocks whose prices lack the last closed trading day, adding the names of
+   * the portfolios that cannot be read to a list.
+   */
+  private List<String> staleSymbols(List<String> unreadable) {
+    Set<String> symbols = new TreeSet<>();
+    String[] names = model.returnPortfolioList();
+    for (int i = 0; names != null && i < names.length; i++) {
+      PortfolioSummary summary = model.getSummary(i + 1);
+      if (summary == null || !summary.isReadable()) {
+        unreadable.add(PortfolioRepository.nameOf(names[i]));
+      } else {
+        symbols.addAll(summary.getSymbols());
+      }
+    }
+    long session = lastSession().toEpochDay();
+    List<String> stale = new ArrayList<>();
+    for (String symbol : symbols) {
+      try {
+        PriceSeries series = workspace.prices(symbol);
+        if (series.size() > 0 && series.dayAt(series.size() - 1) >= session) {
+          continue;
+        }
+      } catch (Exception e) {
+        // no prices yet
+      }
+      stale.add(symbol);
+    }
+    return stale;
+  }
+
+  /**
+   * Schedules a fetch in the next free slot of the quota, and not before a given time.
+   */
+  private void schedule(Pass pass, String symbol, int attempt, long notBefore) {
+    long now = clock.millis();
+    long slot = quota.reserve(Math.max(now, notBefore));
+    executor.schedule(() -> fetch(pass, symbol, attempt), slot - now, TimeUnit.MILLISECONDS);
+  }
+
+  private void fetch(Pass pass, String symbol, int attempt) {
+    if (!quota.tryAcquire(LocalDate.now(clock.withZone(zone)))) {
+      pass.deferred(symbol);
+      return;
+    }
+    try {
+      StringBuilder data = source.urlCall(symbol);
+      String text = data.toString();
+      if (text.contains("Error")) {
+        pass.failed(symbol, "Incorrect Stock Symbol");
+        return;
+      }
+      if (text.contains("Information") || text.contains("Note")) {
+        throw new IOException("Exceeded number of API Calls");
+      }
+      AtomicFileWriter.write(workspace.dataFile(symbol), data, false);
+      workspace.refreshed(symbol);
+      pass.refreshed();
+    } catch (Exception e) {
+      if (attempt < retries) {
+        schedule(pass, symbol, attempt + 1, clock.millis() + (backoff << attempt));
+      } else {
+        pass.failed(symbol, e.getMessage() == null ? e.toString() : e.getMessage());
+      }
+    }
+  }
+}
@@ -0,0 +1,105 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Computes risk metrics from a {@link ValuationSeries} in a single pass. Daily returns are
+ * measured net of the money moved in or out on each day, and fed into running accumulators for
+ * the mean and variance, the downside deviation, the covariance with the benchmark and a rolling
+ * window, while the drawdown is tracked on the compounded return index.
+ */
+class RiskAnalyzer {
+  static final int TRADING_DAYS = 252;
+
+  private RiskAnalyzer() {
+  }
+
+  /**
+   * Analyzes a valuation series against a benchmark.
+   *
+   * @param series        the daily values to analyze
+   * @param benchmark     the price series of the benchmark symbol
+   * @param window        the number of daily returns in each rolling volatility window
+   * @param riskFreeRate  the annual risk free rate, for example 0.04 for 4%
+   * @return the risk metrics of the series
+   */
+  static RiskReport analyze(ValuationSeries series, PriceSeries benchmark, int window,
+                            double riskFreeRate) {
+    if (window < 2) {
+      throw new IllegalArgumentException("Rolling window must be at least 2 days");
+    }
+    double dailyFree = riskFreeRate / TRADING_DAYS;
+    RunningStats returns = new RunningStats();
+    RunningStats rolling = new RunningStats();
+    double[] ring = new double[window];
+    int[] rollingDays = new int[Math.max(0, series.size())];
+    double[] rollingVolatility = new double[rollingDays.length];
+    int rollingCount = 0;
+
+    double downside = 0;
+    long paired = 0;
+    double meanReturn = 0;
+    double meanBenchmark = 0;
+    double coMoment = 0;
+    RunningStats benchmarkStats = new RunningStats();
+    int cursor = -1;
+    double previousBenchmark = Double.NaN;
+
+    double index = 1;
+    double peak = 1;
+    double maxDrawdown = 0;
+    for (int t = 0; t < series.size(); t++) {
+      int day = series.dayAt(t);
+      while (cursor + 1 < benchmark.size() && benchmark.dayAt(cursor + 1) <= day) {
+        cursor++;
+      }
+      double benchmarkPrice = cursor < 0 ? Double.NaN : benchmark.closeAt(cursor);
+      double previous = t == 0 ? 0 : series.valueAt(t - 1);
+      if (previous > 0) {
+        double r = (series.valueAt(t) - series.flowAt(t)) / previous - 1;
+        returns.add(r);
+        double excess = Math.min(0, r - dailyFree);
+        downside += excess * excess;
+
+        rolling.add(r);
+        if (rolling.count() > window) {
+          rolling.remove(ring[(int) (returns.count() % window)]);
+        }
+        ring[(int) (returns.count() % window)] = r;
+        if (rolling.count() == window) {
+          rollingDays[rollingCount] = day;
+          rollingVolatility[rollingCount++] = rolling.standardDeviation()
+                  * Math.sqrt(TRADING_DAYS);
+        }
+
+        if (previousBenchmark > 0 && !Double.isNaN(benchmarkPrice)) {
+          double rb = benchmarkPrice / previousBenchmark - 1;
+          paired++;
+          double delta = r - meanReturn;
+          meanReturn += delta / paired;
+          meanBenchmark += (rb - meanBenchmark) / paired;
+          coMoment += delta * (rb - meanBenchmark);
+          benchmarkStats.add(rb);
+        }
+
+        index *= 1 + r;
+        peak = Math.max(peak, index);
+        maxDrawdown = Math.max(maxDrawdown, (peak - index) / peak);
+      }
+      previousBenchmark = benchmarkPrice;
+    }
+
+    double deviation = returns.standardDeviation();
+    double downsideDeviation = returns.count() == 0 ? 0 : Math.sqrt(downside / returns.count());
+    double excessMean = returns.mean() - dailyFree;
+    double annual = Math.sqrt(TRADING_DAYS);
+    double sharpe = deviation == 0 ? 0 : excessMean / deviation * annual;
+    double sortino = downsideDeviation == 0 ? 0 : excessMean / downsideDeviation * annual;
+    double beta = paired < 2 || benchmarkStats.variance() == 0 ? 0
+            : coMoment / (paired - 1) / benchmarkStats.variance();
+    return new RiskReport(benchmark.getSymbol(), (int) returns.count(), deviation * annual,
+            maxDrawdown, sharpe, sortino, beta, window,
+            Arrays.copyOf(rollingDays, rollingCount),
+            Arrays.copyOf(rollingVolatility, rollingCount));
+  }
+}
@@ -0,0 +1,122 @@
+package model;
+
+import java.time.LocalDate;
+
+/**
+ * Holds the risk metrics of a stock or portfolio over a period: annualized volatility, maximum
+ * drawdown, Sharpe and Sortino ratios, beta against a benchmark symbol and the rolling
+ * volatility over a fixed window of trading days.
+ */
+public class RiskReport {
+  private final String benchmark;
+  private final int observations;
+  private final double volatility;
+  private final double maxDrawdown;
+  private final double sharpe;
+  private final double sortino;
+  private final double beta;
+  private final int window;
+  private final int[] rollingDays;
+  private final double[] rollingVolatility;
+
+  /**
+   * Constructs a report from the computed metrics.
+   *
+   * @param benchmark         the symbol beta was measured against
+   * @param observations      the number of daily returns the metrics are based on
+   * @param volatility        the annualized standard deviation of daily returns
+   * @param maxDrawdown       the largest fall from a previous peak, between 0 and 1
+   * @param sharpe            the annualized Sharpe ratio
+   * @param sortino           the annualized Sortino ratio
+   * @param beta              the beta against the benchmark
+   * @param window            the number of trading days of the rolling volatility window
+   * @param rollingDays       the epoch day each rolling volatility value ends on
+   * @param rollingVolatility the annualized volatility of each rolling window
+   */
+  RiskReport(String benchmark, int observations, double volatility, double maxDrawdown,
+             double sharpe, double sortino, double beta, int window, int[] rollingDays,
+             double[] rollingVolatility) {
+    this.benchmark = benchmark;
+    this.observations = observations;
+    this.volatility = volatility;
+    this.maxDrawdown = maxDrawdown;
+    this.sharpe = sharpe;
+    this.sortino = sortino;
+    this.beta = beta;
+    this.window = window;
+    this.rollingDays = rollingDays;
+    this.rollingVolatility = rollingVolatility;
+  }
+
+  public String getBenchmark() {
+    return benchmark;
+  }
+
+  public int getObservations() {
+    return observations;
+  }
+
+  public double getVolatility() {
+    return volatility;
+  }
+
+  public double getMaxDrawdown() {
+    return maxDrawdown;
+  }
+
+  public double getSharpe() {
+    return sharpe;
+  }
+
+  public double getSortino() {
+    return sortino;
+  }
+
+  public double getBeta() {
+    return beta;
+  }
+
+  public int getWindow() {
+    return window;
+  }
+
+  /**
+   * Returns the number of values in the rolling volatility series.
+   *
+   * @return the number of complete windows
+   */
+  public int getRollingSize() {
+    return rollingVolatility.length;
+  }
+
+  /**
+   * Returns the date the rolling window at the given position ends on.
+   *
+   * @param index the position in the rolling series
+   * @return the last date of the window
+   */
+  public LocalDate getRollingDate(int index) {
+    return LocalDate.ofEpochDay(rollingDays[index]);
+  }
+
+  /**
+   * Returns the annualized volatility of the rolling window at the given position.
+   *
+   * @param index the position in the rolling series
+   * @return the volatility of the window
+   */
+  public double getRollingVolatility(int index) {
+    return rollingVolatility[index];
+  }
+
+  @Override
+  public String toString() {
+    return String.format("Daily returns: %d\n"
+                    + "Volatility (annualized): %.2f%%\n"
+                    + "Maximum drawdown: %.2f%%\n"
+                    + "Sharpe ratio: %.2f\n"
+                    + "Sortino ratio: %.2f\n"
+                    + "Beta vs %s: %.2f\n", observations, volatility * 100, maxDrawdown * 100,
+            sharpe, sortino, benchmark, beta);
+  }
+}
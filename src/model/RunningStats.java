@@ -0,0 +1,63 @@
+package model;
+
+/**
+ * Accumulates the mean and variance of a stream of values in one pass using Welford's method,
+ * which stays numerically stable on long series. Values can also be removed again, which makes
+ * it usable for rolling windows.
+ */
+class RunningStats {
+  private long count;
+  private double mean;
+  private double m2;
+
+  /**
+   * Adds a value to the statistics.
+   *
+   * @param value the value to add
+   */
+  void add(double value) {
+    count++;
+    double delta = value - mean;
+    mean += delta / count;
+    m2 += delta * (value - mean);
+  }
+
+  /**
+   * Removes a value that was previously added, as needed when a rolling window moves on.
+   *
+   * @param value the value to remove
+   */
+  void remove(double value) {
+    if (count <= 1) {
+      count = 0;
+      mean = 0;
+      m2 = 0;
+      return;
+    }
+    double oldMean = mean;
+    count--;
+    mean = (oldMean * (count + 1) - value) / count;
+    m2 = Math.max(0, m2 - (value - oldMean) * (value - mean));
+  }
+
+  long count() {
+    return count;
+  }
+
+  double mean() {
+    return mean;
+  }
+
+  /**
+   * Returns the sample variance of the values added so far.
+   *
+   * @return the variance, or 0 if fewer than two values were added
+   */
+  double variance() {
+    return count < 2 ? 0 : m2 / (count - 1);
+  }
+
+  double standardDeviation() {
+    return Math.sqrt(variance());
+  }
+}
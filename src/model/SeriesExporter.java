@@ -0,0 +1,446 @@
+package model;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Writes tables of typed columns held in primitive arrays to csv or to a compact binary
+ * columnar format, in chunks of rows, without building a string per cell. Dates and numbers are
+ * formatted straight into a byte buffer; csv numbers have four decimals and a missing value is
+ * an empty cell.
+ *
+ * <p>A binary file starts with the magic number "PFC1", a short version and a schema header:
+ * the number of columns, then each column's name (as written by
+ * {@link java.io.DataOutputStream#writeUTF(String)}) and type, then the dictionary of symbols
+ * used by symbol columns. Then come chunks of at most {@link #CHUNK_ROWS} rows, each an int row
+ * count followed by every column's values for those rows, big-endian: epoch days and symbol
+ * numbers as ints, numbers as doubles or floats, with NaN for a missing value. A chunk of zero
+ * rows ends the file.
+ */
+final class SeriesExporter {
+  static final int CHUNK_ROWS = 1 << 16;
+  private static final int MAGIC = 0x50464331;
+  private static final int VERSION = 1;
+  private static final byte DATE = 1;
+  private static final byte DOUBLE = 2;
+  private static final byte FLOAT = 3;
+  private static final byte SYMBOL = 4;
+  private static final int CSV_BUFFER = 1 << 16;
+  private static final int MAX_CELL = 32;
+
+  /**
+   * The file formats a table can be written in.
+   */
+  enum Format {
+    CSV(".csv"), BINARY(".pfc");
+
+    private final String extension;
+
+    Format(String extension) {
+      this.extension = extension;
+    }
+
+    String getExtension() {
+      return extension;
+    }
+
+    /**
+     * Returns the format of a name given by the user.
+     *
+     * @param name "csv" or "binary", ignoring case
+     * @return the format
+     * @throws IllegalArgumentException if the name is not a format
+     */
+    static Format of(String name) {
+      if ("csv".equalsIgnoreCase(name)) {
+        return CSV;
+      } else if ("binary".equalsIgnoreCase(name)) {
+        return BINARY;
+      }
+      throw new IllegalArgumentException("Unknown export format " + name);
+    }
+  }
+
+  /**
+   * A named column backed by one primitive array.
+   */
+  private static final class Column {
+    private final String name;
+    private final byte type;
+    private final int[] ints;
+    private final double[] doubles;
+    private final float[] floats;
+
+    private Column(String name, byte type, int[] ints, double[] doubles, float[] floats) {
+      this.name = name;
+      this.type = type;
+      this.ints = ints;
+      this.doubles = doubles;
+      this.floats = floats;
+    }
+
+    private int width() {
+      return type == DOUBLE ? 8 : 4;
+    }
+  }
+
+  private final List<Column> columns = new ArrayList<>();
+  private String[] symbols = new String[0];
+  private int rows = -1;
+
+  /**
+   * Adds a column of epoch days, written as dates.
+   *
+   * @param name the column name
+   * @param days the epoch days
+   * @return this exporter
+   */
+  SeriesExporter dates(String name, int[] days) {
+    return add(new Column(name, DATE, days, null, null), days.length);
+  }
+
+  /**
+   * Adds a column of double values.
+   *
+   * @param name   the column name
+   * @param values the values, NaN where a value is missing
+   * @return this exporter
+   */
+  SeriesExporter doubles(String name, double[] values) {
+    return add(new Column(name, DOUBLE, null, values, null), values.length);
+  }
+
+  /**
+   * Adds a column of float values.
+   *
+   * @param name   the column name
+   * @param values the values, NaN where a value is missing
+   * @return this exporter
+   */
+  SeriesExporter floats(String name, float[] values) {
+    return add(new Column(name, FLOAT, null, null, values), values.length);
+  }
+
+  /**
+   * Adds a column of symbols given as positions in a dictionary shared by all symbol columns.
+   *
+   * @param name       the column name
+   * @param dictionary the symbols
+   * @param indexes    the position of each row's symbol in the dictionary
+   * @return this exporter
+   */
+  SeriesExporter symbols(String name, String[] dictionary, int[] indexes) {
+    symbols = dictionary;
+    return add(new Column(name, SYMBOL, indexes, null, null), indexes.length);
+  }
+
+  private SeriesExporter add(Column column, int length) {
+    if (rows >= 0 && rows != length) {
+      throw new IllegalArgumentException("Column " + column.name + " has " + length
+              + " rows instead of " + rows);
+    }
+    rows = length;
+    columns.add(column);
+    return this;
+  }
+
+  /**
+   * Writes the table to a file.
+   *
+   * @param file   the file to write
+   * @param format the format to write it in
+   * @throws IOException if the file cannot be written
+   */
+  void write(File file, Format format) throws IOException {
+    if (format == Format.CSV) {
+      try (OutputStream out = new FileOutputStream(file)) {
+        writeCsv(out);
+      }
+    } else {
+      try (FileChannel channel = new FileOutputStream(file).getChannel()) {
+        writeBinary(channel);
+      }
+    }
+  }
+
+  private void writeCsv(OutputStream out) throws IOException {
+    byte[][] names = new byte[symbols.length][];
+    for (int i = 0; i < symbols.length; i++) {
+      names[i] = symbols[i].getBytes(StandardCharsets.UTF_8);
+    }
+    StringBuilder header = new StringBuilder();
+    for (Column column : columns) {
+      header.append(header.length() == 0 ? "" : ",").append(column.name);
+    }
+    out.write(header.append('\n').toString().getBytes(StandardCharsets.UTF_8));
+    int longestSymbol = 0;
+    for (byte[] name : names) {
+      longestSymbol = Math.max(longestSymbol, name.length);
+    }
+    int rowLimit = columns.size() * Math.max(MAX_CELL, longestSymbol + 1) + 1;
+    byte[] buffer = new byte[Math.max(CSV_BUFFER, rowLimit * 2)];
+    int length = 0;
+    for (int r = 0; r < Math.max(rows, 0); r++) {
+      if (length + rowLimit > buffer.length) {
+        out.write(buffer, 0, length);
+        length = 0;
+      }
+      for (int c = 0; c < columns.size(); c++) {
+        if (c > 0) {
+          buffer[length++] = ',';
+        }
+        Column column = columns.get(c);
+        switch (column.type) {
+          case DATE:
+            length = putDate(buffer, length, column.ints[r]);
+            break;
+          case DOUBLE:
+            length = putNumber(buffer, length, column.doubles[r]);
+            break;
+          case FLOAT:
+            length = putNumber(buffer, length, column.floats[r]);
+            break;
+          default:
+            byte[] name = names[column.ints[r]];
+            System.arraycopy(name, 0, buffer, length, name.length);
+            length += name.length;
+            break;
+        }
+      }
+      buffer[length++] = '\n';
+    }
+    out.write(buffer, 0, length);
+  }
+
+  private void writeBinary(FileChannel channel) throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(headerSize());
+    header.putInt(MAGIC).putShort((short) VERSION).putShort((short) columns.size());
+    for (Column column : columns) {
+      putUtf(header, column.name);
+      header.put(column.type);
+    }
+    header.putInt(symbols.length);
+    for (String symbol : symbols) {
+      putUtf(header, symbol);
+    }
+    header.flip();
+    writeFully(channel, header);
+    int rowWidth = 0;
+    for (Column column : columns) {
+      rowWidth += column.width();
+    }
+    int total = Math.max(rows, 0);
+    ByteBuffer chunk = ByteBuffer.allocateDirect(4 + Math.min(total, CHUNK_ROWS) * rowWidth);
+    for (int from = 0; from < total; from += CHUNK_ROWS) {
+      int count = Math.min(CHUNK_ROWS, total - from);
+      chunk.clear();
+      chunk.putInt(count);
+      for (Column column : columns) {
+        int position = chunk.position();
+        if (column.type == DOUBLE) {
+          chunk.asDoubleBuffer().put(column.doubles, from, count);
+        } else if (column.type == FLOAT) {
+          chunk.asFloatBuffer().put(column.floats, from, count);
+        } else {
+          chunk.asIntBuffer().put(column.ints, from, count);
+        }
+        chunk.position(position + count * column.width());
+      }
+      chunk.flip();
+      writeFully(channel, chunk);
+    }
+    ByteBuffer end = ByteBuffer.allocate(4).putInt(0);
+    end.flip();
+    writeFully(channel, end);
+  }
+
+  private int headerSize() {
+    int size = 4 + 2 + 2 + 4;
+    for (Column column : columns) {
+      size += 2 + column.name.getBytes(StandardCharsets.UTF_8).length + 1;
+    }
+    for (String symbol : symbols) {
+      size += 2 + symbol.getBytes(StandardCharsets.UTF_8).length;
+    }
+    return size;
+  }
+
+  private static void putUtf(ByteBuffer buffer, String text) {
+    byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+    buffer.putShort((short) bytes.length).put(bytes);
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+
+  /**
+   * Writes an epoch day as "yyyy-MM-dd", converting it to a civil date with integer arithmetic.
+   */
+  private static int putDate(byte[] buffer, int at, int epochDay) {
+    long z = epochDay + 719468L;
+    long era = (z >= 0 ? z : z - 146096) / 146097;
+    long dayOfEra = z - era * 146097;
+    long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+    long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+    long monthIndex = (5 * dayOfYear + 2) / 153;
+    int day = (int) (dayOfYear - (153 * monthIndex + 2) / 5 + 1);
+    int month = (int) (monthIndex < 10 ? monthIndex + 3 : monthIndex - 9);
+    int year = (int) (yearOfEra + era * 400 + (month <= 2 ? 1 : 0));
+    buffer[at++] = (byte) ('0' + year / 1000 % 10);
+    buffer[at++] = (byte) ('0' + year / 100 % 10);
+    buffer[at++] = (byte) ('0' + year / 10 % 10);
+    buffer[at++] = (byte) ('0' + year % 10);
+    buffer[at++] = '-';
+    buffer[at++] = (byte) ('0' + month / 10);
+    buffer[at++] = (byte) ('0' + month % 10);
+    buffer[at++] = '-';
+    buffer[at++] = (byte) ('0' + day / 10);
+    buffer[at++] = (byte) ('0' + day % 10);
+    return at;
+  }
+
+  /**
+   * Writes a number with four decimals, or nothing if it is NaN.
+   */
+  private static int putNumber(byte[] buffer, int at, double value) {
+    if (Double.isNaN(value)) {
+      return at;
+    }
+    if (Double.isInfinite(value) || Math.abs(value) >= 1e14) {
+      byte[] text = Double.toString(value).getBytes(StandardCharsets.US_ASCII);
+      System.arraycopy(text, 0, buffer, at, text.length);
+      return at + text.length;
+    }
+    long scaled = Math.round(value * 10000);
+    if (scaled < 0) {
+      buffer[at++] = '-';
+      scaled = -scaled;
+    }
+    long whole = scaled / 10000;
+    int fraction = (int) (scaled % 10000);
+    int start = at;
+    do {
+      buffer[at++] = (byte) ('0' + whole % 10);
+      whole /= 10;
+    } while (whole > 0);
+    for (int i = start, j = at - 1; i < j; i++, j--) {
+      byte swap = buffer[i];
+      buffer[i] = buffer[j];
+      buffer[j] = swap;
+    }
+    buffer[at++] = '.';
+    buffer[at++] = (byte) ('0' + fraction / 1000);
+    buffer[at++] = (byte) ('0' + fraction / 100 % 10);
+    buffer[at++] = (byte) ('0' + fraction / 10 % 10);
+    buffer[at++] = (byte) ('0' + fraction % 10);
+    return at;
+  }
+
+  /**
+   * Builds the table of a portfolio's daily value and the money moved into it each day.
+   *
+   * @param series the valuation series of the portfolio
+   * @return the table with the columns date, value and flow
+   */
+  static SeriesExporter ofValuation(ValuationSeries series) {
+    return new SeriesExporter().dates("date", series.days()).doubles("value", series.values())
+            .doubles("flow", series.flows());
+  }
+
+  /**
+   * Builds the table of a stock's closing price and its moving averages between two days. The
+   * averages are taken over the given numbers of trading days, counting days before the start
+   * when there are any, and are missing while there are fewer days than the window.
+   *
+   * @param prices   the price series of the stock
+   * @param startDay the first epoch day, inclusive
+   * @param endDay   the last epoch day, inclusive
+   * @param windows  the number of trading days of each moving average
+   * @return the table with the columns date, close and one "ma" column per window
+   */
+  static SeriesExporter ofIndicators(PriceSeries prices, long startDay, long endDay,
+                                     int... windows) {
+    int from = Math.max(0, prices.floorIndex(startDay - 1) + 1);
+    int to = prices.floorIndex(endDay);
+    int size = Math.max(0, to - from + 1);
+    int[] days = new int[size];
+    double[] close = new double[size];
+    for (int i = 0; i < size; i++) {
+      days[i] = prices.dayAt(from + i);
+      close[i] = prices.closeAt(from + i);
+    }
+    SeriesExporter table = new SeriesExporter().dates("date", days).doubles("close", close);
+    for (int window : windows) {
+      double[] average = new double[size];
+      Arrays.fill(average, Double.NaN);
+      double sum = 0;
+      int first = Math.max(0, from - window + 1);
+      for (int i = first; i <= to; i++) {
+        sum += prices.closeAt(i);
+        if (i - window >= first) {
+          sum -= prices.closeAt(i - window);
+        }
+        if (i >= from && i - first + 1 >= window) {
+          average[i - from] = sum / window;
+        }
+      }
+      table.doubles("ma" + window, average);
+    }
+    return table;
+  }
+
+  /**
+   * Builds the table of every transaction of a set of stocks, ordered by date.
+   *
+   * @param stocks the stocks whose ledgers are exported
+   * @return the table with the columns date, symbol and quantity
+   */
+  static SeriesExporter ofLedger(List<Stock> stocks) {
+    int total = 0;
+    for (Stock stock : stocks) {
+      total += stock.getTransactionCount();
+    }
+    List<String> dictionary = new ArrayList<>();
+    long[] keys = new long[total];
+    int[] rowSymbols = new int[total];
+    float[] rowQuantities = new float[total];
+    int row = 0;
+    for (Stock stock : stocks) {
+      int symbol = dictionary.indexOf(stock.getSymbol());
+      if (symbol < 0) {
+        symbol = dictionary.size();
+        dictionary.add(stock.getSymbol());
+      }
+      for (int i = 0; i < stock.getTransactionCount(); i++) {
+        keys[row] = (stock.getTransactionDay(i) << 32) | row;
+        rowSymbols[row] = symbol;
+        rowQuantities[row] = stock.getTransactionQuantity(i);
+        row++;
+      }
+    }
+    Arrays.sort(keys);
+    int[] days = new int[total];
+    int[] symbols = new int[total];
+    float[] quantities = new float[total];
+    for (int r = 0; r < total; r++) {
+      int source = (int) keys[r];
+      days[r] = (int) (keys[r] >> 32);
+      symbols[r] = rowSymbols[source];
+      quantities[r] = rowQuantities[source];
+    }
+    return new SeriesExporter().dates("date", days)
+            .symbols("symbol", dictionary.toArray(new String[0]), symbols)
+            .floats("quantity", quantities);
+  }
+}
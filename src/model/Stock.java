@@ -2,15 +2,14 @@ package model;
 
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.time.LocalDate;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Scanner;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -18,10 +17,41 @@ import java.util.stream.Collectors;
  * Its functions are able to read the data from the filesystem and return prices as requested.
  */
 public class Stock implements StockInterface {
+  private static final String[] NO_DATES = new String[0];
+  private static final float[] NO_QUANTITIES = new float[0];
+
   private final String symbol;
-  private final List<String> transactionDates;
-  private final List<Float> transactionQuantity;
-  private float quantity;
+  private final Stock source;
+  private volatile Ledger ledger;
+  private volatile DirectoryLayout data;
+  private Consumer<Stock> ledgerLoader;
+  private Ledger loadedLedger;
+  private boolean loading;
+
+  /**
+   * The transactions of a stock and the quantity owned at one moment. A ledger is never changed
+   * once published: a transaction is written into the free part of the arrays, which no
+   * published ledger reads, and published as a new ledger one longer, so readers holding an
+   * older ledger keep seeing the state they started with.
+   */
+  private static final class Ledger {
+    private final String[] dates;
+    private final float[] quantities;
+    private final int size;
+    private final float quantity;
+    private final String lastDate;
+    private final boolean loaded;
+
+    private Ledger(String[] dates, float[] quantities, int size, float quantity,
+                   String lastDate, boolean loaded) {
+      this.dates = dates;
+      this.quantities = quantities;
+      this.size = size;
+      this.quantity = quantity;
+      this.lastDate = lastDate;
+      this.loaded = loaded;
+    }
+  }
 
   /**
    * Constructs a Stock instance with specified details.
@@ -31,9 +61,93 @@ public class Stock implements StockInterface {
    */
   public Stock(String symbol, float quantity) {
     this.symbol = symbol;
-    this.quantity = quantity;
-    this.transactionDates = new ArrayList<>();
-    this.transactionQuantity = new ArrayList<>();
+    this.source = this;
+    this.ledger = new Ledger(NO_DATES, NO_QUANTITIES, 0, quantity, null, true);
+  }
+
+  /**
+   * Constructs a Stock whose transaction ledger is only read when it is first needed. Until
+   * then the current quantity and the date of the last transaction come from the portfolio's
+   * header.
+   *
+   * @param symbol              the stock's symbol in the market
+   * @param quantity            the amount of stock owned
+   * @param lastTransactionDate the date of the last transaction in the ledger
+   * @param ledgerLoader        adds the saved transactions to the stock when called
+   */
+  Stock(String symbol, float quantity, String lastTransactionDate,
+        Consumer<Stock> ledgerLoader) {
+    this.symbol = symbol;
+    this.source = this;
+    this.ledger = new Ledger(NO_DATES, NO_QUANTITIES, 0, quantity, lastTransactionDate, false);
+    this.ledgerLoader = ledgerLoader;
+  }
+
+  private Stock(Stock source, Ledger ledger) {
+    this.symbol = source.symbol;
+    this.source = source;
+    this.ledger = ledger;
+  }
+
+  /**
+   * Returns a read-only copy of the stock as it is now, which later transactions do not change.
+   * Making one copies no transactions.
+   *
+   * @return the copy
+   */
+  Stock snapshot() {
+    return new Stock(source, ledger);
+  }
+
+  /**
+   * Returns the ledger to read, reading the saved transactions first if they have not been
+   * read yet.
+   */
+  private Ledger ledger() {
+    Ledger current = ledger;
+    if (current.loaded) {
+      return current;
+    }
+    Ledger read = source.loadLedger();
+    if (source == this) {
+      return read;
+    }
+    ledger = new Ledger(read.dates, read.quantities, read.size, current.quantity, null, true);
+    return ledger;
+  }
+
+  /**
+   * Reads the transaction ledger if it has not been read yet. If reading fails, the ledger is
+   * left empty and reading is tried again the next time it is needed. Until reading is done,
+   * readers keep seeing the header.
+   *
+   * @return the ledger as it was read, before any transaction made since
+   */
+  private synchronized Ledger loadLedger() {
+    if (ledgerLoader != null) {
+      Consumer<Stock> loader = ledgerLoader;
+      Ledger unloaded = ledger;
+      ledgerLoader = null;
+      loading = true;
+      try {
+        loader.accept(this);
+      } catch (RuntimeException e) {
+        ledger = unloaded;
+        ledgerLoader = loader;
+        throw e;
+      } finally {
+        loading = false;
+      }
+      Ledger read = ledger;
+      loadedLedger = new Ledger(read.dates, read.quantities, read.size, read.quantity, null,
+              true);
+      ledger = loadedLedger;
+    }
+    return loadedLedger == null ? ledger : loadedLedger;
+  }
+
+  synchronized boolean isLedgerLoaded() {
+    return ledger.loaded;
   }
 
   /**
@@ -51,40 +165,128 @@ public class Stock implements StockInterface {
    * @return the number of shares owned
    */
   protected float getQuantity() {
-    return quantity;
-  }
-
-  protected void setQuantity(float quantity) {
-    this.quantity += quantity;
+    return ledger.quantity;
   }
 
   public String getDates() {
-
-    return transactionDates.stream()
-            .map(String::valueOf)
+    Ledger current = ledger();
+    return Arrays.stream(current.dates, 0, current.size)
             .collect(Collectors.joining(",", "", ""));
   }
 
   protected String getQuantities() {
-    return transactionQuantity.stream()
-            .map(String::valueOf)
-            .collect(Collectors.joining(",", "", ""));
+    Ledger current = ledger();
+    StringBuilder quantities = new StringBuilder();
+    for (int i = 0; i < current.size; i++) {
+      quantities.append(i == 0 ? "" : ",").append(current.quantities[i]);
+    }
+    return quantities.toString();
+  }
+
+  protected int getTransactionCount() {
+    return ledger().size;
+  }
+
+  /**
+   * Returns the date of a transaction as an epoch day.
+   *
+   * @param index the position of the transaction in the ledger
+   * @return the epoch day the transaction was made on
+   */
+  protected long getTransactionDay(int index) {
+    return PriceSeries.parseDay(transactionDate(ledger(), index));
+  }
+
+  protected float getTransactionQuantity(int index) {
+    Ledger current = ledger();
+    transactionDate(current, index);
+    return current.quantities[index];
+  }
+
+  private static String transactionDate(Ledger ledger, int index) {
+    if (index < 0 || index >= ledger.size) {
+      throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length "
+              + ledger.size);
+    }
+    return ledger.dates[index];
+  }
+
+  /**
+   * Adds a transaction to the ledger without changing the quantity owned.
+   *
+   * @param date     the date of the transaction
+   * @param quantity the quantity bought, negative for a sale
+   */
+  protected synchronized void transact(String date, float quantity) {
+    append(date, quantity, 0);
+  }
+
+  /**
+   * Adds a transaction to the ledger and to the quantity owned, which readers see change
+   * together.
+   *
+   * @param date     the date of the transaction
+   * @param quantity the quantity bought, negative for a sale
+   */
+  protected synchronized void trade(String date, float quantity) {
+    append(date, quantity, quantity);
   }
 
-  protected void transact(String date, float quantity) {
-    transactionQuantity.add(quantity);
-    transactionDates.add(date);
+  private void append(String date, float quantity, float owned) {
+    checkWritable();
+    Ledger current = loading ? ledger : ledger();
+    String[] dates = current.dates;
+    float[] quantities = current.quantities;
+    if (current.size == dates.length) {
+      int capacity = Math.max(4, dates.length * 2);
+      dates = Arrays.copyOf(dates, capacity);
+      quantities = Arrays.copyOf(quantities, capacity);
+    }
+    dates[current.size] = date;
+    quantities[current.size] = quantity;
+    ledger = new Ledger(dates, quantities, current.size + 1, current.quantity + owned,
+            loading ? current.lastDate : null, !loading);
+  }
+
+  private void checkWritable() {
+    if (source != this) {
+      throw new UnsupportedOperationException("A snapshot of " + symbol + " cannot be changed");
+    }
   }
 
   /**
-   * Retrieves the data file associated with the stock symbol.
-   * The file is in a directory named 'data' within the user's current working directory.
+   * Makes the stock and its snapshots read prices from the data folder of a workspace instead
+   * of the default one.
+   *
+   * @param data the layout of the data folder
+   */
+  void useData(DirectoryLayout data) {
+    source.data = data;
+  }
+
+  /**
+   * Retrieves the data file associated with the stock symbol, in the data folder of the
+   * stock's workspace.
    *
    * @return a File object pointing to the stock's data file
    */
   private File getData() {
-    return new File(System.getProperty("user.dir") + "/data/" + symbol.toUpperCase()
-            + ".csv");
+    return PriceCache.dataFile(data(), symbol);
+  }
+
+  private DirectoryLayout data() {
+    DirectoryLayout layout = source.data;
+    return layout != null ? layout : PriceCache.dataDirectory();
+  }
+
+  /**
+   * Returns the prices of the stock from the shared price cache.
+   *
+   * @return the price series of the stock
+   * @throws Exception if there is no data file for the symbol or it cannot be read
+   */
+  PriceSeries prices() throws Exception {
+    return PriceCache.get(symbol, getData());
   }
 
   /**
@@ -131,11 +333,12 @@ public class Stock implements StockInterface {
     SimpleDateFormat parser = new SimpleDateFormat("yyyy-MM-dd");
     Date targetDate = parser.parse(date);
     int totalQuantity = 0;
+    Ledger current = ledger();
 
-    for (int i = 0; i < transactionDates.size(); i++) {
-      Date transactionDate = parser.parse(transactionDates.get(i));
+    for (int i = 0; i < current.size; i++) {
+      Date transactionDate = parser.parse(current.dates[i]);
       if (!transactionDate.after(targetDate)) {
-        totalQuantity += transactionQuantity.get(i);
+        totalQuantity += current.quantities[i];
       }
     }
     return totalQuantity;
@@ -170,12 +373,13 @@ public class Stock implements StockInterface {
     float costBasis = 0f;
     SimpleDateFormat parser = new SimpleDateFormat("yyyy-MM-dd");
     Date targetDate = parser.parse(date);
+    Ledger current = ledger();
 
-    for (int i = 0; i < transactionDates.size(); i++) {
-      Date transactionDate = parser.parse(transactionDates.get(i));
+    for (int i = 0; i < current.size; i++) {
+      Date transactionDate = parser.parse(current.dates[i]);
       if (!transactionDate.after(targetDate)) {
-        float quantity = transactionQuantity.get(i);
-        float priceOnDate = getBuyPriceOnDate(transactionDates.get(i));
+        float quantity = current.quantities[i];
+        float priceOnDate = getBuyPriceOnDate(current.dates[i]);
         costBasis += quantity * priceOnDate;
       }
     }
@@ -262,7 +466,8 @@ public class Stock implements StockInterface {
    * @param startDate The start date of the period in "yyyy-MM-dd" format.
    * @param endDate   The end date of the period in "yyyy-MM-dd" format.
    * @return A list of strings describing the crossovers.
-   * @throws Exception If there's an error in fetching or parsing the data.
+   * @throws Exception If there's an error in fetching or parsing the data, or if the thread is
+   *                   interrupted, which cancels the search.
    */
   @Override
   public String findCrossovers(String startDate, String endDate) throws Exception {
@@ -274,6 +479,9 @@ public class Stock implements StockInterface {
     float difference = 0.00f;
     StringBuilder result = new StringBuilder();
     while (!start.isAfter(end)) {
+      if (Thread.interrupted()) {
+        throw new InterruptedException("Crossover search cancelled");
+      }
       float closingPrice = getPriceOnDate(start.toString());
       float movingAverage = calculateMovingAverage(start.toString(), 30);
       if (closingPrice > movingAverage && difference > 0) {
@@ -295,7 +503,8 @@ public class Stock implements StockInterface {
    * @param x         The number of days for the smaller moving average.
    * @param y         The number of days for the larger moving average.
    * @return A list of strings describing the moving crossovers.
-   * @throws Exception If there's an error in fetching or parsing the data.
+   * @throws Exception If there's an error in fetching or parsing the data, or if the thread is
+   *                   interrupted, which cancels the search.
    */
   @Override
   public String findMovingCrossovers(String startDate, String endDate, int x, int y) throws
@@ -312,6 +521,9 @@ public class Stock implements StockInterface {
     StringBuilder result = new StringBuilder();
 
     while (!start.isAfter(end)) {
+      if (Thread.interrupted()) {
+        throw new InterruptedException("Crossover search cancelled");
+      }
       float movingAverageX = calculateMovingAverage(start.toString(), x);
       float movingAverageY = calculateMovingAverage(start.toString(), y);
       if (movingAverageX > movingAverageY && difference > 0) {
@@ -326,28 +538,53 @@ public class Stock implements StockInterface {
     return String.valueOf(result);
   }
 
-  //  @Override
+  /**
+   * Calculates risk metrics of the stock's closing prices between two dates in one pass
+   * over its cached price series.
+   *
+   * @param startDate the start date in "yyyy-MM-dd" format
+   * @param endDate   the end date in "yyyy-MM-dd" format
+   * @param benchmark the symbol beta is measured against
+   * @param window    the number of trading days in each rolling volatility window
+   * @return the risk metrics
+   * @throws Exception if price data is missing or the dates are invalid
+   */
+  @Override
+  public RiskReport calculateRisk(String startDate, String endDate, String benchmark, int window)
+          throws Exception {
+    LocalDate start = LocalDate.parse(startDate);
+    LocalDate end = LocalDate.parse(endDate);
+    if (start.isAfter(end)) {
+      throw new IllegalArgumentException("StartDate should not be greater than EndDate");
+    }
+    ValuationSeries series = ValuationSeries.ofPrices(prices(), start.toEpochDay(),
+            end.toEpochDay());
+    return RiskAnalyzer.analyze(series,
+            PriceCache.get(benchmark, PriceCache.dataFile(data(), benchmark)), window, 0);
+  }
+
+  /**
+   * Retrieves the price at which a purchase placed on the given date is filled, which is the
+   * closing price of the trading day after the closest trading day on or before the date.
+   *
+   * @param date the purchase date in "yyyy-MM-dd" format
+   * @return the fill price of the purchase
+   * @throws Exception if there is no data for the symbol or for the date
+   */
   protected float getBuyPriceOnDate(String date) throws Exception {
-    try {
-      Scanner s = new Scanner(getData());
-      List<String> prevLine = Arrays.asList(s.next().split(","));
-      List<String> line;
-      while (s.hasNext()) {
-        line = Arrays.asList(s.next().split(","));
-        SimpleDateFormat parser = new SimpleDateFormat("yyyy-MM-dd");
-        Boolean equals = parser.parse(date).equals(parser.parse(line.get(0)));
-        Boolean after = parser.parse(date).after(parser.parse(line.get(0)));
-        if (equals || after) {
-          return Float.parseFloat(prevLine.get(4));
-        }
-        prevLine = line;
-      }
-    } catch (FileNotFoundException e) {
-      throw new Exception("No Data found for given stock symbol");
-    } catch (ParseException e) {
-      throw new RuntimeException(e);
+    return prices().buyPriceOnDay(LocalDate.parse(date).toEpochDay());
+  }
+
+  /**
+   * Returns the date of the most recent transaction of this stock.
+   *
+   * @return the last transaction date in "yyyy-MM-dd" format, or null if there is none
+   */
+  protected String getLastTransactionDate() {
+    Ledger current = ledger;
+    if (!current.loaded) {
+      return current.lastDate;
     }
-    throw new IllegalArgumentException("No Data found for given Date");
+    return current.size == 0 ? null : current.dates[current.size - 1];
   }
 }
-
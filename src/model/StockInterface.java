@@ -60,4 +60,19 @@ public interface StockInterface {
    * @throws Exception If there's an error in fetching or parsing the data.
    */
   String findMovingCrossovers(String startDate, String endDate, int x, int y) throws Exception;
+
+  /**
+   * Calculates risk metrics of the stock's daily closing prices between two dates: annualized
+   * and rolling volatility, maximum drawdown, Sharpe and Sortino ratios and beta against a
+   * benchmark symbol.
+   *
+   * @param startDate The start date of the period in "yyyy-MM-dd" format.
+   * @param endDate   The end date of the period in "yyyy-MM-dd" format.
+   * @param benchmark The symbol of the stock or index fund beta is measured against.
+   * @param window    The number of trading days in each rolling volatility window.
+   * @return A RiskReport holding the metrics.
+   * @throws Exception If price data is missing or the dates are invalid.
+   */
+  RiskReport calculateRisk(String startDate, String endDate, String benchmark, int window)
+          throws Exception;
 }
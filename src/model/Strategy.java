@@ -1,16 +1,21 @@
 package model;
 
-import java.io.BufferedWriter;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
  * Represents an investment strategy, encapsulating start and end dates, a period for transactions,
- * and associated stocks and their prices.
+ * and associated stocks and their prices. A portfolio can have several strategies, each kept
+ * under its own name; the strategy saved without a name is called {@link #DEFAULT_NAME}.
  */
 public class Strategy {
+  /**
+   * The name of the strategy a portfolio had before portfolios could have several.
+   */
+  public static final String DEFAULT_NAME = "default";
+
   private String startDate;
 
   private String endDate;
@@ -21,6 +26,8 @@ public class Strategy {
 
   private List<Float> prices;
 
+  private String lastExecuted;
+
   /**
    * Constructs a Strategy with specified parameters.
    *
@@ -59,37 +66,146 @@ public class Strategy {
   }
 
   /**
-   * Saves the strategy to an XML file named after the specified portfolio name.
+   * Returns the last scheduled date up to which the strategy has been executed.
+   *
+   * @return the date in "yyyy-MM-dd" format, or null if the strategy has never been executed
+   */
+  protected String getLastExecuted() {
+    return lastExecuted;
+  }
+
+  protected void setLastExecuted(String lastExecuted) {
+    this.lastExecuted = lastExecuted;
+  }
+
+  /**
+   * Returns a copy of the strategy that can be executed without changing this one.
+   *
+   * @return the copy
+   */
+  Strategy copy() {
+    Strategy copy = new Strategy(startDate, endDate, period, stocks, prices);
+    copy.lastExecuted = lastExecuted;
+    return copy;
+  }
+
+  /**
+   * Saves the strategy as the default strategy of the specified portfolio in the default
+   * repository.
    *
    * @param portfolioname The name of the portfolio for which the strategy is being saved.
    * @return A success message if saved successfully, otherwise an error message.
    */
   public String saveStrategy(String portfolioname) {
-    String path = System.getProperty("user.dir") + "/strategies/";
-    String fileName = portfolioname + ".xml";
-    try (BufferedWriter writer = new BufferedWriter(new FileWriter(path + fileName))) {
-      writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
-      writer.write("<strategy>\n");
-      writer.write("\t<startDate>" + this.startDate + "</startDate>\n");
-      writer.write("\t<endDate>" + this.endDate + "</endDate>\n");
-      writer.write("\t<period>" + this.period + "</period>\n");
-
-      writer.write("\t<stocks>");
-      writer.write(stocks.stream()
-              .map(String::valueOf)
-              .collect(Collectors.joining(",", "", "")));
-      writer.write("</stocks>\n");
-
-      writer.write("\t<prices>");
-      writer.write(prices.stream()
-              .map(String::valueOf)
-              .collect(Collectors.joining(",", "", "")));
-      writer.write("</prices>\n");
-
-      writer.write("</strategy>");
-      return "Strategy saved to " + fileName;
+    return saveStrategy(portfolioname, DEFAULT_NAME);
+  }
+
+  /**
+   * Saves the strategy under a name among the strategies of the specified portfolio in the
+   * default repository, replacing any strategy of that name.
+   *
+   * @param portfolioname The name of the portfolio for which the strategy is being saved.
+   * @param strategyName  The name of the strategy.
+   * @return A success message if saved successfully, otherwise an error message.
+   */
+  public String saveStrategy(String portfolioname, String strategyName) {
+    return saveStrategy(PortfolioRepository.getDefault(), portfolioname, strategyName);
+  }
+
+  /**
+   * Saves the strategy under a name among the strategies of a portfolio in a workspace,
+   * replacing any strategy of that name.
+   *
+   * @param workspace     the workspace holding the portfolio
+   * @param portfolioname the name of the portfolio for which the strategy is being saved
+   * @param strategyName  the name of the strategy
+   * @return a success message if saved successfully, otherwise an error message
+   */
+  public String saveStrategy(Workspace workspace, String portfolioname, String strategyName) {
+    return saveStrategy(workspace.getRepository(), portfolioname, strategyName);
+  }
+
+  /**
+   * Saves the strategy under a name among the strategies of a portfolio in the given repository.
+   *
+   * @param repository    the repository holding the portfolio
+   * @param portfolioname the name of the portfolio for which the strategy is being saved
+   * @param strategyName  the name of the strategy
+   * @return a success message if saved successfully, otherwise an error message
+   */
+  String saveStrategy(PortfolioRepository repository, String portfolioname,
+                      String strategyName) {
+    if (!Manager.isValidName(strategyName)) {
+      return "Error saving strategy: Invalid strategy name " + strategyName;
+    }
+    try {
+      StrategyRegistry.of(repository).put(portfolioname, strategyName, this);
+      return "Strategy saved to " + portfolioname + ".xml";
     } catch (IOException e) {
       return "Error saving strategy: " + e.getMessage();
     }
   }
+
+  /**
+   * Renders the strategy as the XML of a strategy file.
+   *
+   * @return the XML of the strategy
+   */
+  String renderXml() {
+    StringBuilder xml = new StringBuilder();
+    xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+    appendXml(xml, "", null);
+    return xml.toString();
+  }
+
+  /**
+   * Renders the strategies of a portfolio as the XML of a strategy file. A portfolio with only
+   * a default strategy is written as versions without named strategies wrote it.
+   *
+   * @param strategies the strategies by name
+   * @return the XML of the strategies
+   */
+  static String renderXml(Map<String, Strategy> strategies) {
+    if (strategies.size() == 1 && strategies.containsKey(DEFAULT_NAME)) {
+      return strategies.get(DEFAULT_NAME).renderXml();
+    }
+    StringBuilder xml = new StringBuilder();
+    xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+    xml.append("<strategies>\n");
+    for (Map.Entry<String, Strategy> entry : strategies.entrySet()) {
+      entry.getValue().appendXml(xml, "\t", entry.getKey());
+      xml.append("\n");
+    }
+    xml.append("</strategies>");
+    return xml.toString();
+  }
+
+  private void appendXml(StringBuilder xml, String indent, String name) {
+    xml.append(indent).append("<strategy");
+    if (name != null) {
+      xml.append(" name=\"").append(name).append("\"");
+    }
+    xml.append(">\n");
+    xml.append(indent).append("\t<startDate>").append(this.startDate).append("</startDate>\n");
+    xml.append(indent).append("\t<endDate>").append(this.endDate).append("</endDate>\n");
+    xml.append(indent).append("\t<period>").append(this.period).append("</period>\n");
+    if (this.lastExecuted != null) {
+      xml.append(indent).append("\t<lastExecuted>").append(this.lastExecuted)
+              .append("</lastExecuted>\n");
+    }
+
+    xml.append(indent).append("\t<stocks>");
+    xml.append(stocks.stream()
+            .map(String::valueOf)
+            .collect(Collectors.joining(",", "", "")));
+    xml.append("</stocks>\n");
+
+    xml.append(indent).append("\t<prices>");
+    xml.append(prices.stream()
+            .map(String::valueOf)
+            .collect(Collectors.joining(",", "", "")));
+    xml.append("</prices>\n");
+
+    xml.append(indent).append("</strategy>");
+  }
 }
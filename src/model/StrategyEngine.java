@@ -0,0 +1,170 @@
+package model;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Executes a dollar cost averaging {@link Strategy} against a {@link FlexiblePortfolio} in one
+ * batch. All purchases that are due are planned first, priced in a single forward sweep over the
+ * cached price series of each stock, applied together and persisted with one save. The last
+ * scheduled date that was fully executed is recorded on the strategy, so a later run only has to
+ * do the catch-up work from that date onwards; saving the strategy is left to the
+ * {@link StrategyRegistry}.
+ */
+class StrategyEngine {
+  private final FlexiblePortfolio portfolio;
+  private final Strategy strategy;
+  private final List<String> errors;
+
+  /**
+   * Constructs an engine for running the given strategy on the given portfolio.
+   *
+   * @param portfolio the portfolio the purchases are made in
+   * @param strategy  the strategy describing the schedule and amounts
+   */
+  StrategyEngine(FlexiblePortfolio portfolio, Strategy strategy) {
+    this.portfolio = portfolio;
+    this.strategy = strategy;
+    this.errors = new ArrayList<>();
+  }
+
+  /**
+   * Lists the scheduled dates of a strategy that fall between two dates, both inclusive.
+   *
+   * @param first  the first scheduled date
+   * @param last   the last date a purchase may be scheduled on
+   * @param period the number of days between two scheduled dates
+   * @return the scheduled dates in ascending order
+   */
+  static List<LocalDate> dueDates(LocalDate first, LocalDate last, int period) {
+    if (period <= 0) {
+      throw new IllegalArgumentException("Strategy period must be greater than 0");
+    }
+    List<LocalDate> dates = new ArrayList<>();
+    for (LocalDate date = first; !date.isAfter(last); date = date.plusDays(period)) {
+      dates.add(date);
+    }
+    return dates;
+  }
+
+  /**
+   * Returns the problems found during the last execution, such as stocks missing from the
+   * portfolio or dates without price data.
+   *
+   * @return a list of error messages
+   */
+  List<String> getErrors() {
+    return errors;
+  }
+
+  /**
+   * Executes every purchase that is due up to the given date and has not been made yet.
+   * Purchases stop at the first scheduled date for which a price is not available yet, so
+   * they are caught up on the next run once the price data has been updated.
+   *
+   * @param today the date up to which purchases are due
+   * @return the number of purchases that were made
+   * @throws Exception if the strategy dates cannot be parsed
+   */
+  int execute(LocalDate today) throws Exception {
+    errors.clear();
+    LocalDate end = "1".equals(strategy.getEndDate())
+            ? today : LocalDate.parse(strategy.getEndDate());
+    if (end.isAfter(today)) {
+      end = today;
+    }
+    LocalDate first = strategy.getLastExecuted() == null
+            ? LocalDate.parse(strategy.getStartDate())
+            : LocalDate.parse(strategy.getLastExecuted()).plusDays(strategy.getPeriod());
+    List<LocalDate> due = dueDates(first, end, strategy.getPeriod());
+    if (due.isEmpty()) {
+      return 0;
+    }
+
+    int count = strategy.getStocks().size();
+    Stock[] stocks = new Stock[count];
+    PriceSeries[] series = new PriceSeries[count];
+    long[] lastBought = new long[count];
+    int[] cursor = new int[count];
+    for (int i = 0; i < count; i++) {
+      String symbol = strategy.getStocks().get(i);
+      for (Stock stock : portfolio.stocksList) {
+        if (stock.getSymbol().equalsIgnoreCase(symbol)) {
+          stocks[i] = stock;
+          break;
+        }
+      }
+      if (stocks[i] == null) {
+        errors.add("Stock " + symbol + " is not part of the portfolio");
+        continue;
+      }
+      try {
+        series[i] = stocks[i].prices();
+      } catch (Exception e) {
+        errors.add(symbol + ": " + e.getMessage());
+        stocks[i] = null;
+        continue;
+      }
+      String last = stocks[i].getLastTransactionDate();
+      lastBought[i] = last == null ? Long.MIN_VALUE : LocalDate.parse(last).toEpochDay();
+      cursor[i] = -1;
+    }
+
+    List<Integer> plannedStocks = new ArrayList<>();
+    List<String> plannedDates = new ArrayList<>();
+    List<Float> plannedQuantities = new ArrayList<>();
+    String executedThrough = null;
+    sweep:
+    for (LocalDate date : due) {
+      long day = date.toEpochDay();
+      int planned = plannedStocks.size();
+      for (int i = 0; i < count; i++) {
+        if (stocks[i] == null || lastBought[i] >= day) {
+          continue;
+        }
+        PriceSeries prices = series[i];
+        while (cursor[i] + 1 < prices.size() && prices.dayAt(cursor[i] + 1) <= day) {
+          cursor[i]++;
+        }
+        if (cursor[i] < 0) {
+          errors.add("No Data found for " + stocks[i].getSymbol() + " on " + date);
+          continue;
+        }
+        if (cursor[i] + 1 >= prices.size()) {
+          while (plannedStocks.size() > planned) {
+            plannedStocks.remove(plannedStocks.size() - 1);
+            plannedDates.remove(plannedDates.size() - 1);
+            plannedQuantities.remove(plannedQuantities.size() - 1);
+          }
+          break sweep;
+        }
+        plannedStocks.add(i);
+        plannedDates.add(date.toString());
+        plannedQuantities.add(strategy.getPrices().get(i) / prices.closeAt(cursor[i] + 1));
+      }
+      for (int p = planned; p < plannedStocks.size(); p++) {
+        lastBought[plannedStocks.get(p)] = day;
+      }
+      executedThrough = date.toString();
+    }
+
+    for (int p = 0; p < plannedStocks.size(); p++) {
+      Stock stock = stocks[plannedStocks.get(p)];
+      stock.trade(plannedDates.get(p), plannedQuantities.get(p));
+    }
+    if (!plannedStocks.isEmpty()) {
+      String result = portfolio.save();
+      if (result.startsWith("Error")) {
+        // the purchases stay in the portfolio and are saved once the write is retried, but the
+        // marker is only moved on once they are known to be on disk
+        errors.add(result);
+        return plannedStocks.size();
+      }
+    }
+    if (executedThrough != null) {
+      strategy.setLastExecuted(executedThrough);
+    }
+    return plannedStocks.size();
+  }
+}
@@ -0,0 +1,366 @@
+package model;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the strategies of every portfolio of a repository in memory. They are read once and
+ * then only read again for portfolios whose strategies changed since, which the repository's
+ * strategy versions tell without reading any strategy. Saving goes through the registry, so its
+ * own writes never have to be read back.
+ *
+ * <p>Looking up, saving and running the strategies of one portfolio compares the registry with
+ * the repository at most once every {@code portfolio.strategySyncMillis} milliseconds, one
+ * second by default, so strategies changed outside this process are seen within that time
+ * without listing the strategies for every call. A scheduler pass always compares them first.
+ *
+ * <p>A portfolio can have several named strategies, each with its own schedule and its own
+ * marker of the last scheduled date it ran up to. For each portfolio the registry keeps the
+ * earliest day any of its strategies is due next, so a scheduler pass only has to compare one
+ * number per portfolio to find the portfolios with work to do, and opens only those.
+ *
+ * <p>The registry only holds its own lock while reading or updating its maps; strategies run
+ * under the lock of their portfolio on copies, and the new markers are recorded afterwards.
+ */
+final class StrategyRegistry {
+  private static final Map<PortfolioRepository, StrategyRegistry> REGISTRIES =
+          new IdentityHashMap<>();
+  private static final long SYNC_INTERVAL = Long.getLong("portfolio.strategySyncMillis", 1000);
+
+  private final PortfolioRepository repository;
+  private final Map<String, Entry> entries = new HashMap<>();
+  private boolean synced;
+  private long syncedAt;
+
+  /**
+   * The strategies of one portfolio.
+   */
+  private static final class Entry {
+    private long version;
+    private Map<String, Strategy> strategies = new LinkedHashMap<>();
+    private long nextDue = Long.MAX_VALUE;
+
+    private void schedule() {
+      nextDue = Long.MAX_VALUE;
+      for (Strategy strategy : strategies.values()) {
+        nextDue = Math.min(nextDue, nextDue(strategy));
+      }
+    }
+  }
+
+  private StrategyRegistry(PortfolioRepository repository) {
+    this.repository = repository;
+  }
+
+  /**
+   * Returns the registry of a repository, creating it the first time it is asked for.
+   *
+   * @param repository the repository the strategies are kept in
+   * @return the registry of the repository
+   */
+  static StrategyRegistry of(PortfolioRepository repository) {
+    synchronized (REGISTRIES) {
+      return REGISTRIES.computeIfAbsent(repository, StrategyRegistry::new);
+    }
+  }
+
+  /**
+   * Returns the epoch day a strategy is due to run next: its start date if it has never run,
+   * otherwise one period after the last scheduled date it ran up to.
+   *
+   * @param strategy the strategy
+   * @return the epoch day, or Long.MAX_VALUE if the strategy has ended or cannot run
+   */
+  static long nextDue(Strategy strategy) {
+    try {
+      if (strategy.getPeriod() <= 0) {
+        return Long.MAX_VALUE;
+      }
+      LocalDate next = strategy.getLastExecuted() == null
+              ? LocalDate.parse(strategy.getStartDate())
+              : LocalDate.parse(strategy.getLastExecuted()).plusDays(strategy.getPeriod());
+      if (!"1".equals(strategy.getEndDate())
+              && next.isAfter(LocalDate.parse(strategy.getEndDate()))) {
+        return Long.MAX_VALUE;
+      }
+      return next.toEpochDay();
+    } catch (RuntimeException e) {
+      return Long.MAX_VALUE;
+    }
+  }
+
+  /**
+   * Brings the registry up to date with the repository, reading the strategies of the
+   * portfolios whose version changed and forgetting those of portfolios that have none left.
+   */
+  synchronized void sync() {
+    synced = true;
+    syncedAt = System.nanoTime();
+    Map<String, Long> versions = repository.strategyVersions();
+    entries.keySet().retainAll(versions.keySet());
+    for (Map.Entry<String, Long> version : versions.entrySet()) {
+      Entry entry = entries.get(version.getKey());
+      if (entry != null && entry.version == version.getValue()) {
+        continue;
+      }
+      if (entry == null) {
+        entry = new Entry();
+        entries.put(version.getKey(), entry);
+      }
+      try {
+        entry.strategies = repository.loadStrategies(version.getKey());
+      } catch (Exception e) {
+        System.err.println("Cannot read strategies of " + version.getKey() + ": "
+                + e.getMessage());
+        entry.strategies = new LinkedHashMap<>();
+      }
+      entry.version = version.getValue();
+      entry.schedule();
+    }
+  }
+
+  /**
+   * Brings the registry up to date with the repository unless it was brought up to date less
+   * than the sync interval ago.
+   */
+  private synchronized void syncIfStale() {
+    if (!synced || System.nanoTime() - syncedAt >= SYNC_INTERVAL * 1_000_000L) {
+      sync();
+    }
+  }
+
+  /**
+   * Returns a copy of a strategy of a portfolio.
+   *
+   * @param portfolio the name of the portfolio
+   * @param name      the name of the strategy
+   * @return the strategy, or null if the portfolio has no strategy of that name
+   */
+  synchronized Strategy get(String portfolio, String name) {
+    syncIfStale();
+    Entry entry = entries.get(portfolio);
+    Strategy strategy = entry == null ? null : entry.strategies.get(name);
+    return strategy == null ? null : strategy.copy();
+  }
+
+  /**
+   * Returns the names of the strategies of a portfolio.
+   *
+   * @param portfolio the name of the portfolio
+   * @return the names, in the order the strategies were added
+   */
+  synchronized List<String> names(String portfolio) {
+    syncIfStale();
+    Entry entry = entries.get(portfolio);
+    return entry == null ? new ArrayList<>() : new ArrayList<>(entry.strategies.keySet());
+  }
+
+  /**
+   * Adds a strategy to a portfolio, replacing any strategy of the same name, and saves the
+   * portfolio's strategies.
+   *
+   * @param portfolio the name of the portfolio
+   * @param name      the name of the strategy
+   * @param strategy  the strategy
+   * @throws IOException if the strategies cannot be saved
+   */
+  synchronized void put(String portfolio, String name, Strategy strategy) throws IOException {
+    syncIfStale();
+    Map<String, Strategy> strategies = new LinkedHashMap<>();
+    Entry entry = entries.get(portfolio);
+    if (entry != null) {
+      strategies.putAll(entry.strategies);
+    }
+    strategies.put(name, strategy.copy());
+    save(portfolio, strategies);
+  }
+
+  /**
+   * Removes a strategy from a portfolio and saves the portfolio's remaining strategies.
+   *
+   * @param portfolio the name of the portfolio
+   * @param name      the name of the strategy
+   * @return true if the portfolio had a strategy of that name
+   * @throws IOException if the strategies cannot be saved
+   */
+  synchronized boolean remove(String portfolio, String name) throws IOException {
+    syncIfStale();
+    Entry entry = entries.get(portfolio);
+    if (entry == null || !entry.strategies.containsKey(name)) {
+      return false;
+    }
+    Map<String, Strategy> strategies = new LinkedHashMap<>(entry.strategies);
+    strategies.remove(name);
+    save(portfolio, strategies);
+    return true;
+  }
+
+  private void save(String portfolio, Map<String, Strategy> strategies) throws IOException {
+    long version = repository.saveStrategies(portfolio, strategies);
+    if (strategies.isEmpty()) {
+      entries.remove(portfolio);
+      return;
+    }
+    Entry entry = entries.computeIfAbsent(portfolio, key -> new Entry());
+    entry.strategies = strategies;
+    entry.version = version;
+    entry.schedule();
+  }
+
+  /**
+   * Returns copies of the strategies of a portfolio that are due on or before a day.
+   */
+  private synchronized Map<String, Strategy> due(String portfolio, long day) {
+    Map<String, Strategy> due = new LinkedHashMap<>();
+    Entry entry = entries.get(portfolio);
+    if (entry != null && entry.nextDue <= day) {
+      for (Map.Entry<String, Strategy> strategy : entry.strategies.entrySet()) {
+        if (nextDue(strategy.getValue()) <= day) {
+          due.put(strategy.getKey(), strategy.getValue().copy());
+        }
+      }
+    }
+    return due;
+  }
+
+  /**
+   * Records the last scheduled date each strategy of a portfolio ran up to and saves the
+   * portfolio's strategies once. Strategies removed or replaced while they ran are left alone.
+   */
+  private synchronized void record(String portfolio, Map<String, Strategy> ran,
+                                   Map<String, String> executed) throws IOException {
+    Entry entry = entries.get(portfolio);
+    if (entry == null || executed.isEmpty()) {
+      return;
+    }
+    Map<String, Strategy> strategies = new LinkedHashMap<>(entry.strategies);
+    boolean changed = false;
+    for (Map.Entry<String, String> marker : executed.entrySet()) {
+      Strategy current = strategies.get(marker.getKey());
+      Strategy before = ran.get(marker.getKey());
+      if (current != null && before != null && sameSchedule(current, before)) {
+        Strategy updated = current.copy();
+        updated.setLastExecuted(marker.getValue());
+        strategies.put(marker.getKey(), updated);
+        changed = true;
+      }
+    }
+    if (changed) {
+      save(portfolio, strategies);
+    }
+  }
+
+  private static boolean sameSchedule(Strategy current, Strategy before) {
+    return current.getPeriod() == before.getPeriod()
+            && String.valueOf(current.getStartDate()).equals(before.getStartDate())
+            && String.valueOf(current.getEndDate()).equals(before.getEndDate())
+            && current.getStocks().equals(before.getStocks())
+            && current.getPrices().equals(before.getPrices());
+  }
+
+  /**
+   * Runs every strategy of a portfolio that is due up to a day, then records how far each got.
+   *
+   * @param portfolio the portfolio the strategies buy in
+   * @param today     the date up to which purchases are due
+   * @param errors    the problems found, added to, each naming the strategy
+   * @return the number of strategies that ran and the number of purchases they made
+   * @throws IOException if the strategies cannot be saved
+   */
+  int[] run(FlexiblePortfolio portfolio, LocalDate today, List<String> errors)
+          throws IOException {
+    syncIfStale();
+    return execute(portfolio, today, errors);
+  }
+
+  private int[] execute(FlexiblePortfolio portfolio, LocalDate today, List<String> errors)
+          throws IOException {
+    Map<String, Strategy> due = due(portfolio.name, today.toEpochDay());
+    Map<String, Strategy> ran = new HashMap<>();
+    Map<String, String> executed = new LinkedHashMap<>();
+    int purchases = 0;
+    synchronized (portfolio) {
+      for (Map.Entry<String, Strategy> strategy : due.entrySet()) {
+        Strategy copy = strategy.getValue();
+        String before = copy.getLastExecuted();
+        ran.put(strategy.getKey(), copy.copy());
+        StrategyEngine engine = new StrategyEngine(portfolio, copy);
+        try {
+          purchases += engine.execute(today);
+        } catch (Exception e) {
+          errors.add(strategy.getKey() + ": " + e.getMessage());
+          continue;
+        }
+        for (String error : engine.getErrors()) {
+          errors.add(strategy.getKey() + ": " + error);
+        }
+        if (copy.getLastExecuted() != null && !copy.getLastExecuted().equals(before)) {
+          executed.put(strategy.getKey(), copy.getLastExecuted());
+        }
+      }
+    }
+    record(portfolio.name, ran, executed);
+    return new int[] {due.size(), purchases};
+  }
+
+  /**
+   * Runs every due strategy of every portfolio in one pass. Only portfolios with a strategy
+   * due are opened; strategies of portfolios that no longer exist are skipped.
+   *
+   * @param today the date up to which purchases are due
+   * @return a summary of the pass listing the problems found
+   */
+  String runDue(LocalDate today) {
+    long start = System.currentTimeMillis();
+    List<String> portfolios = new ArrayList<>();
+    synchronized (this) {
+      sync();
+      for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+        if (entry.getValue().nextDue <= today.toEpochDay()) {
+          portfolios.add(entry.getKey());
+        }
+      }
+    }
+    portfolios.sort(null);
+    int opened = 0;
+    int strategies = 0;
+    int purchases = 0;
+    List<String> errors = new ArrayList<>();
+    for (String name : portfolios) {
+      if (!repository.exists(name)) {
+        continue;
+      }
+      List<String> found = new ArrayList<>();
+      try {
+        int[] counts = execute(repository.loadFlexiblePortfolio(name), today, found);
+        opened++;
+        strategies += counts[0];
+        purchases += counts[1];
+      } catch (Exception e) {
+        found.add(e.getMessage());
+      }
+      for (String error : found) {
+        errors.add(name + "/" + error);
+      }
+    }
+    try {
+      WriteBehindQueue.flush();
+    } catch (IOException e) {
+      errors.add("Cannot save portfolios: " + e.getMessage());
+    }
+    StringBuilder output = new StringBuilder();
+    output.append("Ran ").append(strategies).append(" strategies in ").append(opened)
+            .append(" portfolios, made ").append(purchases).append(" purchases in ")
+            .append(System.currentTimeMillis() - start).append(" ms\r\n");
+    for (String error : errors) {
+      output.append(error).append("\r\n");
+    }
+    return output.toString();
+  }
+}
@@ -0,0 +1,54 @@
+package model;
+
+/**
+ * One purchase or sale recorded in a portfolio's ledger, as returned by the cross-portfolio
+ * queries of a {@link PortfolioRepository}.
+ */
+public final class Trade {
+  private final String portfolio;
+  private final String symbol;
+  private final String date;
+  private final float quantity;
+  final long seq;
+  final int position;
+
+  /**
+   * Constructs a trade.
+   *
+   * @param portfolio the name of the portfolio the trade was made in
+   * @param symbol    the symbol of the stock
+   * @param date      the date of the trade in "yyyy-MM-dd" format
+   * @param quantity  the quantity bought, negative for a sale
+   * @param seq       the journal sequence number of the trade, or 0 if it is not journaled
+   * @param position  the position of the stock in the portfolio
+   */
+  Trade(String portfolio, String symbol, String date, float quantity, long seq, int position) {
+    this.portfolio = portfolio;
+    this.symbol = symbol;
+    this.date = date;
+    this.quantity = quantity;
+    this.seq = seq;
+    this.position = position;
+  }
+
+  public String getPortfolio() {
+    return portfolio;
+  }
+
+  public String getSymbol() {
+    return symbol;
+  }
+
+  public String getDate() {
+    return date;
+  }
+
+  public float getQuantity() {
+    return quantity;
+  }
+
+  @Override
+  public String toString() {
+    return date + " " + portfolio + " " + symbol + " " + quantity;
+  }
+}
@@ -0,0 +1,141 @@
+package model;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * An append-only journal of the transactions made on a flexible portfolio since its snapshot was
+ * last written. Each transaction is one line holding a sequence number, the position and
+ * symbol of the stock, the date and the quantity. Records are appended in batches with a single
+ * write that is forced to disk, so recording a trade costs the same however long the history
+ * is. The snapshot remembers the last sequence number it contains, and loading replays only the
+ * records after it. A record cut short by a crash has no line ending; it is ignored and cut from
+ * the file when the journal is next loaded, so later records are not appended to it. A complete
+ * record that cannot be read is damage rather than a crash, so loading fails and the journal,
+ * with the records after it, is kept as it is.
+ */
+class TransactionJournal {
+  static final String EXTENSION = ".journal";
+  static final int COMPACT_AFTER = 256;
+
+  private final File file;
+
+  /**
+   * Constructs the journal kept in the given file.
+   *
+   * @param file the journal file, named after the portfolio with the extension
+   *             {@link #EXTENSION}
+   */
+  TransactionJournal(File file) {
+    this.file = file;
+  }
+
+  /**
+   * Formats one transaction as a journal record.
+   *
+   * @param seq      the sequence number of the transaction
+   * @param index    the position of the stock in the portfolio
+   * @param symbol   the symbol of the stock
+   * @param date     the date of the transaction
+   * @param quantity the quantity bought, negative for a sale
+   * @return the record, ending with a line break
+   */
+  static String format(long seq, int index, String symbol, String date, float quantity) {
+    return seq + "," + index + "," + symbol + "," + date + "," + quantity + "\n";
+  }
+
+  /**
+   * Appends records to the journal with a single write and forces them to disk.
+   *
+   * @param records the formatted records, in sequence order
+   * @throws IOException if the records cannot be written
+   */
+  void append(List<String> records) throws IOException {
+    StringBuilder batch = new StringBuilder();
+    for (String record : records) {
+      batch.append(record);
+    }
+    try (FileOutputStream out = new FileOutputStream(file, true)) {
+      out.write(batch.toString().getBytes(StandardCharsets.US_ASCII));
+      out.getChannel().force(false);
+    }
+  }
+
+  /**
+   * Applies the journaled transactions newer than the snapshot to the stocks loaded from it.
+   *
+   * @param stocks      the stocks of the portfolio, in snapshot order
+   * @param snapshotSeq the last sequence number contained in the snapshot
+   * @return the last sequence number applied, or snapshotSeq if there was nothing to replay
+   * @throws Exception if a complete record is malformed or refers to a stock the portfolio does
+   *                   not hold; the journal is left as it is
+   */
+  long replay(List<Stock> stocks, long snapshotSeq) throws Exception {
+    long last = snapshotSeq;
+    if (!file.exists()) {
+      return last;
+    }
+    String text = new String(Files.readAllBytes(file.toPath()), StandardCharsets.US_ASCII);
+    int start = 0;
+    int end;
+    for (int line = 1; (end = text.indexOf('\n', start)) >= 0; line++) {
+      String[] fields = text.substring(start, end).split(",");
+      long seq;
+      int index;
+      float quantity;
+      if (fields.length != 5) {
+        throw malformed(line);
+      }
+      try {
+        seq = Long.parseLong(fields[0]);
+        index = Integer.parseInt(fields[1]);
+        quantity = Float.parseFloat(fields[4]);
+      } catch (NumberFormatException e) {
+        throw malformed(line);
+      }
+      start = end + 1;
+      if (seq <= last) {
+        continue;
+      }
+      if (index < 0 || index >= stocks.size()
+              || !stocks.get(index).getSymbol().equals(fields[2])) {
+        throw new Exception("Journal does not match portfolio at record " + seq);
+      }
+      Stock stock = stocks.get(index);
+      stock.trade(fields[3], quantity);
+      last = seq;
+    }
+    if (start < text.length()) {
+      try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+        channel.truncate(start);
+      }
+    }
+    return last;
+  }
+
+  private static Exception malformed(int line) {
+    return new Exception("Journal has a malformed record at line " + line);
+  }
+
+  /**
+   * Removes the journal once its records are contained in a snapshot.
+   */
+  void clear() {
+    file.delete();
+  }
+
+  /**
+   * Returns the file the journal is written to.
+   *
+   * @return the journal file
+   */
+  File getFile() {
+    return file;
+  }
+}
@@ -0,0 +1,249 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Flow;
+
+/**
+ * Keeps the daily valuations of recently valued portfolios, each with the value of every holding
+ * on every day. When the prices of a stock change, only the holdings of that stock are
+ * recomputed, and only from the first day whose prices changed; the other holdings and earlier
+ * days are reused. The cache follows the {@link PriceBus}, so a valuation is brought up to date
+ * as soon as new prices are saved, and also checks the prices it used on every lookup, so it is
+ * never out of date even for files changed outside the application.
+ *
+ * <p>A valuation is kept for a published snapshot of a portfolio's stocks, so a purchase or sale,
+ * which publishes a new snapshot, is valued afresh. A kept valuation also keeps its portfolio
+ * open, so the portfolio is not read again, with a new snapshot, by the next request for it. The
+ * least recently used valuations are dropped once more than
+ * {@code portfolio.valuationCacheSize} (64 by default) are kept.
+ *
+ * <p>The cache is locked only to find or add a valuation; a valuation is computed and brought up
+ * to date under its own lock, so valuing one portfolio does not hold up the others.
+ */
+final class ValuationCache implements Flow.Subscriber<PriceUpdate> {
+  private static final int CAPACITY = Integer.getInteger("portfolio.valuationCacheSize", 64);
+  private static final ValuationCache INSTANCE = new ValuationCache();
+
+  private final Map<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+  static {
+    PriceBus.subscribe(INSTANCE);
+  }
+
+  /**
+   * A snapshot of stocks and a range of days.
+   */
+  private static final class Key {
+    private final List<Stock> stocks;
+    private final long startDay;
+    private final long endDay;
+
+    private Key(List<Stock> stocks, long startDay, long endDay) {
+      this.stocks = stocks;
+      this.startDay = startDay;
+      this.endDay = endDay;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof Key)) {
+        return false;
+      }
+      Key key = (Key) other;
+      return stocks == key.stocks && startDay == key.startDay && endDay == key.endDay;
+    }
+
+    @Override
+    public int hashCode() {
+      return System.identityHashCode(stocks) * 31 + Long.hashCode(startDay * 31 + endDay);
+    }
+  }
+
+  /**
+   * The valuation of one snapshot over one range, holding by holding, computed on first use.
+   */
+  private static final class Entry {
+    private final Key key;
+    private final Object owner;  // keeps the portfolio open while its valuation is kept
+    private final PriceSeries[] series;
+    private int[] calendar;
+    private double[][] values;
+    private double[][] flows;
+    private ValuationSeries total;
+
+    private Entry(Key key, Object owner) {
+      this.key = key;
+      this.owner = owner;
+      this.series = new PriceSeries[key.stocks.size()];
+    }
+
+    /**
+     * Returns the valuation, computing it if this is its first use and otherwise bringing every
+     * holding up to date with its current prices.
+     */
+    private synchronized ValuationSeries valuation() throws Exception {
+      if (total == null) {
+        for (int s = 0; s < series.length; s++) {
+          series[s] = key.stocks.get(s).prices();
+        }
+        build();
+      } else {
+        for (int s = 0; s < series.length; s++) {
+          refresh(s);
+        }
+      }
+      return total;
+    }
+
+    /**
+     * Brings the holdings of a symbol up to date, unless the valuation was not computed yet.
+     */
+    private synchronized void refresh(String symbol) throws Exception {
+      if (total == null) {
+        return;
+      }
+      for (int s = 0; s < series.length; s++) {
+        if (series[s].getSymbol().equals(symbol)) {
+          refresh(s);
+        }
+      }
+    }
+
+    private void build() {
+      calendar = ValuationSeries.calendar(series, key.startDay, key.endDay);
+      values = new double[series.length][calendar.length];
+      flows = new double[series.length][calendar.length];
+      for (int s = 0; s < series.length; s++) {
+        ValuationSeries.holding(key.stocks.get(s), series[s], calendar, 0, values[s], flows[s]);
+      }
+      sum(0);
+    }
+
+    /**
+     * Brings the holdings of a stock up to date with its current prices.
+     */
+    private void refresh(int stock) throws Exception {
+      PriceSeries current = key.stocks.get(stock).prices();
+      if (current == series[stock]) {
+        return;
+      }
+      long first = PriceSeries.firstChange(series[stock], current);
+      series[stock] = current;
+      if (first > key.endDay) {
+        return;
+      }
+      if (!Arrays.equals(calendar, ValuationSeries.calendar(series, key.startDay, key.endDay))) {
+        build();
+        return;
+      }
+      int from = Arrays.binarySearch(calendar, (int) Math.max(first, key.startDay));
+      from = from < 0 ? -from - 1 : from;
+      ValuationSeries.holding(key.stocks.get(stock), current, calendar, from, values[stock],
+              flows[stock]);
+      sum(from);
+    }
+
+    /**
+     * Adds the holdings up again from a position on, in a new series so readers of the old one
+     * are not affected.
+     */
+    private void sum(int from) {
+      double[] totalValues = total == null ? new double[calendar.length]
+              : Arrays.copyOf(total.values(), calendar.length);
+      double[] totalFlows = total == null ? new double[calendar.length]
+              : Arrays.copyOf(total.flows(), calendar.length);
+      for (int t = from; t < calendar.length; t++) {
+        totalValues[t] = 0;
+        totalFlows[t] = 0;
+        for (int s = 0; s < series.length; s++) {
+          totalValues[t] += values[s][t];
+          totalFlows[t] += flows[s][t];
+        }
+      }
+      total = new ValuationSeries(calendar, totalValues, totalFlows);
+    }
+  }
+
+  private ValuationCache() {
+  }
+
+  /**
+   * Returns the daily valuation of a snapshot of stocks between two days, from the cache if it
+   * was valued before, recomputing the holdings whose prices changed since.
+   *
+   * @param owner    the portfolio the snapshot was published by, kept open while it is cached
+   * @param stocks   a published snapshot of a portfolio's stocks
+   * @param startDay the first epoch day, inclusive
+   * @param endDay   the last epoch day, inclusive
+   * @return the valuation series
+   * @throws Exception if price data is missing for one of the stocks
+   */
+  static ValuationSeries get(Object owner, List<Stock> stocks, long startDay, long endDay)
+          throws Exception {
+    Key key = new Key(stocks, startDay, endDay);
+    Entry entry = INSTANCE.entry(key, owner);
+    try {
+      return entry.valuation();
+    } catch (Exception e) {
+      INSTANCE.drop(entry);
+      throw e;
+    }
+  }
+
+  /**
+   * Finds the valuation of a key, adding an empty one if there is none.
+   */
+  private synchronized Entry entry(Key key, Object owner) {
+    Entry entry = entries.get(key);
+    if (entry == null) {
+      entry = new Entry(key, owner);
+      entries.put(key, entry);
+      if (entries.size() > CAPACITY) {
+        Iterator<Key> eldest = entries.keySet().iterator();
+        eldest.next();
+        eldest.remove();
+      }
+    }
+    return entry;
+  }
+
+  private synchronized void drop(Entry entry) {
+    entries.remove(entry.key, entry);
+  }
+
+  private synchronized List<Entry> snapshot() {
+    return new ArrayList<>(entries.values());
+  }
+
+  @Override
+  public void onSubscribe(Flow.Subscription subscription) {
+    subscription.request(Long.MAX_VALUE);
+  }
+
+  @Override
+  public void onNext(PriceUpdate update) {
+    for (Entry entry : snapshot()) {
+      try {
+        entry.refresh(update.getSymbol());
+      } catch (Exception e) {
+        drop(entry);
+      }
+    }
+  }
+
+  @Override
+  public void onError(Throwable throwable) {
+    synchronized (this) {
+      entries.clear();
+    }
+  }
+
+  @Override
+  public void onComplete() {
+  }
+}
@@ -0,0 +1,214 @@
+package model;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Represents the daily value of a portfolio or a single stock over a range of trading days,
+ * stored as primitive arrays. Alongside the value, the amount of money moved into the holdings
+ * by purchases (or out of them by sales) on each day is kept, so returns can be computed without
+ * counting new money as performance.
+ */
+public final class ValuationSeries {
+  private final int[] days;
+  private final double[] values;
+  private final double[] flows;
+
+  ValuationSeries(int[] days, double[] values, double[] flows) {
+    this.days = days;
+    this.values = values;
+    this.flows = flows;
+  }
+
+  /**
+   * Builds the series of a single stock's closing price between two dates.
+   *
+   * @param series   the price series of the stock
+   * @param startDay the first epoch day, inclusive
+   * @param endDay   the last epoch day, inclusive
+   * @return the valuation series of one share of the stock
+   */
+  static ValuationSeries ofPrices(PriceSeries series, long startDay, long endDay) {
+    int from = Math.max(0, series.floorIndex(startDay - 1) + 1);
+    int to = series.floorIndex(endDay);
+    int size = Math.max(0, to - from + 1);
+    int[] days = new int[size];
+    double[] values = new double[size];
+    for (int i = 0; i < size; i++) {
+      days[i] = series.dayAt(from + i);
+      values[i] = series.closeAt(from + i);
+    }
+    return new ValuationSeries(days, values, new double[size]);
+  }
+
+  /**
+   * Builds the daily value of a set of holdings between two dates, walking each stock's ledger
+   * and price series once. The trading calendar is the union of the trading days of all stocks.
+   *
+   * @param stocks   the stocks held
+   * @param startDay the first epoch day, inclusive
+   * @param endDay   the last epoch day, inclusive
+   * @return the valuation series of the holdings
+   * @throws Exception if price data is missing for one of the stocks
+   */
+  static ValuationSeries ofStocks(List<Stock> stocks, long startDay, long endDay)
+          throws Exception {
+    PriceSeries[] series = new PriceSeries[stocks.size()];
+    for (int s = 0; s < series.length; s++) {
+      series[s] = stocks.get(s).prices();
+    }
+    int[] calendar = calendar(series, startDay, endDay);
+    double[] values = new double[calendar.length];
+    double[] flows = new double[calendar.length];
+    double[] holdingValues = new double[calendar.length];
+    double[] holdingFlows = new double[calendar.length];
+    for (int s = 0; s < series.length; s++) {
+      holding(stocks.get(s), series[s], calendar, 0, holdingValues, holdingFlows);
+      for (int t = 0; t < calendar.length; t++) {
+        values[t] += holdingValues[t];
+        flows[t] += holdingFlows[t];
+      }
+    }
+    return new ValuationSeries(calendar, values, flows);
+  }
+
+  /**
+   * Returns the trading calendar of several stocks between two dates, the union of the trading
+   * days of each.
+   *
+   * @param series   the price series of the stocks
+   * @param startDay the first epoch day, inclusive
+   * @param endDay   the last epoch day, inclusive
+   * @return the ascending epoch days
+   */
+  static int[] calendar(PriceSeries[] series, long startDay, long endDay) {
+    int[] calendar = new int[0];
+    for (PriceSeries prices : series) {
+      calendar = PriceSeries.union(calendar, ofPrices(prices, startDay, endDay).days);
+    }
+    return calendar;
+  }
+
+  /**
+   * Computes the daily value of one holding and the money moved into it, for the days of a
+   * calendar from a position on. Earlier positions of the arrays are left as they are, so a
+   * holding can be recomputed from the first day its prices changed.
+   *
+   * @param stock    the stock held
+   * @param prices   the price series of the stock
+   * @param calendar the trading days
+   * @param from     the first position of the calendar to compute
+   * @param values   the value of the holding on each day, written from {@code from} on
+   * @param flows    the money moved into the holding on each day, written from {@code from} on
+   */
+  static void holding(Stock stock, PriceSeries prices, int[] calendar, int from,
+                      double[] values, double[] flows) {
+    if (from >= calendar.length) {
+      return;
+    }
+    int count = stock.getTransactionCount();
+    int ledger = 0;
+    double quantity = 0;
+    long base = from == 0 ? calendar[0] - 1L : calendar[from - 1];
+    while (ledger < count && stock.getTransactionDay(ledger) <= base) {
+      quantity += stock.getTransactionQuantity(ledger++);
+    }
+    int cursor = prices.floorIndex(base);
+    for (int t = from; t < calendar.length; t++) {
+      double added = 0;
+      while (ledger < count && stock.getTransactionDay(ledger) <= calendar[t]) {
+        added += stock.getTransactionQuantity(ledger++);
+      }
+      while (cursor + 1 < prices.size() && prices.dayAt(cursor + 1) <= calendar[t]) {
+        cursor++;
+      }
+      quantity += added;
+      if (cursor < 0) {
+        values[t] = 0;
+        flows[t] = 0;
+        continue;
+      }
+      double price = prices.closeAt(cursor);
+      values[t] = quantity * price;
+      flows[t] = added * price;
+    }
+  }
+
+  /**
+   * Returns the number of trading days in the series.
+   *
+   * @return the number of days
+   */
+  public int size() {
+    return days.length;
+  }
+
+  /**
+   * Returns the epoch day at the given position.
+   *
+   * @param index the position in the series
+   * @return the epoch day
+   */
+  public int dayAt(int index) {
+    return days[index];
+  }
+
+  /**
+   * Returns the date at the given position.
+   *
+   * @param index the position in the series
+   * @return the date
+   */
+  public LocalDate dateAt(int index) {
+    return LocalDate.ofEpochDay(days[index]);
+  }
+
+  /**
+   * Returns the value of the holdings at the close of the day at the given position.
+   *
+   * @param index the position in the series
+   * @return the value
+   */
+  public double valueAt(int index) {
+    return values[index];
+  }
+
+  /**
+   * Returns the money moved into the holdings on the day at the given position, negative if
+   * stock was sold.
+   *
+   * @param index the position in the series
+   * @return the net amount bought on that day
+   */
+  public double flowAt(int index) {
+    return flows[index];
+  }
+
+  /**
+   * Returns the array backing the epoch days of the series. Callers must not modify it.
+   *
+   * @return the backing array
+   */
+  int[] days() {
+    return days;
+  }
+
+  /**
+   * Returns the array backing the values of the series. Callers must not modify it.
+   *
+   * @return the backing array
+   */
+  double[] values() {
+    return values;
+  }
+
+  /**
+   * Returns the array backing the flows of the series. Callers must not modify it.
+   *
+   * @return the backing array
+   */
+  double[] flows() {
+    return flows;
+  }
+}
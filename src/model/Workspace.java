@@ -0,0 +1,160 @@
+package model;
+
+import java.io.File;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * The portfolios, strategies and price data one user works with. Every manager, portfolio and
+ * stock of this package reads and writes through the workspace it was opened in instead of
+ * folders of the user's current working directory, so one process can serve many workspaces,
+ * each with its own portfolios, strategies, caches and scheduled strategies, without them
+ * seeing each other's state.
+ *
+ * <p>The portfolios and strategies of a workspace are kept in its {@link PortfolioRepository};
+ * a folder of portfolio files keeps the strategies in the 'strategies' folder next to it. Price
+ * files are kept in the workspace's data folder. Parsed prices are cached once per process by
+ * the file they were read from, so workspaces sharing a data folder share the cached prices too.
+ *
+ * <p>A repository belongs to one workspace: the first workspace opened on it, or else the
+ * default data folder.
+ */
+public final class Workspace {
+
+  /**
+   * The system property naming the default data folder. Without it, prices are kept in the
+   * 'data' folder of the user's current working directory.
+   */
+  public static final String DATA_PROPERTY = "portfolio.data";
+
+  private static final Map<PortfolioRepository, Workspace> WORKSPACES = new IdentityHashMap<>();
+
+  private final PortfolioRepository repository;
+  private final DirectoryLayout data;
+
+  private Workspace(PortfolioRepository repository, DirectoryLayout data) {
+    this.repository = repository;
+    this.data = data;
+  }
+
+  /**
+   * Returns the workspace of the default repository and data folder, see
+   * {@link PortfolioRepository#LOCATION_PROPERTY} and {@link #DATA_PROPERTY}.
+   *
+   * @return the default workspace
+   */
+  public static Workspace getDefault() {
+    return of(PortfolioRepository.getDefault());
+  }
+
+  /**
+   * Returns the workspace kept in a folder: portfolios in its 'portfolios' folder, strategies in
+   * its 'strategies' folder and prices in its 'data' folder.
+   *
+   * @param root the folder of the workspace
+   * @return the workspace of the folder
+   * @throws IllegalStateException if its portfolios are already used with other price data
+   */
+  public static Workspace of(File root) {
+    return open(new File(root, "portfolios").getPath(), new File(root, "data"));
+  }
+
+  /**
+   * Returns the workspace of a repository and a data folder. Workspaces can share a data folder,
+   * which keeps one copy of the prices for all of them.
+   *
+   * @param location a JDBC URL or the path of a folder of portfolio files, as taken by
+   *                 {@link PortfolioRepository#open(String)}
+   * @param data     the folder of price files
+   * @return the workspace
+   * @throws IllegalStateException    if the repository is already used with other price data
+   * @throws IllegalArgumentException if the database cannot be opened
+   */
+  public static Workspace open(String location, File data) {
+    PortfolioRepository repository = PortfolioRepository.open(location);
+    DirectoryLayout layout = DirectoryLayout.of(data);
+    synchronized (WORKSPACES) {
+      Workspace workspace = WORKSPACES.computeIfAbsent(repository,
+              key -> new Workspace(key, layout));
+      if (workspace.data != layout) {
+        throw new IllegalStateException("The portfolios at " + location
+                + " are already used with the prices in " + workspace.getDataFolder());
+      }
+      return workspace;
+    }
+  }
+
+  /**
+   * Returns the workspace a repository belongs to, the default data folder if it was not opened
+   * in one.
+   *
+   * @param repository the repository
+   * @return the workspace of the repository
+   */
+  static Workspace of(PortfolioRepository repository) {
+    synchronized (WORKSPACES) {
+      return WORKSPACES.computeIfAbsent(repository,
+              key -> new Workspace(key, PriceCache.dataDirectory()));
+    }
+  }
+
+  public PortfolioRepository getRepository() {
+    return repository;
+  }
+
+  public File getDataFolder() {
+    return data.getRoot();
+  }
+
+  /**
+   * Returns the layout of the data folder.
+   *
+   * @return the layout of the folder holding the price files
+   */
+  DirectoryLayout data() {
+    return data;
+  }
+
+  /**
+   * Returns the price file of a symbol.
+   *
+   * @param symbol the stock symbol
+   * @return the csv file holding the symbol's prices, which may not exist yet
+   */
+  File dataFile(String symbol) {
+    return PriceCache.dataFile(data, symbol);
+  }
+
+  /**
+   * Returns the prices of a symbol from the shared price cache.
+   *
+   * @param symbol the stock symbol
+   * @return the price series of the symbol
+   * @throws Exception if there is no data file for the symbol or it cannot be read
+   */
+  PriceSeries prices(String symbol) throws Exception {
+    return PriceCache.get(symbol, dataFile(symbol));
+  }
+
+  /**
+   * Publishes the prices of a symbol on the {@link PriceBus} after its price file was written.
+   *
+   * @param symbol the stock symbol
+   */
+  void refreshed(String symbol) {
+    PriceBus.refreshed(symbol, dataFile(symbol));
+  }
+
+  /**
+   * Lists the symbols with a price file.
+   *
+   * @return the symbols, in no particular order
+   */
+  String[] symbols() {
+    String[] files = data.list((dir, name) -> name.endsWith(".csv"));
+    for (int i = 0; i < files.length; i++) {
+      files[i] = files[i].substring(0, files[i].length() - 4);
+    }
+    return files;
+  }
+}
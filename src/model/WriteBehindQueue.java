@@ -0,0 +1,165 @@
+package model;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects flexible portfolios with submitted changes and writes them on a background thread.
+ * Changes submitted while the writer is busy are written together on its next pass, as one
+ * snapshot or one journal append per portfolio, and the callers that made them wait for that
+ * write, so a burst of trades costs one write instead of one each. The next pass starts once the
+ * window set by the system property {@code portfolio.flushWindowMillis} (0 by default) has passed
+ * since the first pending change, or as soon as {@code portfolio.flushBatchSize} changes (64 by
+ * default) are pending.
+ *
+ * <p>A portfolio whose write failed keeps its changes in memory and is written again after
+ * {@code portfolio.retryMillis} milliseconds (1000 by default), or with the next change or
+ * {@link #flush()}, and {@link #flush()} reports the failure until a write of it succeeds. Until
+ * its changes are on disk, a portfolio is loaded from memory with
+ * {@link #pending(PortfolioRepository, String)}, so a reader never sees its older files.
+ * Anything still pending is written when the application shuts down.
+ */
+final class WriteBehindQueue {
+  private static final long WINDOW = Long.getLong("portfolio.flushWindowMillis", 0);
+  private static final int BATCH_SIZE = Integer.getInteger("portfolio.flushBatchSize", 64);
+  private static final long RETRY = Long.getLong("portfolio.retryMillis", 1000);
+  private static final ScheduledExecutorService WRITER =
+          Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "portfolio-writer");
+            thread.setDaemon(true);
+            return thread;
+          });
+  private static final Object WRITE_LOCK = new Object();
+  private static final Set<FlexiblePortfolio> dirty = new LinkedHashSet<>();
+  private static final Map<FlexiblePortfolio, IOException> failures = new LinkedHashMap<>();
+  private static List<FlexiblePortfolio> writing = Collections.emptyList();
+  private static int pendingChanges;
+  private static boolean scheduled;
+
+  static {
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+      retryFailed();
+      drain();
+    }));
+  }
+
+  private WriteBehindQueue() {
+  }
+
+  /**
+   * Marks a portfolio as having changes to write and schedules the write.
+   *
+   * @param portfolio the changed portfolio
+   */
+  static synchronized void markDirty(FlexiblePortfolio portfolio) {
+    dirty.add(portfolio);
+    pendingChanges++;
+    if (pendingChanges >= BATCH_SIZE) {
+      scheduled = true;
+      WRITER.execute(WriteBehindQueue::drain);
+    } else if (!scheduled) {
+      scheduled = true;
+      WRITER.schedule(WriteBehindQueue::drain, WINDOW, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Returns the portfolio of a repository whose changes are waiting to be written, being
+   * written or failed to be written, which is newer than what its files hold.
+   *
+   * @param repository the repository the portfolio belongs to
+   * @param name       the name of the portfolio
+   * @return the portfolio, or null if its files are up to date
+   */
+  static synchronized FlexiblePortfolio pending(PortfolioRepository repository, String name) {
+    for (Collection<FlexiblePortfolio> portfolios : Arrays.asList(dirty, writing,
+            failures.keySet())) {
+      for (FlexiblePortfolio portfolio : portfolios) {
+        if (portfolio.repository == repository && portfolio.name.equals(name)) {
+          return portfolio;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Writes every pending change, including changes whose write failed before, and waits until
+   * it is on disk.
+   *
+   * @throws IOException if the changes of a portfolio could still not be written
+   */
+  static void flush() throws IOException {
+    synchronized (WriteBehindQueue.class) {
+      if (dirty.isEmpty() && writing.isEmpty() && failures.isEmpty()) {
+        return;
+      }
+    }
+    retryFailed();
+    try {
+      WRITER.submit(WriteBehindQueue::drain).get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while saving portfolios");
+    } catch (ExecutionException e) {
+      throw new IOException(e.getCause());
+    }
+    synchronized (WriteBehindQueue.class) {
+      if (!failures.isEmpty()) {
+        throw failures.values().iterator().next();
+      }
+    }
+  }
+
+  private static synchronized void retryFailed() {
+    dirty.addAll(failures.keySet());
+  }
+
+  private static synchronized void retry(FlexiblePortfolio portfolio) {
+    if (failures.containsKey(portfolio) && !dirty.contains(portfolio)) {
+      markDirty(portfolio);
+    }
+  }
+
+  private static void drain() {
+    synchronized (WRITE_LOCK) {
+      List<FlexiblePortfolio> batch;
+      synchronized (WriteBehindQueue.class) {
+        batch = new ArrayList<>(dirty);
+        dirty.clear();
+        pendingChanges = 0;
+        scheduled = false;
+        writing = batch;
+      }
+      for (FlexiblePortfolio portfolio : batch) {
+        try {
+          portfolio.writePending();
+          synchronized (WriteBehindQueue.class) {
+            failures.remove(portfolio);
+          }
+        } catch (IOException e) {
+          System.err.println("Error saving portfolio: " + e.getMessage());
+          synchronized (WriteBehindQueue.class) {
+            failures.put(portfolio, e);
+          }
+          WRITER.schedule(() -> retry(portfolio), RETRY, TimeUnit.MILLISECONDS);
+        }
+      }
+      synchronized (WriteBehindQueue.class) {
+        writing = Collections.emptyList();
+      }
+    }
+  }
+}
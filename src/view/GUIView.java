@@ -14,6 +14,7 @@ import javax.swing.*;
  * and updating stock portfolios through a user-friendly graphical interface.
  */
 public class GUIView extends JFrame implements GUIViewInterface {
+  private final TaskStatusPanel status;
 
   private final JButton addButton;
 
@@ -215,6 +216,8 @@ public class GUIView extends JFrame implements GUIViewInterface {
     quitButton.addActionListener((ActionEvent e) -> System.exit(0));
     buttonPanel.add(quitButton);
 
+    status = new TaskStatusPanel();
+    add(status, BorderLayout.SOUTH);
     add(mainPanel);
   }
 
@@ -233,6 +236,7 @@ public class GUIView extends JFrame implements GUIViewInterface {
    * @param actionEvent the action listener to be set for the buttons.
    */
   public void setButtonListener(ActionListener actionEvent) {
+    status.setButtonListener(actionEvent);
     addButton.addActionListener(actionEvent);
     addButtonDAC.addActionListener(actionEvent);
     addButtonStrat.addActionListener(actionEvent);
@@ -600,4 +604,16 @@ public class GUIView extends JFrame implements GUIViewInterface {
       repaint();
     }
   }
+
+  /**
+   * Shows a request the model is working on in the status line at the bottom of the window,
+   * or hides the status line.
+   *
+   * @param task        a description of the request, or null to hide the status line
+   * @param cancellable true if the request can be cancelled
+   */
+  @Override
+  public void showProgress(String task, boolean cancellable) {
+    status.showProgress(task, cancellable);
+  }
 }
@@ -29,4 +29,13 @@ public interface GUIViewInterface {
   int getPortfolioOption(String[] options);
 
   int getCount(String type);
+
+  /**
+   * Shows a request the model is working on in a status line, with a button sending the
+   * "Cancel" command to the listener if the request can be cancelled.
+   *
+   * @param task        a description of the request, or null to hide the status line
+   * @param cancellable true if the request can be cancelled
+   */
+  void showProgress(String task, boolean cancellable);
 }
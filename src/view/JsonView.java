@@ -0,0 +1,149 @@
+package view;
+
+import java.util.List;
+
+/**
+ * Renders one JSON object for the machine-readable interfaces of the application. Members are
+ * written in the order they are added; strings are escaped, and numbers that are not finite are
+ * written as null.
+ */
+public class JsonView {
+  private final StringBuilder json = new StringBuilder("{");
+
+  /**
+   * Adds a string member.
+   *
+   * @param key   the name of the member
+   * @param value the value, written as null if null
+   * @return this view
+   */
+  public JsonView put(String key, String value) {
+    return member(key).append(value == null ? "null" : quote(value));
+  }
+
+  /**
+   * Adds a number member.
+   *
+   * @param key   the name of the member
+   * @param value the value
+   * @return this view
+   */
+  public JsonView put(String key, double value) {
+    return member(key).append(number(value));
+  }
+
+  /**
+   * Adds a boolean member.
+   *
+   * @param key   the name of the member
+   * @param value the value
+   * @return this view
+   */
+  public JsonView put(String key, boolean value) {
+    return member(key).append(value);
+  }
+
+  /**
+   * Adds an array of strings.
+   *
+   * @param key    the name of the member
+   * @param values the values
+   * @return this view
+   */
+  public JsonView put(String key, List<String> values) {
+    member(key).append('[');
+    for (int i = 0; i < values.size(); i++) {
+      json.append(i == 0 ? "" : ",").append(quote(values.get(i)));
+    }
+    return append(']');
+  }
+
+  /**
+   * Adds an array of numbers.
+   *
+   * @param key    the name of the member
+   * @param values the values
+   * @return this view
+   */
+  public JsonView put(String key, double[] values) {
+    member(key).append('[');
+    for (int i = 0; i < values.length; i++) {
+      json.append(i == 0 ? "" : ",").append(number(values[i]));
+    }
+    return append(']');
+  }
+
+  /**
+   * Returns the JSON text of the object.
+   *
+   * @return the JSON text
+   */
+  public String render() {
+    return json + "}";
+  }
+
+  @Override
+  public String toString() {
+    return render();
+  }
+
+  /**
+   * Quotes and escapes a string as a JSON string.
+   *
+   * @param value the string
+   * @return the JSON string
+   */
+  public static String quote(String value) {
+    StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '"':
+          quoted.append("\\\"");
+          break;
+        case '\\':
+          quoted.append("\\\\");
+          break;
+        case '\n':
+          quoted.append("\\n");
+          break;
+        case '\r':
+          quoted.append("\\r");
+          break;
+        case '\t':
+          quoted.append("\\t");
+          break;
+        default:
+          if (c < 0x20) {
+            quoted.append(String.format("\\u%04x", (int) c));
+          } else {
+            quoted.append(c);
+          }
+      }
+    }
+    return quoted.append('"').toString();
+  }
+
+  private static String number(double value) {
+    if (Double.isNaN(value) || Double.isInfinite(value)) {
+      return "null";
+    }
+    if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+      return Long.toString((long) value);
+    }
+    return Double.toString(value);
+  }
+
+  private JsonView member(String key) {
+    if (json.length() > 1) {
+      json.append(',');
+    }
+    json.append(quote(key)).append(':');
+    return this;
+  }
+
+  private JsonView append(Object text) {
+    json.append(text);
+    return this;
+  }
+}
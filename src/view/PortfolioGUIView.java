@@ -21,6 +21,7 @@ import javax.swing.JOptionPane;
  * portfolio management.
  */
 public class PortfolioGUIView extends JFrame implements PortfolioGUIViewInterface {
+  private final TaskStatusPanel status;
   String[] options;
   private final JButton buyButton;
   private final JButton sellButton;
@@ -118,6 +119,8 @@ public class PortfolioGUIView extends JFrame implements PortfolioGUIViewInterfac
     quitButton.addActionListener((ActionEvent e) -> this.dispose());
     buttonPanel.add(quitButton);
 
+    status = new TaskStatusPanel();
+    add(status, BorderLayout.SOUTH);
     add(mainPanel);
   }
 
@@ -184,6 +187,7 @@ public class PortfolioGUIView extends JFrame implements PortfolioGUIViewInterfac
    */
   //  @Override
   public void setButtonListener(ActionListener actionEvent) {
+    status.setButtonListener(actionEvent);
     buyButton.addActionListener(actionEvent);
     sellButton.addActionListener(actionEvent);
     compositionButton.addActionListener(actionEvent);
@@ -216,5 +220,14 @@ public class PortfolioGUIView extends JFrame implements PortfolioGUIViewInterfac
     JOptionPane.showMessageDialog(null, message);
   }
 
-
+  /**
+   * Shows a request the model is working on in the status line at the bottom of the window,
+   * or hides the status line.
+   *
+   * @param task        a description of the request, or null to hide the status line
+   * @param cancellable true if the request can be cancelled
+   */
+  public void showProgress(String task, boolean cancellable) {
+    status.showProgress(task, cancellable);
+  }
 }
@@ -72,4 +72,13 @@ public interface PortfolioGUIViewInterface {
    * @param message The message to be displayed in the dialog box.
    */
   void displayMessage(String message);
+
+  /**
+   * Shows a request the model is working on in a status line, with a button sending the
+   * "Cancel" command to the listener if the request can be cancelled.
+   *
+   * @param task        a description of the request, or null to hide the status line
+   * @param cancellable true if the request can be cancelled
+   */
+  void showProgress(String task, boolean cancellable);
 }
@@ -14,6 +14,7 @@ import javax.swing.*;
  * gain/loss, computing moving averages, and identifying moving crossovers.
  */
 public class StockGUIView  extends JFrame implements StockGUIViewInterface {
+  private final TaskStatusPanel status;
   private final JButton dailyGainLossButton;
   private final JButton periodGainLossButton;
   private final JButton movingAverageButton;
@@ -127,6 +128,8 @@ public class StockGUIView  extends JFrame implements StockGUIViewInterface {
     mainPanel.add(quitButton);
 
 
+    status = new TaskStatusPanel();
+    add(status, BorderLayout.SOUTH);
     add(mainPanel);
   }
 
@@ -146,6 +149,7 @@ public class StockGUIView  extends JFrame implements StockGUIViewInterface {
    * @param actionEvent The ActionListener to be set for the buttons.
    */
   public void setButtonListener(ActionListener actionEvent) {
+    status.setButtonListener(actionEvent);
     dailyGainLossButton.addActionListener(actionEvent);
     periodGainLossButton.addActionListener(actionEvent);
     crossoversButton.addActionListener(actionEvent);
@@ -192,4 +196,15 @@ public class StockGUIView  extends JFrame implements StockGUIViewInterface {
   public void displayMessage(String message) {
     JOptionPane.showMessageDialog(null, message);
   }
+
+  /**
+   * Shows a request the model is working on in the status line at the bottom of the window,
+   * or hides the status line.
+   *
+   * @param task        a description of the request, or null to hide the status line
+   * @param cancellable true if the request can be cancelled
+   */
+  public void showProgress(String task, boolean cancellable) {
+    status.showProgress(task, cancellable);
+  }
 }
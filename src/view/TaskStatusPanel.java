@@ -0,0 +1,59 @@
+package view;
+
+import java.awt.FlowLayout;
+import java.awt.event.ActionListener;
+
+import javax.swing.JButton;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JProgressBar;
+
+/**
+ * A status line shown at the bottom of a window while the model works on a request. It names
+ * the request, shows that it is running and offers a "Cancel" button, which sends the "Cancel"
+ * command to the window's listener. It is hidden while no request is running.
+ */
+class TaskStatusPanel extends JPanel {
+  private static final long serialVersionUID = 1L;
+
+  private final JLabel task;
+  private final JProgressBar bar;
+  private final JButton cancelButton;
+
+  /**
+   * Constructs a hidden status line.
+   */
+  TaskStatusPanel() {
+    super(new FlowLayout(FlowLayout.LEFT));
+    task = new JLabel();
+    add(task);
+    bar = new JProgressBar();
+    bar.setIndeterminate(true);
+    add(bar);
+    cancelButton = new JButton("Cancel");
+    add(cancelButton);
+    setVisible(false);
+  }
+
+  /**
+   * Sets the listener the "Cancel" button sends its command to.
+   *
+   * @param actionEvent the listener
+   */
+  void setButtonListener(ActionListener actionEvent) {
+    cancelButton.addActionListener(actionEvent);
+  }
+
+  /**
+   * Shows the request that is running, or hides the status line if none is.
+   *
+   * @param message     a description of the request, or null if none is running
+   * @param cancellable true if the request can be cancelled
+   */
+  void showProgress(String message, boolean cancellable) {
+    task.setText(message == null ? "" : message);
+    cancelButton.setEnabled(cancellable);
+    setVisible(message != null);
+    revalidate();
+  }
+}
@@ -0,0 +1,137 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import model.AsyncModel;
+import model.FlexibleManager;
+import model.ModelException;
+import model.PortfolioRepository;
+import model.ValuationSeries;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * This class tests the asynchronous model: fanning out over portfolios, composing calls and the
+ * kinds of failure its futures complete with.
+ */
+public class AsyncModelTest {
+  private File root;
+  private ExecutorService executor;
+  private AsyncModel model;
+
+  @Before
+  public void setUp() throws IOException {
+    root = Files.createTempDirectory("async").toFile();
+    File folder = new File(root, "portfolios");
+    folder.mkdirs();
+    write(new File(folder, "alpha.xml"), "AAPL", "10");
+    write(new File(folder, "beta.xml"), "MSFT", "5");
+    executor = Executors.newFixedThreadPool(4);
+    model = new AsyncModel(new FlexibleManager(PortfolioRepository.open(folder.getPath())),
+            executor);
+  }
+
+  private static void write(File file, String symbol, String quantity) throws IOException {
+    String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<portfolio>\n"
+            + "\t<stock id=\"" + symbol + "\">\n\t\t<symbol>" + symbol + "</symbol>\n"
+            + "\t\t<transactDate>2024-01-02</transactDate>\n"
+            + "\t\t<transactQuantity>" + quantity + "</transactQuantity>\n"
+            + "\t\t<quantity>" + quantity + "</quantity>\n\t</stock>\n</portfolio>";
+    Files.write(file.toPath(), xml.getBytes(StandardCharsets.UTF_8));
+  }
+
+  @After
+  public void tearDown() {
+    model.flush().join();
+    executor.shutdown();
+    delete(root);
+  }
+
+  private static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+
+  private static ModelException.Kind failure(CompletableFuture<?> future) {
+    try {
+      future.join();
+      fail("Expected the call to fail");
+      return null;
+    } catch (CompletionException e) {
+      assertTrue(e.getCause().toString(), e.getCause() instanceof ModelException);
+      return ((ModelException) e.getCause()).getKind();
+    }
+  }
+
+  @Test
+  public void testValuesFanOutOverPortfolios() {
+    assertEquals(Arrays.asList("alpha", "beta"), model.portfolios().join());
+    Map<String, String> values = model.values("2024-01-05").join();
+    assertEquals(2, values.size());
+    assertTrue(values.get("alpha"), values.get("alpha").contains("Symbol: AAPL"));
+    assertTrue(values.get("beta"), values.get("beta").contains("Symbol: MSFT"));
+  }
+
+  @Test
+  public void testCallsCompose() {
+    String composition = model.buy("alpha", "aapl", "2024-01-03", 5)
+            .thenCompose(saved -> model.composition("alpha")).join();
+    assertTrue(composition, composition.contains("Quantity: 15.0"));
+    ValuationSeries series = model.valuationSeries("alpha", "2024-01-02", "2024-01-31").join();
+    assertEquals("2024-01-02", series.dateAt(0).toString());
+    float average = model.movingAverage("beta", "MSFT", "2024-03-01", 30).join();
+    assertTrue(String.valueOf(average), average > 0);
+  }
+
+  @Test
+  public void testRepeatedValuationIsCached() {
+    ValuationSeries first = model.valuationSeries("alpha", "2024-01-02", "2024-01-31").join();
+    System.gc();
+    ValuationSeries second = model.valuationSeries("alpha", "2024-01-02", "2024-01-31").join();
+    assertTrue(first == second);
+  }
+
+  @Test
+  public void testFailuresAreTyped() {
+    assertEquals(ModelException.Kind.NOT_FOUND, failure(model.value("gamma", "2024-01-05")));
+    assertEquals(ModelException.Kind.NOT_FOUND,
+            failure(model.buy("alpha", "TSLA", "2024-01-03", 1)));
+    assertEquals(ModelException.Kind.REJECTED,
+            failure(model.sell("alpha", "AAPL", "2024-01-03", 50)));
+    assertEquals(ModelException.Kind.INVALID_INPUT,
+            failure(model.valuationSeries("alpha", "2024-01-31", "January")));
+  }
+
+  @Test
+  public void testFailedSaveIsAStorageFailure() throws Exception {
+    model.composition("alpha").join();
+    File journal = new File(root, "portfolios/alpha.journal");
+    Files.createSymbolicLink(journal.toPath(), new File(root, "missing/alpha.journal").toPath());
+    try {
+      CompletableFuture<String> buy = model.buy("alpha", "AAPL", "2024-01-03", 5);
+      assertEquals(ModelException.Kind.STORAGE, failure(buy));
+      String message = buy.handle((saved, e) -> e.getMessage()).join();
+      assertTrue(message, message.contains("Error saving portfolio"));
+    } finally {
+      Files.delete(journal.toPath());
+    }
+  }
+}
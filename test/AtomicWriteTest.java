@@ -0,0 +1,140 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.zip.CRC32;
+
+import model.FlexibleManager;
+import model.PortfolioRepository;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * This class tests that files are replaced without changing their permissions, that a write
+ * interrupted before the replacement leaves the old file in place, and that a file whose content
+ * no longer matches its checksum is rejected.
+ */
+public class AtomicWriteTest {
+  private static final String XML = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<portfolio>\n"
+          + "\t<stock id=\"AAPL\">\n\t\t<symbol>AAPL</symbol>\n"
+          + "\t\t<transactDate>2024-01-02</transactDate>\n"
+          + "\t\t<transactQuantity>10</transactQuantity>\n"
+          + "\t\t<quantity>10.0</quantity>\n\t</stock>\n</portfolio>";
+
+  private File root;
+  private File folder;
+  private FlexibleManager manager;
+
+  @Before
+  public void setUp() throws IOException {
+    root = Files.createTempDirectory("atomic").toFile();
+    folder = new File(root, "portfolios");
+    folder.mkdirs();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    if (manager != null) {
+      manager.flush();
+    }
+    delete(root);
+  }
+
+  private static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+
+  /**
+   * Writes the portfolio file and opens the folder.
+   */
+  private void open(String xml) throws IOException {
+    Files.write(new File(folder, "alpha.xml").toPath(), xml.getBytes(StandardCharsets.UTF_8));
+    manager = new FlexibleManager(PortfolioRepository.open(folder.getPath()));
+  }
+
+  private static String withChecksum(String xml) {
+    CRC32 crc = new CRC32();
+    crc.update(xml.getBytes(StandardCharsets.UTF_8));
+    return xml + String.format("\n<!-- crc32 %08x -->", crc.getValue());
+  }
+
+  @Test
+  public void testReplacedFileKeepsItsPermissions() throws Exception {
+    open(XML);
+    File exported = new File(root, "exported.xml");
+    Files.write(exported.toPath(), new byte[0]);
+    Files.setPosixFilePermissions(exported.toPath(), PosixFilePermissions.fromString("rw-r-----"));
+
+    assertEquals("Portfolio exported to " + exported.getPath(),
+            manager.exportPortfolio(1, exported.getPath()));
+    assertTrue(exported.length() > 0);
+    assertEquals("rw-r-----", PosixFilePermissions.toString(
+            Files.getPosixFilePermissions(exported.toPath())));
+  }
+
+  @Test
+  public void testNewFileGetsDefaultPermissions() throws Exception {
+    open(XML);
+    File probe = Files.createFile(new File(root, "probe").toPath()).toFile();
+    File exported = new File(root, "exported.xml");
+
+    assertEquals("Portfolio exported to " + exported.getPath(),
+            manager.exportPortfolio(1, exported.getPath()));
+    assertEquals(Files.getPosixFilePermissions(probe.toPath()),
+            Files.getPosixFilePermissions(exported.toPath()));
+  }
+
+  @Test
+  public void testInterruptedWriteLeavesOldFile() throws Exception {
+    Files.write(new File(folder, ".alpha.xml.42.tmp").toPath(),
+            XML.substring(0, XML.length() / 2).getBytes(StandardCharsets.UTF_8));
+    open(XML);
+
+    assertArrayEquals(new String[]{"alpha.xml"}, manager.returnPortfolioList());
+    assertTrue(manager.fetchFlexiblePortfolio(1).composition().contains("Quantity: 10.0\r\n"));
+  }
+
+  @Test
+  public void testFailedWriteLeavesNoTemporaryFile() throws Exception {
+    open(XML);
+    File exported = new File(root, "exported.xml");
+    new File(exported, "blocker").mkdirs();
+
+    assertTrue(manager.exportPortfolio(1, exported.getPath())
+            .startsWith("Error exporting portfolio: "));
+    for (String name : root.list()) {
+      assertTrue(name, !name.endsWith(".tmp"));
+    }
+  }
+
+  @Test
+  public void testDamagedFileRejected() throws Exception {
+    open(withChecksum(XML).replace("<quantity>10.0", "<quantity>19.0"));
+    try {
+      manager.fetchFlexiblePortfolio(1).composition();
+      fail("A damaged portfolio file was read");
+    } catch (Exception e) {
+      assertTrue(e.getMessage(), e.getMessage().contains("Checksum mismatch in alpha.xml"));
+    }
+  }
+
+  @Test
+  public void testIntactFileWithChecksumRead() throws Exception {
+    open(withChecksum(XML));
+    assertTrue(manager.fetchFlexiblePortfolio(1).composition().contains("Quantity: 10.0\r\n"));
+  }
+}
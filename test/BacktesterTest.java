@@ -0,0 +1,60 @@
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import model.BacktestResult;
+import model.Backtester;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * This class tests the Backtester, checking that a grid of strategy parameters is expanded into
+ * one simulation per combination, that results are ranked by return and that invalid parameters
+ * are rejected.
+ */
+public class BacktesterTest {
+  Backtester backtester;
+
+  @Before
+  public void setUp() {
+    try {
+      backtester = new Backtester(Arrays.asList("AAPL", "MSFT"));
+    } catch (Exception e) {
+      fail("Failed to load price data");
+    }
+  }
+
+  @Test
+  public void testGridIsRanked() {
+    List<BacktestResult> results = backtester.run(Arrays.asList("2022-01-03", "2023-01-03"),
+            "2024-03-01", Arrays.asList(7, 30),
+            Arrays.asList(Arrays.asList(50f, 50f), Arrays.asList(100f, 0f)), 1000);
+    assertEquals(8, results.size());
+    for (int i = 1; i < results.size(); i++) {
+      assertTrue(results.get(i - 1).getReturnPercent() >= results.get(i).getReturnPercent());
+    }
+  }
+
+  @Test
+  public void testSingleSimulation() {
+    List<BacktestResult> results = backtester.run(Collections.singletonList("2024-01-02"),
+            "2024-03-01", Collections.singletonList(30),
+            Collections.singletonList(Arrays.asList(50f, 50f)), 1000);
+    BacktestResult result = results.get(0);
+    assertEquals(4, result.getPurchases());
+    assertEquals(2000.0, result.getInvested(), 0.01);
+    assertTrue(result.getFinalValue() > 0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidWeights() {
+    backtester.run(Collections.singletonList("2024-01-02"), "2024-03-01",
+            Collections.singletonList(30), Collections.singletonList(Arrays.asList(50f, 20f)),
+            1000);
+  }
+}
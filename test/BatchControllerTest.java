@@ -0,0 +1,110 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import controller.BatchController;
+import model.FlexibleManager;
+import model.PortfolioRepository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * This class tests running a file of commands: one JSON line per command, the failures counted
+ * and a portfolio kept open between commands.
+ */
+public class BatchControllerTest {
+  private File root;
+  private FlexibleManager manager;
+
+  @Before
+  public void setUp() throws IOException {
+    root = Files.createTempDirectory("batch").toFile();
+    File folder = new File(root, "portfolios");
+    folder.mkdirs();
+    String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<portfolio>\n"
+            + "\t<stock id=\"AAPL\">\n\t\t<symbol>AAPL</symbol>\n"
+            + "\t\t<transactDate>2024-01-02</transactDate>\n"
+            + "\t\t<transactQuantity>10</transactQuantity>\n"
+            + "\t\t<quantity>10</quantity>\n\t</stock>\n</portfolio>";
+    Files.write(new File(folder, "alpha.xml").toPath(), xml.getBytes(StandardCharsets.UTF_8));
+    manager = new FlexibleManager(PortfolioRepository.open(folder.getPath()));
+  }
+
+  @After
+  public void tearDown() {
+    delete(root);
+  }
+
+  private static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+
+  private String[] run(BatchController controller, StringBuilder output) throws IOException {
+    controller.mainMenu();
+    return output.toString().split(System.lineSeparator());
+  }
+
+  @Test
+  public void testCommandsWriteOneLineEach() throws Exception {
+    StringBuilder output = new StringBuilder();
+    BatchController controller = new BatchController(manager, new StringReader(
+            "# nightly job\n"
+                    + "buy alpha AAPL 2024-01-03 5\n"
+                    + "\n"
+                    + "sell alpha aapl 2024-01-04 3\n"
+                    + "costBasis alpha 2024-01-05\n"
+                    + "value alpha 2024-01-05\n"
+                    + "graph alpha 2024-01-02 2024-01-20 daily\n"), output);
+    String[] lines = run(controller, output);
+    assertEquals(6, lines.length);
+    assertEquals("{\"line\":2,\"command\":\"buy\",\"ok\":true,"
+            + "\"result\":\"Portfolio saved to alpha.xml\"}", lines[0]);
+    assertEquals("{\"line\":4,\"command\":\"sell\",\"ok\":true,"
+            + "\"result\":\"Portfolio saved to alpha.xml\"}", lines[1]);
+    assertTrue(lines[2], lines[2].startsWith("{\"line\":5,\"command\":\"costBasis\",\"amount\":"));
+    assertTrue(lines[2], lines[2].contains("\"ok\":true"));
+    assertTrue(lines[3], lines[3].startsWith("{\"line\":6,\"command\":\"value\",\"amount\":"));
+    assertTrue(lines[3], lines[3].contains("\"ok\":true"));
+    assertTrue(lines[4], lines[4].contains("\"ok\":true,\"result\":\"Performance of portfolio"));
+    assertTrue(lines[5], lines[5].startsWith("{\"commands\":5,\"failed\":0,"));
+    assertEquals(0, controller.getFailures());
+    assertTrue(manager.fetchFlexiblePortfolio(1).composition().contains("Quantity: 12.0"));
+  }
+
+  @Test
+  public void testFailuresAreReportedAndCounted() throws Exception {
+    StringBuilder output = new StringBuilder();
+    BatchController controller = new BatchController(manager, new StringReader(
+            "rebalance alpha\n"
+                    + "value beta 2024-01-05\n"
+                    + "buy alpha AAPL 2024-13-01 5\n"
+                    + "sell alpha AAPL 2024-01-04 50\n"
+                    + "value alpha\n"), output);
+    String[] lines = run(controller, output);
+    assertEquals("{\"line\":1,\"command\":\"rebalance\",\"ok\":false,"
+            + "\"error\":\"Unknown command rebalance\"}", lines[0]);
+    assertEquals("{\"line\":2,\"command\":\"value\",\"ok\":false,"
+            + "\"error\":\"No portfolio beta\"}", lines[1]);
+    assertEquals("{\"line\":3,\"command\":\"buy\",\"ok\":false,"
+            + "\"error\":\"Invalid date 2024-13-01\"}", lines[2]);
+    assertEquals("{\"line\":4,\"command\":\"sell\",\"ok\":false,"
+            + "\"result\":\"Cannot sell more stocks than you have\"}", lines[3]);
+    assertEquals("{\"line\":5,\"command\":\"value\",\"ok\":false,"
+            + "\"error\":\"value needs 2 arguments\"}", lines[4]);
+    assertTrue(lines[5], lines[5].startsWith("{\"commands\":5,\"failed\":5,"));
+    assertEquals(5, controller.getFailures());
+  }
+}
@@ -0,0 +1,98 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import model.FlexibleManager;
+import model.PortfolioRepository;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * This class tests importing trades from a csv file: trades are applied in date order whatever
+ * their order in the file, each portfolio is created or extended once, and rows that cannot be
+ * applied are reported by line number.
+ */
+public class BulkImportTest {
+  private File root;
+  private File trades;
+  private FlexibleManager manager;
+
+  @Before
+  public void setUp() throws IOException {
+    root = Files.createTempDirectory("import").toFile();
+    File folder = new File(root, "portfolios");
+    folder.mkdirs();
+    trades = new File(root, "trades.csv");
+    manager = new FlexibleManager(PortfolioRepository.open(folder.getPath()));
+  }
+
+  @After
+  public void tearDown() {
+    for (File file : new File(root, "portfolios").listFiles()) {
+      file.delete();
+    }
+    new File(root, "portfolios").delete();
+    trades.delete();
+    root.delete();
+  }
+
+  private String importRows(String... rows) throws IOException {
+    Files.write(trades.toPath(), String.join("\n", rows).getBytes(StandardCharsets.UTF_8));
+    return manager.importTrades(trades.getPath());
+  }
+
+  @Test
+  public void testTradesAppliedInDateOrder() throws Exception {
+    String report = importRows("portfolio,symbol,date,quantity,amount",
+            "alpha,AAPL,2024-03-01,-5,",
+            "alpha,aapl,2024-01-02,10,",
+            "beta,MSFT,2024-01-02,,1000");
+    assertTrue(report, report.startsWith("Imported 3 of 3 trades into 2 portfolios"));
+    assertTrue(report.contains("Rejected rows: 0\r\n"));
+    assertArrayEquals(new String[] {"alpha.xml", "beta.xml"}, manager.returnPortfolioList());
+    assertTrue(manager.fetchFlexiblePortfolio(1).composition()
+            .contains("Transaction Dates: 2024-01-02,2024-03-01\r\n"
+                    + "Transaction Quantities: 10.0,-5.0\r\n"
+                    + "Quantity: 5.0\r\n"));
+  }
+
+  @Test
+  public void testImportExtendsExistingPortfolio() throws Exception {
+    importRows("alpha,AAPL,2024-01-02,10,");
+    String report = importRows("alpha,AAPL,2024-02-01,5,", "alpha,MSFT,2024-02-01,3,");
+    assertTrue(report, report.startsWith("Imported 2 of 2 trades into 1 portfolios"));
+    String composition = manager.fetchFlexiblePortfolio(1).composition();
+    assertTrue(composition.contains("Transaction Quantities: 10.0,5.0\r\n"));
+    assertTrue(composition.contains("Symbol: MSFT\r\n"));
+  }
+
+  @Test
+  public void testRejectedRowsReported() throws Exception {
+    importRows("alpha,AAPL,2024-02-01,10,");
+    String report = importRows("alpha,AAPL,2024-03-01,-20,",
+            "alpha,AAPL,2024-01-15,1,",
+            "alpha,ZZZZ,2024-01-15,1,",
+            "alpha,AAPL,2024-13-01,1,",
+            "alpha,AAPL,2024-03-01,1,100",
+            "1alpha,AAPL,2024-03-01,1,",
+            "alpha,AAPL,1990-01-02,1,",
+            "alpha,AAPL",
+            "alpha,AAPL,2024-03-04,2,");
+    assertTrue(report, report.startsWith("Imported 1 of 9 trades into 1 portfolios"));
+    assertTrue(report, report.contains("Rejected rows: 8\r\n"
+            + "Line 1: Cannot sell more stocks than you have\r\n"
+            + "Line 2: Can only trade AAPL after the date of its previous transaction\r\n"
+            + "Line 3: No price data for ZZZZ\r\n"
+            + "Line 4: Invalid date 2024-13-01\r\n"
+            + "Line 5: Give either a quantity or an amount\r\n"
+            + "Line 6: Invalid portfolio name 1alpha\r\n"
+            + "Line 7: No price data for AAPL on 1990-01-02\r\n"
+            + "Line 8: Expected portfolio,symbol,date,quantity,amount\r\n"));
+  }
+}
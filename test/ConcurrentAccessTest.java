@@ -0,0 +1,174 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import model.FlexibleManager;
+import model.FlexiblePortfolioInterface;
+import model.PortfolioRepository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * This class tests that readers of a portfolio see every purchase either completely or not at
+ * all while another thread keeps buying, and that threads loading the same portfolio on their
+ * own trade on one instance of it.
+ */
+public class ConcurrentAccessTest {
+  private File root;
+  private FlexibleManager manager;
+
+  @Before
+  public void setUp() throws IOException {
+    root = Files.createTempDirectory("concurrent").toFile();
+    File folder = new File(root, "portfolios");
+    folder.mkdirs();
+    String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<portfolio>\n"
+            + "\t<stock id=\"AAPL\">\n\t\t<symbol>AAPL</symbol>\n"
+            + "\t\t<transactDate>2024-01-02</transactDate>\n"
+            + "\t\t<transactQuantity>10</transactQuantity>\n"
+            + "\t\t<quantity>10</quantity>\n\t</stock>\n"
+            + "\t<stock id=\"MSFT\">\n\t\t<symbol>MSFT</symbol>\n"
+            + "\t\t<transactDate>2024-01-02</transactDate>\n"
+            + "\t\t<transactQuantity>5</transactQuantity>\n"
+            + "\t\t<quantity>5</quantity>\n\t</stock>\n</portfolio>";
+    Files.write(new File(folder, "alpha.xml").toPath(), xml.getBytes(StandardCharsets.UTF_8));
+    manager = new FlexibleManager(PortfolioRepository.open(folder.getPath()));
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    manager.flush();
+    delete(root);
+  }
+
+  private static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+
+  private static File find(File folder, String name) {
+    File[] children = folder.listFiles();
+    for (File child : children == null ? new File[0] : children) {
+      File found = child.getName().equals(name) ? child : find(child, name);
+      if (found != null) {
+        return found;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Checks that the quantity of every stock in a composition is the sum of its transactions.
+   */
+  private static String checkComposition(String composition) {
+    float sum = 0;
+    for (String line : composition.split("\r\n")) {
+      if (line.startsWith("Transaction Quantities: ")) {
+        sum = 0;
+        for (String quantity : line.substring(24).split(",")) {
+          sum += Float.parseFloat(quantity);
+        }
+      } else if (line.startsWith("Quantity: ")
+              && Float.parseFloat(line.substring(10)) != sum) {
+        return composition;
+      }
+    }
+    return null;
+  }
+
+  @Test
+  public void testReadersNeverSeeHalfAppliedTrades() throws Exception {
+    FlexiblePortfolioInterface portfolio = manager.fetchFlexiblePortfolio(1);
+    AtomicBoolean done = new AtomicBoolean();
+    List<String> problems = new ArrayList<>();
+    List<Thread> readers = new ArrayList<>();
+    for (int r = 0; r < 4; r++) {
+      Thread reader = new Thread(() -> {
+        try {
+          while (!done.get()) {
+            String problem = checkComposition(portfolio.composition());
+            if (problem != null) {
+              synchronized (problems) {
+                problems.add(problem);
+              }
+            }
+            portfolio.listStocks();
+          }
+        } catch (RuntimeException e) {
+          synchronized (problems) {
+            problems.add(e.toString());
+          }
+        }
+      });
+      reader.start();
+      readers.add(reader);
+    }
+    for (int i = 0; i < 500; i++) {
+      assertEquals("Portfolio saved to alpha.xml",
+              portfolio.buyExisting(1 + i % 2, "2024-01-03", 1));
+    }
+    done.set(true);
+    for (Thread reader : readers) {
+      reader.join();
+    }
+    assertTrue(problems.toString(), problems.isEmpty());
+    String composition = portfolio.composition();
+    assertTrue(composition, composition.contains("Quantity: 260.0\r\n")
+            && composition.contains("Quantity: 255.0\r\n"));
+  }
+
+  @Test
+  public void testSeparateLoadsShareOnePortfolio() throws Exception {
+    List<Thread> buyers = new ArrayList<>();
+    List<String> problems = new ArrayList<>();
+    for (int b = 0; b < 4; b++) {
+      Thread buyer = new Thread(() -> {
+        try {
+          for (int i = 0; i < 25; i++) {
+            String result = manager.fetchFlexiblePortfolio(1).buyExisting(1, "2024-01-03", 1);
+            if (!result.equals("Portfolio saved to alpha.xml")) {
+              synchronized (problems) {
+                problems.add(result);
+              }
+            }
+          }
+        } catch (Exception e) {
+          synchronized (problems) {
+            problems.add(e.toString());
+          }
+        }
+      });
+      buyer.start();
+      buyers.add(buyer);
+    }
+    for (Thread buyer : buyers) {
+      buyer.join();
+    }
+    assertTrue(problems.toString(), problems.isEmpty());
+    assertTrue(manager.fetchFlexiblePortfolio(1) == manager.fetchFlexiblePortfolio(1));
+    String composition = manager.fetchFlexiblePortfolio(1).composition();
+    assertTrue(composition, composition.contains("Quantity: 110.0\r\n"));
+
+    Set<String> sequences = new HashSet<>();
+    for (String line : Files.readAllLines(find(root, "alpha.journal").toPath())) {
+      sequences.add(line.split(",")[0]);
+    }
+    assertEquals(100, sequences.size());
+  }
+}
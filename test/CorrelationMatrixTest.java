@@ -0,0 +1,264 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TreeMap;
+
+import model.CorrelationMatrix;
+import model.Workspace;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * This class tests the covariance and correlation of daily returns against a direct computation,
+ * including pairs that only share some of their trading days, matrices spanning several tiles
+ * and more days than one chunk, and saving and loading matrices.
+ */
+public class CorrelationMatrixTest {
+  private static final LocalDate FIRST = LocalDate.parse("2020-01-01");
+
+  private File root;
+  private Workspace workspace;
+  private final TreeMap<String, TreeMap<Integer, Float>> prices = new TreeMap<>();
+
+  @Before
+  public void setUp() throws IOException {
+    root = Files.createTempDirectory("correlation").toFile();
+    new File(root, "portfolios").mkdirs();
+    new File(root, "data").mkdirs();
+    workspace = Workspace.of(root);
+  }
+
+  @After
+  public void tearDown() {
+    delete(root);
+  }
+
+  private static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+
+  /**
+   * Writes the price file of a symbol closing at the given price on each day since 2020-01-01
+   * that it has a price for, and keeps the prices for the direct computation.
+   */
+  private void write(String symbol, TreeMap<Integer, Float> closes) throws IOException {
+    prices.put(symbol, closes);
+    StringBuilder csv = new StringBuilder("timestamp,open,high,low,close,volume\n");
+    for (int day : closes.descendingKeySet()) {
+      float close = closes.get(day);
+      csv.append(FIRST.plusDays(day)).append(',').append(close).append(',').append(close)
+              .append(',').append(close).append(',').append(close).append(",1000\n");
+    }
+    Files.write(new File(root, "data/" + symbol + ".csv").toPath(),
+            csv.toString().getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Writes a symbol whose prices follow the given daily returns from a price of 100, on the
+   * days for which keep is true.
+   */
+  private void write(String symbol, double[] returns, boolean[] keep) throws IOException {
+    TreeMap<Integer, Float> closes = new TreeMap<>();
+    double price = 100;
+    for (int day = 0; day <= returns.length; day++) {
+      if (keep == null || keep[day]) {
+        closes.put(day, (float) price);
+      }
+      if (day < returns.length) {
+        price *= 1 + returns[day];
+      }
+    }
+    write(symbol, closes);
+  }
+
+  private static double[] randomReturns(Random random, int days) {
+    double[] returns = new double[days];
+    for (int day = 0; day < days; day++) {
+      returns[day] = 0.02 * random.nextGaussian();
+    }
+    return returns;
+  }
+
+  /**
+   * Computes the covariance and correlation of two symbols directly from their prices, using
+   * the returns between consecutive days of all symbols on which both have a price. Both are
+   * NaN if the symbols share fewer than two returns.
+   */
+  private double[] direct(String first, String second) {
+    TreeMap<Integer, Boolean> calendar = new TreeMap<>();
+    for (TreeMap<Integer, Float> closes : prices.values()) {
+      for (int day : closes.keySet()) {
+        calendar.put(day, true);
+      }
+    }
+    Integer[] days = calendar.keySet().toArray(new Integer[0]);
+    TreeMap<Integer, Float> x = prices.get(first);
+    TreeMap<Integer, Float> y = prices.get(second);
+    int n = 0;
+    double sx = 0;
+    double sy = 0;
+    double sxx = 0;
+    double syy = 0;
+    double sxy = 0;
+    for (int t = 1; t < days.length; t++) {
+      if (x.containsKey(days[t - 1]) && x.containsKey(days[t])
+              && y.containsKey(days[t - 1]) && y.containsKey(days[t])) {
+        double a = x.get(days[t]) / x.get(days[t - 1]) - 1;
+        double b = y.get(days[t]) / y.get(days[t - 1]) - 1;
+        n++;
+        sx += a;
+        sy += b;
+        sxx += a * a;
+        syy += b * b;
+        sxy += a * b;
+      }
+    }
+    if (n < 2) {
+      return new double[] {Double.NaN, Double.NaN};
+    }
+    double cov = (sxy - sx * sy / n) / (n - 1);
+    double varX = (sxx - sx * sx / n) / (n - 1);
+    double varY = (syy - sy * sy / n) / (n - 1);
+    return new double[] {cov, cov / Math.sqrt(varX * varY)};
+  }
+
+  private void assertDirect(CorrelationMatrix matrix) {
+    for (int i = 0; i < matrix.size(); i++) {
+      for (int j = 0; j < matrix.size(); j++) {
+        double[] expected = direct(matrix.getSymbol(i), matrix.getSymbol(j));
+        String pair = matrix.getSymbol(i) + "/" + matrix.getSymbol(j);
+        if (Double.isNaN(expected[0])) {
+          assertTrue(pair, Float.isNaN(matrix.getCovariance(i, j))
+                  && Float.isNaN(matrix.getCorrelation(i, j)));
+          continue;
+        }
+        assertEquals(pair, expected[0], matrix.getCovariance(i, j), 1e-6);
+        assertEquals(pair, expected[1], matrix.getCorrelation(i, j), 1e-3);
+      }
+    }
+  }
+
+  @Test
+  public void testCoefficientsOfRelatedSeries() throws Exception {
+    double[] returns = randomReturns(new Random(1), 200);
+    double[] doubled = new double[returns.length];
+    double[] opposite = new double[returns.length];
+    for (int day = 0; day < returns.length; day++) {
+      doubled[day] = 2 * returns[day];
+      opposite[day] = -returns[day];
+    }
+    write("ZA", returns, null);
+    write("ZB", doubled, null);
+    write("ZC", opposite, null);
+    CorrelationMatrix matrix = CorrelationMatrix.forAllSymbols(workspace);
+
+    assertEquals(3, matrix.size());
+    assertEquals("ZB", matrix.getSymbol(1));
+    assertEquals(1, matrix.getCorrelation(0, 0), 1e-4);
+    assertEquals(1, matrix.getCorrelation(0, 1), 1e-4);
+    assertEquals(-1, matrix.getCorrelation(2, 0), 1e-4);
+    assertEquals(2 * matrix.getCovariance(0, 0), matrix.getCovariance(0, 1), 1e-6);
+    assertEquals(matrix.getCovariance(1, 2), matrix.getCovariance(2, 1), 0);
+    assertDirect(matrix);
+  }
+
+  @Test
+  public void testPairsUseTheDaysBothHave() throws Exception {
+    Random random = new Random(2);
+    boolean[] sparse = new boolean[301];
+    for (int day = 0; day < sparse.length; day++) {
+      sparse[day] = random.nextInt(4) != 0;
+    }
+    write("ZA", randomReturns(random, 300), null);
+    write("ZB", randomReturns(random, 300), sparse);
+    write("ZC", randomReturns(random, 300), sparse);
+    TreeMap<Integer, Float> single = new TreeMap<>();
+    single.put(10, 50f);
+    write("ZD", single);
+    CorrelationMatrix matrix = CorrelationMatrix.forAllSymbols(workspace);
+
+    assertDirect(matrix);
+    assertDirect(CorrelationMatrix.compute(workspace, Arrays.asList("ZA", "ZB", "ZC")));
+    for (int i = 0; i < 4; i++) {
+      assertTrue(Float.isNaN(matrix.getCovariance(i, 3)));
+      assertTrue(Float.isNaN(matrix.getCorrelation(3, i)));
+    }
+  }
+
+  @Test
+  public void testMatrixOfSeveralTilesAndChunks() throws Exception {
+    Random random = new Random(3);
+    double[] market = randomReturns(random, 1500);
+    for (int s = 0; s < 40; s++) {
+      double[] returns = randomReturns(random, market.length);
+      for (int day = 0; day < returns.length; day++) {
+        returns[day] = returns[day] / 2 + market[day] * s / 40;
+      }
+      boolean[] keep = null;
+      if (s % 7 == 0) {
+        keep = new boolean[returns.length + 1];
+        for (int day = 0; day < keep.length; day++) {
+          keep[day] = day % (s + 5) != 3;
+        }
+      }
+      write(String.format("Z%02d", s), returns, keep);
+    }
+    CorrelationMatrix matrix = CorrelationMatrix.forAllSymbols(workspace);
+    assertEquals(40, matrix.size());
+    assertDirect(matrix);
+  }
+
+  @Test
+  public void testSavedMatrixLoadsTheSame() throws Exception {
+    Random random = new Random(4);
+    write("ZA", randomReturns(random, 100), null);
+    write("ZB", randomReturns(random, 100), null);
+    TreeMap<Integer, Float> single = new TreeMap<>();
+    single.put(10, 50f);
+    write("ZC", single);
+    CorrelationMatrix matrix = CorrelationMatrix.forAllSymbols(workspace);
+    File file = new File(root, "matrix.bin");
+    matrix.save(file);
+    CorrelationMatrix loaded = CorrelationMatrix.load(file);
+
+    assertEquals(matrix.size(), loaded.size());
+    for (int i = 0; i < matrix.size(); i++) {
+      assertEquals(matrix.getSymbol(i), loaded.getSymbol(i));
+      for (int j = 0; j < matrix.size(); j++) {
+        assertEquals(Float.floatToIntBits(matrix.getCovariance(i, j)),
+                Float.floatToIntBits(loaded.getCovariance(i, j)));
+        assertEquals(Float.floatToIntBits(matrix.getCorrelation(i, j)),
+                Float.floatToIntBits(loaded.getCorrelation(i, j)));
+      }
+    }
+    assertEquals(1, root.list((dir, name) -> name.contains("matrix")).length);
+  }
+
+  @Test
+  public void testOtherFilesRejected() throws Exception {
+    File file = new File(root, "matrix.bin");
+    Files.write(file.toPath(), "not a matrix".getBytes(StandardCharsets.UTF_8));
+    try {
+      CorrelationMatrix.load(file);
+      fail("A file that is not a matrix was loaded");
+    } catch (IOException e) {
+      assertEquals("Not a correlation matrix file: matrix.bin", e.getMessage());
+    }
+  }
+}
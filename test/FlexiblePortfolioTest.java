@@ -1,11 +1,20 @@
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
 import model.FlexibleManager;
 import model.FlexibleManagerInterface;
+import model.FlexiblePortfolio;
 import model.FlexiblePortfolioInterface;
+import model.PortfolioRepository;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 /**
@@ -270,4 +279,44 @@ public class FlexiblePortfolioTest {
     }
   }
 
-}
\ No newline at end of file
+  @Test
+  public void testRebalanceChangesTheQuantitiesHeld() throws Exception {
+    File folder = Files.createTempDirectory("rebalance").toFile();
+    File file = new File(folder, "alpha.xml");
+    StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<portfolio>\n");
+    for (String symbol : new String[] {"AAPL", "MSFT"}) {
+      xml.append("\t<stock id=\"").append(symbol).append("\">\n")
+              .append("\t\t<symbol>").append(symbol).append("</symbol>\n")
+              .append("\t\t<transactDate>2024-01-02</transactDate>\n")
+              .append("\t\t<transactQuantity>100</transactQuantity>\n")
+              .append("\t\t<quantity>100</quantity>\n\t</stock>\n");
+    }
+    xml.append("</portfolio>");
+    Files.write(file.toPath(), xml.toString().getBytes(StandardCharsets.UTF_8));
+    FlexibleManager flexible = new FlexibleManager(PortfolioRepository.open(folder.getPath()));
+    try {
+      FlexiblePortfolio alpha = (FlexiblePortfolio) flexible.fetchFlexiblePortfolio(1);
+      Map<String, Float> weights = new HashMap<>();
+      weights.put("AAPL", 50f);
+      weights.put("MSFT", 50f);
+      assertEquals("Rebalancing completed.", alpha.rebalancePortfolio("2024-03-01", weights));
+      String composition = flexible.fetchFlexiblePortfolio(1).composition();
+      assertTrue(composition, composition.contains("Symbol: AAPL\r\n"
+              + "Transaction Dates: 2024-01-02,2024-03-01\r\n"
+              + "Transaction Quantities: 100.0,65.0\r\n"
+              + "Quantity: 165.0\r\n"));
+      assertTrue(composition, composition.contains("Symbol: MSFT\r\n"
+              + "Transaction Dates: 2024-01-02,2024-03-01\r\n"
+              + "Transaction Quantities: 100.0,-28.0\r\n"
+              + "Quantity: 72.0\r\n"));
+    } finally {
+      flexible.flush();
+      File[] files = folder.listFiles();
+      for (File child : files == null ? new File[0] : files) {
+        child.delete();
+      }
+      folder.delete();
+    }
+  }
+}
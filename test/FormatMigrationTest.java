@@ -0,0 +1,123 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import model.FlexibleManager;
+import model.FormatMigration;
+import model.PortfolioRepository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * This class tests that XML portfolios are migrated to the binary format when first opened or
+ * when their folder is migrated, that the migration keeps the trades made so far and the XML
+ * files as backups, and that the binary format is several times smaller than the XML. How much
+ * faster the binary format is read and written is tested by the model's PortfolioFormatCostTest.
+ */
+public class FormatMigrationTest {
+  private File root;
+  private File folder;
+  private FlexibleManager manager;
+
+  @Before
+  public void setUp() throws IOException {
+    root = Files.createTempDirectory("format").toFile();
+    folder = new File(root, "portfolios");
+    folder.mkdirs();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    if (manager != null) {
+      manager.flush();
+    }
+    delete(root);
+  }
+
+  private static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+
+  /**
+   * Writes an XML portfolio holding AAPL bought ten at a time on consecutive days, and opens the
+   * folder.
+   */
+  private File portfolio(String name, int transactions) throws IOException {
+    StringBuilder dates = new StringBuilder();
+    StringBuilder quantities = new StringBuilder();
+    LocalDate day = LocalDate.parse("2020-01-01");
+    for (int i = 0; i < transactions; i++) {
+      dates.append(i == 0 ? "" : ",").append(day.plusDays(i));
+      quantities.append(i == 0 ? "" : ",").append(10);
+    }
+    String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<portfolio>\n"
+            + "\t<stock id=\"AAPL\">\n\t\t<symbol>AAPL</symbol>\n"
+            + "\t\t<transactDate>" + dates + "</transactDate>\n"
+            + "\t\t<transactQuantity>" + quantities + "</transactQuantity>\n"
+            + "\t\t<quantity>" + 10 * transactions + "</quantity>\n\t</stock>\n</portfolio>";
+    File file = new File(folder, name + ".xml");
+    Files.write(file.toPath(), xml.getBytes(StandardCharsets.UTF_8));
+    manager = new FlexibleManager(PortfolioRepository.open(folder.getPath()));
+    return file;
+  }
+
+  @Test
+  public void testOpeningMigratesAndKeepsXmlAsBackup() throws Exception {
+    File xml = portfolio("alpha", 3);
+    byte[] original = Files.readAllBytes(xml.toPath());
+    assertTrue(manager.fetchFlexiblePortfolio(1).composition().contains("Quantity: 30.0\r\n"));
+    assertTrue(new File(folder, "alpha.pfb").exists());
+    assertFalse(xml.exists());
+    assertTrue(Arrays.equals(original,
+            Files.readAllBytes(new File(folder, "alpha.xml.bak").toPath())));
+    assertEquals("alpha.xml", manager.returnPortfolioList()[0]);
+
+    assertEquals("Portfolio saved to alpha.xml",
+            manager.fetchFlexiblePortfolio(1).buyExisting(1, "2024-02-01", 5));
+    manager.flush();
+    assertFalse(xml.exists());
+    assertTrue(new FlexibleManager(PortfolioRepository.open(folder.getPath()))
+            .fetchFlexiblePortfolio(1).composition().contains("Quantity: 35.0\r\n"));
+    assertEquals("Migrated 0 portfolios of " + folder.getPath() + " to the binary format",
+            FormatMigration.migrate(folder.getPath()));
+  }
+
+  @Test
+  public void testMigrationMigratesEveryXmlPortfolio() throws Exception {
+    portfolio("alpha", 3);
+    File beta = portfolio("beta", 4);
+    assertEquals("Migrated 2 portfolios of " + folder.getPath() + " to the binary format",
+            FormatMigration.migrate(folder.getPath()));
+    assertFalse(beta.exists());
+    assertTrue(new File(folder, "alpha.pfb").exists() && new File(folder, "beta.pfb").exists());
+    assertTrue(new File(folder, "beta.xml.bak").exists());
+    assertTrue(manager.fetchFlexiblePortfolio(2).composition()
+            .contains("Quantity: 40.0\r\n"));
+  }
+
+  @Test
+  public void testBinaryFormatIsSeveralTimesSmaller() throws Exception {
+    portfolio("alpha", 2000);
+    FormatMigration.migrate(folder.getPath());
+    long binary = new File(folder, "alpha.pfb").length();
+    long xml = new File(folder, "alpha.xml.bak").length();
+    assertTrue(binary + " bytes against " + xml, binary * 5 < xml);
+    assertTrue(manager.fetchFlexiblePortfolio(1).composition()
+            .contains("Quantity: 20000.0\r\n"));
+  }
+}
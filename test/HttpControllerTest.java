@@ -0,0 +1,139 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import controller.HttpController;
+import model.FlexibleManager;
+import model.PortfolioRepository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * This class tests the HTTP service: its resources, its JSON answers and its error statuses.
+ */
+public class HttpControllerTest {
+  private File root;
+  private FlexibleManager manager;
+  private HttpController server;
+
+  @Before
+  public void setUp() throws IOException {
+    root = Files.createTempDirectory("http").toFile();
+    File folder = new File(root, "portfolios");
+    folder.mkdirs();
+    String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<portfolio>\n"
+            + "\t<stock id=\"AAPL\">\n\t\t<symbol>AAPL</symbol>\n"
+            + "\t\t<transactDate>2024-01-02</transactDate>\n"
+            + "\t\t<transactQuantity>10</transactQuantity>\n"
+            + "\t\t<quantity>10</quantity>\n\t</stock>\n</portfolio>";
+    Files.write(new File(folder, "alpha.xml").toPath(), xml.getBytes(StandardCharsets.UTF_8));
+    manager = new FlexibleManager(PortfolioRepository.open(folder.getPath()));
+    server = new HttpController(manager,
+            new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+    server.start();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    server.stop(0);
+    delete(root);
+  }
+
+  private static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+
+  /**
+   * Sends a request and returns the status followed by a space and the body.
+   */
+  private String request(String method, String path) throws IOException {
+    URL url = new URL("http://127.0.0.1:" + server.getPort() + path);
+    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+    connection.setRequestMethod(method);
+    int status = connection.getResponseCode();
+    InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    in.transferTo(body);
+    in.close();
+    return status + " " + body.toString(StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void testListPortfolios() throws IOException {
+    assertEquals("200 {\"portfolios\":[\"alpha\"]}", request("GET", "/portfolios"));
+  }
+
+  @Test
+  public void testValue() throws IOException {
+    String answer = request("GET", "/portfolios/alpha/value?date=2024-01-05");
+    assertTrue(answer, answer.startsWith("200 {\"portfolio\":\"alpha\",\"date\":\"2024-01-05\","
+            + "\"result\":"));
+  }
+
+  @Test
+  public void testBuyThenComposition() throws IOException {
+    assertEquals("200 {\"portfolio\":\"alpha\",\"result\":\"Portfolio saved to alpha.xml\"}",
+            request("POST", "/portfolios/alpha/buy?symbol=aapl&date=2024-01-03&quantity=5"));
+    String answer = request("GET", "/portfolios/alpha");
+    assertTrue(answer, answer.startsWith("200 {\"portfolio\":\"alpha\",\"stocks\":[\"AAPL\"]"));
+    assertTrue(answer, answer.contains("Quantity: 15.0"));
+  }
+
+  @Test
+  public void testSeries() throws IOException {
+    String answer = request("GET", "/portfolios/alpha/series?start=2024-01-02&end=2024-01-31");
+    assertTrue(answer, answer.startsWith("200 {\"portfolio\":\"alpha\",\"dates\":[\"2024-01-02\""));
+    assertTrue(answer, answer.contains("\"values\":[") && answer.contains("\"flows\":["));
+  }
+
+  @Test
+  public void testErrors() throws IOException {
+    assertEquals("404 {\"error\":\"No portfolio beta\"}", request("GET", "/portfolios/beta"));
+    assertEquals("400 {\"error\":\"Invalid date 2024-13-01 for date\"}",
+            request("GET", "/portfolios/alpha/value?date=2024-13-01"));
+    assertEquals("405 {\"error\":\"buy needs POST\"}",
+            request("GET", "/portfolios/alpha/buy?symbol=AAPL&date=2024-01-03&quantity=1"));
+    assertEquals("404 {\"error\":\"No stock TSLA in the portfolio\"}",
+            request("GET", "/portfolios/alpha/stocks/TSLA/crossovers?start=2024-01-02"
+                    + "&end=2024-02-01"));
+  }
+
+  @Test
+  public void testRefusedChangesAreBadRequests() throws IOException {
+    assertEquals("400 {\"error\":\"Cannot sell more stocks than you have\"}",
+            request("POST", "/portfolios/alpha/sell?symbol=AAPL&date=2024-01-03&quantity=50"));
+    assertEquals("400 {\"error\":\"For input string: \\\"many\\\"\"}",
+            request("POST", "/portfolios/alpha/buy?symbol=AAPL&date=2024-01-03&quantity=many"));
+    assertEquals("404 {\"error\":\"No stock TSLA in the portfolio\"}",
+            request("POST", "/portfolios/alpha/buy?symbol=TSLA&date=2024-01-03&quantity=1"));
+  }
+
+  @Test
+  public void testFailuresOfTheServiceAreServerErrors() throws IOException {
+    assertTrue(request("GET", "/portfolios/alpha").startsWith("200 "));
+    File journal = new File(new File(root, "portfolios"), "alpha.journal");
+    assertTrue(journal.mkdir());
+    String answer = request("POST", "/portfolios/alpha/buy?symbol=AAPL&date=2024-01-03"
+            + "&quantity=5");
+    assertTrue(answer, answer.startsWith("500 {\"error\":"));
+    journal.delete();
+  }
+}
@@ -0,0 +1,161 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import model.FlexibleManager;
+import model.PortfolioRepository;
+import model.Strategy;
+import model.Trade;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * This class tests the database repository on an embedded H2 database: portfolios imported into
+ * it and traded on read back the same through another connection, and the cross-portfolio
+ * queries and strategies are answered from the database.
+ */
+public class JdbcPortfolioRepositoryTest {
+  private File root;
+  private String url;
+  private FlexibleManager manager;
+
+  @Before
+  public void setUp() throws IOException {
+    root = Files.createTempDirectory("jdbc").toFile();
+    url = "jdbc:h2:" + new File(root, "portfolios").getPath();
+    manager = new FlexibleManager(PortfolioRepository.open(url));
+    assertEquals("Portfolio saved to alpha.xml", manager.importPortfolio(
+            write("alpha", "AAPL", "2024-01-02", "100", "MSFT", "2024-01-03", "50")));
+    assertEquals("Portfolio saved to beta.xml", manager.importPortfolio(
+            write("beta", "AAPL", "2024-02-01", "20")));
+  }
+
+  private String write(String name, String... stocks) throws IOException {
+    StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<portfolio>\n");
+    for (int i = 0; i < stocks.length; i += 3) {
+      xml.append("\t<stock id=\"").append(stocks[i]).append("\">\n")
+              .append("\t\t<symbol>").append(stocks[i]).append("</symbol>\n")
+              .append("\t\t<transactDate>").append(stocks[i + 1]).append("</transactDate>\n")
+              .append("\t\t<transactQuantity>").append(stocks[i + 2])
+              .append("</transactQuantity>\n")
+              .append("\t\t<quantity>").append(stocks[i + 2]).append("</quantity>\n")
+              .append("\t</stock>\n");
+    }
+    xml.append("</portfolio>");
+    File file = new File(root, name + ".xml");
+    Files.write(file.toPath(), xml.toString().getBytes(StandardCharsets.UTF_8));
+    return file.getPath();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    manager.flush();
+    delete(root);
+  }
+
+  private static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+
+  /**
+   * Opens the same database through a connection of its own, which reads every portfolio from
+   * the database instead of returning one already open.
+   */
+  private FlexibleManager reopen() {
+    return new FlexibleManager(PortfolioRepository.open(url + ";IFEXISTS=TRUE"));
+  }
+
+  @Test
+  public void testPortfoliosRoundTrip() throws Exception {
+    assertArrayEquals(new String[] {"alpha.xml", "beta.xml"}, manager.returnPortfolioList());
+    assertEquals(Arrays.asList("AAPL", "MSFT"), manager.getSummary(1).getSymbols());
+    String imported = manager.fetchFlexiblePortfolio(1).composition();
+    assertEquals(imported, reopen().fetchFlexiblePortfolio(1).composition());
+
+    assertEquals("Portfolio saved to alpha.xml",
+            manager.fetchFlexiblePortfolio(1).buyExisting(1, "2024-02-05", 5));
+    assertEquals("Portfolio saved to alpha.xml",
+            manager.fetchFlexiblePortfolio(1).sellExisting(2, "2024-02-06", 20));
+    manager.flush();
+    String traded = reopen().fetchFlexiblePortfolio(1).composition();
+    assertTrue(traded, traded.contains("Symbol: AAPL\r\n"
+            + "Transaction Dates: 2024-01-02,2024-02-05\r\n"
+            + "Transaction Quantities: 100.0,5.0\r\n"
+            + "Quantity: 105.0\r\n"));
+    assertTrue(traded, traded.contains("Symbol: MSFT\r\n"
+            + "Transaction Dates: 2024-01-03,2024-02-06\r\n"
+            + "Transaction Quantities: 50.0,-20.0\r\n"
+            + "Quantity: 30.0\r\n"));
+    assertEquals(traded, manager.fetchFlexiblePortfolio(1).composition());
+  }
+
+  @Test
+  public void testOpenInstanceReturnedUntilSavedElsewhere() throws Exception {
+    assertTrue(manager.fetchFlexiblePortfolio(2) == manager.fetchFlexiblePortfolio(2));
+    reopen().fetchFlexiblePortfolio(2).buyExisting(1, "2024-02-02", 1);
+    reopen().flush();
+    assertTrue(manager.fetchFlexiblePortfolio(2).composition().contains("Quantity: 21.0\r\n"));
+  }
+
+  @Test
+  public void testHoldingsOf() throws Exception {
+    Map<String, Float> holdings = manager.holdingsOf("aapl");
+    assertEquals(2, holdings.size());
+    assertEquals(100f, holdings.get("alpha"), 0.001);
+    assertEquals(20f, holdings.get("beta"), 0.001);
+    assertEquals(1, manager.holdingsOf("MSFT").size());
+    assertEquals(0, manager.holdingsOf("GOOG").size());
+
+    manager.fetchFlexiblePortfolio(2).sellExisting(1, "2024-02-02", 20);
+    assertEquals(Arrays.asList("alpha"),
+            new ArrayList<>(manager.holdingsOf("AAPL").keySet()));
+  }
+
+  @Test
+  public void testTradesBetween() throws Exception {
+    assertEquals("Portfolio saved to alpha.xml",
+            manager.fetchFlexiblePortfolio(1).buyExisting(2, "2024-01-20", 4));
+    List<String> trades = new ArrayList<>();
+    for (Trade trade : manager.tradesBetween("2024-01-03", "2024-02-01")) {
+      trades.add(trade.toString());
+    }
+    assertEquals(Arrays.asList("2024-01-03 alpha MSFT 50.0", "2024-01-20 alpha MSFT 4.0",
+            "2024-02-01 beta AAPL 20.0"), trades);
+  }
+
+  @Test
+  public void testStrategiesAndDelete() throws Exception {
+    PortfolioRepository repository = PortfolioRepository.open(url);
+    assertNull(repository.loadStrategy("alpha"));
+    Strategy strategy = new Strategy("2024-01-02", "2024-03-01", 30,
+            Arrays.asList("AAPL", "MSFT"), Arrays.asList(60f, 40f));
+    repository.saveStrategy("alpha", strategy);
+    assertNotNull(repository.loadStrategy("alpha"));
+    assertTrue(repository.strategyVersions().containsKey("alpha"));
+
+    assertEquals("Delete Successful", manager.deletePortfolio(2));
+    assertArrayEquals(new String[] {"alpha.xml"}, manager.returnPortfolioList());
+    assertFalse(reopen().holdingsOf("AAPL").containsKey("beta"));
+  }
+}
@@ -0,0 +1,100 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import model.FlexibleManager;
+import model.LayoutMigration;
+import model.PortfolioRepository;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * This class tests moving a portfolio folder between the flat and the sharded layout, and that
+ * portfolios are listed, opened and saved the same way in both.
+ */
+public class LayoutMigrationTest {
+  private File root;
+  private File folder;
+  private FlexibleManager manager;
+
+  @Before
+  public void setUp() throws IOException {
+    root = Files.createTempDirectory("layout").toFile();
+    folder = new File(root, "portfolios");
+    folder.mkdirs();
+    for (String name : new String[] {"alpha", "beta"}) {
+      String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<portfolio>\n"
+              + "\t<stock id=\"AAPL\">\n\t\t<symbol>AAPL</symbol>\n"
+              + "\t\t<transactDate>2024-01-02</transactDate>\n"
+              + "\t\t<transactQuantity>10</transactQuantity>\n"
+              + "\t\t<quantity>10</quantity>\n\t</stock>\n</portfolio>";
+      Files.write(new File(folder, name + ".xml").toPath(),
+              xml.getBytes(StandardCharsets.UTF_8));
+    }
+    manager = new FlexibleManager(PortfolioRepository.open(folder.getPath()));
+  }
+
+  @After
+  public void tearDown() {
+    delete(root);
+  }
+
+  private static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+
+  private int filesDirectlyIn(File directory) {
+    int count = 0;
+    for (File file : directory.listFiles()) {
+      count += file.isFile() && !file.getName().startsWith(".") ? 1 : 0;
+    }
+    return count;
+  }
+
+  @Test
+  public void testShardAndFlatten() throws Exception {
+    assertEquals("Moved 2 files of " + folder.getPath() + " to the sharded layout",
+            LayoutMigration.migrate(folder.getPath(), "sharded"));
+    assertEquals(0, filesDirectlyIn(folder));
+    assertArrayEquals(new String[] {"alpha.xml", "beta.xml"}, manager.returnPortfolioList());
+
+    manager.fetchFlexiblePortfolio(1).buyExisting(1, "2024-02-01", 5);
+    manager.flush();
+    File trades = new File(root, "trades.csv");
+    Files.write(trades.toPath(), "gamma,MSFT,2024-01-03,3,".getBytes(StandardCharsets.UTF_8));
+    manager.importTrades(trades.getPath());
+    assertEquals(0, filesDirectlyIn(folder));
+    assertTrue(manager.fetchFlexiblePortfolio(1).composition()
+            .contains("Transaction Quantities: 10.0,5.0\r\n"));
+    assertArrayEquals(new String[] {"alpha.xml", "beta.xml", "gamma.xml"},
+            manager.returnPortfolioList());
+
+    String result = LayoutMigration.migrate(folder.getPath(), "flat");
+    assertTrue(result, result.startsWith("Moved "));
+    assertFalse(new File(folder, "00").exists());
+    assertArrayEquals(new String[] {"alpha.xml", "beta.xml", "gamma.xml"},
+            manager.returnPortfolioList());
+    assertTrue(manager.fetchFlexiblePortfolio(1).composition()
+            .contains("Transaction Quantities: 10.0,5.0\r\n"));
+  }
+
+  @Test
+  public void testUnknownLayout() {
+    assertEquals("Unknown layout deep, expected flat or sharded",
+            LayoutMigration.migrate(folder.getPath(), "deep"));
+  }
+}
@@ -0,0 +1,117 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import model.FlexibleManager;
+import model.FlexiblePortfolioInterface;
+import model.PortfolioRepository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * This class tests that an XML portfolio with a header is read in full when it is migrated on
+ * its first open, so a file written in its place afterwards is not read into it, and that a
+ * stock without transactions is written without a last date and can be traded on any date.
+ */
+public class LazyLedgerTest {
+  private File root;
+  private File file;
+  private FlexibleManager manager;
+
+  @Before
+  public void setUp() throws IOException {
+    root = Files.createTempDirectory("lazy").toFile();
+    File folder = new File(root, "portfolios");
+    folder.mkdirs();
+    file = new File(folder, "alpha.xml");
+    write(0, "2024-01-02", "10");
+    manager = new FlexibleManager(PortfolioRepository.open(folder.getPath()));
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    manager.flush();
+    delete(root);
+  }
+
+  private static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+
+  /**
+   * Writes the portfolio with a header holding ten AAPL last bought on 2024-01-02 and MSFT
+   * never traded, followed by the given ledger of AAPL.
+   */
+  private void write(long journalSeq, String dates, String quantities) throws IOException {
+    String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<portfolio journalSeq=\"" + journalSeq + "\">\n"
+            + "\t<header>\n"
+            + "\t\t<holding symbol=\"AAPL\" quantity=\"10.0\" lastDate=\"2024-01-02\""
+            + " transactions=\"1\"/>\n"
+            + "\t\t<holding symbol=\"MSFT\" quantity=\"0.0\" transactions=\"0\"/>\n"
+            + "\t</header>\n"
+            + "\t<stock id=\"AAPL\">\n\t\t<symbol>AAPL</symbol>\n"
+            + "\t\t<transactDate>" + dates + "</transactDate>\n"
+            + "\t\t<transactQuantity>" + quantities + "</transactQuantity>\n"
+            + "\t\t<quantity>10.0</quantity>\n\t</stock>\n"
+            + "\t<stock id=\"MSFT\">\n\t\t<symbol>MSFT</symbol>\n"
+            + "\t\t<transactDate></transactDate>\n"
+            + "\t\t<transactQuantity></transactQuantity>\n"
+            + "\t\t<quantity>0.0</quantity>\n\t</stock>\n"
+            + "</portfolio>";
+    Files.write(file.toPath(), xml.getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testLedgersReadWhenMigrated() throws Exception {
+    FlexiblePortfolioInterface portfolio = manager.fetchFlexiblePortfolio(1);
+    assertEquals(Arrays.asList("AAPL", "MSFT"), portfolio.listStocks());
+
+    write(7, "2024-01-02,2024-01-03", "4,6");
+    String composition = portfolio.composition();
+    assertTrue(composition, composition.contains("Transaction Dates: 2024-01-02\r\n"
+            + "Transaction Quantities: 10.0\r\n"
+            + "Quantity: 10.0\r\n"));
+    assertTrue(composition, composition.contains("Symbol: MSFT\r\n"
+            + "Transaction Dates: \r\n"));
+  }
+
+  @Test
+  public void testStockWithoutTransactionsCanBeTraded() throws Exception {
+    FlexiblePortfolioInterface portfolio = manager.fetchFlexiblePortfolio(1);
+    assertTrue(portfolio.checkStartDate("2024-01-02"));
+    assertEquals("Cannot sell more stocks than you have",
+            portfolio.sellExisting(2, "2024-01-05", 1));
+    assertEquals("Portfolio saved to alpha.xml", portfolio.buyExisting(2, "2024-01-05", 3));
+  }
+
+  @Test
+  public void testStockWithoutTransactionsCanBeBoughtForAnAmount() throws Exception {
+    assertEquals("Portfolio saved to alpha.xml",
+            manager.fetchFlexiblePortfolio(1).buyExistingPrice(1, "2024-01-05", 100));
+  }
+
+  @Test
+  public void testStockWithoutTransactionsHasNoLastDate() throws Exception {
+    File exported = new File(root, "exported.xml");
+    assertEquals("Portfolio exported to " + exported.getPath(),
+            manager.exportPortfolio(1, exported.getPath()));
+    String xml = new String(Files.readAllBytes(exported.toPath()), StandardCharsets.UTF_8);
+    assertTrue(xml, xml.contains("<holding symbol=\"MSFT\" quantity=\"0.0\" transactions=\"0\"/>"));
+    assertFalse(xml.contains("null"));
+  }
+}
@@ -0,0 +1,144 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+
+import model.MonteCarloSimulator;
+import model.ProjectionBands;
+import model.Workspace;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * This class tests that projections are reproducible for a seed, that their bands are ordered,
+ * and that the percentiles are right for price series whose outcomes are known.
+ */
+public class MonteCarloSimulatorTest {
+  private File root;
+  private Workspace workspace;
+
+  @Before
+  public void setUp() throws IOException {
+    root = Files.createTempDirectory("montecarlo").toFile();
+    new File(root, "portfolios").mkdirs();
+    new File(root, "data").mkdirs();
+    workspace = Workspace.of(root);
+  }
+
+  @After
+  public void tearDown() {
+    delete(root);
+  }
+
+  private static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+
+  /**
+   * Writes the prices of a symbol closing at the given prices on consecutive days from
+   * 2024-01-01.
+   */
+  private void prices(String symbol, double... closes) throws IOException {
+    StringBuilder csv = new StringBuilder("timestamp,open,high,low,close,volume\n");
+    LocalDate first = LocalDate.parse("2024-01-01");
+    for (int day = closes.length - 1; day >= 0; day--) {
+      double close = closes[day];
+      csv.append(first.plusDays(day)).append(',').append(close).append(',').append(close)
+              .append(',').append(close).append(',').append(close).append(",1000\n");
+    }
+    Files.write(new File(root, "data/" + symbol + ".csv").toPath(),
+            csv.toString().getBytes(StandardCharsets.UTF_8));
+  }
+
+  private MonteCarloSimulator simulator(String symbol, float quantity) throws Exception {
+    return new MonteCarloSimulator(workspace, Collections.singletonList(symbol),
+            Collections.singletonList(quantity));
+  }
+
+  private static double[][] bands(ProjectionBands projection) {
+    double[][] bands = new double[3][projection.getHorizon()];
+    for (int day = 1; day <= projection.getHorizon(); day++) {
+      bands[0][day - 1] = projection.getLower(day);
+      bands[1][day - 1] = projection.getMedian(day);
+      bands[2][day - 1] = projection.getUpper(day);
+    }
+    return bands;
+  }
+
+  private void randomWalk(String symbol, long seed) throws IOException {
+    Random random = new Random(seed);
+    double[] closes = new double[250];
+    closes[0] = 100;
+    for (int day = 1; day < closes.length; day++) {
+      closes[day] = closes[day - 1] * (1 + 0.02 * random.nextGaussian());
+    }
+    prices(symbol, closes);
+  }
+
+  @Test
+  public void testSameSeedGivesSameBands() throws Exception {
+    randomWalk("ZZMC", 1);
+    MonteCarloSimulator simulator = simulator("ZZMC", 10);
+    double[][] first = bands(simulator.simulate(20, 10000, 42));
+    double[][] second = bands(simulator.simulate(20, 10000, 42));
+    double[][] other = bands(simulator.simulate(20, 10000, 43));
+    for (int band = 0; band < 3; band++) {
+      assertTrue(Arrays.equals(first[band], second[band]));
+    }
+    assertTrue(!Arrays.deepEquals(first, other));
+  }
+
+  @Test
+  public void testBandsOrderedAndWidening() throws Exception {
+    randomWalk("ZZMC", 2);
+    ProjectionBands projection = simulator("ZZMC", 10).simulate(30, 5000, 7);
+    assertEquals(30, projection.getHorizon());
+    assertEquals(5000, projection.getPaths());
+    for (int day = 1; day <= 30; day++) {
+      assertTrue("day " + day, projection.getLower(day) <= projection.getMedian(day)
+              && projection.getMedian(day) <= projection.getUpper(day));
+    }
+    assertTrue(projection.getUpper(30) - projection.getLower(30)
+            > projection.getUpper(1) - projection.getLower(1));
+  }
+
+  @Test
+  public void testConstantGrowthGivesOnePath() throws Exception {
+    prices("ZZMC", 100, 110, 121, 133.1);
+    ProjectionBands projection = simulator("ZZMC", 2).simulate(5, 1000, 3);
+    assertEquals("2024-01-04", projection.getStartDate());
+    assertEquals(266.2, projection.getInitialValue(), 1e-3);
+    for (int day = 1; day <= 5; day++) {
+      double expected = 266.2 * Math.pow(1.1, day);
+      assertEquals(expected, projection.getLower(day), expected * 1e-3);
+      assertEquals(expected, projection.getMedian(day), expected * 1e-3);
+      assertEquals(expected, projection.getUpper(day), expected * 1e-3);
+    }
+  }
+
+  @Test
+  public void testPercentilesOfKnownReturns() throws Exception {
+    // the three daily returns are a fall of 10%, no change and a rise of 10%, each drawn with
+    // a third of the paths on the first day
+    prices("ZZMC", 100, 90, 90, 99);
+    ProjectionBands projection = simulator("ZZMC", 1).simulate(1, 30000, 5);
+    assertEquals(99 * 0.9, projection.getLower(1), 0.2);
+    assertEquals(99, projection.getMedian(1), 0.2);
+    assertEquals(99 * 1.1, projection.getUpper(1), 0.2);
+  }
+}
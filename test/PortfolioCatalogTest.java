@@ -0,0 +1,111 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import model.FlexibleManager;
+import model.PortfolioRepository;
+import model.PortfolioSummary;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * This class tests that the catalog of a folder lists and summarizes its portfolios, keeps its
+ * index inside the folder, and sees portfolios added or removed by something else once a manager
+ * is created.
+ */
+public class PortfolioCatalogTest {
+  private File root;
+  private File folder;
+
+  @Before
+  public void setUp() throws IOException {
+    root = Files.createTempDirectory("catalog").toFile();
+    folder = new File(root, "portfolios");
+    folder.mkdirs();
+    write("beta", "MSFT", "2024-01-04");
+    write("alpha", "AAPL", "2024-01-02,2024-01-03");
+  }
+
+  @After
+  public void tearDown() {
+    delete(root);
+  }
+
+  private static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+
+  /**
+   * Writes a portfolio holding one stock bought once on each of the given dates.
+   */
+  private void write(String name, String symbol, String dates) throws IOException {
+    String[] days = dates.split(",");
+    String[] quantities = new String[days.length];
+    Arrays.fill(quantities, "1");
+    String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<portfolio>\n"
+            + "\t<stock id=\"" + symbol + "\">\n\t\t<symbol>" + symbol + "</symbol>\n"
+            + "\t\t<transactDate>" + dates + "</transactDate>\n"
+            + "\t\t<transactQuantity>" + String.join(",", quantities) + "</transactQuantity>\n"
+            + "\t\t<quantity>" + days.length + "</quantity>\n\t</stock>\n</portfolio>";
+    Files.write(new File(folder, name + ".xml").toPath(), xml.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private FlexibleManager manager() {
+    return new FlexibleManager(PortfolioRepository.open(folder.getPath()));
+  }
+
+  @Test
+  public void testPortfoliosListedAndSummarized() {
+    FlexibleManager manager = manager();
+    assertArrayEquals(new String[]{"alpha.xml", "beta.xml"}, manager.returnPortfolioList());
+    PortfolioSummary summary = manager.getSummary(1);
+    assertEquals("alpha", summary.getName());
+    assertEquals(Arrays.asList("AAPL"), summary.getSymbols());
+    assertEquals(2, summary.getTransactionCount());
+    assertEquals(1, manager.getSummary(2).getTransactionCount());
+  }
+
+  @Test
+  public void testIndexKeptInsideTheFolder() {
+    manager();
+    assertTrue(new File(folder, ".catalog").isFile());
+    assertArrayEquals(new String[]{"portfolios"}, root.list());
+  }
+
+  @Test
+  public void testOutsideChangesSeenByTheNextManager() throws Exception {
+    manager();
+    write("gamma", "GOOG", "2024-01-05");
+    assertTrue(new File(folder, "beta.xml").delete());
+
+    FlexibleManager manager = manager();
+    assertArrayEquals(new String[]{"alpha.xml", "gamma.xml"}, manager.returnPortfolioList());
+    assertEquals(Arrays.asList("GOOG"), manager.getSummary(2).getSymbols());
+  }
+
+  @Test
+  public void testNamesTakenIgnoringCase() {
+    FlexibleManager manager = manager();
+    try {
+      manager.createPortfolio("ALPHA");
+      fail("A portfolio name was taken twice");
+    } catch (IllegalArgumentException e) {
+      assertEquals("Invalid Name Enter Again", e.getMessage());
+    }
+  }
+}
@@ -0,0 +1,118 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import model.FlexibleManager;
+import model.PortfolioRepository;
+import model.Strategy;
+import model.Trade;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * This class tests the file repository: listing portfolios kept in a folder other than the
+ * working directory, the cross-portfolio queries and saving strategies next to the folder.
+ */
+public class PortfolioRepositoryTest {
+  private File root;
+  private PortfolioRepository repository;
+  private FlexibleManager manager;
+
+  @Before
+  public void setUp() throws IOException {
+    root = Files.createTempDirectory("repository").toFile();
+    File folder = new File(root, "portfolios");
+    folder.mkdirs();
+    write(new File(folder, "alpha.xml"), "AAPL", "2024-01-02", "100", "MSFT", "2024-01-03", "50");
+    write(new File(folder, "beta.xml"), "AAPL", "2024-02-01", "20");
+    repository = PortfolioRepository.open(folder.getPath());
+    manager = new FlexibleManager(repository);
+  }
+
+  private static void write(File file, String... stocks) throws IOException {
+    StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<portfolio>\n");
+    for (int i = 0; i < stocks.length; i += 3) {
+      xml.append("\t<stock id=\"").append(stocks[i]).append("\">\n")
+              .append("\t\t<symbol>").append(stocks[i]).append("</symbol>\n")
+              .append("\t\t<transactDate>").append(stocks[i + 1]).append("</transactDate>\n")
+              .append("\t\t<transactQuantity>").append(stocks[i + 2])
+              .append("</transactQuantity>\n")
+              .append("\t\t<quantity>").append(stocks[i + 2]).append("</quantity>\n")
+              .append("\t</stock>\n");
+    }
+    xml.append("</portfolio>");
+    Files.write(file.toPath(), xml.toString().getBytes(StandardCharsets.UTF_8));
+  }
+
+  @After
+  public void tearDown() {
+    delete(root);
+  }
+
+  private static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+
+  @Test
+  public void testListsFolderOfRepository() {
+    assertArrayEquals(new String[] {"alpha.xml", "beta.xml"}, manager.returnPortfolioList());
+    assertEquals(Arrays.asList("AAPL", "MSFT"), manager.getSummary(1).getSymbols());
+  }
+
+  @Test
+  public void testHoldingsOf() throws Exception {
+    Map<String, Float> holdings = manager.holdingsOf("aapl");
+    assertEquals(2, holdings.size());
+    assertEquals(100f, holdings.get("alpha"), 0.001);
+    assertEquals(20f, holdings.get("beta"), 0.001);
+    assertEquals(1, manager.holdingsOf("MSFT").size());
+    assertEquals(0, manager.holdingsOf("GOOG").size());
+  }
+
+  @Test
+  public void testTradesBetween() throws Exception {
+    List<String> trades = new ArrayList<>();
+    for (Trade trade : manager.tradesBetween("2024-01-03", "2024-02-01")) {
+      trades.add(trade.toString());
+    }
+    assertEquals(Arrays.asList("2024-01-03 alpha MSFT 50.0", "2024-02-01 beta AAPL 20.0"),
+            trades);
+  }
+
+  @Test
+  public void testTradesFoundAfterMigration() throws Exception {
+    manager.fetchFlexiblePortfolio(2);
+    assertEquals(1, manager.tradesBetween("2024-02-01", "2024-02-01").size());
+    assertEquals(20f, manager.holdingsOf("AAPL").get("beta"), 0.001);
+  }
+
+  @Test
+  public void testStrategySavedNextToFolder() throws Exception {
+    assertNull(repository.loadStrategy("alpha"));
+    Strategy strategy = new Strategy("2024-01-02", "2024-03-01", 30,
+            Arrays.asList("AAPL", "MSFT"), Arrays.asList(60f, 40f));
+    repository.saveStrategy("alpha", strategy);
+    assertNotNull(repository.loadStrategy("alpha"));
+    assertTrue(new File(root, "strategies/alpha.xml").exists());
+  }
+}
@@ -0,0 +1,146 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import model.FlexibleManager;
+import model.FlexiblePortfolioInterface;
+import model.PortfolioRepository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * This class tests reading XML portfolio files: files written before portfolios had a header,
+ * files with a header, and files whose checksum comment does not match their content, which are
+ * rejected once they are read to the end. Opening a portfolio migrates it to the binary format,
+ * which reads its file to the end, so a damaged file is rejected when it is opened, even with a
+ * header, and is left as it was.
+ */
+public class PortfolioXmlReaderTest {
+  private static final String STOCKS = "\t<stock id=\"AAPL\">\n\t\t<symbol>AAPL</symbol>\n"
+          + "\t\t<transactDate>2024-01-02,2024-01-03</transactDate>\n"
+          + "\t\t<transactQuantity>4,6</transactQuantity>\n"
+          + "\t\t<quantity>10.0</quantity>\n\t</stock>\n"
+          + "\t<stock id=\"MSFT\">\n\t\t<symbol>MSFT</symbol>\n"
+          + "\t\t<transactDate>2024-01-04</transactDate>\n"
+          + "\t\t<transactQuantity>3</transactQuantity>\n"
+          + "\t\t<quantity>3.0</quantity>\n\t</stock>\n";
+  private static final String HEADER = "\t<header>\n"
+          + "\t\t<holding symbol=\"AAPL\" quantity=\"10.0\" lastDate=\"2024-01-03\""
+          + " transactions=\"2\"/>\n"
+          + "\t\t<holding symbol=\"MSFT\" quantity=\"3.0\" lastDate=\"2024-01-04\""
+          + " transactions=\"1\"/>\n"
+          + "\t</header>\n";
+
+  private File root;
+  private File folder;
+  private File file;
+  private FlexibleManager manager;
+
+  @Before
+  public void setUp() throws IOException {
+    root = Files.createTempDirectory("xmlreader").toFile();
+    folder = new File(root, "portfolios");
+    folder.mkdirs();
+    file = new File(folder, "alpha.xml");
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    if (manager != null) {
+      manager.flush();
+    }
+    delete(root);
+  }
+
+  private static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+
+  /**
+   * Writes the portfolio file, ending it with a checksum comment holding the given CRC32, or the
+   * CRC32 of the rest of the file if it is negative, and opens the folder.
+   */
+  private void write(String root, boolean header, long crc) throws IOException {
+    String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" + root + "\n"
+            + (header ? HEADER : "") + STOCKS + "</portfolio>";
+    if (crc != 0) {
+      CRC32 checked = new CRC32();
+      checked.update(xml.getBytes(StandardCharsets.UTF_8));
+      xml += String.format("\n<!-- crc32 %08x -->", crc < 0 ? checked.getValue() : crc);
+    }
+    Files.write(file.toPath(), xml.getBytes(StandardCharsets.UTF_8));
+    manager = new FlexibleManager(PortfolioRepository.open(folder.getPath()));
+  }
+
+  private void assertRead() throws Exception {
+    FlexiblePortfolioInterface portfolio = manager.fetchFlexiblePortfolio(1);
+    assertEquals(Arrays.asList("AAPL", "MSFT"), portfolio.listStocks());
+    String composition = portfolio.composition();
+    assertTrue(composition, composition.contains("Symbol: AAPL\r\n"
+            + "Transaction Dates: 2024-01-02,2024-01-03\r\n"
+            + "Transaction Quantities: 4.0,6.0\r\n"
+            + "Quantity: 10.0\r\n"));
+    assertTrue(composition, composition.contains("Symbol: MSFT\r\n"
+            + "Transaction Dates: 2024-01-04\r\n"
+            + "Transaction Quantities: 3.0\r\n"
+            + "Quantity: 3.0\r\n"));
+  }
+
+  private void assertRejected() {
+    try {
+      manager.fetchFlexiblePortfolio(1).composition();
+      fail("A damaged portfolio file was read");
+    } catch (Exception e) {
+      assertTrue(e.getMessage(), e.getMessage().contains("Checksum mismatch in alpha.xml"));
+    }
+  }
+
+  @Test
+  public void testPortfolioWithoutHeaderRead() throws Exception {
+    write("<portfolio>", false, 0);
+    assertRead();
+  }
+
+  @Test
+  public void testPortfolioWithHeaderRead() throws Exception {
+    write("<portfolio journalSeq=\"0\">", true, 0);
+    assertRead();
+  }
+
+  @Test
+  public void testMatchingChecksumAccepted() throws Exception {
+    write("<portfolio>", false, -1);
+    assertRead();
+  }
+
+  @Test
+  public void testDamagedPortfolioRejected() throws Exception {
+    write("<portfolio>", false, 0x12345678L);
+    assertRejected();
+  }
+
+  @Test
+  public void testDamagedPortfolioWithHeaderRejectedAndNotMigrated() throws Exception {
+    write("<portfolio journalSeq=\"0\">", true, 0x12345678L);
+    byte[] damaged = Files.readAllBytes(file.toPath());
+    assertRejected();
+    assertTrue(Arrays.equals(damaged, Files.readAllBytes(file.toPath())));
+    assertFalse(new File(folder, "alpha.pfb").exists());
+  }
+}
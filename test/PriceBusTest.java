@@ -0,0 +1,138 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import model.FlexibleManager;
+import model.FlexiblePortfolioInterface;
+import model.PortfolioRepository;
+import model.PriceBus;
+import model.PriceUpdate;
+import model.ValuationSeries;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * This class tests publishing refreshed prices and bringing cached valuations up to date with
+ * them, from the first changed day on.
+ */
+public class PriceBusTest {
+  private static final String SYMBOL = "ZZBUS";
+
+  private File root;
+  private File prices;
+  private FlexiblePortfolioInterface portfolio;
+  private final BlockingQueue<PriceUpdate> updates = new LinkedBlockingQueue<>();
+
+  @Before
+  public void setUp() throws Exception {
+    root = Files.createTempDirectory("bus").toFile();
+    File folder = new File(root, "portfolios");
+    folder.mkdirs();
+    prices = new File(System.getProperty("user.dir"), "data/" + SYMBOL + ".csv");
+    writePrices(10, 11, 12, 13, 14);
+    String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<portfolio>\n"
+            + "\t<stock id=\"AAPL\">\n\t\t<symbol>AAPL</symbol>\n"
+            + "\t\t<transactDate>2024-01-02</transactDate>\n"
+            + "\t\t<transactQuantity>1</transactQuantity>\n"
+            + "\t\t<quantity>1</quantity>\n\t</stock>\n"
+            + "\t<stock id=\"" + SYMBOL + "\">\n\t\t<symbol>" + SYMBOL + "</symbol>\n"
+            + "\t\t<transactDate>2024-01-02</transactDate>\n"
+            + "\t\t<transactQuantity>10</transactQuantity>\n"
+            + "\t\t<quantity>10</quantity>\n\t</stock>\n</portfolio>";
+    Files.write(new File(folder, "alpha.xml").toPath(), xml.getBytes(StandardCharsets.UTF_8));
+    FlexibleManager manager = new FlexibleManager(PortfolioRepository.open(folder.getPath()));
+    portfolio = manager.fetchFlexiblePortfolio(1);
+    PriceBus.subscribe(new Flow.Subscriber<PriceUpdate>() {
+      @Override
+      public void onSubscribe(Flow.Subscription subscription) {
+        subscription.request(Long.MAX_VALUE);
+      }
+
+      @Override
+      public void onNext(PriceUpdate item) {
+        if (SYMBOL.equals(item.getSymbol())) {
+          updates.add(item);
+        }
+      }
+
+      @Override
+      public void onError(Throwable throwable) {
+      }
+
+      @Override
+      public void onComplete() {
+      }
+    });
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    prices.delete();
+    PriceBus.refreshed(SYMBOL);
+    File[] files = new File(root, "portfolios").listFiles();
+    for (File file : files == null ? new File[0] : files) {
+      file.delete();
+    }
+    new File(root, "portfolios").delete();
+    root.delete();
+  }
+
+  /**
+   * Writes closing prices for the trading days from 2024-01-02 on, newest first.
+   */
+  private void writePrices(double... closes) throws IOException {
+    StringBuilder csv = new StringBuilder("timestamp,open,high,low,close,volume\n");
+    for (int i = closes.length - 1; i >= 0; i--) {
+      csv.append(String.format("2024-01-%02d,%s,%s,%s,%s,1000\n", i + 2, closes[i], closes[i],
+              closes[i], closes[i]));
+    }
+    Files.write(prices.toPath(), csv.toString().getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testChangedPricesUpdateOnlyLaterDays() throws Exception {
+    ValuationSeries before = portfolio.valuationSeries("2024-01-02", "2024-01-06");
+    assertEquals(5, before.size());
+    double apple = before.valueAt(4) - 140;
+
+    writePrices(10, 11, 12, 20, 21);
+    PriceBus.refreshed(SYMBOL);
+    PriceUpdate update = updates.poll(5, TimeUnit.SECONDS);
+    assertNotNull(update);
+    assertEquals("2024-01-05", update.getFirstDate().toString());
+    assertEquals("2024-01-06", update.getLastDate().toString());
+
+    ValuationSeries after = portfolio.valuationSeries("2024-01-02", "2024-01-06");
+    assertEquals(before.valueAt(0), after.valueAt(0), 1e-9);
+    assertEquals(before.valueAt(2), after.valueAt(2), 1e-9);
+    assertEquals(apple + 210, after.valueAt(4), 1e-3);
+    assertEquals(apple + 140, before.valueAt(4), 1e-3);
+
+    PriceBus.refreshed(SYMBOL);
+    assertNull(updates.poll(200, TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  public void testNewTradingDayExtendsTheValuation() throws Exception {
+    assertEquals(4, portfolio.valuationSeries("2024-01-03", "2024-01-07").size());
+    writePrices(10, 11, 12, 13, 14, 15);
+    PriceBus.refreshed(SYMBOL);
+    PriceUpdate update = updates.poll(5, TimeUnit.SECONDS);
+    assertNotNull(update);
+    assertEquals("2024-01-07", update.getFirstDate().toString());
+    ValuationSeries after = portfolio.valuationSeries("2024-01-03", "2024-01-07");
+    assertEquals(5, after.size());
+    assertEquals("2024-01-07", after.dateAt(4).toString());
+  }
+}
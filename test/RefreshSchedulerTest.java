@@ -0,0 +1,158 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import model.FlexibleManager;
+import model.PortfolioRepository;
+import model.RefreshScheduler;
+import model.URLInterface;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * This class tests the daily price refresh: which stocks it fetches, retrying failed fetches,
+ * the daily quota shared by the schedulers of a source and the time of the next refresh.
+ */
+public class RefreshSchedulerTest {
+  private static final Clock FRIDAY_EVENING = Clock.fixed(Instant.parse("2024-04-12T21:00:00Z"),
+          ZoneOffset.UTC);
+
+  private File root;
+  private FlexibleManager manager;
+  private final Map<String, Integer> calls = new ConcurrentHashMap<>();
+
+  /**
+   * Answers like the price provider: an unknown symbol error for ZZBAD, a failed connection on
+   * the first call for ZZFLAKY, and two days of prices otherwise.
+   */
+  private final URLInterface source = symbol -> {
+    int call = calls.merge(symbol, 1, Integer::sum);
+    if (symbol.equals("ZZBAD")) {
+      return new StringBuilder("{\"Error Message\": \"Invalid API call\"}");
+    }
+    if (symbol.equals("ZZFLAKY") && call == 1) {
+      throw new IOException("Connection reset");
+    }
+    return new StringBuilder("timestamp,open,high,low,close,volume\n"
+            + "2024-04-12,10.0,11.0,9.0,10.5,1000\n2024-04-11,9.0,10.0,8.0,9.5,1000\n");
+  };
+
+  @Before
+  public void setUp() throws IOException {
+    System.setProperty("refresh.callsPerMinute", "60000");
+    System.setProperty("refresh.backoffMillis", "1");
+    System.setProperty("refresh.marketClose", "16:00");
+    root = Files.createTempDirectory("refresh").toFile();
+    File folder = new File(root, "portfolios");
+    folder.mkdirs();
+    StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<portfolio>\n");
+    for (String symbol : new String[] {"ZZBAD", "ZZFLAKY", "ZZGOOD"}) {
+      xml.append("\t<stock id=\"").append(symbol).append("\">\n\t\t<symbol>").append(symbol)
+              .append("</symbol>\n\t\t<transactDate>2024-01-02</transactDate>\n")
+              .append("\t\t<transactQuantity>1</transactQuantity>\n")
+              .append("\t\t<quantity>1</quantity>\n\t</stock>\n");
+    }
+    xml.append("</portfolio>");
+    Files.write(new File(folder, "alpha.xml").toPath(),
+            xml.toString().getBytes(StandardCharsets.UTF_8));
+    manager = new FlexibleManager(PortfolioRepository.open(folder.getPath()));
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    for (String property : new String[] {"refresh.callsPerMinute", "refresh.backoffMillis",
+        "refresh.marketClose", "refresh.callsPerDay"}) {
+      System.clearProperty(property);
+    }
+    for (String symbol : new String[] {"ZZBAD", "ZZFLAKY", "ZZGOOD"}) {
+      new File(System.getProperty("user.dir"), "data/" + symbol + ".csv").delete();
+    }
+    manager.flush();
+    File[] files = new File(root, "portfolios").listFiles();
+    for (File file : files == null ? new File[0] : files) {
+      file.delete();
+    }
+    new File(root, "portfolios").delete();
+    root.delete();
+  }
+
+  @Test
+  public void testRefreshRetriesAndSkipsCurrentStocks() throws Exception {
+    RefreshScheduler scheduler = new RefreshScheduler(manager, source, FRIDAY_EVENING);
+    String summary = scheduler.refresh().get(10, TimeUnit.SECONDS);
+    assertTrue(summary, summary.startsWith("Refreshed 2 of 3 symbols"));
+    assertTrue(summary, summary.contains("ZZBAD: Incorrect Stock Symbol\r\n"));
+    assertEquals(1, (int) calls.get("ZZBAD"));
+    assertEquals(2, (int) calls.get("ZZFLAKY"));
+    assertEquals(1, (int) calls.get("ZZGOOD"));
+    assertTrue(manager.fetchFlexiblePortfolio(1).value("2024-04-12").contains("Price: $10.5"));
+
+    summary = scheduler.refresh().get(10, TimeUnit.SECONDS);
+    assertTrue(summary, summary.startsWith("Refreshed 0 of 1 symbols"));
+    assertEquals(1, (int) calls.get("ZZGOOD"));
+    scheduler.stop();
+  }
+
+  @Test
+  public void testDailyQuotaDefersTheRest() throws Exception {
+    System.setProperty("refresh.callsPerDay", "1");
+    RefreshScheduler scheduler = new RefreshScheduler(manager, source, FRIDAY_EVENING);
+    String summary = scheduler.refresh().get(10, TimeUnit.SECONDS);
+    assertTrue(summary, summary.startsWith("Refreshed 0 of 3 symbols"));
+    assertTrue(summary, summary.contains("ZZBAD: Incorrect Stock Symbol\r\n"
+            + "Deferred to the next refresh: ZZFLAKY, ZZGOOD\r\n"));
+    scheduler.stop();
+  }
+
+  @Test
+  public void testSchedulersShareTheQuotaOfTheirSource() throws Exception {
+    System.setProperty("refresh.callsPerDay", "3");
+    RefreshScheduler first = new RefreshScheduler(manager, source, FRIDAY_EVENING);
+    RefreshScheduler second = new RefreshScheduler(manager, source, FRIDAY_EVENING);
+    String summary = first.refresh().get(10, TimeUnit.SECONDS);
+    assertTrue(summary, summary.startsWith("Refreshed 1 of 3 symbols"));
+    assertTrue(summary, summary.contains("Deferred to the next refresh: ZZFLAKY\r\n"));
+
+    summary = second.refresh().get(10, TimeUnit.SECONDS);
+    assertTrue(summary, summary.startsWith("Refreshed 0 of 2 symbols"));
+    assertTrue(summary, summary.contains("Deferred to the next refresh: ZZBAD, ZZFLAKY\r\n"));
+    assertEquals(3, calls.values().stream().mapToInt(Integer::intValue).sum());
+    first.stop();
+    second.stop();
+  }
+
+  @Test
+  public void testUnreadablePortfolioSkippedAndReported() throws Exception {
+    Files.write(new File(root, "portfolios/broken.xml").toPath(),
+            "<portfolio><stock".getBytes(StandardCharsets.UTF_8));
+    manager = new FlexibleManager(PortfolioRepository.open(new File(root, "portfolios")
+            .getPath()));
+    RefreshScheduler scheduler = new RefreshScheduler(manager, source, FRIDAY_EVENING);
+    String summary = scheduler.refresh().get(10, TimeUnit.SECONDS);
+    assertTrue(summary, summary.startsWith("Refreshed 2 of 3 symbols"));
+    assertTrue(summary, summary.endsWith("Skipped unreadable portfolios: broken\r\n"));
+    scheduler.stop();
+  }
+
+  @Test
+  public void testNextRefreshSkipsTheWeekend() {
+    assertEquals("2024-04-15T16:30-04:00[America/New_York]",
+            new RefreshScheduler(manager, source, FRIDAY_EVENING).nextRefresh().toString());
+    Clock morning = Clock.fixed(Instant.parse("2024-04-12T13:00:00Z"), ZoneOffset.UTC);
+    assertEquals("2024-04-12T16:30-04:00[America/New_York]",
+            new RefreshScheduler(manager, source, morning).nextRefresh().toString());
+  }
+}
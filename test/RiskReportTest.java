@@ -0,0 +1,142 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import model.FlexibleManager;
+import model.FlexiblePortfolioInterface;
+import model.RiskReport;
+import model.Stock;
+import model.StockInterface;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * This class tests the risk metrics computed for single stocks and whole portfolios, such as
+ * volatility, drawdown and beta, including the handling of invalid date ranges. The metrics are
+ * checked against values computed by hand for a short price series written for the test.
+ */
+public class RiskReportTest {
+  private static final double ANNUAL = Math.sqrt(252);
+
+  /**
+   * Writes a stock closing at 100, 110, 121, 108.9 and 119.79 from 2024-01-01 to 2024-01-05,
+   * daily returns of +10%, +10%, -10% and +10%, and a benchmark moving half as much.
+   */
+  @Before
+  public void setUp() throws IOException {
+    prices("ZZRISK", 100, 110, 121, 108.9, 119.79);
+    prices("ZZHALF", 200, 210, 220.5, 209.475, 219.94875);
+  }
+
+  @After
+  public void tearDown() {
+    for (String symbol : new String[] {"ZZRISK", "ZZHALF"}) {
+      new File(System.getProperty("user.dir"), "data/" + symbol + ".csv").delete();
+    }
+  }
+
+  private static void prices(String symbol, double... closes) throws IOException {
+    StringBuilder csv = new StringBuilder("timestamp,open,high,low,close,volume\n");
+    for (int day = closes.length; day >= 1; day--) {
+      double close = closes[day - 1];
+      csv.append(String.format("2024-01-%02d,%s,%s,%s,%s,1000\n", day, close, close, close,
+              close));
+    }
+    Files.write(new File(System.getProperty("user.dir"), "data/" + symbol + ".csv").toPath(),
+            csv.toString().getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testMetricsOfAFixedSeries() throws Exception {
+    RiskReport report = new Stock("ZZRISK", 1).calculateRisk("2024-01-01", "2024-01-05",
+            "ZZHALF", 2);
+    assertEquals(4, report.getObservations());
+    // mean return 0.05, sample deviation 0.1, downside deviation sqrt(0.01 / 4) = 0.05
+    assertEquals(0.1 * ANNUAL, report.getVolatility(), 1e-4);
+    assertEquals(0.05 / 0.1 * ANNUAL, report.getSharpe(), 1e-3);
+    assertEquals(0.05 / 0.05 * ANNUAL, report.getSortino(), 1e-3);
+    // the return index peaks at 1.21 and falls to 1.089
+    assertEquals(0.1, report.getMaxDrawdown(), 1e-5);
+    assertEquals(2.0, report.getBeta(), 1e-4);
+
+    assertEquals(3, report.getRollingSize());
+    assertEquals("2024-01-03", report.getRollingDate(0).toString());
+    assertEquals(0, report.getRollingVolatility(0), 1e-4);
+    assertEquals(Math.sqrt(0.02) * ANNUAL, report.getRollingVolatility(1), 1e-4);
+    assertEquals("2024-01-05", report.getRollingDate(2).toString());
+    assertEquals(Math.sqrt(0.02) * ANNUAL, report.getRollingVolatility(2), 1e-4);
+  }
+
+  @Test
+  public void testSinglePriceHasNoReturns() throws Exception {
+    RiskReport report = new Stock("ZZRISK", 1).calculateRisk("2024-01-03", "2024-01-03",
+            "ZZHALF", 2);
+    assertZero(report);
+  }
+
+  @Test
+  public void testEmptyPeriodHasNoReturns() throws Exception {
+    RiskReport report = new Stock("ZZRISK", 1).calculateRisk("2023-06-01", "2023-06-30",
+            "ZZHALF", 2);
+    assertZero(report);
+  }
+
+  private static void assertZero(RiskReport report) {
+    assertEquals(0, report.getObservations());
+    assertEquals(0, report.getVolatility(), 0);
+    assertEquals(0, report.getMaxDrawdown(), 0);
+    assertEquals(0, report.getSharpe(), 0);
+    assertEquals(0, report.getSortino(), 0);
+    assertEquals(0, report.getBeta(), 0);
+    assertEquals(0, report.getRollingSize());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testWindowOfOneRejected() throws Exception {
+    new Stock("ZZRISK", 1).calculateRisk("2024-01-01", "2024-01-05", "ZZHALF", 1);
+  }
+
+  @Test
+  public void testStockAgainstItself() {
+    StockInterface stock = new Stock("MSFT", 100);
+    try {
+      RiskReport report = stock.calculateRisk("2023-01-01", "2024-03-01", "MSFT", 20);
+      assertEquals(1.0, report.getBeta(), 0.0001);
+      assertTrue(report.getVolatility() > 0);
+      assertTrue(report.getMaxDrawdown() >= 0 && report.getMaxDrawdown() < 1);
+      assertEquals(report.getObservations() - 19, report.getRollingSize());
+    } catch (Exception e) {
+      fail("The test should have passed");
+    }
+  }
+
+  @Test
+  public void testStockInvalidDates() {
+    StockInterface stock = new Stock("MSFT", 100);
+    try {
+      stock.calculateRisk("2024-03-01", "2023-01-01", "MSFT", 20);
+      fail("The method should have failed");
+    } catch (Exception e) {
+      assertEquals("StartDate should not be greater than EndDate", e.getMessage());
+    }
+  }
+
+  @Test
+  public void testPortfolioRisk() {
+    try {
+      FlexiblePortfolioInterface portfolio = new FlexibleManager().fetchFlexiblePortfolio(4);
+      RiskReport report = portfolio.calculateRisk("2024-01-01", "2024-03-01", "MSFT", 10);
+      assertTrue(report.getObservations() > 30);
+      assertTrue(report.getBeta() > 0);
+    } catch (Exception e) {
+      fail("The test should have passed");
+    }
+  }
+}
@@ -0,0 +1,116 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import model.FlexibleManager;
+import model.PortfolioRepository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * This class tests exporting the value, ledger and indicator series of portfolios to csv and to
+ * the binary columnar format.
+ */
+public class SeriesExportTest {
+  private File root;
+  private File output;
+  private FlexibleManager manager;
+
+  @Before
+  public void setUp() throws IOException {
+    root = Files.createTempDirectory("export").toFile();
+    File folder = new File(root, "portfolios");
+    folder.mkdirs();
+    output = new File(root, "series");
+    String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<portfolio>\n"
+            + stock("MSFT", "2024-01-03", "50") + stock("AAPL", "2024-01-02", "100")
+            + "</portfolio>";
+    Files.write(new File(folder, "alpha.xml").toPath(), xml.getBytes(StandardCharsets.UTF_8));
+    manager = new FlexibleManager(PortfolioRepository.open(folder.getPath()));
+  }
+
+  private static String stock(String symbol, String date, String quantity) {
+    return "\t<stock id=\"" + symbol + "\">\n\t\t<symbol>" + symbol + "</symbol>\n"
+            + "\t\t<transactDate>" + date + "</transactDate>\n"
+            + "\t\t<transactQuantity>" + quantity + "</transactQuantity>\n"
+            + "\t\t<quantity>" + quantity + "</quantity>\n\t</stock>\n";
+  }
+
+  @After
+  public void tearDown() {
+    delete(root);
+  }
+
+  private static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+
+  @Test
+  public void testCsvExport() throws Exception {
+    String result = manager.fetchFlexiblePortfolio(1).exportSeries("2024-01-01", "2024-01-31",
+            output.getPath(), "csv");
+    assertEquals("Exported 4 files to " + output.getPath(), result);
+    List<String> ledger = Files.readAllLines(new File(output, "alpha-ledger.csv").toPath());
+    assertEquals(List.of("date,symbol,quantity", "2024-01-02,AAPL,100.0000",
+            "2024-01-03,MSFT,50.0000"), ledger);
+    List<String> value = Files.readAllLines(new File(output, "alpha-value.csv").toPath());
+    assertEquals("date,value,flow", value.get(0));
+    assertTrue(value.get(1), value.get(1).startsWith("2024-01-02,"));
+    List<String> indicators = Files.readAllLines(new File(output, "AAPL-indicators.csv")
+            .toPath());
+    assertEquals("date,close,ma30,ma200", indicators.get(0));
+    assertEquals(value.size(), indicators.size());
+    assertTrue(indicators.get(1).matches("2024-01-02,\\d+\\.\\d{4},\\d+\\.\\d{4},\\d+\\.\\d{4}"));
+  }
+
+  @Test
+  public void testBinaryExport() throws Exception {
+    String result = manager.exportSeries("2024-01-01", "2024-01-31", output.getPath(),
+            "binary");
+    assertEquals("Exported 4 files for 1 portfolios to " + output.getPath(), result);
+    try (DataInputStream in = new DataInputStream(new FileInputStream(
+            new File(output, "alpha-ledger.pfc")))) {
+      assertEquals(0x50464331, in.readInt());
+      assertEquals(1, in.readShort());
+      assertEquals(3, in.readShort());
+      assertEquals("date", in.readUTF());
+      in.readByte();
+      assertEquals("symbol", in.readUTF());
+      in.readByte();
+      assertEquals("quantity", in.readUTF());
+      in.readByte();
+      assertEquals(2, in.readInt());
+      assertEquals("MSFT", in.readUTF());
+      assertEquals("AAPL", in.readUTF());
+      assertEquals(2, in.readInt());
+      assertEquals(19724, in.readInt());
+      assertEquals(19725, in.readInt());
+      assertEquals(1, in.readInt());
+      assertEquals(0, in.readInt());
+      assertEquals(100f, in.readFloat(), 0);
+      assertEquals(50f, in.readFloat(), 0);
+      assertEquals(0, in.readInt());
+    }
+  }
+
+  @Test
+  public void testInvalidFormat() throws Exception {
+    assertEquals("Error exporting series: Unknown export format xls",
+            manager.exportSeries("2024-01-01", "2024-01-31", output.getPath(), "xls"));
+  }
+}
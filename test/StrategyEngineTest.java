@@ -0,0 +1,141 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import model.FlexibleManager;
+import model.FlexiblePortfolioInterface;
+import model.PortfolioRepository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * This class tests that strategies only make the purchases due since the date they last ran up
+ * to, that all purchases of a run are saved together in one snapshot rather than journaled one
+ * by one, and that a run whose save fails does not move that date on.
+ */
+public class StrategyEngineTest {
+  private File root;
+  private File folder;
+  private File strategy;
+  private FlexibleManager manager;
+
+  @Before
+  public void setUp() throws IOException {
+    root = Files.createTempDirectory("engine").toFile();
+    folder = new File(root, "portfolios");
+    folder.mkdirs();
+    File strategies = new File(root, "strategies");
+    strategies.mkdirs();
+    strategy = new File(strategies, "alpha.xml");
+    String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<portfolio>\n"
+            + "\t<stock id=\"AAPL\">\n\t\t<symbol>AAPL</symbol>\n"
+            + "\t\t<transactDate>2023-12-01</transactDate>\n"
+            + "\t\t<transactQuantity>10</transactQuantity>\n"
+            + "\t\t<quantity>10</quantity>\n\t</stock>\n</portfolio>";
+    Files.write(new File(folder, "alpha.xml").toPath(), xml.getBytes(StandardCharsets.UTF_8));
+    System.setProperty(PortfolioRepository.LOCATION_PROPERTY, folder.getPath());
+    manager = new FlexibleManager(PortfolioRepository.getDefault());
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    manager.flush();
+    System.clearProperty(PortfolioRepository.LOCATION_PROPERTY);
+    delete(root);
+  }
+
+  private static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+
+  /**
+   * Writes a weekly strategy buying 100 of AAPL from 2024-01-01 to 2024-01-29, which last ran up
+   * to the given date, or never if it is null.
+   */
+  private void writeStrategy(String lastExecuted) throws IOException {
+    String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<strategy>\n"
+            + "\t<startDate>2024-01-01</startDate>\n\t<endDate>2024-01-29</endDate>\n"
+            + "\t<period>7</period>\n\t<stocks>AAPL</stocks>\n\t<prices>100.0</prices>\n"
+            + (lastExecuted == null ? "" : "\t<lastExecuted>" + lastExecuted
+                    + "</lastExecuted>\n")
+            + "</strategy>";
+    Files.write(strategy.toPath(), xml.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private String strategyXml() throws IOException {
+    return new String(Files.readAllBytes(strategy.toPath()), StandardCharsets.UTF_8);
+  }
+
+  private String transactionDates() throws Exception {
+    String composition = manager.fetchFlexiblePortfolio(1).composition();
+    int start = composition.indexOf("Transaction Dates: ");
+    return composition.substring(start, composition.indexOf("\r\n", start));
+  }
+
+  @Test
+  public void testCatchUpSavedOnce() throws Exception {
+    writeStrategy(null);
+    String summary = manager.runScheduledStrategies();
+    assertTrue(summary, summary.startsWith("Ran 1 strategies in 1 portfolios, made 5 purchases"));
+    assertFalse(new File(folder, "alpha.journal").length() > 0);
+    File copy = new File(root, "copy");
+    copy.mkdirs();
+    Files.copy(new File(folder, "alpha.pfb").toPath(), new File(copy, "alpha.pfb").toPath());
+    String composition = new FlexibleManager(PortfolioRepository.open(copy.getPath()))
+            .fetchFlexiblePortfolio(1).composition();
+    assertTrue(composition, composition.contains("2023-12-01,2024-01-01,2024-01-08,2024-01-15,"
+            + "2024-01-22,2024-01-29"));
+  }
+
+  @Test
+  public void testCatchUpStartsAfterTheLastExecutedDate() throws Exception {
+    writeStrategy("2024-01-15");
+    String summary = manager.runScheduledStrategies();
+    assertTrue(summary, summary.startsWith("Ran 1 strategies in 1 portfolios, made 2 purchases"));
+    assertEquals("Transaction Dates: 2023-12-01,2024-01-22,2024-01-29", transactionDates());
+    assertTrue(strategyXml(), strategyXml().contains("<lastExecuted>2024-01-29</lastExecuted>"));
+    assertFalse(new File(folder, "alpha.journal").length() > 0);
+
+    summary = manager.runScheduledStrategies();
+    assertTrue(summary, summary.startsWith("Ran 0 strategies in 0 portfolios, made 0 purchases"));
+  }
+
+  @Test
+  public void testFailedSaveKeepsTheMarker() throws Exception {
+    writeStrategy(null);
+    FlexiblePortfolioInterface portfolio = manager.fetchFlexiblePortfolio(1);
+    File snapshot = new File(folder, "alpha.pfb");
+    File blocker = new File(snapshot, "blocker");
+    assertTrue(snapshot.delete() && snapshot.mkdir() && blocker.createNewFile());
+
+    portfolio.useStrategy();
+    assertTrue(strategyXml(), !strategyXml().contains("<lastExecuted>"));
+    try {
+      manager.flush();
+      fail("The failed write was not reported");
+    } catch (IOException expected) {
+      // the snapshot cannot be written while it is a folder
+    }
+
+    assertTrue(blocker.delete() && snapshot.delete());
+    manager.flush();
+    portfolio.useStrategy();
+    assertEquals("Transaction Dates: 2023-12-01,2024-01-01,2024-01-08,2024-01-15,2024-01-22,"
+            + "2024-01-29", transactionDates());
+    assertTrue(strategyXml(), strategyXml().contains("<lastExecuted>2024-01-29</lastExecuted>"));
+  }
+}
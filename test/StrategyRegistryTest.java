@@ -0,0 +1,135 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import model.FlexibleManager;
+import model.PortfolioRepository;
+import model.Strategy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * This class tests keeping several named strategies per portfolio and running all strategies
+ * that are due in one scheduler pass.
+ */
+public class StrategyRegistryTest {
+  private File root;
+  private File strategies;
+  private FlexibleManager manager;
+
+  @Before
+  public void setUp() throws IOException {
+    root = Files.createTempDirectory("strategies").toFile();
+    File folder = new File(root, "portfolios");
+    folder.mkdirs();
+    strategies = new File(root, "strategies");
+    String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<portfolio>\n"
+            + "\t<stock id=\"AAPL\">\n\t\t<symbol>AAPL</symbol>\n"
+            + "\t\t<transactDate>2024-01-02</transactDate>\n"
+            + "\t\t<transactQuantity>10</transactQuantity>\n"
+            + "\t\t<quantity>10</quantity>\n\t</stock>\n</portfolio>";
+    Files.write(new File(folder, "alpha.xml").toPath(), xml.getBytes(StandardCharsets.UTF_8));
+    System.setProperty(PortfolioRepository.LOCATION_PROPERTY, folder.getPath());
+    manager = new FlexibleManager(PortfolioRepository.getDefault());
+  }
+
+  @After
+  public void tearDown() {
+    System.clearProperty(PortfolioRepository.LOCATION_PROPERTY);
+    delete(root);
+  }
+
+  private static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+
+  private static Strategy strategy(String start, String end, int period, float amount) {
+    return new Strategy(start, end, period, Collections.singletonList("AAPL"),
+            Collections.singletonList(amount));
+  }
+
+  private String quantities() throws Exception {
+    String composition = manager.fetchFlexiblePortfolio(1).composition();
+    int start = composition.indexOf("Transaction Quantities: ");
+    return composition.substring(start, composition.indexOf("\r\n", start));
+  }
+
+  @Test
+  public void testNamedStrategiesRunInOnePass() throws Exception {
+    assertEquals("Strategy saved to alpha.xml",
+            strategy("2024-01-08", "2024-01-22", 7, 100).saveStrategy("alpha", "weekly"));
+    assertEquals("Strategy saved to alpha.xml",
+            strategy("2024-01-29", "2024-02-28", 30, 50).saveStrategy("alpha", "monthly"));
+    String xml = new String(Files.readAllBytes(new File(strategies, "alpha.xml").toPath()),
+            StandardCharsets.UTF_8);
+    assertTrue(xml, xml.contains("<strategy name=\"weekly\">")
+            && xml.contains("<strategy name=\"monthly\">"));
+
+    String summary = manager.runScheduledStrategies();
+    assertTrue(summary, summary.startsWith("Ran 2 strategies in 1 portfolios, made 5 purchases"));
+    assertEquals(6, quantities().split(",").length);
+    xml = new String(Files.readAllBytes(new File(strategies, "alpha.xml").toPath()),
+            StandardCharsets.UTF_8);
+    assertTrue(xml, xml.contains("<lastExecuted>2024-01-22</lastExecuted>")
+            && xml.contains("<lastExecuted>2024-02-28</lastExecuted>"));
+
+    summary = manager.runScheduledStrategies();
+    assertTrue(summary, summary.startsWith("Ran 0 strategies in 0 portfolios, made 0 purchases"));
+  }
+
+  @Test
+  public void testDefaultStrategyKeepsFormatAndFollowsDisk() throws Exception {
+    assertEquals("Strategy saved to alpha.xml",
+            strategy("2024-01-08", "2024-01-08", 7, 100).saveStrategy("alpha"));
+    File file = new File(strategies, "alpha.xml");
+    String xml = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    assertTrue(xml, xml.contains("<strategy>") && !xml.contains("<strategies>"));
+    manager.fetchFlexiblePortfolio(1).useStrategy();
+    assertEquals(2, quantities().split(",").length);
+
+    String edited = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<strategy>\n"
+            + "\t<startDate>2024-02-01</startDate>\n\t<endDate>2024-02-01</endDate>\n"
+            + "\t<period>7</period>\n\t<stocks>AAPL</stocks>\n\t<prices>100.0</prices>\n"
+            + "</strategy>";
+    Files.write(file.toPath(), edited.getBytes(StandardCharsets.UTF_8));
+    file.setLastModified(file.lastModified() + 2000);
+    String summary = manager.runScheduledStrategies();
+    assertTrue(summary, summary.startsWith("Ran 1 strategies in 1 portfolios, made 1 purchases"));
+    assertEquals(3, quantities().split(",").length);
+  }
+
+  @Test
+  public void testOutsideEditsSeenWithinTheSyncInterval() throws Exception {
+    assertEquals("Strategy saved to alpha.xml",
+            strategy("2024-01-08", "2024-01-08", 7, 100).saveStrategy("alpha"));
+    manager.fetchFlexiblePortfolio(1).useStrategy();
+    assertEquals(2, quantities().split(",").length);
+
+    File file = new File(strategies, "alpha.xml");
+    String edited = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<strategy>\n"
+            + "\t<startDate>2024-02-01</startDate>\n\t<endDate>2024-02-01</endDate>\n"
+            + "\t<period>7</period>\n\t<stocks>AAPL</stocks>\n\t<prices>100.0</prices>\n"
+            + "</strategy>";
+    Files.write(file.toPath(), edited.getBytes(StandardCharsets.UTF_8));
+    file.setLastModified(file.lastModified() + 2000);
+    manager.fetchFlexiblePortfolio(1).useStrategy();
+    assertEquals(2, quantities().split(",").length);
+
+    Thread.sleep(1100);
+    manager.fetchFlexiblePortfolio(1).useStrategy();
+    assertEquals(3, quantities().split(",").length);
+  }
+}
@@ -0,0 +1,168 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import model.FlexibleManager;
+import model.FlexibleManagerInterface;
+import model.FlexiblePortfolioInterface;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * This class tests that XML portfolios are migrated to the binary format when first opened,
+ * keeping the XML file as a backup, that trades are appended to the journal instead of
+ * rewriting the snapshot, that pending writes reach the disk by a flush, that a failed write is
+ * reported and kept until it can be written, and that loading the portfolio replays them. Only
+ * a record cut short at the end of the journal is dropped; a malformed record in the middle
+ * fails the load and leaves the journal alone.
+ */
+public class TransactionJournalTest {
+  private final String path = System.getProperty("user.dir") + "/portfolios/";
+  private final File xml = new File(path + "zzjournal.xml");
+  private final File backup = new File(path + "zzjournal.xml.bak");
+  private final File snapshot = new File(path + "zzjournal.pfb");
+  private final File journal = new File(path + "zzjournal.journal");
+  FlexibleManagerInterface manager;
+
+  @Before
+  public void setUp() throws IOException {
+    StringBuilder content = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<portfolio>\n");
+    for (String symbol : new String[] {"AAPL", "GOOG", "MSFT"}) {
+      content.append("\t<stock id=\"").append(symbol).append("\">\n")
+              .append("\t\t<symbol>").append(symbol).append("</symbol>\n")
+              .append("\t\t<transactDate>2024-01-02</transactDate>\n")
+              .append("\t\t<transactQuantity>100</transactQuantity>\n")
+              .append("\t\t<quantity>100</quantity>\n")
+              .append("\t</stock>\n");
+    }
+    content.append("</portfolio>");
+    Files.write(xml.toPath(), content.toString().getBytes(StandardCharsets.UTF_8));
+    backup.delete();
+    snapshot.delete();
+    journal.delete();
+    manager = new FlexibleManager();
+  }
+
+  @After
+  public void tearDown() {
+    xml.delete();
+    backup.delete();
+    snapshot.delete();
+    journal.delete();
+  }
+
+  @Test
+  public void testTradesAreJournaledAndReplayed() throws Exception {
+    FlexiblePortfolioInterface portfolio = manager.fetchFlexiblePortfolio(5);
+    long modified = snapshot.lastModified();
+    long length = snapshot.length();
+    assertEquals("Portfolio saved to zzjournal.xml",
+            portfolio.buyExisting(1, "2024-02-01", 10));
+    assertEquals("Portfolio saved to zzjournal.xml",
+            portfolio.sellExisting(2, "2024-02-02", 30));
+    manager.flush();
+    assertTrue(journal.exists());
+    assertEquals(modified, snapshot.lastModified());
+    assertEquals(length, snapshot.length());
+
+    String composition = manager.fetchFlexiblePortfolio(5).composition();
+    assertTrue(composition.contains("Transaction Dates: 2024-01-02,2024-02-01\r\n"
+            + "Transaction Quantities: 100.0,10.0\r\n"
+            + "Quantity: 110.0\r\n"));
+    assertTrue(composition.contains("Transaction Dates: 2024-01-02,2024-02-02\r\n"
+            + "Transaction Quantities: 100.0,-30.0\r\n"
+            + "Quantity: 70.0\r\n"));
+  }
+
+  @Test
+  public void testXmlPortfolioMigratedWhenOpened() throws Exception {
+    byte[] original = Files.readAllBytes(xml.toPath());
+    FlexiblePortfolioInterface portfolio = manager.fetchFlexiblePortfolio(5);
+    assertTrue(snapshot.exists());
+    assertFalse(xml.exists());
+    assertTrue(Arrays.equals(original, Files.readAllBytes(backup.toPath())));
+    assertEquals("zzjournal.xml", manager.returnPortfolioList()[4]);
+
+    portfolio.buyExisting(1, "2024-02-01", 10);
+    manager.flush();
+    assertTrue(journal.exists());
+    assertFalse(xml.exists());
+    assertTrue(new FlexibleManager().fetchFlexiblePortfolio(5).composition()
+            .contains("Quantity: 110.0\r\n"));
+  }
+
+  @Test
+  public void testPartialRecordIgnored() throws Exception {
+    manager.fetchFlexiblePortfolio(5).buyExisting(1, "2024-02-01", 10);
+    manager.flush();
+    try (FileWriter writer = new FileWriter(journal, true)) {
+      writer.write("2,0,AAPL,2024-02-05,1");
+    }
+    FlexiblePortfolioInterface portfolio = manager.fetchFlexiblePortfolio(5);
+    assertTrue(portfolio.composition().contains("Quantity: 110.0\r\n"));
+
+    portfolio.buyExisting(1, "2024-02-06", 5);
+    assertTrue(manager.fetchFlexiblePortfolio(5).composition()
+            .contains("Transaction Quantities: 100.0,10.0,5.0\r\n"));
+  }
+
+  @Test
+  public void testMalformedRecordFailsWithoutTruncating() throws Exception {
+    manager.fetchFlexiblePortfolio(5).buyExisting(1, "2024-02-01", 10);
+    manager.flush();
+    try (FileWriter writer = new FileWriter(journal, true)) {
+      writer.write("2,0,AAPL\n3,0,AAPL,2024-02-07,4.0\n");
+    }
+    byte[] damaged = Files.readAllBytes(journal.toPath());
+    try {
+      manager.fetchFlexiblePortfolio(5);
+      fail("A malformed record was skipped");
+    } catch (Exception e) {
+      assertEquals("Journal has a malformed record at line 2", e.getMessage());
+    }
+    assertTrue(Arrays.equals(damaged, Files.readAllBytes(journal.toPath())));
+  }
+
+  @Test
+  public void testDeleteRemovesJournal() throws Exception {
+    manager.fetchFlexiblePortfolio(5).buyExisting(1, "2024-02-01", 10);
+    manager.flush();
+    assertTrue(journal.exists());
+    assertEquals("Delete Successful", manager.deletePortfolio(5));
+    assertFalse(journal.exists());
+    assertFalse(snapshot.exists());
+    assertFalse(xml.exists());
+  }
+
+  @Test
+  public void testFailedWriteIsReportedAndRetried() throws Exception {
+    FlexiblePortfolioInterface portfolio = manager.fetchFlexiblePortfolio(5);
+    File blocker = new File(snapshot, "blocker");
+    assertTrue(journal.mkdir());
+    assertTrue(snapshot.delete() && snapshot.mkdir() && blocker.createNewFile());
+    assertTrue(portfolio.buyExisting(1, "2024-02-01", 10).startsWith("Error saving portfolio"));
+    try {
+      manager.flush();
+      fail("The failed write was not reported");
+    } catch (IOException expected) {
+      // neither the journal nor the snapshot can be written while they are folders
+    }
+    assertTrue(portfolio.composition().contains("Quantity: 110.0\r\n"));
+
+    assertTrue(blocker.delete() && snapshot.delete() && journal.delete());
+    manager.flush();
+    assertTrue(snapshot.isFile() && !xml.exists());
+    assertTrue(manager.fetchFlexiblePortfolio(5).composition().contains("Quantity: 110.0\r\n"));
+  }
+}
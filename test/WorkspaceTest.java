@@ -0,0 +1,128 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import model.FlexibleManager;
+import model.Strategy;
+import model.ValuationSeries;
+import model.Workspace;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * This class tests that workspaces in one process keep their portfolios and prices apart, and
+ * that workspaces sharing a data folder see the same prices.
+ */
+public class WorkspaceTest {
+  private static final String SYMBOL = "ZZWS";
+
+  private File root;
+
+  @Before
+  public void setUp() throws Exception {
+    root = Files.createTempDirectory("workspaces").toFile();
+  }
+
+  @After
+  public void tearDown() {
+    delete(root);
+  }
+
+  private static void delete(File file) {
+    File[] files = file.listFiles();
+    for (File child : files == null ? new File[0] : files) {
+      delete(child);
+    }
+    file.delete();
+  }
+
+  /**
+   * Writes a workspace folder holding one portfolio of ten shares of the test stock, and prices
+   * of the stock closing at the given price every day from 2024-01-02 to 2024-01-05.
+   */
+  private File tenant(String name, String portfolio, double close) throws IOException {
+    File folder = new File(root, name);
+    new File(folder, "portfolios").mkdirs();
+    prices(new File(folder, "data"), close);
+    String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<portfolio>\n"
+            + "\t<stock id=\"" + SYMBOL + "\">\n\t\t<symbol>" + SYMBOL + "</symbol>\n"
+            + "\t\t<transactDate>2024-01-02</transactDate>\n"
+            + "\t\t<transactQuantity>10</transactQuantity>\n"
+            + "\t\t<quantity>10</quantity>\n\t</stock>\n</portfolio>";
+    Files.write(new File(folder, "portfolios/" + portfolio + ".xml").toPath(),
+            xml.getBytes(StandardCharsets.UTF_8));
+    return folder;
+  }
+
+  private static void prices(File data, double close) throws IOException {
+    data.mkdirs();
+    StringBuilder csv = new StringBuilder("timestamp,open,high,low,close,volume\n");
+    for (int day = 5; day >= 2; day--) {
+      csv.append(String.format("2024-01-%02d,%s,%s,%s,%s,1000\n", day, close, close, close,
+              close));
+    }
+    Files.write(new File(data, SYMBOL + ".csv").toPath(),
+            csv.toString().getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static double value(FlexibleManager manager) throws Exception {
+    ValuationSeries series = manager.fetchFlexiblePortfolio(1)
+            .valuationSeries("2024-01-03", "2024-01-05");
+    return series.valueAt(series.size() - 1);
+  }
+
+  @Test
+  public void testWorkspacesKeepPortfoliosAndPricesApart() throws Exception {
+    Workspace first = Workspace.of(tenant("first", "alpha", 10));
+    Workspace second = Workspace.of(tenant("second", "beta", 20));
+    FlexibleManager firstManager = new FlexibleManager(first);
+    FlexibleManager secondManager = new FlexibleManager(second);
+
+    assertArrayEquals(new String[]{"alpha.xml"}, firstManager.returnPortfolioList());
+    assertArrayEquals(new String[]{"beta.xml"}, secondManager.returnPortfolioList());
+    assertEquals(100, value(firstManager), 1e-3);
+    assertEquals(200, value(secondManager), 1e-3);
+    assertEquals(new File(root, "second/data").getAbsoluteFile(), second.getDataFolder());
+  }
+
+  @Test
+  public void testWorkspacesShareADataFolder() throws Exception {
+    File shared = new File(root, "prices");
+    prices(shared, 30);
+    Workspace first = Workspace.open(new File(tenant("first", "alpha", 10), "portfolios")
+            .getPath(), shared);
+    Workspace second = Workspace.open(new File(tenant("second", "beta", 20), "portfolios")
+            .getPath(), shared);
+
+    assertEquals(300, value(new FlexibleManager(first)), 1e-3);
+    assertEquals(300, value(new FlexibleManager(second)), 1e-3);
+    assertTrue(first == Workspace.open(new File(root, "first/portfolios").getPath(), shared));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testPortfoliosBelongToOneWorkspace() throws Exception {
+    File folder = tenant("first", "alpha", 10);
+    Workspace.of(folder);
+    Workspace.open(new File(folder, "portfolios").getPath(), new File(root, "prices"));
+  }
+
+  @Test
+  public void testStrategiesAreSavedInTheirWorkspace() throws Exception {
+    Workspace first = Workspace.of(tenant("first", "alpha", 10));
+    Workspace.of(tenant("second", "alpha", 20));
+    Strategy strategy = new Strategy("2024-01-03", "2024-01-05", 1,
+            Collections.singletonList(SYMBOL), Collections.singletonList(100f));
+    assertEquals("Strategy saved to alpha.xml", strategy.saveStrategy(first, "alpha", "daily"));
+    assertEquals(1, new File(root, "first/strategies").list().length);
+    assertFalse(new File(root, "second/strategies").exists());
+  }
+}
@@ -0,0 +1,151 @@
+package controller;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.SwingUtilities;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * This class tests that a query asked for again drops the result of the earlier one, that
+ * cancelling stops queries without showing their results but leaves updates alone, and that the
+ * progress shown follows the calls waiting to run.
+ */
+public class TaskRunnerTest {
+  private final List<String> shown = Collections.synchronizedList(new ArrayList<>());
+  private final List<String> progress = Collections.synchronizedList(new ArrayList<>());
+  private TaskRunner runner;
+
+  @Before
+  public void setUp() {
+    runner = new TaskRunner("test-tasks", (task, cancellable) ->
+            progress.add(task == null ? "idle" : task + (cancellable ? " *" : "")));
+  }
+
+  private static void onEventThread(Runnable action) throws Exception {
+    SwingUtilities.invokeAndWait(action);
+  }
+
+  /**
+   * Waits until no call is running or waiting and their results have been handed back.
+   */
+  private void awaitIdle() throws Exception {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (System.currentTimeMillis() < deadline) {
+      boolean[] idle = new boolean[1];
+      onEventThread(() -> idle[0] = !progress.isEmpty()
+              && "idle".equals(progress.get(progress.size() - 1)));
+      if (idle[0]) {
+        return;
+      }
+      Thread.sleep(10);
+    }
+    throw new AssertionError("The calls did not finish: " + progress);
+  }
+
+  /**
+   * Waits for a latch without giving up when interrupted, like a call that does not check for
+   * cancellation.
+   */
+  private static void awaitUninterruptibly(CountDownLatch latch) {
+    boolean interrupted = false;
+    while (true) {
+      try {
+        latch.await();
+        break;
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Test
+  public void testNewerQueryDropsTheStaleResult() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    onEventThread(() -> {
+      runner.query("Crossover", "first", () -> {
+        awaitUninterruptibly(release);
+        return "first result";
+      }, shown::add);
+      runner.query("Crossover", "second", () -> "second result", shown::add);
+    });
+    release.countDown();
+    awaitIdle();
+    assertEquals(Collections.singletonList("second result"), shown);
+  }
+
+  @Test
+  public void testQueriesOfOtherKindsAreKept() throws Exception {
+    onEventThread(() -> {
+      runner.query("Crossover", "crossovers", () -> "crossovers", shown::add);
+      runner.query("Moving Average", "average", () -> "average", shown::add);
+    });
+    awaitIdle();
+    assertEquals(List.of("crossovers", "average"), shown);
+  }
+
+  @Test
+  public void testCancelInterruptsQueriesAndKeepsUpdates() throws Exception {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch interrupted = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    onEventThread(() -> {
+      runner.query("Crossover", "query", () -> {
+        started.countDown();
+        try {
+          Thread.sleep(60_000);
+        } catch (InterruptedException e) {
+          interrupted.countDown();
+          throw e;
+        }
+        return "query result";
+      }, shown::add);
+      runner.update("update", () -> {
+        awaitUninterruptibly(release);
+        return "update result";
+      }, shown::add);
+    });
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+    onEventThread(runner::cancel);
+    assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+    release.countDown();
+    awaitIdle();
+    assertEquals(Collections.singletonList("update result"), shown);
+  }
+
+  @Test
+  public void testFailureShowsTheMessage() throws Exception {
+    onEventThread(() -> runner.update("update", () -> {
+      throw new IllegalStateException("No Data found");
+    }, shown::add));
+    awaitIdle();
+    assertEquals(Collections.singletonList("No Data found"), shown);
+  }
+
+  @Test
+  public void testProgressCountsWaitingCalls() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    onEventThread(() -> {
+      runner.update("buying", () -> {
+        awaitUninterruptibly(release);
+        return "bought";
+      }, shown::add);
+      runner.query("Crossover", "crossovers", () -> "crossovers", shown::add);
+    });
+    release.countDown();
+    awaitIdle();
+    assertEquals(List.of("buying", "buying (1 waiting)", "crossovers *", "idle"), progress);
+    assertEquals(List.of("bought", "crossovers"), shown);
+  }
+}
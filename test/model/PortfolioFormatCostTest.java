@@ -0,0 +1,126 @@
+package model;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * This class tests that a portfolio with long ledgers is read and written faster in the binary
+ * format than as XML. Each format is timed by the best of several rounds, after a warm-up, so a
+ * round slowed down by the machine does not decide the result.
+ */
+public class PortfolioFormatCostTest {
+  private static final int STOCKS = 10;
+  private static final int TRANSACTIONS = 2000;
+  private static final int ROUNDS = 7;
+
+  private File folder;
+  private File xml;
+  private File binary;
+  private List<Stock> stocks;
+
+  @Before
+  public void setUp() throws Exception {
+    folder = Files.createTempDirectory("format-cost").toFile();
+    xml = new File(folder, "alpha.xml");
+    binary = new File(folder, "alpha" + PortfolioCodec.EXTENSION);
+    StringBuilder content = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<portfolio>\n");
+    LocalDate day = LocalDate.parse("2010-01-01");
+    for (int s = 0; s < STOCKS; s++) {
+      StringBuilder dates = new StringBuilder();
+      StringBuilder quantities = new StringBuilder();
+      for (int i = 0; i < TRANSACTIONS; i++) {
+        dates.append(i == 0 ? "" : ",").append(day.plusDays(i));
+        quantities.append(i == 0 ? "" : ",").append(i % 3 == 2 ? -5 : 10);
+      }
+      String symbol = "SYM" + s;
+      content.append("\t<stock id=\"").append(symbol).append("\">\n")
+              .append("\t\t<symbol>").append(symbol).append("</symbol>\n")
+              .append("\t\t<transactDate>").append(dates).append("</transactDate>\n")
+              .append("\t\t<transactQuantity>").append(quantities)
+              .append("</transactQuantity>\n")
+              .append("\t\t<quantity>").append(TRANSACTIONS / 3 * 15 + 10).append("</quantity>\n")
+              .append("\t</stock>\n");
+    }
+    content.append("</portfolio>");
+    AtomicFileWriter.write(xml, content, true);
+    stocks = PortfolioXmlReader.readFlexiblePortfolio(xml, "alpha", null).stocks();
+    AtomicFileWriter.write(binary, PortfolioCodec.encode(0, stocks));
+  }
+
+  @After
+  public void tearDown() {
+    File[] files = folder.listFiles();
+    for (File file : files == null ? new File[0] : files) {
+      file.delete();
+    }
+    folder.delete();
+  }
+
+  /**
+   * Reads a portfolio and every transaction of it, returning the number of transactions.
+   */
+  private static int readAll(File file) throws Exception {
+    FlexiblePortfolio portfolio = file.getName().endsWith(PortfolioCodec.EXTENSION)
+            ? PortfolioCodec.readFlexiblePortfolio(file, "alpha", null)
+            : PortfolioXmlReader.readFlexiblePortfolio(file, "alpha", null);
+    int transactions = 0;
+    for (Stock stock : portfolio.stocks()) {
+      transactions += stock.getTransactionCount();
+    }
+    return transactions;
+  }
+
+  private static long bestReadTime(File file) throws Exception {
+    long best = Long.MAX_VALUE;
+    for (int round = 0; round < ROUNDS; round++) {
+      long start = System.nanoTime();
+      assertEquals(STOCKS * TRANSACTIONS, readAll(file));
+      best = Math.min(best, System.nanoTime() - start);
+    }
+    return best;
+  }
+
+  private long bestWriteTime(boolean asBinary) throws IOException {
+    long best = Long.MAX_VALUE;
+    for (int round = 0; round < ROUNDS; round++) {
+      long start = System.nanoTime();
+      if (asBinary) {
+        AtomicFileWriter.write(binary, PortfolioCodec.encode(0, stocks));
+      } else {
+        AtomicFileWriter.write(xml, FlexiblePortfolio.renderSnapshot(0, stocks), true);
+      }
+      best = Math.min(best, System.nanoTime() - start);
+    }
+    return best;
+  }
+
+  @Test
+  public void testBinaryFormatIsReadFaster() throws Exception {
+    bestReadTime(xml);
+    bestReadTime(binary);
+    long xmlTime = bestReadTime(xml);
+    long binaryTime = bestReadTime(binary);
+    assertTrue(binaryTime + " ns against " + xmlTime + " ns", binaryTime * 2 < xmlTime);
+  }
+
+  @Test
+  public void testBinaryFormatIsWrittenFaster() throws Exception {
+    bestWriteTime(false);
+    bestWriteTime(true);
+    long xmlTime = bestWriteTime(false);
+    long binaryTime = bestWriteTime(true);
+    assertTrue(binaryTime + " ns against " + xmlTime + " ns", binaryTime < xmlTime);
+  }
+}
@@ -0,0 +1,205 @@
+package model;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * This class tests that a failed write is reported by a flush until it is written again, that
+ * the writer retries it by itself, and that changes made while the writer is busy are written
+ * once, with their final state.
+ */
+public class WriteBehindQueueTest {
+  private Repository repository;
+  private FlexiblePortfolio portfolio;
+
+  /**
+   * Keeps the stock counts of the snapshots saved, failing while asked to and holding the
+   * writer in the first save while asked to.
+   */
+  private static final class Repository implements PortfolioRepository {
+    private final List<Integer> saved = Collections.synchronizedList(new ArrayList<>());
+    private volatile boolean failing;
+    private volatile CountDownLatch entered;
+    private volatile CountDownLatch release;
+
+    @Override
+    public void saveSnapshot(String name, long journalSeq, List<Stock> stocks)
+            throws IOException {
+      CountDownLatch held = release;
+      if (held != null) {
+        release = null;
+        entered.countDown();
+        try {
+          held.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      if (failing) {
+        throw new IOException("Disk full");
+      }
+      saved.add(stocks.size());
+    }
+
+    @Override
+    public void appendTrades(String name, List<Trade> trades) throws IOException {
+      throw new IOException("Only snapshots are saved in this test");
+    }
+
+    @Override
+    public void refresh() {
+    }
+
+    @Override
+    public String[] list() {
+      return new String[0];
+    }
+
+    @Override
+    public boolean exists(String name) {
+      return false;
+    }
+
+    @Override
+    public PortfolioSummary summary(String name) {
+      return null;
+    }
+
+    @Override
+    public Portfolio loadPortfolio(String name) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public FlexiblePortfolio loadFlexiblePortfolio(String name) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void savePortfolio(Portfolio portfolio) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean delete(String name) {
+      return false;
+    }
+
+    @Override
+    public Map<String, Strategy> loadStrategies(String name) {
+      return Collections.emptyMap();
+    }
+
+    @Override
+    public long saveStrategies(String name, Map<String, Strategy> strategies) {
+      return 0;
+    }
+
+    @Override
+    public Map<String, Long> strategyVersions() {
+      return Collections.emptyMap();
+    }
+
+    @Override
+    public Map<String, Float> holdingsOf(String symbol) {
+      return Collections.emptyMap();
+    }
+
+    @Override
+    public List<Trade> tradesBetween(String startDate, String endDate) {
+      return Collections.emptyList();
+    }
+  }
+
+  @Before
+  public void setUp() {
+    repository = new Repository();
+    portfolio = new FlexiblePortfolio("zzqueue");
+    portfolio.attach(repository);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    repository.failing = false;
+    WriteBehindQueue.flush();
+  }
+
+  private void addStock(String symbol) {
+    synchronized (portfolio) {
+      portfolio.stocksList.add(new Stock(symbol, 1));
+    }
+  }
+
+  @Test
+  public void testFlushRethrowsFailedWrite() throws Exception {
+    repository.failing = true;
+    addStock("AAPL");
+    assertEquals("Error saving portfolio: Disk full",
+            portfolio.awaitWrite(portfolio.saveLater()));
+    assertTrue(WriteBehindQueue.pending(repository, "zzqueue") == portfolio);
+    try {
+      WriteBehindQueue.flush();
+      fail("The failed write was not reported");
+    } catch (IOException e) {
+      assertEquals("Disk full", e.getMessage());
+    }
+
+    repository.failing = false;
+    WriteBehindQueue.flush();
+    assertEquals(Collections.singletonList(1), repository.saved);
+    assertTrue(WriteBehindQueue.pending(repository, "zzqueue") == null);
+  }
+
+  @Test
+  public void testFailedWriteRetriedByTheWriter() throws Exception {
+    repository.failing = true;
+    addStock("AAPL");
+    long change = portfolio.saveLater();
+    assertEquals("Error saving portfolio: Disk full", portfolio.awaitWrite(change));
+
+    repository.failing = false;
+    long deadline = System.currentTimeMillis() + 10_000;
+    while (repository.saved.isEmpty() && System.currentTimeMillis() < deadline) {
+      Thread.sleep(20);
+    }
+    assertEquals(Collections.singletonList(1), repository.saved);
+    assertEquals("Portfolio saved to zzqueue.xml", portfolio.awaitWrite(change));
+  }
+
+  @Test
+  public void testChangesWhileBusyWrittenOnceWithTheFinalState() throws Exception {
+    repository.entered = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    repository.release = release;
+    addStock("AAPL");
+    long first = portfolio.saveLater();
+    assertTrue(repository.entered.await(10, TimeUnit.SECONDS));
+
+    addStock("MSFT");
+    portfolio.saveLater();
+    addStock("GOOG");
+    portfolio.saveLater();
+    addStock("TSLA");
+    long last = portfolio.saveLater();
+    release.countDown();
+
+    assertEquals("Portfolio saved to zzqueue.xml", portfolio.awaitWrite(first));
+    assertEquals("Portfolio saved to zzqueue.xml", portfolio.awaitWrite(last));
+    WriteBehindQueue.flush();
+    assertEquals(Arrays.asList(1, 4), repository.saved);
+  }
+}